@@ -33,6 +33,7 @@ public class DurationMeasure {
   private String name;
   private long calls;
   private long durationNanos;
+  private long allocatedBytes;
   @Nullable
   private Map<String, DurationMeasure> childrenMap;
 
@@ -52,6 +53,10 @@ public class DurationMeasure {
     durationNanos += durationNanosToAdd;
   }
 
+  public void addAllocatedBytes(long allocatedBytesToAdd) {
+    allocatedBytes += allocatedBytesToAdd;
+  }
+
   public DurationMeasure getOrCreateChild(String name) {
     if (childrenMap == null) {
       childrenMap = new HashMap<>();
@@ -72,6 +77,7 @@ public class DurationMeasure {
     }
     durationNanos += measure.durationNanos;
     calls += measure.calls;
+    allocatedBytes += measure.allocatedBytes;
     for (DurationMeasure child : measure.children()) {
       addOrMerge(child);
     }
@@ -90,6 +96,13 @@ public class DurationMeasure {
     return durationNanos;
   }
 
+  /**
+   * @return bytes allocated by the measured thread, 0 when allocation is not measured
+   */
+  public long allocatedBytes() {
+    return allocatedBytes;
+  }
+
   public void subtractDuration(long durationNanosToSubtract) {
     durationNanos -= durationNanosToSubtract;
   }
@@ -130,7 +143,9 @@ public class DurationMeasure {
         childrenMapCopy.put(child.name, child.copy());
       }
     }
-    return new DurationMeasure(name, calls, durationNanos, childrenMapCopy);
+    DurationMeasure measureCopy = new DurationMeasure(name, calls, durationNanos, childrenMapCopy);
+    measureCopy.allocatedBytes = allocatedBytes;
+    return measureCopy;
   }
 
   public void recursiveMergeOnUpperLevel(String targetChildName) {
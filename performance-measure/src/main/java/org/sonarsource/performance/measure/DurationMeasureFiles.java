@@ -24,6 +24,7 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -51,6 +52,7 @@ public final class DurationMeasureFiles {
   private static final DecimalFormatSymbols SYMBOLS = DecimalFormatSymbols.getInstance(Locale.ROOT);
   private static final NumberFormat TIME_FORMAT = new DecimalFormat("0.000000000", SYMBOLS);
   private static final NumberFormat RANK_FORMAT = new DecimalFormat("000", SYMBOLS);
+  private static final NumberFormat MEGABYTES_FORMAT = new DecimalFormat("0.000", SYMBOLS);
 
   private DurationMeasureFiles() {
     // utility class
@@ -64,7 +66,7 @@ public final class DurationMeasureFiles {
     String json = GSON_PRETTY.toJson(toJsonObject(measure));
     // reduce the number of lines by inlining some of the properties
     return json
-      .replaceAll("\n *+(\"(?:name|calls|durationNanos|children)\":)", " $1")
+      .replaceAll("\n *+(\"(?:name|calls|durationNanos|allocatedBytes|children)\":)", " $1")
       .replaceAll("(\\d)\n *+\\}", "$1 }");
   }
 
@@ -73,6 +75,9 @@ public final class DurationMeasureFiles {
     jsonObject.addProperty("name", measure.name());
     jsonObject.addProperty("calls", measure.calls());
     jsonObject.addProperty("durationNanos", measure.durationNanos());
+    if (measure.allocatedBytes() != 0) {
+      jsonObject.addProperty("allocatedBytes", measure.allocatedBytes());
+    }
     if (!measure.hasChildren()) {
       jsonObject.add("children", measure.sortedChildren().stream()
         .map(DurationMeasureFiles::toJsonObject)
@@ -108,7 +113,12 @@ public final class DurationMeasureFiles {
     String name = jsonObject.getAsJsonPrimitive("name").getAsString();
     long calls = jsonObject.getAsJsonPrimitive("calls").getAsLong();
     long durationNanos = jsonObject.getAsJsonPrimitive("durationNanos").getAsLong();
-    return new DurationMeasure(name, calls, durationNanos, childrenMap);
+    DurationMeasure measure = new DurationMeasure(name, calls, durationNanos, childrenMap);
+    JsonPrimitive allocatedBytes = jsonObject.getAsJsonPrimitive("allocatedBytes");
+    if (allocatedBytes != null) {
+      measure.addAllocatedBytes(allocatedBytes.getAsLong());
+    }
+    return measure;
   }
 
   /**
@@ -189,6 +199,7 @@ public final class DurationMeasureFiles {
         groupedCount++;
         measure.remove(child.name());
         substitutedChild.addCalls(child.calls(), child.durationNanos());
+        substitutedChild.addAllocatedBytes(child.allocatedBytes());
         groupedMap.merge(child.name(), child.copy(), DurationMeasure::merge);
       }
     }
@@ -206,7 +217,8 @@ public final class DurationMeasureFiles {
   }
 
   private static void toTextTreeOrderedByDuration(StringBuilder out, DurationMeasure measure, String indent) {
-    out.append(indent).append("• ").append(toSeconds(measure.durationNanos())).append(" ").append(measure.name()).append("\n");
+    out.append(indent).append("• ").append(toSeconds(measure.durationNanos())).append(" ").append(measure.name())
+      .append(toAllocation(measure)).append("\n");
     measure.children().stream()
       .sorted(Comparator.comparing(x -> -x.durationNanos()))
       .forEach(child -> toTextTreeOrderedByDuration(out, child, indent + "    "));
@@ -217,6 +229,13 @@ public final class DurationMeasureFiles {
     return String.format("%13s" , TIME_FORMAT.format(seconds));
   }
 
+  private static String toAllocation(DurationMeasure measure) {
+    if (measure.allocatedBytes() == 0) {
+      return "";
+    }
+    return " [allocated " + MEGABYTES_FORMAT.format(measure.allocatedBytes() / (1024.0d * 1024.0d)) + " MB]";
+  }
+
   public static String toRankedList(Map<String, DurationMeasure> groupedMeasure, Map<String, Set<String>> measureCategories) {
     StringBuilder out = new StringBuilder();
     long totalDuration = groupedMeasure.values().stream().mapToLong(DurationMeasure::durationNanos).sum();
@@ -235,6 +254,7 @@ public final class DurationMeasureFiles {
         .append(" ").append(toSeconds(measure.durationNanos()))
         .append(" ").append(String.format("%-50s", measure.name()))
         .append(categoryList)
+        .append(toAllocation(measure))
         .append("\n");
       measure.children().stream()
         .sorted(Comparator.comparing(x -> -x.durationNanos()))
@@ -21,6 +21,8 @@ package org.sonarsource.performance.measure;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -41,8 +43,12 @@ public final class PerformanceMeasure {
 
   private static boolean globalDeactivation = true;
 
+  private static boolean allocationMeasurement = false;
+
   private static Supplier<Long> nanoTimeSupplier = System::nanoTime;
 
+  private static Supplier<Long> allocatedBytesSupplier = AllocatedBytes::currentThread;
+
   private PerformanceMeasure() {
     // utility class
   }
@@ -51,6 +57,10 @@ public final class PerformanceMeasure {
     globalDeactivation = value;
   }
 
+  private static void setAllocationMeasurement(boolean value) {
+    allocationMeasurement = value;
+  }
+
   public static Builder reportBuilder() {
     return new Builder();
   }
@@ -64,6 +74,8 @@ public final class PerformanceMeasure {
 
     boolean appendMeasurementCost = false;
 
+    boolean measureAllocation = false;
+
     public Builder activate(boolean active) {
       this.active = active;
       return this;
@@ -74,6 +86,14 @@ public final class PerformanceMeasure {
       return this;
     }
 
+    /**
+     * Also measure the bytes allocated by the thread of each measure, when supported by the JVM
+     */
+    public Builder measureAllocation() {
+      this.measureAllocation = true;
+      return this;
+    }
+
     public Builder toFile(@Nullable String performanceFile) {
       this.performanceFile = performanceFile;
       return this;
@@ -84,6 +104,7 @@ public final class PerformanceMeasure {
         return IgnoredDuration.INSTANCE;
       }
       setGlobalDeactivation(false);
+      setAllocationMeasurement(measureAllocation);
       Path performanceMeasureFile = null;
       if (performanceFile != null && !performanceFile.isEmpty()) {
         performanceMeasureFile = Paths.get(performanceFile.replace('\\', File.separatorChar).replace('/', File.separatorChar));
@@ -122,10 +143,12 @@ public final class PerformanceMeasure {
     protected final DurationMeasure parentMeasure;
     protected final DurationMeasure measure;
     private long startNanos;
+    private final long startAllocatedBytes;
 
     public RecordedDuration(@Nullable DurationMeasure parentMeasure, DurationMeasure measure) {
       this.parentMeasure = parentMeasure;
       this.measure = measure;
+      this.startAllocatedBytes = allocationMeasurement ? allocatedBytesSupplier.get() : -1;
       this.startNanos = nanoTimeSupplier.get();
     }
 
@@ -133,6 +156,9 @@ public final class PerformanceMeasure {
     public void stop() {
       if (startNanos != -1) {
         measure.addCalls(1, nanoTimeSupplier.get() - startNanos);
+        if (startAllocatedBytes != -1) {
+          measure.addAllocatedBytes(allocatedBytesSupplier.get() - startAllocatedBytes);
+        }
         startNanos = -1;
         if (parentMeasure == null) {
           THREAD_LOCAL_CURRENT_MEASURE.remove();
@@ -243,6 +269,32 @@ public final class PerformanceMeasure {
 
   }
 
+  private static final class AllocatedBytes {
+
+    @Nullable
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = threadMXBean();
+
+    private AllocatedBytes() {
+      // utility class
+    }
+
+    @Nullable
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+      ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+      if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (allocationMXBean.isThreadAllocatedMemorySupported() && allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+          return allocationMXBean;
+        }
+      }
+      return null;
+    }
+
+    private static long currentThread() {
+      return THREAD_MX_BEAN == null ? 0 : THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+  }
+
   // Visible for testing
   static void ensureParentDirectoryExists(Path path) throws IOException {
     Path parentDirectory = path.getParent();
@@ -256,9 +308,15 @@ public final class PerformanceMeasure {
     PerformanceMeasure.nanoTimeSupplier = nanoTimeSupplier;
   }
 
+  // Visible for testing
+  static void overrideAllocatedBytesSupplierForTest(Supplier<Long> allocatedBytesSupplier) {
+    PerformanceMeasure.allocatedBytesSupplier = allocatedBytesSupplier;
+  }
+
   // Visible for testing
   static void deactivateAndClearCurrentMeasureForTest() {
     setGlobalDeactivation(true);
+    setAllocationMeasurement(false);
     THREAD_LOCAL_CURRENT_MEASURE.remove();
   }
 
@@ -115,4 +115,30 @@ class DurationMeasureFilesTest {
       "002/003  36.058273738 Child2                                            \n" +
       "003/003   0.543531314 Child3                                             (other-cat)\n");
   }
+
+  @Test
+  void allocated_bytes() {
+    String json = "" +
+      "{ \"name\": \"Root\", \"calls\": 1, \"durationNanos\": 3000000000, \"allocatedBytes\": 52428800, \"children\": [\n" +
+      "    { \"name\": \"Child1\", \"calls\": 13, \"durationNanos\": 2000000000, \"allocatedBytes\": 10485760 },\n" +
+      "    { \"name\": \"Child2\", \"calls\": 7, \"durationNanos\": 1000000000, \"allocatedBytes\": 1572864 },\n" +
+      "    { \"name\": \"Other\", \"calls\": 7, \"durationNanos\": 5000 }\n" +
+      "  ]\n" +
+      "}";
+    DurationMeasure measure = DurationMeasureFiles.fromJson(json);
+    assertThat(measure.allocatedBytes()).isEqualTo(52_428_800L);
+    assertThat(DurationMeasureFiles.toJson(measure)).isEqualTo(json);
+
+    String out = DurationMeasureFiles.toStatistics(measure, Collections.emptyMap(), name -> name.startsWith("Child"));
+    assertThat(out).isEqualTo("" +
+      "Performance (in seconds without observation cost)\n" +
+      "•   3.000000000 Root [allocated 50.000 MB]\n" +
+      "    •   3.000000000 [ 2 grouped measure(s) ] [allocated 11.500 MB]\n" +
+      "    •   0.000005000 Other\n" +
+      "\n" +
+      "Grouped Entries (in seconds without observation cost)\n" +
+      "Total     3.000000000\n" +
+      "001/002   2.000000000 Child1                                             [allocated 10.000 MB]\n" +
+      "002/002   1.000000000 Child2                                             [allocated 1.500 MB]\n");
+  }
 }
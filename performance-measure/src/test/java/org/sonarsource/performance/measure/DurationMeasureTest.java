@@ -69,6 +69,18 @@ class DurationMeasureTest {
     assertThat(measure1Child.hasChildren()).isTrue();
   }
 
+  @Test
+  void allocated_bytes() {
+    DurationMeasure measure = new DurationMeasure("foo", 1, 100, null);
+    assertThat(measure.allocatedBytes()).isZero();
+    measure.addAllocatedBytes(1_024);
+    assertThat(measure.copy().allocatedBytes()).isEqualTo(1_024L);
+
+    DurationMeasure other = new DurationMeasure("foo", 1, 100, null);
+    other.addAllocatedBytes(2_048);
+    assertThat(measure.merge(other).allocatedBytes()).isEqualTo(3_072L);
+  }
+
   @Test
   void invalid_merge() {
     DurationMeasure measure1 = new DurationMeasure("foo", 1, 100, null);
@@ -64,9 +64,12 @@ class PerformanceMeasureTest {
 
   public long testTimeNanos = System.nanoTime();
 
+  public long testAllocatedBytes = 0;
+
   @BeforeEach
   void beforeEach() {
     PerformanceMeasure.overrideTimeSupplierForTest(() -> ++testTimeNanos);
+    PerformanceMeasure.overrideAllocatedBytesSupplierForTest(() -> testAllocatedBytes);
     PerformanceMeasure.deactivateAndClearCurrentMeasureForTest();
   }
 
@@ -135,6 +138,43 @@ class PerformanceMeasureTest {
       "}\n");
   }
 
+  @Test
+  void measure_allocation() {
+    logger.setLevel(StringLogger.Level.DEBUG);
+    PerformanceMeasure.Duration duration = PerformanceMeasure.reportBuilder()
+      .activate(true)
+      .measureAllocation()
+      .start("root");
+    testAllocatedBytes += 1_000L;
+
+    PerformanceMeasure.Duration duration_1 = PerformanceMeasure.start("cat-1");
+    testAllocatedBytes += 4_096L;
+    duration_1.stop();
+
+    // no allocation
+    PerformanceMeasure.start("cat-2").stop();
+
+    duration.stop();
+    assertThat(logger.logs()).isEqualTo("" +
+      "[DEBUG] Performance Measures:\n" +
+      "{ \"name\": \"root\", \"calls\": 1, \"durationNanos\": 5, \"allocatedBytes\": 5096, \"children\": [\n" +
+      "    { \"name\": \"cat-1\", \"calls\": 1, \"durationNanos\": 1, \"allocatedBytes\": 4096 },\n" +
+      "    { \"name\": \"cat-2\", \"calls\": 1, \"durationNanos\": 1 }\n" +
+      "  ]\n" +
+      "}\n");
+
+    logger.clear();
+    // allocation is only measured when requested by the report
+    PerformanceMeasure.Duration withoutAllocation = PerformanceMeasure.reportBuilder()
+      .activate(true)
+      .start("root");
+    testAllocatedBytes += 1_000L;
+    withoutAllocation.stop();
+    assertThat(logger.logs()).isEqualTo("" +
+      "[DEBUG] Performance Measures:\n" +
+      "{ \"name\": \"root\", \"calls\": 1, \"durationNanos\": 1 }\n");
+  }
+
   @Test
   void start_and_stop_after_a_report_should_be_ignored() {
     logger.setLevel(StringLogger.Level.DEBUG);
@@ -22,6 +22,11 @@ package org.sonarsource.analyzer.commons.regex;
 import java.util.NoSuchElementException;
 import org.sonarsource.analyzer.commons.regex.ast.SourceCharacter;
 
+/**
+ * @deprecated No longer used by {@link RegexLexer}, which buffers the indexes of the {@link DecodedCharacters} of the
+ * regex source instead. Will be removed in a future version.
+ */
+@Deprecated
 public class CharacterBuffer {
 
   private static final int RESIZE_FACTOR = 2;
@@ -26,6 +26,26 @@ public interface CharacterParser {
 
   SourceCharacter getCurrent();
 
+  /**
+   * The primitive accessors below describe the current character without requiring a {@link SourceCharacter}.
+   * Parsers should override them to avoid creating an object for each character of the regex.
+   */
+  default char getCurrentChar() {
+    return getCurrent().getCharacter();
+  }
+
+  default int getCurrentStartIndex() {
+    return getCurrent().getRange().getBeginningOffset();
+  }
+
+  default int getCurrentEndIndex() {
+    return getCurrent().getRange().getEndingOffset();
+  }
+
+  default boolean isCurrentEscapeSequence() {
+    return getCurrent().isEscapeSequence();
+  }
+
   boolean isAtEnd();
 
   default boolean isNotAtEnd() {
@@ -0,0 +1,99 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import org.sonarsource.analyzer.commons.regex.ast.IndexRange;
+import org.sonarsource.analyzer.commons.regex.ast.SourceCharacter;
+
+/**
+ * Characters of a regex source after processing the escape sequences of its string literals, stored in parallel arrays:
+ * a {@link SourceCharacter} is only created for the characters requested by the parser.
+ */
+final class DecodedCharacters {
+
+  private final char[] characters;
+  private final int[] startIndexes;
+  private final int[] endIndexes;
+  private final BitSet escapeSequences;
+  private final int size;
+
+  private DecodedCharacters(char[] characters, int[] startIndexes, int[] endIndexes, BitSet escapeSequences, int size) {
+    this.characters = characters;
+    this.startIndexes = startIndexes;
+    this.endIndexes = endIndexes;
+    this.escapeSequences = escapeSequences;
+    this.size = size;
+  }
+
+  /**
+   * Reads all the characters of the parser, from its current position
+   */
+  static DecodedCharacters decode(CharacterParser parser, int expectedSize) {
+    int capacity = Math.max(expectedSize, 1);
+    char[] characters = new char[capacity];
+    int[] startIndexes = new int[capacity];
+    int[] endIndexes = new int[capacity];
+    BitSet escapeSequences = new BitSet();
+    int size = 0;
+    for (; parser.isNotAtEnd(); parser.moveNext()) {
+      if (size == characters.length) {
+        capacity = size * 2;
+        characters = Arrays.copyOf(characters, capacity);
+        startIndexes = Arrays.copyOf(startIndexes, capacity);
+        endIndexes = Arrays.copyOf(endIndexes, capacity);
+      }
+      characters[size] = parser.getCurrentChar();
+      startIndexes[size] = parser.getCurrentStartIndex();
+      endIndexes[size] = parser.getCurrentEndIndex();
+      if (parser.isCurrentEscapeSequence()) {
+        escapeSequences.set(size);
+      }
+      size++;
+    }
+    return new DecodedCharacters(characters, startIndexes, endIndexes, escapeSequences, size);
+  }
+
+  int size() {
+    return size;
+  }
+
+  char character(int index) {
+    return characters[index];
+  }
+
+  int startIndex(int index) {
+    return startIndexes[index];
+  }
+
+  int endIndex(int index) {
+    return endIndexes[index];
+  }
+
+  boolean isEscapeSequence(int index) {
+    return escapeSequences.get(index);
+  }
+
+  SourceCharacter sourceCharacter(RegexSource source, int index) {
+    return new SourceCharacter(source, new IndexRange(startIndexes[index], endIndexes[index]), characters[index], escapeSequences.get(index));
+  }
+
+}
@@ -30,9 +30,20 @@ public class RegexLexer {
 
   private final RegexSource source;
 
-  private final CharacterParser characters;
+  private final DecodedCharacters characters;
 
-  private CharacterBuffer buffer = new CharacterBuffer(2);
+  // index in "characters" of the next character to add to the buffer
+  private int nextCharacter = 0;
+
+  // indexes in "characters" of the buffered characters, in a ring starting at "bufferStart" whose length is a power of 2
+  private int[] buffer = new int[2];
+
+  private int bufferStart = 0;
+
+  private int bufferSize = 0;
+
+  // created on demand for the first buffered character
+  private SourceCharacter current;
 
   private boolean freeSpacingMode = false;
 
@@ -43,6 +54,10 @@ public class RegexLexer {
   private boolean quotingMode = false;
 
   public RegexLexer(RegexSource source, CharacterParser characters) {
+    this(source, DecodedCharacters.decode(characters, source.length()));
+  }
+
+  RegexLexer(RegexSource source, DecodedCharacters characters) {
     this.source = source;
     this.characters = characters;
     moveNext();
@@ -68,10 +83,10 @@ public class RegexLexer {
   }
 
   public void moveNext() {
-    if (!buffer.isEmpty()) {
-      buffer.removeFirst();
+    if (bufferSize > 0) {
+      removeFirst();
     }
-    if (buffer.isEmpty()) {
+    if (bufferSize == 0) {
       fillBuffer(1);
     }
   }
@@ -79,15 +94,18 @@ public class RegexLexer {
   @Nonnull
   public SourceCharacter getCurrent() {
     fillBuffer(1);
-    if (buffer.isEmpty()) {
+    if (bufferSize == 0) {
       throw new NoSuchElementException();
     }
-    return buffer.get(0);
+    if (current == null) {
+      current = characters.sourceCharacter(source, buffered(0));
+    }
+    return current;
   }
 
   public int getCurrentChar() {
     if (isNotAtEnd()) {
-      return getCurrent().getCharacter();
+      return characters.character(buffered(0));
     } else {
       return EOF;
     }
@@ -95,7 +113,8 @@ public class RegexLexer {
 
   public IndexRange getCurrentIndexRange() {
     if (isNotAtEnd()) {
-      return getCurrent().getRange();
+      int character = buffered(0);
+      return current != null ? current.getRange() : new IndexRange(characters.startIndex(character), characters.endIndex(character));
     } else {
       // When we're at the end of the regex, the end index extends one past the end of the regex, so that the closing
       // quote will be the character that's marked as the offending character.
@@ -107,13 +126,17 @@ public class RegexLexer {
     if (isAtEnd()) {
       return source.length();
     } else {
-      return getCurrent().getRange().getBeginningOffset();
+      return characters.startIndex(buffered(0));
     }
   }
 
+  public boolean isCurrentEscapeSequence() {
+    return isNotAtEnd() && characters.isEscapeSequence(buffered(0));
+  }
+
   public boolean isAtEnd() {
     fillBuffer(1);
-    return buffer.isEmpty() && characters.isAtEnd();
+    return bufferSize == 0 && nextCharacter == characters.size();
   }
 
   public boolean isNotAtEnd() {
@@ -130,11 +153,11 @@ public class RegexLexer {
 
   public boolean currentIs(String str) {
     fillBuffer(str.length());
-    if (buffer.size() < str.length()) {
+    if (bufferSize < str.length()) {
       return false;
     }
     for (int i = 0; i < str.length(); i++) {
-      if (buffer.get(i).getCharacter() != str.charAt(i)) {
+      if (characters.character(buffered(i)) != str.charAt(i)) {
         return false;
       }
     }
@@ -143,29 +166,53 @@ public class RegexLexer {
 
   public int lookAhead(int offset) {
     fillBuffer(offset + 1);
-    if (buffer.size() <= offset) {
+    if (bufferSize <= offset) {
       return EOF;
     }
-    return buffer.get(offset).getCharacter();
+    return characters.character(buffered(offset));
   }
 
   public boolean hasComments() {
     return hasComments;
   }
 
+  private int buffered(int index) {
+    return buffer[(bufferStart + index) & (buffer.length - 1)];
+  }
+
+  private void removeFirst() {
+    current = null;
+    bufferStart = (bufferStart + 1) & (buffer.length - 1);
+    bufferSize--;
+  }
+
+  private void addToBuffer(int character) {
+    if (bufferSize == buffer.length) {
+      int[] newBuffer = new int[buffer.length * 2];
+      for (int i = 0; i < bufferSize; i++) {
+        newBuffer[i] = buffered(i);
+      }
+      buffer = newBuffer;
+      bufferStart = 0;
+    }
+    buffer[(bufferStart + bufferSize) & (buffer.length - 1)] = character;
+    bufferSize++;
+  }
+
   private void emptyBuffer() {
-    if (!buffer.isEmpty()) {
-      characters.resetTo(buffer.get(0).getRange().getBeginningOffset());
-      buffer = new CharacterBuffer(2);
+    if (bufferSize > 0) {
+      nextCharacter = buffered(0);
+      bufferSize = 0;
+      current = null;
     }
   }
 
   private void fillBuffer(int size) {
     skipCommentsAndWhiteSpace();
-    while (buffer.size() < size && characters.isNotAtEnd()) {
-      SourceCharacter sourceCharacter = characters.getCurrent();
-      characters.moveNext();
-      if (!escaped && sourceCharacter.getCharacter() == '\\') {
+    while (bufferSize < size && nextCharacter < characters.size()) {
+      int character = nextCharacter;
+      nextCharacter++;
+      if (!escaped && characters.character(character) == '\\') {
         if (readQuotingDelimiter()) {
           skipCommentsAndWhiteSpace();
           continue;
@@ -175,19 +222,19 @@ public class RegexLexer {
       } else {
         escaped = false;
       }
-      buffer.add(sourceCharacter);
+      addToBuffer(character);
       skipCommentsAndWhiteSpace();
     }
   }
 
   private boolean readQuotingDelimiter() {
-    if (characters.isAtEnd()) {
+    if (nextCharacter == characters.size()) {
       return false;
     }
-    char ch = characters.getCurrent().getCharacter();
+    char ch = characters.character(nextCharacter);
     if ((!quotingMode && ch == 'Q') || (quotingMode && ch == 'E')) {
       quotingMode = !quotingMode;
-      characters.moveNext();
+      nextCharacter++;
       return true;
     } else {
       return false;
@@ -198,14 +245,14 @@ public class RegexLexer {
     if (!freeSpacingMode) {
       return;
     }
-    while (characters.isNotAtEnd() && isSkippable(characters.getCurrent().getCharacter())) {
-      if (characters.getCurrent().getCharacter() == '#') {
+    while (nextCharacter < characters.size() && isSkippable(characters.character(nextCharacter))) {
+      if (characters.character(nextCharacter) == '#') {
         hasComments = true;
-        while (characters.isNotAtEnd() && characters.getCurrent().getCharacter() != '\n') {
-          characters.moveNext();
+        while (nextCharacter < characters.size() && characters.character(nextCharacter) != '\n') {
+          nextCharacter++;
         }
       } else {
-        characters.moveNext();
+        nextCharacter++;
       }
     }
   }
@@ -21,12 +21,14 @@ package org.sonarsource.analyzer.commons.regex;
 
 import java.util.Collections;
 import java.util.List;
+import org.sonarsource.analyzer.commons.regex.ast.AutomatonState;
 import org.sonarsource.analyzer.commons.regex.ast.FinalState;
 import org.sonarsource.analyzer.commons.regex.ast.FlagSet;
 import org.sonarsource.analyzer.commons.regex.ast.OpeningQuote;
 import org.sonarsource.analyzer.commons.regex.ast.RegexSyntaxElement;
 import org.sonarsource.analyzer.commons.regex.ast.RegexTree;
 import org.sonarsource.analyzer.commons.regex.ast.StartState;
+import org.sonarsource.analyzer.commons.regex.helpers.RegexAnalysisContext;
 
 public class RegexParseResult {
 
@@ -40,12 +42,17 @@ public class RegexParseResult {
 
   private final FinalState finalState;
 
+  private final int stateCount;
+
+  private RegexAnalysisContext analysisContext;
+
   public RegexParseResult(RegexTree result, StartState startState, FinalState finalState, List<SyntaxError> syntaxErrors, boolean containsComments) {
     this.result = result;
     this.startState = startState;
     this.finalState = finalState;
     this.syntaxErrors = Collections.unmodifiableList(syntaxErrors);
     this.containsComments = containsComments;
+    this.stateCount = startState.numberStates();
   }
 
   public RegexTree getResult() {
@@ -83,4 +90,21 @@ public class RegexParseResult {
     return startState;
   }
 
+  /**
+   * Number of states of the regex automaton, which are numbered from 0 by {@link AutomatonState#id()}
+   */
+  public int getStateCount() {
+    return stateCount;
+  }
+
+  /**
+   * Facts about the regex automaton shared by all the finders visiting this result, created on first use
+   */
+  public synchronized RegexAnalysisContext getAnalysisContext() {
+    if (analysisContext == null) {
+      analysisContext = new RegexAnalysisContext(startState);
+    }
+    return analysisContext;
+  }
+
 }
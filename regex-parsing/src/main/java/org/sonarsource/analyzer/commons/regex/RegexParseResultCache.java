@@ -0,0 +1,283 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.sonarsource.analyzer.commons.regex.ast.FlagSet;
+import org.sonarsource.analyzer.commons.regex.ast.SourceCharacter;
+
+/**
+ * Bounded cache of parsed regular expressions, keyed by dialect (see {@link RegexSource#dialect()}), source text and
+ * initial flags, which can be shared by several threads. The least recently used results are evicted first.
+ * <p>
+ * Cached results are shared by all the sources having the same dialect and text, so they are not parsed from the source of
+ * the caller: their syntax elements refer to a {@link DetachedRegexSource}, which only keeps the text, dialect and features
+ * of the first source, and not the source itself. The {@link org.sonarsource.analyzer.commons.regex.ast.IndexRange} of an
+ * element is valid in all the sources having the same text: locations of issues, such as the ones reported by finders, must be
+ * computed from this range and the source of the caller, never from {@link org.sonarsource.analyzer.commons.regex.ast.RegexSyntaxElement#getSource()}.
+ * Results must not be modified.
+ */
+public final class RegexParseResultCache {
+
+  // stands for a null verdict, as verdicts are kept in a ConcurrentHashMap
+  private static final Object NULL_VERDICT = new Object();
+
+  private final Map<Key, CachedResult> results;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /**
+   * @param maxSize maximum number of parsed regular expressions kept in the cache
+   */
+  public RegexParseResultCache(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Maximum size of the cache should be positive: " + maxSize);
+    }
+    results = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+        if (size() > maxSize) {
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * @return the result of parsing a {@link DetachedRegexSource} of the given source with the initial flags, parsed only when
+   * no source of the same dialect and text was parsed with the same initial flags
+   */
+  public RegexParseResult parse(RegexSource source, FlagSet initialFlags) {
+    return cachedResult(source, initialFlags).result;
+  }
+
+  /**
+   * Memoizes a verdict computed from the parsed regular expression, such as whether a finder raises an issue, for as long as
+   * the result stays in the cache. The verdict must only depend on the regular expression, and is shared by all the sources
+   * having the same dialect and text: it must not refer to the source of the caller. Issues of a finder should be reported
+   * from the result of {@link #parse(RegexSource, FlagSet)}, with locations computed from the source of the caller.
+   *
+   * @param verdictKey identifies the finder, and its configuration, computing the verdict
+   * @param verdict called with the result of {@link #parse(RegexSource, FlagSet)} when the verdict is not known yet, can return null
+   */
+  @Nullable
+  public <T> T verdict(RegexSource source, FlagSet initialFlags, Object verdictKey, Function<RegexParseResult, T> verdict) {
+    CachedResult cachedResult = cachedResult(source, initialFlags);
+    Object known = cachedResult.verdicts.get(verdictKey);
+    if (known == null) {
+      // computed out of the map, as a verdict can ask for other verdicts of the same result
+      T computed = verdict.apply(cachedResult.result);
+      Object concurrentlyComputed = cachedResult.verdicts.putIfAbsent(verdictKey, computed == null ? NULL_VERDICT : computed);
+      known = concurrentlyComputed != null ? concurrentlyComputed : computed;
+    }
+    @SuppressWarnings("unchecked")
+    T result = known == NULL_VERDICT ? null : (T) known;
+    return result;
+  }
+
+  private CachedResult cachedResult(RegexSource source, FlagSet initialFlags) {
+    Key key = new Key(source.dialect(), source.getSourceText(), initialFlags.getMask());
+    CachedResult cached;
+    synchronized (results) {
+      cached = results.get(key);
+    }
+    if (cached != null) {
+      hitCount.incrementAndGet();
+      return cached;
+    }
+    missCount.incrementAndGet();
+    // parsed out of the lock, as parsing a long regular expression takes time
+    CachedResult parsed = new CachedResult(new RegexParser(new DetachedRegexSource(source), new FlagSet(initialFlags)).parse());
+    synchronized (results) {
+      CachedResult concurrentlyParsed = results.putIfAbsent(key, parsed);
+      return concurrentlyParsed != null ? concurrentlyParsed : parsed;
+    }
+  }
+
+  public long hitCount() {
+    return hitCount.get();
+  }
+
+  public long missCount() {
+    return missCount.get();
+  }
+
+  public long evictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * @return ratio of the calls which did not parse the regular expression, 0 when nothing was parsed yet
+   */
+  public double hitRate() {
+    long hits = hitCount.get();
+    long total = hits + missCount.get();
+    return total == 0 ? 0 : ((double) hits / total);
+  }
+
+  public int size() {
+    synchronized (results) {
+      return results.size();
+    }
+  }
+
+  private static final class Key {
+
+    private final Object dialect;
+    private final String sourceText;
+    private final int flags;
+
+    private Key(Object dialect, String sourceText, int flags) {
+      this.dialect = dialect;
+      this.sourceText = sourceText;
+      this.flags = flags;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return flags == key.flags && dialect.equals(key.dialect) && sourceText.equals(key.sourceText);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * dialect.hashCode() + sourceText.hashCode()) + flags;
+    }
+  }
+
+  /**
+   * Source of the cached results, having the text, dialect and features of the source which was parsed first, without
+   * keeping a reference to it. Its escape sequences are the ones decoded by that source.
+   */
+  public static final class DetachedRegexSource extends RegexSource {
+
+    private final Object dialect;
+    private final Set<RegexFeature> features;
+    private final DecodedCharacters decodedCharacters;
+
+    private DetachedRegexSource(RegexSource source) {
+      super(source.getSourceText());
+      this.dialect = source.dialect();
+      Set<RegexFeature> sourceFeatures = source.features();
+      this.features = Collections.unmodifiableSet(sourceFeatures.isEmpty() ? EnumSet.noneOf(RegexFeature.class) : EnumSet.copyOf(sourceFeatures));
+      this.decodedCharacters = source.decodedCharacters();
+    }
+
+    @Override
+    public CharacterParser createCharacterParser() {
+      return new DecodedCharacterParser();
+    }
+
+    @Override
+    DecodedCharacters decodedCharacters() {
+      return decodedCharacters;
+    }
+
+    @Override
+    protected Object dialect() {
+      return dialect;
+    }
+
+    @Override
+    public Set<RegexFeature> features() {
+      return features;
+    }
+
+    private class DecodedCharacterParser implements CharacterParser {
+
+      private int index = 0;
+
+      @Override
+      public void moveNext() {
+        index++;
+      }
+
+      @Override
+      public SourceCharacter getCurrent() {
+        if (isAtEnd()) {
+          throw new NoSuchElementException();
+        }
+        return decodedCharacters.sourceCharacter(DetachedRegexSource.this, index);
+      }
+
+      @Override
+      public char getCurrentChar() {
+        return decodedCharacters.character(index);
+      }
+
+      @Override
+      public int getCurrentStartIndex() {
+        return decodedCharacters.startIndex(index);
+      }
+
+      @Override
+      public int getCurrentEndIndex() {
+        return decodedCharacters.endIndex(index);
+      }
+
+      @Override
+      public boolean isCurrentEscapeSequence() {
+        return decodedCharacters.isEscapeSequence(index);
+      }
+
+      @Override
+      public boolean isAtEnd() {
+        return index >= decodedCharacters.size();
+      }
+
+      @Override
+      public void resetTo(int sourceIndex) {
+        index = 0;
+        while (!isAtEnd() && decodedCharacters.startIndex(index) < sourceIndex) {
+          index++;
+        }
+      }
+    }
+  }
+
+  private static final class CachedResult {
+
+    private final RegexParseResult result;
+    private final Map<Object, Object> verdicts = new ConcurrentHashMap<>();
+
+    private CachedResult(RegexParseResult result) {
+      this.result = result;
+    }
+  }
+
+}
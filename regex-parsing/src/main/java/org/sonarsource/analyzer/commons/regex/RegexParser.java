@@ -337,6 +337,13 @@ public class RegexParser {
   }
 
   protected CharacterTree readCharacter() {
+    if (characters.isNotAtEnd() && !Character.isHighSurrogate((char) characters.getCurrentChar())) {
+      // most common case, built without source character
+      CharacterTree character = new CharacterTree(source, characters.getCurrentIndexRange(), characters.getCurrentChar(),
+        characters.isCurrentEscapeSequence(), activeFlags);
+      characters.moveNext();
+      return character;
+    }
     SourceCharacter character = characters.getCurrent();
     characters.moveNext();
     return characterTree(character);
@@ -393,7 +400,7 @@ public class RegexParser {
   protected String parseGroupName(char nameDelimiter) {
     StringBuilder sb = new StringBuilder();
     while (characters.isNotAtEnd() && !characters.currentIs(nameDelimiter)) {
-      sb.append(characters.getCurrent().getCharacter());
+      sb.append((char) characters.getCurrentChar());
       characters.moveNext();
     }
     String name = sb.toString();
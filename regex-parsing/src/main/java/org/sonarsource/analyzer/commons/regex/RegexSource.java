@@ -26,6 +26,9 @@ public abstract class RegexSource {
 
   protected final String source;
 
+  // only a hint, as its fields are final: it can be decoded again by another thread
+  private DecodedCharacters decodedCharacters;
+
   protected RegexSource(String source) {
     this.source = source;
   }
@@ -45,7 +48,25 @@ public abstract class RegexSource {
   public abstract CharacterParser createCharacterParser();
 
   public RegexLexer createLexer() {
-    return new RegexLexer(this, createCharacterParser());
+    return new RegexLexer(this, decodedCharacters());
+  }
+
+  /**
+   * Escape sequences of the source are only decoded once, whatever the number of lexers created for it
+   */
+  DecodedCharacters decodedCharacters() {
+    if (decodedCharacters == null) {
+      decodedCharacters = DecodedCharacters.decode(createCharacterParser(), length());
+    }
+    return decodedCharacters;
+  }
+
+  /**
+   * @return what identifies how the source text is parsed, used by {@link RegexParseResultCache} to share the results of
+   * the sources having the same text
+   */
+  protected Object dialect() {
+    return getClass();
   }
 
   public abstract Set<RegexFeature> features();
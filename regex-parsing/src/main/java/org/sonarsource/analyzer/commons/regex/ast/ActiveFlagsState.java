@@ -25,6 +25,8 @@ public abstract class ActiveFlagsState implements AutomatonState {
 
   private final FlagSet activeFlags;
 
+  private int id = NO_ID;
+
   protected ActiveFlagsState(FlagSet activeFlags) {
     this.activeFlags = activeFlags;
   }
@@ -35,4 +37,13 @@ public abstract class ActiveFlagsState implements AutomatonState {
     return activeFlags;
   }
 
+  @Override
+  public int id() {
+    return id;
+  }
+
+  void setId(int id) {
+    this.id = id;
+  }
+
 }
@@ -26,6 +26,11 @@ import javax.annotation.Nullable;
 
 public interface AutomatonState {
 
+  /**
+   * Id of the states which were not numbered by {@link StartState#numberStates()}
+   */
+  int NO_ID = -1;
+
   /**
    * This will only return null when called on the end-of-regex state
    */
@@ -43,6 +48,14 @@ public interface AutomatonState {
   @Nonnull
   FlagSet activeFlags();
 
+  /**
+   * Dense id of this state among the states of its regex, from 0 to the number of states exclusive, or {@link #NO_ID}
+   * if the state was not numbered. Ids are only unique within a regex.
+   */
+  default int id() {
+    return NO_ID;
+  }
+
   enum TransitionType {
     EPSILON, CHARACTER, BACK_REFERENCE, LOOKAROUND_BACKTRACKING, NEGATION
   }
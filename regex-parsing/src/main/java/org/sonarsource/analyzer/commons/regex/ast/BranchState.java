@@ -34,6 +34,10 @@ public class BranchState extends ActiveFlagsState {
     this.successors = successors;
   }
 
+  public RegexTree getParent() {
+    return parent;
+  }
+
   @Nonnull
   @Override
   public AutomatonState continuation() {
@@ -27,11 +27,17 @@ public class EndOfRepetitionState implements AutomatonState {
   private final RepetitionTree parent;
   private final AutomatonState continuation;
 
+  private int id = NO_ID;
+
   public EndOfRepetitionState(RepetitionTree parent, AutomatonState continuation) {
     this.parent = parent;
     this.continuation = continuation;
   }
 
+  public RepetitionTree getParent() {
+    return parent;
+  }
+
   @Nonnull
   @Override
   public FlagSet activeFlags() {
@@ -50,4 +56,13 @@ public class EndOfRepetitionState implements AutomatonState {
     return TransitionType.EPSILON;
   }
 
+  @Override
+  public int id() {
+    return id;
+  }
+
+  void setId(int id) {
+    this.id = id;
+  }
+
 }
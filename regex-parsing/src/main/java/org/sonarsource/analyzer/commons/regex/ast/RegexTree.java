@@ -43,6 +43,8 @@ public abstract class RegexTree extends AbstractRegexSyntaxElement implements Au
 
   private final FlagSet activeFlags;
 
+  private int id = NO_ID;
+
   protected RegexTree(RegexSource source, IndexRange range, FlagSet activeFlags) {
     super(source, range);
     this.activeFlags = activeFlags;
@@ -89,4 +91,13 @@ public abstract class RegexTree extends AbstractRegexSyntaxElement implements Au
     this.continuation = continuation;
   }
 
+  @Override
+  public int id() {
+    return id;
+  }
+
+  void setId(int id) {
+    this.id = id;
+  }
+
 }
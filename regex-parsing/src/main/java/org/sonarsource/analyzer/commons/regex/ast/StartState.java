@@ -19,6 +19,11 @@
  */
 package org.sonarsource.analyzer.commons.regex.ast;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
@@ -42,4 +47,41 @@ public class StartState extends ActiveFlagsState {
   public TransitionType incomingTransitionType() {
     return TransitionType.EPSILON;
   }
+
+  /**
+   * Gives dense ids to the states reachable from this state, in breadth-first order, see {@link AutomatonState#id()}.
+   * @return the number of states which received an id
+   */
+  public int numberStates() {
+    List<AutomatonState> states = new ArrayList<>();
+    Set<AutomatonState> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    states.add(this);
+    visited.add(this);
+    int count = 0;
+    for (int i = 0; i < states.size(); i++) {
+      AutomatonState state = states.get(i);
+      if (setId(state, count)) {
+        count++;
+      }
+      for (AutomatonState successor : state.successors()) {
+        if (visited.add(successor)) {
+          states.add(successor);
+        }
+      }
+    }
+    return count;
+  }
+
+  private static boolean setId(AutomatonState state, int id) {
+    if (state instanceof RegexTree) {
+      ((RegexTree) state).setId(id);
+    } else if (state instanceof ActiveFlagsState) {
+      ((ActiveFlagsState) state).setId(id);
+    } else if (state instanceof EndOfRepetitionState) {
+      ((EndOfRepetitionState) state).setId(id);
+    } else {
+      return false;
+    }
+    return true;
+  }
 }
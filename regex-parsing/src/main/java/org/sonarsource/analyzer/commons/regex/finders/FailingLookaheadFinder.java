@@ -22,11 +22,12 @@ package org.sonarsource.analyzer.commons.regex.finders;
 import java.util.Collections;
 import org.sonarsource.analyzer.commons.regex.MatchType;
 import org.sonarsource.analyzer.commons.regex.RegexIssueReporter;
+import org.sonarsource.analyzer.commons.regex.RegexParseResult;
 import org.sonarsource.analyzer.commons.regex.ast.FinalState;
 import org.sonarsource.analyzer.commons.regex.ast.LookAroundTree;
 import org.sonarsource.analyzer.commons.regex.ast.RegexBaseVisitor;
 import org.sonarsource.analyzer.commons.regex.ast.RegexTree;
-import org.sonarsource.analyzer.commons.regex.helpers.RegexTreeHelper;
+import org.sonarsource.analyzer.commons.regex.helpers.RegexAnalysisContext;
 import org.sonarsource.analyzer.commons.regex.helpers.SubAutomaton;
 
 public class FailingLookaheadFinder extends RegexBaseVisitor {
@@ -36,6 +37,7 @@ public class FailingLookaheadFinder extends RegexBaseVisitor {
   private final RegexIssueReporter.ElementIssue regexElementIssueReporter;
   private final FinalState finalState;
   private final MatchType matchType;
+  private RegexAnalysisContext context;
 
   public FailingLookaheadFinder(RegexIssueReporter.ElementIssue regexElementIssueReporter, FinalState finalState) {
     this(regexElementIssueReporter, finalState, MatchType.NOT_SUPPORTED);
@@ -47,6 +49,11 @@ public class FailingLookaheadFinder extends RegexBaseVisitor {
     this.matchType = matchType;
   }
 
+  @Override
+  protected void before(RegexParseResult regexParseResult) {
+    context = regexParseResult.getAnalysisContext();
+  }
+
   @Override
   public void visitLookAround(LookAroundTree tree) {
     if (tree.getDirection() == LookAroundTree.Direction.AHEAD && doesLookaheadContinuationAlwaysFail(tree)) {
@@ -62,10 +69,10 @@ public class FailingLookaheadFinder extends RegexBaseVisitor {
 
     if (lookAround.getPolarity() == LookAroundTree.Polarity.NEGATIVE) {
       lookAroundSubAutomaton = new SubAutomaton(lookAroundElement, lookAroundElement.continuation(), false);
-      return RegexTreeHelper.supersetOf(lookAroundSubAutomaton, continuationSubAutomaton, false);
+      return context.supersetOf(lookAroundSubAutomaton, continuationSubAutomaton, false);
     }
     boolean canLookAroundBeAPrefix = matchType != MatchType.FULL;
     lookAroundSubAutomaton = new SubAutomaton(lookAroundElement, lookAroundElement.continuation(), canLookAroundBeAPrefix);
-    return !RegexTreeHelper.intersects(lookAroundSubAutomaton, continuationSubAutomaton, true);
+    return !context.intersects(lookAroundSubAutomaton, continuationSubAutomaton, true);
   }
 }
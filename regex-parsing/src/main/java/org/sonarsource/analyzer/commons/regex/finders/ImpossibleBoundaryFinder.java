@@ -31,7 +31,7 @@ import org.sonarsource.analyzer.commons.regex.ast.DisjunctionTree;
 import org.sonarsource.analyzer.commons.regex.ast.LookAroundTree;
 import org.sonarsource.analyzer.commons.regex.ast.RegexBaseVisitor;
 import org.sonarsource.analyzer.commons.regex.ast.RegexTree;
-import org.sonarsource.analyzer.commons.regex.helpers.RegexReachabilityChecker;
+import org.sonarsource.analyzer.commons.regex.helpers.RegexAnalysisContext;
 
 public class ImpossibleBoundaryFinder extends RegexBaseVisitor {
 
@@ -39,10 +39,10 @@ public class ImpossibleBoundaryFinder extends RegexBaseVisitor {
   private static final String SOFT_MESSAGE =
     "Remove or replace this boundary that can only match if the previous part matched the empty string because it appears %s mandatory input.";
   private final Set<RegexTree> excluded = new HashSet<>();
-  private final RegexReachabilityChecker regexReachabilityChecker = new RegexReachabilityChecker(false);
 
   private final RegexIssueReporter.ElementIssue regexElementIssueReporter;
 
+  private RegexAnalysisContext context;
   private AutomatonState start;
   private AutomatonState end;
 
@@ -52,7 +52,7 @@ public class ImpossibleBoundaryFinder extends RegexBaseVisitor {
 
   @Override
   public void visit(RegexParseResult regexParseResult) {
-    regexReachabilityChecker.clearCache();
+    context = regexParseResult.getAnalysisContext();
     start = regexParseResult.getStartState();
     end = regexParseResult.getFinalState();
     super.visit(regexParseResult);
@@ -110,7 +110,7 @@ public class ImpossibleBoundaryFinder extends RegexBaseVisitor {
   }
 
   private void checkStartBoundary(BoundaryTree boundaryTree) {
-    if (!RegexReachabilityChecker.canReachWithoutConsumingInput(start, boundaryTree)) {
+    if (!context.canReachWithoutConsumingInput(start, boundaryTree)) {
       regexElementIssueReporter.report(boundaryTree, String.format(MESSAGE, "after"), null, Collections.emptyList());
     } else if (!excluded.contains(boundaryTree) && probablyShouldConsumeInput(start, boundaryTree)) {
       regexElementIssueReporter.report(boundaryTree, String.format(SOFT_MESSAGE, "after"), null, Collections.emptyList());
@@ -118,7 +118,7 @@ public class ImpossibleBoundaryFinder extends RegexBaseVisitor {
   }
 
   private void checkEndBoundary(BoundaryTree boundaryTree) {
-    if (!RegexReachabilityChecker.canReachWithoutConsumingInput(boundaryTree, end)) {
+    if (!context.canReachWithoutConsumingInput(boundaryTree, end)) {
       regexElementIssueReporter.report(boundaryTree, String.format(MESSAGE, "before"), null, Collections.emptyList());
     } else if (!excluded.contains(boundaryTree) && probablyShouldConsumeInput(boundaryTree, end)) {
       regexElementIssueReporter.report(boundaryTree, String.format(SOFT_MESSAGE, "before"), null, Collections.emptyList());
@@ -126,7 +126,7 @@ public class ImpossibleBoundaryFinder extends RegexBaseVisitor {
   }
 
   private boolean probablyShouldConsumeInput(AutomatonState start, AutomatonState goal) {
-    return regexReachabilityChecker.canReachWithConsumingInput(start, goal, new HashSet<>());
+    return context.canReachWithConsumingInput(start, goal);
   }
 
   private static class BoundaryInDisjunctionFinder extends RegexBaseVisitor {
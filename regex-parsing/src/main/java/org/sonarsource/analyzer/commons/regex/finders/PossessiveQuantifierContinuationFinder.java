@@ -22,13 +22,14 @@ package org.sonarsource.analyzer.commons.regex.finders;
 import java.util.Collections;
 import org.sonarsource.analyzer.commons.regex.RegexIssueLocation;
 import org.sonarsource.analyzer.commons.regex.RegexIssueReporter;
+import org.sonarsource.analyzer.commons.regex.RegexParseResult;
 import org.sonarsource.analyzer.commons.regex.ast.AutomatonState;
 import org.sonarsource.analyzer.commons.regex.ast.FinalState;
 import org.sonarsource.analyzer.commons.regex.ast.Quantifier;
 import org.sonarsource.analyzer.commons.regex.ast.RegexBaseVisitor;
 import org.sonarsource.analyzer.commons.regex.ast.RegexSyntaxElement;
 import org.sonarsource.analyzer.commons.regex.ast.RepetitionTree;
-import org.sonarsource.analyzer.commons.regex.helpers.RegexTreeHelper;
+import org.sonarsource.analyzer.commons.regex.helpers.RegexAnalysisContext;
 import org.sonarsource.analyzer.commons.regex.helpers.SubAutomaton;
 
 public class PossessiveQuantifierContinuationFinder extends RegexBaseVisitor {
@@ -37,12 +38,18 @@ public class PossessiveQuantifierContinuationFinder extends RegexBaseVisitor {
 
   private final RegexIssueReporter.ElementIssue regexElementIssueReporter;
   private final FinalState finalState;
+  private RegexAnalysisContext context;
 
   public PossessiveQuantifierContinuationFinder(RegexIssueReporter.ElementIssue regexElementIssueReporter, FinalState finalState) {
     this.regexElementIssueReporter = regexElementIssueReporter;
     this.finalState = finalState;
   }
 
+  @Override
+  protected void before(RegexParseResult regexParseResult) {
+    context = regexParseResult.getAnalysisContext();
+  }
+
   @Override
   public void visitRepetition(RepetitionTree repetitionTree) {
     AutomatonState continuation = repetitionTree.continuation();
@@ -63,6 +70,6 @@ public class PossessiveQuantifierContinuationFinder extends RegexBaseVisitor {
     }
     SubAutomaton potentialSuperset = new SubAutomaton(repetitionTree.getElement(), repetitionTree.continuation(), false);
     SubAutomaton potentialSubset = new SubAutomaton(repetitionTree.continuation(), finalState, true);
-    return RegexTreeHelper.supersetOf(potentialSuperset, potentialSubset, false);
+    return context.supersetOf(potentialSuperset, potentialSubset, false);
   }
 }
@@ -29,12 +29,13 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import org.sonarsource.analyzer.commons.regex.RegexIssueLocation;
 import org.sonarsource.analyzer.commons.regex.RegexIssueReporter;
+import org.sonarsource.analyzer.commons.regex.RegexParseResult;
 import org.sonarsource.analyzer.commons.regex.ast.CapturingGroupTree;
 import org.sonarsource.analyzer.commons.regex.ast.CharacterClassElementTree;
 import org.sonarsource.analyzer.commons.regex.ast.DisjunctionTree;
 import org.sonarsource.analyzer.commons.regex.ast.RegexBaseVisitor;
 import org.sonarsource.analyzer.commons.regex.ast.RegexTree;
-import org.sonarsource.analyzer.commons.regex.helpers.RegexTreeHelper;
+import org.sonarsource.analyzer.commons.regex.helpers.RegexAnalysisContext;
 import org.sonarsource.analyzer.commons.regex.helpers.SubAutomaton;
 
 public class RedundantRegexAlternativesFinder extends RegexBaseVisitor {
@@ -44,14 +45,20 @@ public class RedundantRegexAlternativesFinder extends RegexBaseVisitor {
   public static final String MESSAGE_REDUNDANT = "Other redundant alternative";
 
   private final RegexIssueReporter.ElementIssue regexElementIssueReporter;
+  private RegexAnalysisContext context;
 
   public RedundantRegexAlternativesFinder(RegexIssueReporter.ElementIssue regexElementIssueReporter) {
     this.regexElementIssueReporter = regexElementIssueReporter;
   }
 
+  @Override
+  protected void before(RegexParseResult regexParseResult) {
+    context = regexParseResult.getAnalysisContext();
+  }
+
   @Override
   public void visitDisjunction(DisjunctionTree tree) {
-    RedundantAlternativeCollector collector = new RedundantAlternativeCollector();
+    RedundantAlternativeCollector collector = new RedundantAlternativeCollector(context);
     List<RegexTree> alternatives = tree.getAlternatives().stream()
       // We don't handle POSIX character classes correctly (SONARPHP-1239)
       .filter(t -> !hasPosixCharacterClass(t))
@@ -80,6 +87,11 @@ public class RedundantRegexAlternativesFinder extends RegexBaseVisitor {
 
     private final Map<RegexTree, Set<RegexTree>> supersetSubsetListMap = new LinkedHashMap<>();
     private final Set<RegexTree> allSubsets = new HashSet<>();
+    private final RegexAnalysisContext context;
+
+    private RedundantAlternativeCollector(RegexAnalysisContext context) {
+      this.context = context;
+    }
 
     private void evaluate(RegexTree prevAlternative, RegexTree nextAlternative) {
       if (supersetOf(prevAlternative, nextAlternative)) {
@@ -91,10 +103,10 @@ public class RedundantRegexAlternativesFinder extends RegexBaseVisitor {
       }
     }
 
-    private static boolean supersetOf(RegexTree alternative1, RegexTree alternative2) {
+    private boolean supersetOf(RegexTree alternative1, RegexTree alternative2) {
       SubAutomaton subAutomaton1 = new SubAutomaton(alternative1, alternative1.continuation(), false);
       SubAutomaton subAutomaton2 = new SubAutomaton(alternative2, alternative2.continuation(), false);
-      return RegexTreeHelper.supersetOf(subAutomaton1, subAutomaton2, false);
+      return context.supersetOf(subAutomaton1, subAutomaton2, false);
     }
 
     private void add(RegexTree superset, RegexTree subset) {
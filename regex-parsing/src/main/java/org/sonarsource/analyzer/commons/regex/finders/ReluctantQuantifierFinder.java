@@ -25,6 +25,7 @@ import java.util.Optional;
 import javax.annotation.Nullable;
 import org.sonarsource.analyzer.commons.regex.RegexFeature;
 import org.sonarsource.analyzer.commons.regex.RegexIssueReporter;
+import org.sonarsource.analyzer.commons.regex.RegexParseResult;
 import org.sonarsource.analyzer.commons.regex.ast.CharacterClassElementTree;
 import org.sonarsource.analyzer.commons.regex.ast.CharacterClassTree;
 import org.sonarsource.analyzer.commons.regex.ast.EscapedCharacterClassTree;
@@ -35,6 +36,7 @@ import org.sonarsource.analyzer.commons.regex.ast.RegexTree;
 import org.sonarsource.analyzer.commons.regex.ast.RepetitionTree;
 import org.sonarsource.analyzer.commons.regex.ast.SequenceTree;
 import org.sonarsource.analyzer.commons.regex.ast.SimpleQuantifier;
+import org.sonarsource.analyzer.commons.regex.helpers.RegexAnalysisContext;
 import org.sonarsource.analyzer.commons.regex.helpers.SimplifiedRegexCharacterClass;
 
 public class ReluctantQuantifierFinder extends RegexBaseVisitor {
@@ -42,11 +44,17 @@ public class ReluctantQuantifierFinder extends RegexBaseVisitor {
   private static final String MESSAGE = "Replace this use of a reluctant quantifier with \"%s%s\".";
 
   private final RegexIssueReporter.ElementIssue regexElementIssueReporter;
+  private RegexAnalysisContext context;
 
   public ReluctantQuantifierFinder(RegexIssueReporter.ElementIssue regexElementIssueReporter) {
     this.regexElementIssueReporter = regexElementIssueReporter;
   }
 
+  @Override
+  protected void before(RegexParseResult regexParseResult) {
+    context = regexParseResult.getAnalysisContext();
+  }
+
   @Override
   public void visitSequence(SequenceTree tree) {
     super.visitSequence(tree);
@@ -92,8 +100,8 @@ public class ReluctantQuantifierFinder extends RegexBaseVisitor {
     }
   }
 
-  private static Optional<String> findNegatedCharacterClassFor(RegexTree tree, @Nullable EscapedCharacterClassTree base) {
-    if (tree instanceof CharacterClassElementTree && hasNoIntersection(((CharacterClassElementTree) tree), base)) {
+  private Optional<String> findNegatedCharacterClassFor(RegexTree tree, @Nullable EscapedCharacterClassTree base) {
+    if (tree instanceof CharacterClassElementTree && hasNoIntersection(tree, base)) {
       return Optional.empty();
     }
     String result;
@@ -128,12 +136,12 @@ public class ReluctantQuantifierFinder extends RegexBaseVisitor {
     return tree.is(RegexTree.Kind.DOT) ? null : (EscapedCharacterClassTree) tree;
   }
 
-  private static boolean hasNoIntersection(CharacterClassElementTree tree, @Nullable CharacterClassElementTree base) {
+  private boolean hasNoIntersection(RegexTree tree, @Nullable EscapedCharacterClassTree base) {
     if (base == null) {
       return false;
     }
-    SimplifiedRegexCharacterClass baseSimplifiedCharacterClass = new SimplifiedRegexCharacterClass(base);
-    SimplifiedRegexCharacterClass treeSimplifiedCharacterClass = new SimplifiedRegexCharacterClass(tree);
+    SimplifiedRegexCharacterClass baseSimplifiedCharacterClass = context.characterClass(base);
+    SimplifiedRegexCharacterClass treeSimplifiedCharacterClass = context.characterClass(tree);
     return !baseSimplifiedCharacterClass.intersects(treeSimplifiedCharacterClass, false);
   }
 
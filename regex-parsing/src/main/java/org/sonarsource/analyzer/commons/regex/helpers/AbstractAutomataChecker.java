@@ -20,8 +20,12 @@
 package org.sonarsource.analyzer.commons.regex.helpers;
 
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
 import javax.annotation.CheckForNull;
 import org.sonarsource.analyzer.commons.regex.ast.AutomatonState;
 import org.sonarsource.analyzer.commons.regex.ast.BoundaryTree;
@@ -35,13 +39,75 @@ import static org.sonarsource.analyzer.commons.regex.ast.AutomatonState.Transiti
 
 public abstract class AbstractAutomataChecker {
 
-  private final OrderedAutomataPairCache<Boolean> cache = new OrderedAutomataPairCache<>();
+  /**
+   * Default maximum number of pairs of sub-automata explored by each call to {@link #check(SubAutomaton, SubAutomaton)}.
+   * Once it is reached, the checker stops exploring new pairs.
+   */
+  public static final int DEFAULT_WORK_BUDGET = 5_000;
+
+  // Answers kept between calls to check, at most this number of times the work budget
+  private static final int SHARED_ANSWERS_PER_WORK_BUDGET = 16;
+
+  // A memo key packs, from the highest to the lowest bits: the index of the ends of both sub-automata,
+  // the ids of their start states and whether input was consumed
+  private static final int STATE_ID_BITS = 23;
+  private static final int MAX_STATE_ID = (1 << STATE_ID_BITS) - 1;
+  private static final int MAX_ENDS_INDEX = (1 << 16) - 1;
+  private static final long NOT_MEMOIZABLE = -1L;
+
+  // Answers which don't depend on the pairs being explored when they were computed, nor on the work budget
+  private final LongKeyedBooleanTable memo = new LongKeyedBooleanTable();
+  // Answers of the current call to check, including the neutral answer of the pairs being explored
+  private final LongKeyedBooleanTable queryMemo = new LongKeyedBooleanTable();
+  // Depth of the pairs being explored, and keys of the pairs being explored from which the answers of queryMemo
+  // which are not in memo were computed, see assumedDepth
+  private final Map<Long, Integer> depthByKeyBeingExplored = new HashMap<>();
+  private final Map<Long, Long> assumedKeyByKey = new HashMap<>();
+  private long[] keysBeingExplored = new long[64];
+  private int depth = 0;
+  // Lowest depth of a pair being explored whose neutral answer was used by the current computation, 0 when the
+  // computation depends on the work budget
+  private int assumedDepth = Integer.MAX_VALUE;
+  private final NumberedStates numberedStates1 = new NumberedStates(MAX_STATE_ID);
+  private final NumberedStates numberedStates2 = new NumberedStates(MAX_STATE_ID);
+  private final Map<List<Object>, Integer> endsIndexes = new HashMap<>();
+  private SubAutomaton lastAuto1;
+  private SubAutomaton lastAuto2;
+  private int lastEndsIndex;
+  // Used for the states which can't be identified by their id, see AutomatonState.id(), only for the current call to check
+  private final OrderedAutomataPairCache<Boolean> cache;
+  private final int workBudget;
+  private final Function<AutomatonState, SimplifiedRegexCharacterClass> characterClasses;
   protected final boolean defaultAnswer;
 
   protected AbstractAutomataChecker(boolean defaultAnswer) {
+    this(defaultAnswer, DEFAULT_WORK_BUDGET);
+  }
+
+  /**
+   * @param workBudget maximum number of pairs of sub-automata to explore, see {@link #DEFAULT_WORK_BUDGET}
+   */
+  protected AbstractAutomataChecker(boolean defaultAnswer, int workBudget) {
+    this(defaultAnswer, workBudget, SimplifiedRegexCharacterClass::of);
+  }
+
+  /**
+   * @param characterClasses gives the character class of a state, see {@link SimplifiedRegexCharacterClass#of(AutomatonState)}
+   */
+  AbstractAutomataChecker(boolean defaultAnswer, int workBudget, Function<AutomatonState, SimplifiedRegexCharacterClass> characterClasses) {
+    if (workBudget <= 0) {
+      throw new IllegalArgumentException("Work budget should be positive: " + workBudget);
+    }
     this.defaultAnswer = defaultAnswer;
+    this.workBudget = workBudget;
+    this.characterClasses = characterClasses;
+    this.cache = new OrderedAutomataPairCache<>(workBudget);
   }
 
+  /**
+   * Each call explores at most the work budget of pairs of sub-automata. The answers which were computed by previous
+   * calls without assuming the answer of a pair still being explored are reused.
+   */
   public boolean check(SubAutomaton auto1, SubAutomaton auto2) {
     return check(auto1, auto2, false);
   }
@@ -50,29 +116,163 @@ public abstract class AbstractAutomataChecker {
     if (hasUnsupportedTransitionType(auto1) || hasUnsupportedTransitionType(auto2)) {
       return defaultAnswer;
     }
-    OrderedAutomataPair entry = new OrderedAutomataPair(auto1, auto2, hasConsumedInput);
-    Boolean cachedValue = cache.startCalculation(entry, neutralAnswer());
-    if (cachedValue != null) {
-      return cachedValue;
+    if (depth == 0) {
+      startQuery();
+    }
+    long key = memoKey(auto1, auto2, hasConsumedInput);
+    if (key == NOT_MEMOIZABLE) {
+      // answers on states without id are not shared
+      assume(0);
+      OrderedAutomataPair entry = new OrderedAutomataPair(auto1, auto2, hasConsumedInput);
+      Boolean cachedValue = cache.startCalculation(entry, neutralAnswer());
+      if (cachedValue != null) {
+        return cachedValue;
+      }
+      depth++;
+      try {
+        return cache.save(entry, computeAnswer(auto1, auto2, hasConsumedInput));
+      } finally {
+        depth--;
+      }
+    }
+    int memoizedValue = memo.get(key);
+    if (memoizedValue != LongKeyedBooleanTable.ABSENT) {
+      return memoizedValue == 1;
+    }
+    memoizedValue = queryMemo.get(key);
+    if (memoizedValue != LongKeyedBooleanTable.ABSENT) {
+      assumeAnswerOf(key);
+      return memoizedValue == 1;
+    } else if (queryMemo.size() + cache.size() >= workBudget) {
+      assume(0);
+      return neutralAnswer();
+    }
+    return explore(key, auto1, auto2, hasConsumedInput);
+  }
+
+  private boolean explore(long key, SubAutomaton auto1, SubAutomaton auto2, boolean hasConsumedInput) {
+    // queryMemo contains the neutral answer while we are in the process of calculating it
+    queryMemo.put(key, neutralAnswer());
+    depth++;
+    int ownDepth = depth;
+    if (ownDepth == keysBeingExplored.length) {
+      keysBeingExplored = Arrays.copyOf(keysBeingExplored, ownDepth * 2);
+    }
+    keysBeingExplored[ownDepth] = key;
+    depthByKeyBeingExplored.put(key, ownDepth);
+    int outerAssumedDepth = assumedDepth;
+    assumedDepth = Integer.MAX_VALUE;
+    boolean answer;
+    try {
+      answer = computeAnswer(auto1, auto2, hasConsumedInput);
+    } finally {
+      depthByKeyBeingExplored.remove(key);
+      depth--;
+    }
+    if (assumedDepth >= ownDepth) {
+      // the answer only depends on the neutral answer of this pair, which is now computed
+      if (memo.size() < workBudget * SHARED_ANSWERS_PER_WORK_BUDGET) {
+        memo.put(key, answer);
+      }
+      assumedDepth = outerAssumedDepth;
+    } else {
+      assumedKeyByKey.put(key, assumedDepth == 0 ? NOT_MEMOIZABLE : keysBeingExplored[assumedDepth]);
+      assumedDepth = Math.min(assumedDepth, outerAssumedDepth);
+    }
+    return queryMemo.put(key, answer);
+  }
+
+  private void startQuery() {
+    queryMemo.clear();
+    cache.clear();
+    depthByKeyBeingExplored.clear();
+    assumedKeyByKey.clear();
+    assumedDepth = Integer.MAX_VALUE;
+  }
+
+  /**
+   * The answer of queryMemo for the key is either the neutral answer of a pair being explored, or an answer computed
+   * from the neutral answer of such a pair, which can't be trusted once that pair is no longer explored.
+   */
+  private void assumeAnswerOf(long key) {
+    Integer exploredDepth = depthByKeyBeingExplored.get(key);
+    if (exploredDepth == null) {
+      Long assumedKey = assumedKeyByKey.get(key);
+      exploredDepth = assumedKey == null ? null : depthByKeyBeingExplored.getOrDefault(assumedKey, 0);
+    }
+    if (exploredDepth != null) {
+      assume(exploredDepth);
     }
+  }
+
+  private void assume(int exploredDepth) {
+    assumedDepth = Math.min(assumedDepth, exploredDepth);
+  }
+
+  private boolean computeAnswer(SubAutomaton auto1, SubAutomaton auto2, boolean hasConsumedInput) {
     boolean answer = hasConsumedInput || defaultAnswer;
     if (auto1.isAtEnd() && auto2.isAtEnd()) {
-      return cache.save(entry, answer);
+      return answer;
     } else if (auto1.isAtEnd() && auto2.incomingTransitionType() != EPSILON) {
-      return cache.save(entry, auto2.allowPrefix && answer);
+      return auto2.allowPrefix && answer;
     } else if (auto2.isAtEnd() && auto1.incomingTransitionType() != EPSILON) {
-      return cache.save(entry, auto1.allowPrefix && answer);
+      return auto1.allowPrefix && answer;
     } else if (auto2.incomingTransitionType() == EPSILON && !auto2.isAtEnd()) {
-      return cache.save(entry, checkAuto2Successors(auto1, auto2, defaultAnswer, hasConsumedInput));
+      return checkAuto2Successors(auto1, auto2, defaultAnswer, hasConsumedInput);
     } else if (auto1.incomingTransitionType() == EPSILON) {
       // In this branch auto1 can't be at the end
-      return cache.save(entry, checkAuto1Successors(auto1, auto2, defaultAnswer, hasConsumedInput));
+      return checkAuto1Successors(auto1, auto2, defaultAnswer, hasConsumedInput);
     } else {
-      return cache.save(entry, checkAuto1AndAuto2Successors(auto1, auto2, defaultAnswer, hasConsumedInput));
+      return checkAuto1AndAuto2Successors(auto1, auto2, defaultAnswer, hasConsumedInput);
+    }
+  }
+
+  private long memoKey(SubAutomaton auto1, SubAutomaton auto2, boolean hasConsumedInput) {
+    if (!numberedStates1.isIdentifiedById(auto1.start) || !numberedStates2.isIdentifiedById(auto2.start)) {
+      return NOT_MEMOIZABLE;
+    }
+    int endsIndex = endsIndex(auto1, auto2);
+    if (endsIndex > MAX_ENDS_INDEX) {
+      return NOT_MEMOIZABLE;
+    }
+    return ((long) endsIndex << (2 * STATE_ID_BITS + 1))
+      | ((long) auto1.start.id() << (STATE_ID_BITS + 1))
+      | ((long) auto2.start.id() << 1)
+      | (hasConsumedInput ? 1 : 0);
+  }
+
+  /**
+   * The successors of a sub-automaton share its end, so consecutive lookups almost always ask for the same index
+   */
+  private int endsIndex(SubAutomaton auto1, SubAutomaton auto2) {
+    if (lastAuto1 == null || !sameEnd(auto1, lastAuto1) || !sameEnd(auto2, lastAuto2)) {
+      List<Object> ends = Arrays.asList(auto1.end, auto1.allowPrefix, auto2.end, auto2.allowPrefix);
+      lastEndsIndex = endsIndexes.computeIfAbsent(ends, k -> endsIndexes.size());
+      lastAuto1 = auto1;
+      lastAuto2 = auto2;
     }
+    return lastEndsIndex;
+  }
+
+  private static boolean sameEnd(SubAutomaton auto, SubAutomaton other) {
+    return auto.end == other.end && auto.allowPrefix == other.allowPrefix;
+  }
+
+  @CheckForNull
+  protected SimplifiedRegexCharacterClass characterClass(AutomatonState state) {
+    return characterClasses.apply(state);
   }
 
   public void clearCache() {
+    memo.clear();
+    queryMemo.clear();
+    depthByKeyBeingExplored.clear();
+    assumedKeyByKey.clear();
+    numberedStates1.clear();
+    numberedStates2.clear();
+    endsIndexes.clear();
+    lastAuto1 = null;
+    lastAuto2 = null;
     cache.clear();
   }
 
@@ -120,7 +320,11 @@ public abstract class AbstractAutomataChecker {
   // Visible for testing
   static class OrderedAutomataPairCache<T> extends HashMap<OrderedAutomataPair, T> {
 
-    public static final int MAX_CACHE_SIZE = 5_000;
+    private final int maxSize;
+
+    OrderedAutomataPairCache(int maxSize) {
+      this.maxSize = maxSize;
+    }
 
     /**
      * If a cached value exists in the cache return it. Otherwise return null and
@@ -134,7 +338,7 @@ public abstract class AbstractAutomataChecker {
       T cachedResult = get(statePair);
       if (cachedResult != null) {
         return cachedResult;
-      } else if (size() >= MAX_CACHE_SIZE) {
+      } else if (size() >= maxSize) {
         return defaultAnswer;
       }
       // cache contains 'defaultAnswer' because we're currently in the process of calculating it
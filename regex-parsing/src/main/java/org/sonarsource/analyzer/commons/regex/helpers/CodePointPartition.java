@@ -0,0 +1,87 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex.helpers;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import javax.annotation.CheckForNull;
+
+/**
+ * Splits the code points into blocks such that each of the given ranges either contains all the code points of a block
+ * or none of them. A character class is then represented by the set of the indexes of its blocks, so that the classes
+ * of automata sharing the partition are compared without looking at their ranges again.
+ */
+final class CodePointPartition {
+
+  // Block i contains the code points from starts[i] to starts[i + 1] exclusive
+  private final int[] starts;
+
+  private CodePointPartition(int[] starts) {
+    this.starts = starts;
+  }
+
+  /**
+   * @param ranges code point ranges, see {@link SimplifiedRegexCharacterClass#ranges()}
+   */
+  static CodePointPartition of(Iterable<int[]> ranges) {
+    int count = 1;
+    for (int[] bounds : ranges) {
+      count += bounds.length;
+    }
+    int[] starts = new int[count];
+    int size = 1;
+    for (int[] bounds : ranges) {
+      System.arraycopy(bounds, 0, starts, size, bounds.length);
+      size += bounds.length;
+    }
+    Arrays.sort(starts);
+    int distinctCount = 1;
+    for (int i = 1; i < size && starts[i] <= Character.MAX_CODE_POINT; i++) {
+      if (starts[i] != starts[distinctCount - 1]) {
+        starts[distinctCount++] = starts[i];
+      }
+    }
+    return new CodePointPartition(Arrays.copyOf(starts, distinctCount));
+  }
+
+  int blockCount() {
+    return starts.length;
+  }
+
+  /**
+   * @param ranges code point ranges, see {@link SimplifiedRegexCharacterClass#ranges()}
+   * @return the indexes of the blocks contained in the ranges, or null if a bound of the ranges is not a bound of the
+   * blocks
+   */
+  @CheckForNull
+  BitSet blocks(int[] ranges) {
+    BitSet result = new BitSet(starts.length);
+    for (int i = 0; i < ranges.length; i += 2) {
+      int from = Arrays.binarySearch(starts, ranges[i]);
+      int to = ranges[i + 1] > Character.MAX_CODE_POINT ? starts.length : Arrays.binarySearch(starts, ranges[i + 1]);
+      if (from < 0 || to < 0) {
+        return null;
+      }
+      result.set(from, to);
+    }
+    return result;
+  }
+
+}
@@ -19,12 +19,22 @@
  */
 package org.sonarsource.analyzer.commons.regex.helpers;
 
+import java.util.function.Function;
+import org.sonarsource.analyzer.commons.regex.ast.AutomatonState;
 
 public class IntersectAutomataChecker extends AbstractAutomataChecker {
   public IntersectAutomataChecker(boolean defaultAnswer) {
     super(defaultAnswer);
   }
 
+  public IntersectAutomataChecker(boolean defaultAnswer, int workBudget) {
+    super(defaultAnswer, workBudget);
+  }
+
+  IntersectAutomataChecker(boolean defaultAnswer, int workBudget, Function<AutomatonState, SimplifiedRegexCharacterClass> characterClasses) {
+    super(defaultAnswer, workBudget, characterClasses);
+  }
+
   @Override
   protected boolean neutralAnswer() {
     return false;
@@ -32,8 +42,8 @@ public class IntersectAutomataChecker extends AbstractAutomataChecker {
 
   @Override
   protected boolean checkAuto1AndAuto2Successors(SubAutomaton auto1, SubAutomaton auto2, boolean defaultAnswer, boolean hasConsumedInput) {
-    SimplifiedRegexCharacterClass characterClass1 = SimplifiedRegexCharacterClass.of(auto1.start);
-    SimplifiedRegexCharacterClass characterClass2 = SimplifiedRegexCharacterClass.of(auto2.start);
+    SimplifiedRegexCharacterClass characterClass1 = characterClass(auto1.start);
+    SimplifiedRegexCharacterClass characterClass2 = characterClass(auto2.start);
     return ((characterClass1 != null) && (characterClass2 != null)) ?
       (characterClass1.intersects(characterClass2, defaultAnswer) &&
         auto1.anySuccessorMatch(successor1 -> auto2.anySuccessorMatch(successor2 ->
@@ -0,0 +1,113 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex.helpers;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from non-negative long keys to booleans, used to memoize the answers of the checkers
+ * without allocating a key object per lookup.
+ */
+final class LongKeyedBooleanTable {
+
+  static final int ABSENT = -1;
+
+  private static final long EMPTY = -1L;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private long[] keys;
+  private boolean[] values;
+  private int size;
+
+  LongKeyedBooleanTable() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  /**
+   * @return 1 if the key is mapped to true, 0 if it is mapped to false, or {@link #ABSENT} if it is not mapped
+   */
+  int get(long key) {
+    int mask = keys.length - 1;
+    for (int i = index(key, mask); keys[i] != EMPTY; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return values[i] ? 1 : 0;
+      }
+    }
+    return ABSENT;
+  }
+
+  boolean put(long key, boolean value) {
+    int mask = keys.length - 1;
+    int i = index(key, mask);
+    while (keys[i] != EMPTY && keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    values[i] = value;
+    if (keys[i] == EMPTY) {
+      keys[i] = key;
+      size++;
+      if (size * 2 > keys.length) {
+        grow();
+      }
+    }
+    return value;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void clear() {
+    if (size > 0) {
+      allocate(INITIAL_CAPACITY);
+    }
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    boolean[] oldValues = values;
+    allocate(oldKeys.length * 2);
+    int mask = keys.length - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldKeys[j] != EMPTY) {
+        int i = index(oldKeys[j], mask);
+        while (keys[i] != EMPTY) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+        size++;
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    Arrays.fill(keys, EMPTY);
+    values = new boolean[capacity];
+    size = 0;
+  }
+
+  private static int index(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+}
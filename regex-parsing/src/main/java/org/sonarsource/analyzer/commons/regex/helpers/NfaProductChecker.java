@@ -0,0 +1,221 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex.helpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Answers the questions of {@link IntersectAutomataChecker} and {@link SupersetAutomataChecker} on compiled automata,
+ * by exploring the product of both automata breadth-first instead of recursing on pairs of sub-automata. Both automata
+ * must share their {@link CodePointPartition}, so that characters are compared as sets of blocks.
+ * <p>
+ * Once more nodes of the product than the work budget have been visited, the default answer is returned.
+ */
+final class NfaProductChecker {
+
+  private NfaProductChecker() {
+    // Utility class
+  }
+
+  /**
+   * @see RegexTreeHelper#intersects(SubAutomaton, SubAutomaton, boolean)
+   */
+  static boolean intersects(RegexNfa nfa1, boolean allowPrefix1, RegexNfa nfa2, boolean allowPrefix2, boolean defaultAnswer, int workBudget) {
+    checkSamePartition(nfa1, nfa2);
+    ProductExploration exploration = new ProductExploration(nfa2.stateCount());
+    BitSet startStates2 = nfa2.startStates();
+    forEach(nfa1.startStates(), state1 -> forEach(startStates2, state2 -> exploration.add(state1, state2, false)));
+    while (exploration.hasNext()) {
+      if (exploration.visitedCount() > workBudget) {
+        return defaultAnswer;
+      }
+      long node = exploration.next();
+      int state1 = exploration.first(node);
+      int state2 = exploration.second(node);
+      boolean hasConsumedInput = exploration.hasConsumedInput(node);
+      boolean atEnd1 = nfa1.isEnd(state1);
+      boolean atEnd2 = nfa2.isEnd(state2);
+      if ((atEnd1 && (atEnd2 || allowPrefix2)) || (atEnd2 && allowPrefix1)) {
+        // as for the recursive checker, both automata matching the empty input only intersect by default
+        if (hasConsumedInput || defaultAnswer) {
+          return true;
+        }
+      } else if (!atEnd1 && !atEnd2 && nfa1.blocks(state1).intersects(nfa2.blocks(state2))) {
+        BitSet nextStates2 = nfa2.nextStates(state2);
+        forEach(nfa1.nextStates(state1), next1 -> forEach(nextStates2, next2 -> exploration.add(next1, next2, true)));
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Looks for an input of the second automaton which the first one can't match, by exploring the second automaton
+   * together with the sets of states the first one can be in after the same input.
+   *
+   * @see RegexTreeHelper#supersetOf(SubAutomaton, SubAutomaton, boolean)
+   */
+  static boolean supersetOf(RegexNfa nfa1, boolean allowPrefix1, RegexNfa nfa2, boolean allowPrefix2, boolean defaultAnswer, int workBudget) {
+    checkSamePartition(nfa1, nfa2);
+    Map<StateSet, Integer> subsetIds = new HashMap<>();
+    List<BitSet> subsets = new ArrayList<>();
+    ProductExploration exploration = new ProductExploration(nfa2.stateCount());
+    int startSubset = subsetId(nfa1.startStates(), subsetIds, subsets);
+    forEach(nfa2.startStates(), state2 -> exploration.add(startSubset, state2, false));
+    while (exploration.hasNext()) {
+      if (exploration.visitedCount() > workBudget) {
+        return defaultAnswer;
+      }
+      long node = exploration.next();
+      BitSet states1 = subsets.get(exploration.first(node));
+      int state2 = exploration.second(node);
+      boolean answer = exploration.hasConsumedInput(node) || defaultAnswer;
+      if (nfa2.isEnd(state2)) {
+        if (!answer || !(nfa1.containsEnd(states1) || (allowPrefix1 && hasCharacterState(nfa1, states1)))) {
+          return false;
+        }
+      } else if (!answer || !allowPrefix2 || !nfa1.containsEnd(states1)) {
+        // The first automaton has to match each character of the class of the second one
+        BitSet characterBlocks = nfa2.blocks(state2);
+        Set<StateSet> seenMatchingStates = new HashSet<>();
+        for (int block = characterBlocks.nextSetBit(0); block >= 0; block = characterBlocks.nextSetBit(block + 1)) {
+          BitSet matchingStates = (BitSet) nfa1.statesMatching(block).clone();
+          matchingStates.and(states1);
+          if (matchingStates.isEmpty()) {
+            return false;
+          }
+          if (seenMatchingStates.add(new StateSet(matchingStates))) {
+            BitSet nextStates1 = new BitSet();
+            forEach(matchingStates, state1 -> nextStates1.or(nfa1.nextStates(state1)));
+            int nextSubset = subsetId(nextStates1, subsetIds, subsets);
+            forEach(nfa2.nextStates(state2), next2 -> exploration.add(nextSubset, next2, true));
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  private static void checkSamePartition(RegexNfa nfa1, RegexNfa nfa2) {
+    if (nfa1.partition() != nfa2.partition()) {
+      throw new IllegalArgumentException("Automata should share their code point partition");
+    }
+  }
+
+  private static boolean hasCharacterState(RegexNfa nfa, BitSet states) {
+    return states.cardinality() > (nfa.containsEnd(states) ? 1 : 0);
+  }
+
+  private static int subsetId(BitSet subset, Map<StateSet, Integer> subsetIds, List<BitSet> subsets) {
+    return subsetIds.computeIfAbsent(new StateSet(subset), s -> {
+      subsets.add(subset);
+      return subsets.size() - 1;
+    });
+  }
+
+  private static void forEach(BitSet states, IntConsumer consumer) {
+    for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+      consumer.accept(state);
+    }
+  }
+
+  /**
+   * Set of states used as a hash key. The hash code of a BitSet only depends on its lowest bits for small sets, which
+   * are the bits used by HashMap to find a bucket, so it is mixed here.
+   */
+  private static final class StateSet {
+
+    private final BitSet states;
+
+    StateSet(BitSet states) {
+      this.states = states;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof StateSet && states.equals(((StateSet) o).states);
+    }
+
+    @Override
+    public int hashCode() {
+      return states.hashCode() * 0x9E3779B9;
+    }
+  }
+
+  /**
+   * Breadth-first exploration of the nodes of a product, a node being a pair of ints and whether input was consumed
+   * to reach it, packed in a long
+   */
+  private static final class ProductExploration {
+
+    private final int secondCount;
+    private final LongKeyedBooleanTable visited = new LongKeyedBooleanTable();
+    private long[] queue = new long[64];
+    private int head = 0;
+    private int tail = 0;
+
+    ProductExploration(int secondCount) {
+      this.secondCount = secondCount;
+    }
+
+    void add(int first, int second, boolean hasConsumedInput) {
+      long node = ((((long) first * secondCount) + second) << 1) | (hasConsumedInput ? 1 : 0);
+      if (visited.get(node) == LongKeyedBooleanTable.ABSENT) {
+        visited.put(node, true);
+        if (tail == queue.length) {
+          queue = Arrays.copyOf(queue, queue.length * 2);
+        }
+        queue[tail++] = node;
+      }
+    }
+
+    boolean hasNext() {
+      return head < tail;
+    }
+
+    long next() {
+      return queue[head++];
+    }
+
+    int visitedCount() {
+      return visited.size();
+    }
+
+    int first(long node) {
+      return (int) ((node >>> 1) / secondCount);
+    }
+
+    int second(long node) {
+      return (int) ((node >>> 1) % secondCount);
+    }
+
+    boolean hasConsumedInput(long node) {
+      return (node & 1) != 0;
+    }
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex.helpers;
+
+import java.util.Arrays;
+import org.sonarsource.analyzer.commons.regex.ast.AutomatonState;
+
+/**
+ * Remembers which state was seen with each id, so that the checkers only use an id to identify a state when no other
+ * state was seen with the same id, for instance a state of another regex.
+ */
+final class NumberedStates {
+
+  private final int maxId;
+  private AutomatonState[] states = new AutomatonState[16];
+
+  NumberedStates(int maxId) {
+    this.maxId = maxId;
+  }
+
+  boolean isIdentifiedById(AutomatonState state) {
+    int id = state.id();
+    if (id < 0 || id > maxId) {
+      return false;
+    }
+    if (id >= states.length) {
+      states = Arrays.copyOf(states, Math.min(Math.max(id + 1, states.length * 2), maxId + 1));
+    }
+    AutomatonState knownState = states[id];
+    if (knownState == null) {
+      states[id] = state;
+      return true;
+    }
+    return knownState == state;
+  }
+
+  void clear() {
+    Arrays.fill(states, null);
+  }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex.helpers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonarsource.analyzer.commons.regex.RegexParseResult;
+import org.sonarsource.analyzer.commons.regex.ast.AutomatonState;
+
+import static org.sonarsource.analyzer.commons.regex.ast.AutomatonState.TransitionType.CHARACTER;
+
+/**
+ * Facts about the automaton of a regex which are shared by all the finders visiting its {@link RegexParseResult}, so
+ * that each of them is computed at most once. Checkers, reachability tables and character classes are kept as long as
+ * the parse result, see {@link RegexParseResult#getAnalysisContext()}. Each intersection or superset query explores the
+ * automata with its own work budget, only reusing the answers of previous queries which don't depend on their budget.
+ * <p>
+ * Intersections and supersets are computed on the {@link RegexNfa} of both sub-automata when they can be compiled, which
+ * also covers the repetitions with a minimum or maximum of more than one. Otherwise the automata checkers are used.
+ * <p>
+ * Methods are synchronized, so the context can be used by finders running on different threads.
+ */
+public final class RegexAnalysisContext {
+
+  private static final String INTERSECTS = "intersects";
+  private static final String SUPERSET_OF = "supersetOf";
+
+  private final IntersectAutomataChecker[] intersectCheckers = new IntersectAutomataChecker[2];
+  private final SupersetAutomataChecker[] supersetCheckers = new SupersetAutomataChecker[2];
+  private RegexReachabilityChecker reachabilityChecker;
+  // Keyed by the start and end of the sub-automata, null for the ones which can't be compiled
+  private final Map<List<AutomatonState>, RegexNfa> nfas = new HashMap<>();
+  private final AutomatonState startState;
+  // Partition of the character classes of the whole regex, shared by all its automata
+  private CodePointPartition partition;
+  // Keyed by the operation, then the automata, whether they allow prefixes, and the default answer
+  private final Map<List<Object>, Boolean> nfaAnswers = new HashMap<>();
+  private final Map<AutomatonState, SimplifiedRegexCharacterClass> characterClasses = new IdentityHashMap<>();
+  private final NumberedStates numberedStates = new NumberedStates(Integer.MAX_VALUE >> 1);
+  // Keyed by the ids of the start and goal states and whether boundaries stop the search
+  private final LongKeyedBooleanTable reachableWithoutConsumingInput = new LongKeyedBooleanTable();
+
+  /**
+   * @param startState the start of the automaton of the regex, from which all its states can be reached
+   */
+  public RegexAnalysisContext(AutomatonState startState) {
+    this.startState = startState;
+  }
+
+  /**
+   * @see RegexTreeHelper#intersects(SubAutomaton, SubAutomaton, boolean)
+   */
+  public synchronized boolean intersects(SubAutomaton auto1, SubAutomaton auto2, boolean defaultAnswer) {
+    RegexNfa nfa1 = nfa(auto1);
+    RegexNfa nfa2 = nfa1 == null ? null : nfa(auto2);
+    if (nfa1 != null && nfa2 != null) {
+      return nfaAnswers.computeIfAbsent(Arrays.asList(INTERSECTS, nfa1, auto1.allowPrefix, nfa2, auto2.allowPrefix, defaultAnswer),
+        k -> NfaProductChecker.intersects(nfa1, auto1.allowPrefix, nfa2, auto2.allowPrefix, defaultAnswer, AbstractAutomataChecker.DEFAULT_WORK_BUDGET));
+    }
+    int index = defaultAnswer ? 1 : 0;
+    if (intersectCheckers[index] == null) {
+      intersectCheckers[index] = new IntersectAutomataChecker(defaultAnswer, AbstractAutomataChecker.DEFAULT_WORK_BUDGET, this::characterClass);
+    }
+    return intersectCheckers[index].check(auto1, auto2);
+  }
+
+  /**
+   * @see RegexTreeHelper#supersetOf(SubAutomaton, SubAutomaton, boolean)
+   */
+  public synchronized boolean supersetOf(SubAutomaton auto1, SubAutomaton auto2, boolean defaultAnswer) {
+    RegexNfa nfa1 = nfa(auto1);
+    RegexNfa nfa2 = nfa1 == null ? null : nfa(auto2);
+    if (nfa1 != null && nfa2 != null) {
+      return nfaAnswers.computeIfAbsent(Arrays.asList(SUPERSET_OF, nfa1, auto1.allowPrefix, nfa2, auto2.allowPrefix, defaultAnswer),
+        k -> NfaProductChecker.supersetOf(nfa1, auto1.allowPrefix, nfa2, auto2.allowPrefix, defaultAnswer, AbstractAutomataChecker.DEFAULT_WORK_BUDGET));
+    }
+    int index = defaultAnswer ? 1 : 0;
+    if (supersetCheckers[index] == null) {
+      supersetCheckers[index] = new SupersetAutomataChecker(defaultAnswer, AbstractAutomataChecker.DEFAULT_WORK_BUDGET, this::characterClass);
+    }
+    return supersetCheckers[index].check(auto1, auto2);
+  }
+
+  /**
+   * @return the automaton compiled from the given sub-automaton, or null if it can't be compiled, see {@link RegexNfa}
+   */
+  @CheckForNull
+  public synchronized RegexNfa nfa(SubAutomaton auto) {
+    List<AutomatonState> key = Arrays.asList(auto.start, auto.end);
+    if (nfas.containsKey(key)) {
+      return nfas.get(key);
+    }
+    if (partition == null) {
+      partition = partitionOfAllCharacterClasses();
+    }
+    RegexNfa nfa = RegexNfa.compile(auto.start, auto.end, this::characterClass, partition, RegexNfa.DEFAULT_STATE_BUDGET);
+    nfas.put(key, nfa);
+    return nfa;
+  }
+
+  /**
+   * @see RegexReachabilityChecker#canReachWithConsumingInput(AutomatonState, AutomatonState, java.util.Set)
+   * @return false if the goal can't be reached, or if too many states had to be explored to find out
+   */
+  public synchronized boolean canReachWithConsumingInput(AutomatonState start, AutomatonState goal) {
+    if (reachabilityChecker == null) {
+      reachabilityChecker = new RegexReachabilityChecker(false);
+    }
+    return reachabilityChecker.canReachWithConsumingInput(start, goal, new HashSet<>());
+  }
+
+  /**
+   * @see RegexReachabilityChecker#canReachWithoutConsumingInput(AutomatonState, AutomatonState)
+   */
+  public synchronized boolean canReachWithoutConsumingInput(AutomatonState start, AutomatonState goal) {
+    return canReachWithoutConsumingInput(start, goal, false);
+  }
+
+  /**
+   * @see RegexReachabilityChecker#canReachWithoutConsumingInputNorCrossingBoundaries(AutomatonState, AutomatonState)
+   */
+  public synchronized boolean canReachWithoutConsumingInputNorCrossingBoundaries(AutomatonState start, AutomatonState goal) {
+    return canReachWithoutConsumingInput(start, goal, true);
+  }
+
+  private boolean canReachWithoutConsumingInput(AutomatonState start, AutomatonState goal, boolean stopAtBoundaries) {
+    if (!numberedStates.isIdentifiedById(start) || !numberedStates.isIdentifiedById(goal)) {
+      return stopAtBoundaries
+        ? RegexReachabilityChecker.canReachWithoutConsumingInputNorCrossingBoundaries(start, goal)
+        : RegexReachabilityChecker.canReachWithoutConsumingInput(start, goal);
+    }
+    long key = ((long) start.id() << 32) | ((long) goal.id() << 1) | (stopAtBoundaries ? 1 : 0);
+    int memoizedValue = reachableWithoutConsumingInput.get(key);
+    if (memoizedValue != LongKeyedBooleanTable.ABSENT) {
+      return memoizedValue == 1;
+    }
+    return reachableWithoutConsumingInput.put(key, stopAtBoundaries
+      ? RegexReachabilityChecker.canReachWithoutConsumingInputNorCrossingBoundaries(start, goal)
+      : RegexReachabilityChecker.canReachWithoutConsumingInput(start, goal));
+  }
+
+  private CodePointPartition partitionOfAllCharacterClasses() {
+    List<int[]> ranges = new ArrayList<>();
+    Set<AutomatonState> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    Deque<AutomatonState> toVisit = new ArrayDeque<>();
+    toVisit.add(startState);
+    while (!toVisit.isEmpty()) {
+      AutomatonState state = toVisit.poll();
+      if (visited.add(state)) {
+        SimplifiedRegexCharacterClass characterClass = state.incomingTransitionType() == CHARACTER ? characterClass(state) : null;
+        if (characterClass != null && !characterClass.containsUnknownCharacters()) {
+          ranges.add(characterClass.ranges());
+        }
+        state.successors().stream().filter(Objects::nonNull).forEach(toVisit::add);
+      }
+    }
+    return CodePointPartition.of(ranges);
+  }
+
+  /**
+   * @return the character class matched by the given state, or null if it is not a character class or a dot.
+   * The returned class is shared and must not be modified.
+   */
+  @CheckForNull
+  public synchronized SimplifiedRegexCharacterClass characterClass(AutomatonState state) {
+    return characterClasses.computeIfAbsent(state, SimplifiedRegexCharacterClass::of);
+  }
+
+}
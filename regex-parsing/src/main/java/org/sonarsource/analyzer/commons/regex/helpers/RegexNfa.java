@@ -0,0 +1,540 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex.helpers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonarsource.analyzer.commons.regex.ast.AutomatonState;
+import org.sonarsource.analyzer.commons.regex.ast.BoundaryTree;
+import org.sonarsource.analyzer.commons.regex.ast.BranchState;
+import org.sonarsource.analyzer.commons.regex.ast.EndOfRepetitionState;
+import org.sonarsource.analyzer.commons.regex.ast.LookAroundTree;
+import org.sonarsource.analyzer.commons.regex.ast.RepetitionTree;
+
+import static org.sonarsource.analyzer.commons.regex.ast.AutomatonState.TransitionType.BACK_REFERENCE;
+import static org.sonarsource.analyzer.commons.regex.ast.AutomatonState.TransitionType.CHARACTER;
+import static org.sonarsource.analyzer.commons.regex.ast.AutomatonState.TransitionType.LOOKAROUND_BACKTRACKING;
+import static org.sonarsource.analyzer.commons.regex.ast.AutomatonState.TransitionType.NEGATION;
+
+/**
+ * Nondeterministic finite automaton compiled from a sub-automaton of a regex, with states numbered from 0. Each state
+ * either consumes a character of its class, is the end of the sub-automaton, or moves to its successors without
+ * consuming input.
+ * <p>
+ * Repetitions whose minimum or maximum is more than one are unrolled: a state of the regex is paired with the number of
+ * iterations done by each repetition containing it. Sub-automata containing lookarounds, boundaries, back-references or
+ * characters which are not fully known can't be compiled, and neither can the ones having more states than the budget.
+ */
+public final class RegexNfa {
+
+  /**
+   * Default maximum number of states of a compiled automaton
+   */
+  public static final int DEFAULT_STATE_BUDGET = 1_000;
+
+  private static final int NO_STATE = -1;
+
+  private final CodePointPartition partition;
+  // Blocks of the partition matched by the states consuming input, null for the other states
+  private final BitSet[] blocks;
+  private final int[][] successors;
+  private final int end;
+  // The states consuming input, or the end, which can be reached without consuming input
+  private final BitSet startStates;
+  private final BitSet[] nextStates;
+  // For each block of the partition, the states consuming its code points
+  private final BitSet[] statesByBlock;
+
+  private RegexNfa(CodePointPartition partition, BitSet[] blocks, int[][] successors, int end) {
+    this.partition = partition;
+    this.blocks = blocks;
+    this.successors = successors;
+    this.end = end;
+    BitSet[] closures = new BitSet[successors.length];
+    this.startStates = closure(0, closures);
+    this.nextStates = new BitSet[successors.length];
+    this.statesByBlock = new BitSet[partition.blockCount()];
+    Arrays.setAll(statesByBlock, block -> new BitSet());
+    for (int state = 0; state < successors.length; state++) {
+      if (blocks[state] != null) {
+        BitSet next = new BitSet();
+        for (int successor : successors[state]) {
+          next.or(closure(successor, closures));
+        }
+        nextStates[state] = next;
+        for (int block = blocks[state].nextSetBit(0); block >= 0; block = blocks[state].nextSetBit(block + 1)) {
+          statesByBlock[block].set(state);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the automaton of the given sub-automaton, or null if it can't be compiled within {@link #DEFAULT_STATE_BUDGET}
+   */
+  @CheckForNull
+  public static RegexNfa compile(SubAutomaton auto) {
+    return compile(auto.start, auto.end, SimplifiedRegexCharacterClass::of, null, DEFAULT_STATE_BUDGET);
+  }
+
+  /**
+   * @param partition the partition in which the character classes are represented, so that the automaton can be
+   * compared with the other automata using it, or null to use a partition of the classes of this automaton only
+   */
+  @CheckForNull
+  static RegexNfa compile(AutomatonState start, AutomatonState end, Function<AutomatonState, SimplifiedRegexCharacterClass> characterClasses,
+    @Nullable CodePointPartition partition, int stateBudget) {
+    return new Compiler(end, characterClasses, stateBudget).compile(start, partition);
+  }
+
+  public int stateCount() {
+    return successors.length;
+  }
+
+  /**
+   * @return true if no input leads from the start to the end of the automaton
+   */
+  public boolean isEmpty() {
+    if (end == NO_STATE) {
+      return true;
+    }
+    BitSet reached = (BitSet) startStates.clone();
+    BitSet toVisit = (BitSet) startStates.clone();
+    for (int state = toVisit.nextSetBit(0); state >= 0; state = toVisit.nextSetBit(0)) {
+      toVisit.clear(state);
+      if (state == end) {
+        return false;
+      }
+      if (!blocks[state].isEmpty()) {
+        BitSet next = (BitSet) nextStates[state].clone();
+        next.andNot(reached);
+        reached.or(next);
+        toVisit.or(next);
+      }
+    }
+    return true;
+  }
+
+  boolean isEnd(int state) {
+    return state == end;
+  }
+
+  boolean containsEnd(BitSet states) {
+    return end != NO_STATE && states.get(end);
+  }
+
+  CodePointPartition partition() {
+    return partition;
+  }
+
+  /**
+   * @return the blocks of the partition matched by a state consuming input. The returned set is shared and must not be
+   * modified.
+   */
+  BitSet blocks(int state) {
+    return blocks[state];
+  }
+
+  /**
+   * @return the states consuming the code points of the given block of the partition. The returned set is shared and
+   * must not be modified.
+   */
+  BitSet statesMatching(int block) {
+    return statesByBlock[block];
+  }
+
+  /**
+   * @return the states consuming input, and the end, which can be reached from the start without consuming input.
+   * The returned set is shared and must not be modified.
+   */
+  BitSet startStates() {
+    return startStates;
+  }
+
+  /**
+   * @return the states consuming input, and the end, which can be reached after consuming a character of the given
+   * state. The returned set is shared and must not be modified.
+   */
+  BitSet nextStates(int state) {
+    return nextStates[state];
+  }
+
+  private BitSet closure(int state, BitSet[] closures) {
+    BitSet closure = closures[state];
+    if (closure != null) {
+      return closure;
+    }
+    closure = new BitSet();
+    BitSet visited = new BitSet();
+    int[] stack = new int[16];
+    int size = 0;
+    stack[size++] = state;
+    visited.set(state);
+    while (size > 0) {
+      int current = stack[--size];
+      if (current == end || blocks[current] != null) {
+        closure.set(current);
+      } else {
+        for (int successor : successors[current]) {
+          if (!visited.get(successor)) {
+            visited.set(successor);
+            if (size == stack.length) {
+              stack = Arrays.copyOf(stack, size * 2);
+            }
+            stack[size++] = successor;
+          }
+        }
+      }
+    }
+    closures[state] = closure;
+    return closure;
+  }
+
+  /**
+   * Explores the configurations reachable from the start, a configuration being a state of the regex with the
+   * iteration counts of the repetitions it is in.
+   */
+  private static final class Compiler {
+
+    private static final int[] NO_SUCCESSORS = new int[0];
+
+    private final AutomatonState end;
+    private final Function<AutomatonState, SimplifiedRegexCharacterClass> characterClassOf;
+    private final int stateBudget;
+    private final Map<Configuration, Integer> ids = new HashMap<>();
+    private final Map<RepetitionTree, Set<AutomatonState>> elementStates = new IdentityHashMap<>();
+    // null for the end
+    private final List<Configuration> configurations = new ArrayList<>();
+    // null for the states which don't consume input
+    private final List<SimplifiedRegexCharacterClass> characterClasses = new ArrayList<>();
+    private final List<int[]> successors = new ArrayList<>();
+    private int endState = NO_STATE;
+    private boolean unsupported = false;
+
+    Compiler(AutomatonState end, Function<AutomatonState, SimplifiedRegexCharacterClass> characterClassOf, int stateBudget) {
+      this.end = end;
+      this.characterClassOf = characterClassOf;
+      this.stateBudget = stateBudget;
+    }
+
+    @CheckForNull
+    RegexNfa compile(AutomatonState start, @Nullable CodePointPartition partition) {
+      Counters counters = null;
+      RepetitionTree repetition = start == end ? null : countedRepetition(start);
+      if (repetition != null) {
+        if (start != repetition) {
+          return null;
+        }
+        counters = Counters.with(null, repetition, 0);
+      }
+      if (id(new Configuration(start, counters)) == NO_STATE) {
+        return null;
+      }
+      for (int state = 0; state < configurations.size(); state++) {
+        Configuration configuration = configurations.get(state);
+        if (configuration != null && !expand(state, configuration)) {
+          return null;
+        }
+      }
+      Map<SimplifiedRegexCharacterClass, int[]> rangesByClass = new IdentityHashMap<>();
+      characterClasses.stream().filter(Objects::nonNull).forEach(c -> rangesByClass.computeIfAbsent(c, SimplifiedRegexCharacterClass::ranges));
+      CodePointPartition actualPartition = partition != null ? partition : CodePointPartition.of(rangesByClass.values());
+      Map<SimplifiedRegexCharacterClass, BitSet> blocksByClass = new IdentityHashMap<>();
+      for (Map.Entry<SimplifiedRegexCharacterClass, int[]> entry : rangesByClass.entrySet()) {
+        BitSet blocks = actualPartition.blocks(entry.getValue());
+        if (blocks == null) {
+          return null;
+        }
+        blocksByClass.put(entry.getKey(), blocks);
+      }
+      BitSet[] blocks = characterClasses.stream().map(c -> c == null ? null : blocksByClass.get(c)).toArray(BitSet[]::new);
+      return new RegexNfa(actualPartition, blocks, successors.toArray(new int[0][]), endState);
+    }
+
+    private boolean expand(int state, Configuration configuration) {
+      AutomatonState automatonState = configuration.state;
+      AutomatonState.TransitionType transition = automatonState.incomingTransitionType();
+      if (transition == LOOKAROUND_BACKTRACKING || transition == NEGATION || transition == BACK_REFERENCE
+        || automatonState instanceof LookAroundTree || automatonState instanceof BoundaryTree) {
+        return false;
+      }
+      if (transition == CHARACTER) {
+        SimplifiedRegexCharacterClass characterClass = characterClassOf.apply(automatonState);
+        if (characterClass == null || characterClass.containsUnknownCharacters()) {
+          return false;
+        }
+        characterClasses.set(state, characterClass);
+      }
+      List<? extends AutomatonState> automatonSuccessors = automatonState.successors();
+      int[] targets = new int[automatonSuccessors.size()];
+      int targetCount = 0;
+      for (AutomatonState successor : automatonSuccessors) {
+        Configuration next = successor == null ? null : next(configuration, successor);
+        if (unsupported) {
+          return false;
+        }
+        if (next != null) {
+          int id = id(next);
+          if (id == NO_STATE) {
+            return false;
+          }
+          targets[targetCount++] = id;
+        }
+      }
+      successors.set(state, targetCount == targets.length ? targets : Arrays.copyOf(targets, targetCount));
+      return true;
+    }
+
+    /**
+     * @return the configuration reached by moving to the given successor, or null if the iteration counts don't allow it
+     */
+    @CheckForNull
+    private Configuration next(Configuration from, AutomatonState to) {
+      Counters counters = from.counters;
+      RepetitionTree current = countedRepetition(from.state);
+      if (current != null) {
+        int count = Counters.count(counters, current);
+        Integer max = current.getQuantifier().getMaximumRepetitions();
+        if (to == current.continuation()) {
+          if (count < current.getQuantifier().getMinimumRepetitions()) {
+            return null;
+          }
+        } else if (max != null && count >= max) {
+          return null;
+        }
+      }
+      if (to == end) {
+        return new Configuration(to, null);
+      }
+      RepetitionTree entered = countedRepetition(to);
+      if (entered != null) {
+        int count = Counters.count(counters, entered);
+        if (to != entered) {
+          // The end of the element leads to the choice between another iteration and the continuation
+          counters = increment(counters, entered, count);
+        } else if (count < 0) {
+          if (elementStates(entered).contains(from.state)) {
+            // The sub-automaton starts inside the repetition, so the number of iterations already done is unknown
+            unsupported = true;
+          }
+          counters = Counters.with(counters, entered, 0);
+        } else if (entered.getQuantifier().getMinimumRepetitions() == 0) {
+          // Coming back from the end of the element
+          counters = increment(counters, entered, count);
+        }
+      } else if (to instanceof EndOfRepetitionState && isCounted(((EndOfRepetitionState) to).getParent())) {
+        RepetitionTree left = ((EndOfRepetitionState) to).getParent();
+        counters = Counters.without(counters, left);
+      }
+      return new Configuration(to, counters);
+    }
+
+    /**
+     * Ids are given in the order in which configurations are found, so that the start is 0
+     */
+    private int id(Configuration configuration) {
+      if (configuration.state == end) {
+        if (endState == NO_STATE) {
+          endState = newState(null);
+        }
+        return endState;
+      }
+      Integer id = ids.get(configuration);
+      if (id == null) {
+        if (configurations.size() >= stateBudget) {
+          return NO_STATE;
+        }
+        id = newState(configuration);
+        ids.put(configuration, id);
+      }
+      return id;
+    }
+
+    private int newState(@Nullable Configuration configuration) {
+      configurations.add(configuration);
+      characterClasses.add(null);
+      successors.add(NO_SUCCESSORS);
+      return configurations.size() - 1;
+    }
+
+    private Counters increment(@Nullable Counters counters, RepetitionTree repetition, int count) {
+      if (count < 0) {
+        unsupported = true;
+        return counters;
+      }
+      Integer max = repetition.getQuantifier().getMaximumRepetitions();
+      int limit = max != null ? max : repetition.getQuantifier().getMinimumRepetitions();
+      return Counters.with(counters, repetition, Math.min(count + 1, limit));
+    }
+
+    /**
+     * @return the states of the element of the repetition, which lead back to it without leaving it
+     */
+    private Set<AutomatonState> elementStates(RepetitionTree repetition) {
+      return elementStates.computeIfAbsent(repetition, r -> {
+        Set<AutomatonState> states = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<AutomatonState> toVisit = new ArrayDeque<>();
+        toVisit.add(r.getElement());
+        while (!toVisit.isEmpty()) {
+          AutomatonState state = toVisit.poll();
+          if (state != r && state != r.continuation() && state != r.getElement().continuation() && states.add(state)) {
+            state.successors().stream().filter(Objects::nonNull).forEach(toVisit::add);
+          }
+        }
+        return states;
+      });
+    }
+
+    /**
+     * @return the repetition counted by the given state, if it's a repetition whose minimum or maximum is more than
+     * one, or the state to which the end of its element leads
+     */
+    @CheckForNull
+    private static RepetitionTree countedRepetition(AutomatonState state) {
+      if (state instanceof RepetitionTree && isCounted((RepetitionTree) state)) {
+        return (RepetitionTree) state;
+      } else if (state instanceof BranchState && ((BranchState) state).getParent() instanceof RepetitionTree) {
+        RepetitionTree repetition = (RepetitionTree) ((BranchState) state).getParent();
+        return isCounted(repetition) ? repetition : null;
+      }
+      return null;
+    }
+
+    private static boolean isCounted(RepetitionTree repetition) {
+      Integer max = repetition.getQuantifier().getMaximumRepetitions();
+      return (max != null && max > 1) || repetition.getQuantifier().getMinimumRepetitions() > 1;
+    }
+
+  }
+
+  private static final class Configuration {
+
+    private final AutomatonState state;
+    @Nullable
+    private final Counters counters;
+
+    Configuration(AutomatonState state, @Nullable Counters counters) {
+      this.state = state;
+      this.counters = counters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Configuration that = (Configuration) o;
+      return state == that.state && Objects.equals(counters, that.counters);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(state) + Objects.hashCode(counters);
+    }
+  }
+
+  /**
+   * Immutable list of the iteration counts of the repetitions a configuration is in, the innermost first
+   */
+  private static final class Counters {
+
+    private final RepetitionTree repetition;
+    private final int count;
+    @Nullable
+    private final Counters next;
+
+    Counters(RepetitionTree repetition, int count, @Nullable Counters next) {
+      this.repetition = repetition;
+      this.count = count;
+      this.next = next;
+    }
+
+    /**
+     * @return the count of the given repetition, or -1 if it is not counted
+     */
+    static int count(@Nullable Counters counters, RepetitionTree repetition) {
+      for (Counters counter = counters; counter != null; counter = counter.next) {
+        if (counter.repetition == repetition) {
+          return counter.count;
+        }
+      }
+      return -1;
+    }
+
+    static Counters with(@Nullable Counters counters, RepetitionTree repetition, int count) {
+      if (count(counters, repetition) < 0) {
+        return new Counters(repetition, count, counters);
+      }
+      return replace(counters, repetition, count);
+    }
+
+    private static Counters replace(Counters counters, RepetitionTree repetition, int count) {
+      if (counters.repetition == repetition) {
+        return new Counters(repetition, count, counters.next);
+      }
+      return new Counters(counters.repetition, counters.count, replace(counters.next, repetition, count));
+    }
+
+    @Nullable
+    static Counters without(@Nullable Counters counters, RepetitionTree repetition) {
+      if (counters == null) {
+        return null;
+      } else if (counters.repetition == repetition) {
+        return counters.next;
+      }
+      Counters next = without(counters.next, repetition);
+      return next == counters.next ? counters : new Counters(counters.repetition, counters.count, next);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Counters that = (Counters) o;
+      return repetition == that.repetition && count == that.count && Objects.equals(next, that.next);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * System.identityHashCode(repetition) + count) + Objects.hashCode(next);
+    }
+  }
+
+}
@@ -23,6 +23,7 @@ package org.sonarsource.analyzer.commons.regex.helpers;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -40,17 +41,40 @@ import static org.sonarsource.analyzer.commons.regex.ast.AutomatonState.Transiti
 import static org.sonarsource.analyzer.commons.regex.ast.AutomatonState.TransitionType.NEGATION;
 
 public class RegexReachabilityChecker {
-  private static final int MAX_CACHE_SIZE = 5_000;
 
   private final boolean defaultAnswer;
+  private final int workBudget;
+  // Answers for numbered start states, keyed by the index of the goal and the id of the start state
+  private final LongKeyedBooleanTable memo = new LongKeyedBooleanTable();
+  private final NumberedStates numberedStates = new NumberedStates(Integer.MAX_VALUE - 1);
+  private final Map<AutomatonState, Integer> goalIndexes = new IdentityHashMap<>();
+  private AutomatonState lastGoal;
+  private int lastGoalIndex;
+  // Answers for the states which can't be identified by their id, see AutomatonState.id()
   private final Map<OrderedStatePair, Boolean> cache = new HashMap<>();
   private static final List<BoundaryTree.Type> TYPE_ENDINGS = Arrays.asList(BoundaryTree.Type.INPUT_END_FINAL_TERMINATOR, BoundaryTree.Type.LINE_END);
 
   public RegexReachabilityChecker(boolean defaultAnswer) {
+    this(defaultAnswer, AbstractAutomataChecker.DEFAULT_WORK_BUDGET);
+  }
+
+  /**
+   * @param workBudget maximum number of pairs of states for which an answer is remembered. Once it is reached,
+   *                   unknown pairs get the default answer.
+   */
+  public RegexReachabilityChecker(boolean defaultAnswer, int workBudget) {
+    if (workBudget <= 0) {
+      throw new IllegalArgumentException("Work budget should be positive: " + workBudget);
+    }
     this.defaultAnswer = defaultAnswer;
+    this.workBudget = workBudget;
   }
 
   public void clearCache() {
+    memo.clear();
+    numberedStates.clear();
+    goalIndexes.clear();
+    lastGoal = null;
     cache.clear();
   }
 
@@ -58,23 +82,50 @@ public class RegexReachabilityChecker {
     if (start == goal) {
       return true;
     }
+    if (!numberedStates.isIdentifiedById(start)) {
+      return canReachFromUnnumberedState(start, goal);
+    }
+    long key = ((long) goalIndex(goal) << 32) | start.id();
+    int memoizedValue = memo.get(key);
+    if (memoizedValue != LongKeyedBooleanTable.ABSENT) {
+      return memoizedValue == 1;
+    }
+    if (memo.size() + cache.size() >= workBudget) {
+      return defaultAnswer;
+    }
+    memo.put(key, false);
+    return memo.put(key, canReachFromSuccessors(start, goal));
+  }
+
+  private boolean canReachFromUnnumberedState(AutomatonState start, AutomatonState goal) {
     OrderedStatePair pair = new OrderedStatePair(start, goal);
     if (cache.containsKey(pair)) {
       return cache.get(pair);
     }
-    if (cache.size() >= MAX_CACHE_SIZE) {
+    if (memo.size() + cache.size() >= workBudget) {
       return defaultAnswer;
     }
     cache.put(pair, false);
-    boolean result = false;
+    boolean result = canReachFromSuccessors(start, goal);
+    cache.put(pair, result);
+    return result;
+  }
+
+  private boolean canReachFromSuccessors(AutomatonState start, AutomatonState goal) {
     for (AutomatonState successor : start.successors()) {
       if (canReach(successor, goal)) {
-        result = true;
-        break;
+        return true;
       }
     }
-    cache.put(pair, result);
-    return result;
+    return false;
+  }
+
+  private int goalIndex(AutomatonState goal) {
+    if (goal != lastGoal) {
+      lastGoalIndex = goalIndexes.computeIfAbsent(goal, k -> goalIndexes.size());
+      lastGoal = goal;
+    }
+    return lastGoalIndex;
   }
 
   private static class OrderedStatePair {
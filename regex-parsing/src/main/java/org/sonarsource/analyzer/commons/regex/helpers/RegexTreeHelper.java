@@ -42,6 +42,7 @@ public class RegexTreeHelper {
    * always contain the empty string).
    * defaultAnswer will be returned in case of unsupported features or the state limit is exceeded.
    * It should be whichever answer does not lead to an issue being reported to avoid false positives.
+   * A new checker is used on each call, see {@link RegexAnalysisContext#intersects} to share it between finders.
    */
   public static boolean intersects(SubAutomaton auto1, SubAutomaton auto2, boolean defaultAnswer) {
     return new IntersectAutomataChecker(defaultAnswer).check(auto1, auto2);
@@ -51,6 +52,7 @@ public class RegexTreeHelper {
    * Here auto2.allowPrefix means that if supersetOf(auto1, auto2), then for every string matched by auto2, auto1 can match a prefix of it
    * auto1.allowPrefix means that if supersetOf(auto1, auto2), then for every string matched by auto2, auto1 can match a continuation of it
    * If both are set, it means either one can be the case.
+   * A new checker is used on each call, see {@link RegexAnalysisContext#supersetOf} to share it between finders.
    */
   public static boolean supersetOf(SubAutomaton auto1, SubAutomaton auto2, boolean defaultAnswer) {
     return new SupersetAutomataChecker(defaultAnswer).check(auto1, auto2);
@@ -20,6 +20,7 @@
 package org.sonarsource.analyzer.commons.regex.helpers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -105,6 +106,29 @@ public class SimplifiedRegexCharacterClass {
     addRange(from, Character.MAX_CODE_POINT, tree);
   }
 
+  boolean containsUnknownCharacters() {
+    return containsUnknownCharacters;
+  }
+
+  /**
+   * @return the ranges of code points in the class, in increasing order, as pairs of the first code point of a range
+   * and the code point following its last one
+   */
+  int[] ranges() {
+    int[] ranges = new int[contents.size() + 1];
+    int size = 0;
+    for (Map.Entry<Integer, RegexSyntaxElement> entry : contents.entrySet()) {
+      boolean inRange = size % 2 == 1;
+      if (inRange == (entry.getValue() == null)) {
+        ranges[size++] = entry.getKey();
+      }
+    }
+    if (size % 2 == 1) {
+      ranges[size++] = Character.MAX_CODE_POINT + 1;
+    }
+    return Arrays.copyOf(ranges, size);
+  }
+
   public boolean matchesAnyCharacter() {
     return contents.containsKey(0) && !contents.containsValue(null);
   }
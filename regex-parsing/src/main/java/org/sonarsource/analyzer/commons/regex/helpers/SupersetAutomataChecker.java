@@ -19,11 +19,22 @@
  */
 package org.sonarsource.analyzer.commons.regex.helpers;
 
+import java.util.function.Function;
+import org.sonarsource.analyzer.commons.regex.ast.AutomatonState;
+
 public class SupersetAutomataChecker extends AbstractAutomataChecker {
   public SupersetAutomataChecker(boolean defaultAnswer) {
     super(defaultAnswer);
   }
 
+  public SupersetAutomataChecker(boolean defaultAnswer, int workBudget) {
+    super(defaultAnswer, workBudget);
+  }
+
+  SupersetAutomataChecker(boolean defaultAnswer, int workBudget, Function<AutomatonState, SimplifiedRegexCharacterClass> characterClasses) {
+    super(defaultAnswer, workBudget, characterClasses);
+  }
+
   @Override
   protected boolean neutralAnswer() {
     return defaultAnswer;
@@ -31,8 +42,8 @@ public class SupersetAutomataChecker extends AbstractAutomataChecker {
 
   @Override
   protected boolean checkAuto1AndAuto2Successors(SubAutomaton auto1, SubAutomaton auto2, boolean defaultAnswer, boolean hasConsumedInput) {
-    SimplifiedRegexCharacterClass characterClass1 = SimplifiedRegexCharacterClass.of(auto1.start);
-    SimplifiedRegexCharacterClass characterClass2 = SimplifiedRegexCharacterClass.of(auto2.start);
+    SimplifiedRegexCharacterClass characterClass1 = characterClass(auto1.start);
+    SimplifiedRegexCharacterClass characterClass2 = characterClass(auto2.start);
     return ((characterClass1 != null) && (characterClass2 != null)) ?
       (characterClass1.supersetOf(characterClass2, defaultAnswer) &&
         auto2.allSuccessorMatch(successor2 -> auto1.anySuccessorMatch(successor1 ->
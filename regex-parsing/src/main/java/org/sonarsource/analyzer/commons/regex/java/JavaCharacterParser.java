@@ -24,6 +24,7 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import org.sonarsource.analyzer.commons.regex.CharacterParser;
 import org.sonarsource.analyzer.commons.regex.RegexSource;
+import org.sonarsource.analyzer.commons.regex.ast.IndexRange;
 import org.sonarsource.analyzer.commons.regex.ast.SourceCharacter;
 
 /**
@@ -36,8 +37,14 @@ public class JavaCharacterParser implements CharacterParser {
 
   private final JavaUnicodeEscapeParser unicodeProcessedCharacters;
 
+  private boolean atEnd;
+  private char currentChar;
+  private int currentStartIndex;
+  private int currentEndIndex;
+  private boolean currentIsEscapeSequence;
+
   /**
-   * Will be null if and only if the end of input has been reached
+   * Only created when requested, null until then
    */
   @CheckForNull
   private SourceCharacter current;
@@ -54,42 +61,82 @@ public class JavaCharacterParser implements CharacterParser {
   }
 
   public void moveNext() {
-    current = parseJavaCharacter();
+    current = null;
+    parseJavaCharacter();
   }
 
   @Nonnull
   public SourceCharacter getCurrent() {
-    if (current == null) {
+    if (atEnd) {
       throw new NoSuchElementException();
     }
+    if (current == null) {
+      current = new SourceCharacter(source, new IndexRange(currentStartIndex, currentEndIndex), currentChar, currentIsEscapeSequence);
+    }
     return current;
   }
 
+  @Override
+  public char getCurrentChar() {
+    checkNotAtEnd();
+    return currentChar;
+  }
+
+  @Override
+  public int getCurrentStartIndex() {
+    checkNotAtEnd();
+    return currentStartIndex;
+  }
+
+  @Override
+  public int getCurrentEndIndex() {
+    checkNotAtEnd();
+    return currentEndIndex;
+  }
+
+  @Override
+  public boolean isCurrentEscapeSequence() {
+    checkNotAtEnd();
+    return currentIsEscapeSequence;
+  }
+
   public boolean isAtEnd() {
-    return current == null;
+    return atEnd;
   }
 
-  @CheckForNull
-  private SourceCharacter parseJavaCharacter() {
-    SourceCharacter sourceCharacter = unicodeProcessedCharacters.getCurrent();
-    if (sourceCharacter == null) {
-      return null;
+  private void checkNotAtEnd() {
+    if (atEnd) {
+      throw new NoSuchElementException();
+    }
+  }
+
+  private void parseJavaCharacter() {
+    atEnd = unicodeProcessedCharacters.isAtEnd();
+    if (atEnd) {
+      return;
     }
-    if (sourceCharacter.getCharacter() == '\\') {
-      return parseJavaEscapeSequence(sourceCharacter);
+    currentStartIndex = unicodeProcessedCharacters.getCurrentStartIndex();
+    currentEndIndex = unicodeProcessedCharacters.getCurrentEndIndex();
+    currentChar = unicodeProcessedCharacters.getCurrentChar();
+    if (currentChar == '\\') {
+      parseJavaEscapeSequence();
+      return;
     }
+    // a unicode escape sequence is only an escape sequence of the regex when it is not decoded as a backslash
+    currentIsEscapeSequence = unicodeProcessedCharacters.isCurrentEscapedUnicode();
     unicodeProcessedCharacters.moveNext();
-    return sourceCharacter;
   }
 
-  private SourceCharacter parseJavaEscapeSequence(SourceCharacter backslash) {
+  private void parseJavaEscapeSequence() {
+    boolean backslashIsEscapedUnicode = unicodeProcessedCharacters.isCurrentEscapedUnicode();
     unicodeProcessedCharacters.moveNext();
-    SourceCharacter sourceCharacter = unicodeProcessedCharacters.getCurrent();
-    if (sourceCharacter == null) {
-      // Should only happen in case of syntactically invalid string literals
-      return backslash;
+    if (unicodeProcessedCharacters.isAtEnd()) {
+      // Should only happen in case of syntactically invalid string literals, the backslash is then kept as it is
+      currentIsEscapeSequence = backslashIsEscapedUnicode;
+      return;
     }
-    char ch = sourceCharacter.getCharacter();
+    currentIsEscapeSequence = true;
+    char ch = unicodeProcessedCharacters.getCurrentChar();
     switch (ch) {
       case 'n':
         ch = '\n';
@@ -109,22 +156,23 @@ public class JavaCharacterParser implements CharacterParser {
       default:
         if (isOctalDigit(ch)) {
           ch = 0;
-          for (int i = 0; i < 3 && sourceCharacter != null && isOctalDigit(sourceCharacter.getCharacter()); i++) {
-            int newValue = ch * 8 + sourceCharacter.getCharacter() - '0';
+          for (int i = 0; i < 3 && !unicodeProcessedCharacters.isAtEnd() && isOctalDigit(unicodeProcessedCharacters.getCurrentChar()); i++) {
+            int newValue = ch * 8 + unicodeProcessedCharacters.getCurrentChar() - '0';
             if (newValue > 0xFF) {
               break;
             }
             ch = (char) newValue;
             unicodeProcessedCharacters.moveNext();
-            sourceCharacter = unicodeProcessedCharacters.getCurrent();
           }
-          int endIndex = sourceCharacter == null ? source.length() : sourceCharacter.getRange().getBeginningOffset();
-          return new SourceCharacter(source, backslash.getRange().extendTo(endIndex), ch, true);
+          currentChar = ch;
+          currentEndIndex = unicodeProcessedCharacters.isAtEnd() ? source.length() : unicodeProcessedCharacters.getCurrentStartIndex();
+          return;
         }
         break;
     }
+    currentChar = ch;
+    currentEndIndex = unicodeProcessedCharacters.getCurrentEndIndex();
     unicodeProcessedCharacters.moveNext();
-    return new SourceCharacter(source, backslash.getRange().merge(sourceCharacter.getRange()), ch, true);
   }
 
   private static boolean isOctalDigit(int c) {
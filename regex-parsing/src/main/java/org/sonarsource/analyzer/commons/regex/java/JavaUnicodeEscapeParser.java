@@ -37,6 +37,11 @@ public class JavaUnicodeEscapeParser {
 
   private int index;
 
+  private boolean atEnd;
+  private char currentChar;
+  private int currentStartIndex;
+  private boolean currentIsEscapedUnicode;
+  // only created when requested
   private SourceCharacter current;
   private boolean isEscaping = false;
 
@@ -55,36 +60,60 @@ public class JavaUnicodeEscapeParser {
 
   @CheckForNull
   public SourceCharacter getCurrent() {
+    if (atEnd) {
+      return null;
+    }
+    if (current == null) {
+      current = new SourceCharacter(source, new IndexRange(currentStartIndex, index), currentChar, currentIsEscapedUnicode);
+    }
     return current;
   }
 
+  boolean isAtEnd() {
+    return atEnd;
+  }
+
+  char getCurrentChar() {
+    return currentChar;
+  }
+
+  int getCurrentStartIndex() {
+    return currentStartIndex;
+  }
+
+  int getCurrentEndIndex() {
+    return index;
+  }
+
+  boolean isCurrentEscapedUnicode() {
+    return currentIsEscapedUnicode;
+  }
+
   public void moveNext() {
+    current = null;
     if (index >= textLength) {
-      current = null;
+      atEnd = true;
       return;
     }
-    int startIndex = index;
-    char ch;
+    atEnd = false;
+    currentStartIndex = index;
 
     boolean isBackslash = sourceText.charAt(index) == '\\';
-    boolean isEscapedUnicode = isBackslash && index < (textLength - 1) && sourceText.charAt(index + 1) == 'u';
+    currentIsEscapedUnicode = isBackslash && index < (textLength - 1) && sourceText.charAt(index + 1) == 'u';
 
-    if (isEscapedUnicode && !isEscaping) {
+    if (currentIsEscapedUnicode && !isEscaping) {
       index += 2;
       while (sourceText.charAt(index) == 'u') {
         index++;
       }
-      StringBuilder codePoint = new StringBuilder(4);
-      for (int i = 0; i < 4 && index < textLength; i++, index++) {
-        codePoint.append(sourceText.charAt(index));
-      }
-      ch = (char) Integer.parseInt(codePoint.toString(), 16);
+      int digitsEnd = Math.min(index + 4, textLength);
+      currentChar = (char) Integer.parseInt(sourceText.substring(index, digitsEnd), 16);
+      index = digitsEnd;
     } else {
-      ch = sourceText.charAt(index);
+      currentChar = sourceText.charAt(index);
       index++;
       isEscaping = isBackslash && !isEscaping;
     }
-    current = new SourceCharacter(source, new IndexRange(startIndex, index), ch, isEscapedUnicode);
   }
 
 }
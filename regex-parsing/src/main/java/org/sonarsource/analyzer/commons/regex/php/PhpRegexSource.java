@@ -19,6 +19,7 @@
  */
 package org.sonarsource.analyzer.commons.regex.php;
 
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Set;
 import org.sonarsource.analyzer.commons.regex.CharacterParser;
@@ -55,6 +56,12 @@ public class PhpRegexSource extends RegexSource {
     return PhpStringCharacterParser.forDoubleQuotedString(this);
   }
 
+  @Override
+  protected Object dialect() {
+    // escape sequences of the string differ between single and double quotes
+    return Arrays.asList(getClass(), quote);
+  }
+
   @Override
   public Set<RegexFeature> features() {
     return FEATURES;
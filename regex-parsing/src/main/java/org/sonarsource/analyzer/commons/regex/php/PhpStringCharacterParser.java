@@ -22,7 +22,6 @@ package org.sonarsource.analyzer.commons.regex.php;
 import java.util.NoSuchElementException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.sonarsource.analyzer.commons.regex.CharacterParser;
@@ -36,8 +35,11 @@ public abstract class PhpStringCharacterParser implements CharacterParser {
   final int textLength;
   protected final RegexSource source;
   protected int index = 0;
+  private boolean atEnd;
+  private char currentChar;
+  private int currentStartIndex;
   /**
-   * Will be null if and only if the end of input has been reached
+   * Only created when requested, null until then
    */
   @Nullable
   private SourceCharacter current;
@@ -65,45 +67,77 @@ public abstract class PhpStringCharacterParser implements CharacterParser {
 
   @Override
   public void moveNext() {
-    if (index >= textLength) {
-      current = null;
-      return;
+    current = null;
+    atEnd = index >= textLength;
+    if (!atEnd) {
+      parsePhpCharacter();
     }
-    current = parsePhpCharacter();
   }
 
   @Override
   @Nonnull
   public SourceCharacter getCurrent() {
+    checkNotAtEnd();
     if (current == null) {
-      throw new NoSuchElementException();
+      current = new SourceCharacter(source, new IndexRange(currentStartIndex, index), currentChar, isCurrentEscapeSequence());
     }
     return current;
   }
 
+  @Override
+  public char getCurrentChar() {
+    checkNotAtEnd();
+    return currentChar;
+  }
+
+  @Override
+  public int getCurrentStartIndex() {
+    checkNotAtEnd();
+    return currentStartIndex;
+  }
+
+  @Override
+  public int getCurrentEndIndex() {
+    checkNotAtEnd();
+    return index;
+  }
+
+  @Override
+  public boolean isCurrentEscapeSequence() {
+    checkNotAtEnd();
+    return index - currentStartIndex > 1;
+  }
+
   @Override
   public boolean isAtEnd() {
-    return current == null;
+    return atEnd;
+  }
+
+  private void checkNotAtEnd() {
+    if (atEnd) {
+      throw new NoSuchElementException();
+    }
   }
 
-  @CheckForNull
-  private SourceCharacter parsePhpCharacter() {
+  private void parsePhpCharacter() {
     char ch = sourceText.charAt(index);
     if (ch == '\\') {
       if (index + 1 >= textLength) {
-        return createCharAndUpdateIndex('\\', 1);
+        setCharAndUpdateIndex('\\', 1);
+        return;
       }
-      return parsePhpEscapeSequence();
+      parsePhpEscapeSequence();
+      return;
     }
-    return createCharAndUpdateIndex(ch, 1);
+    setCharAndUpdateIndex(ch, 1);
   }
 
-  abstract SourceCharacter parsePhpEscapeSequence();
+  abstract void parsePhpEscapeSequence();
 
-  SourceCharacter createCharAndUpdateIndex(char ch, int length) {
-    int startIndex = index;
+  void setCharAndUpdateIndex(char ch, int length) {
+    currentChar = ch;
+    currentStartIndex = index;
     index += length;
-    return new SourceCharacter(source, new IndexRange(startIndex, index), ch, length > 1);
   }
 
   private static class SingleQuotedStringCharacterParser extends PhpStringCharacterParser {
@@ -112,14 +146,14 @@ public abstract class PhpStringCharacterParser implements CharacterParser {
       super(source);
     }
 
-    SourceCharacter parsePhpEscapeSequence() {
+    void parsePhpEscapeSequence() {
       char charAfterBackslash = sourceText.charAt(index + 1);
       if (charAfterBackslash == '\'') {
-        return createCharAndUpdateIndex('\'', 2);
+        setCharAndUpdateIndex('\'', 2);
       } else if (charAfterBackslash == '\\') {
-        return createCharAndUpdateIndex('\\', 2);
+        setCharAndUpdateIndex('\\', 2);
       } else {
-        return createCharAndUpdateIndex('\\', 1);
+        setCharAndUpdateIndex('\\', 1);
       }
     }
   }
@@ -134,48 +168,59 @@ public abstract class PhpStringCharacterParser implements CharacterParser {
       super(source);
     }
 
-    SourceCharacter parsePhpEscapeSequence() {
+    void parsePhpEscapeSequence() {
       char charAfterBackslash = sourceText.charAt(index + 1);
       switch (charAfterBackslash) {
         case '\\':
-          return createCharAndUpdateIndex('\\', 2);
+          setCharAndUpdateIndex('\\', 2);
+          break;
         case '"':
-          return createCharAndUpdateIndex('"', 2);
+          setCharAndUpdateIndex('"', 2);
+          break;
         case 'n':
-          return createCharAndUpdateIndex('\n', 2);
+          setCharAndUpdateIndex('\n', 2);
+          break;
         case 'r':
-          return createCharAndUpdateIndex('\r', 2);
+          setCharAndUpdateIndex('\r', 2);
+          break;
         case 't':
-          return createCharAndUpdateIndex('\t', 2);
+          setCharAndUpdateIndex('\t', 2);
+          break;
         case 'f':
-          return createCharAndUpdateIndex('\f', 2);
+          setCharAndUpdateIndex('\f', 2);
+          break;
         case 'e':
-          return createCharAndUpdateIndex('\u001b', 2);
+          setCharAndUpdateIndex('\u001b', 2);
+          break;
         case 'v':
-          return createCharAndUpdateIndex('\u000b', 2);
+          setCharAndUpdateIndex('\u000b', 2);
+          break;
         case '$':
-          return createCharAndUpdateIndex('$', 2);
+          setCharAndUpdateIndex('$', 2);
+          break;
         case 'u':
-          Matcher unicodeMatcher = UNICODE_PATTERN.matcher(sourceText.substring(index + 1));
-          if (unicodeMatcher.find()) {
-            String hexValue = unicodeMatcher.group(1);
-            return createCharAndUpdateIndex((char) Integer.parseInt(hexValue, 16), hexValue.length() + 4);
-          }
-          return createCharAndUpdateIndex('\\', 1);
+          parseNumericEscapeSequence(UNICODE_PATTERN, 16, 4);
+          break;
         case 'x':
-          Matcher hexMatcher = HEX_PATTERN.matcher(sourceText.substring(index + 1));
-          if (hexMatcher.find()) {
-            String hexValue = hexMatcher.group(1);
-            return createCharAndUpdateIndex((char) Integer.parseInt(hexValue, 16), hexValue.length() + 2);
-          }
-          return createCharAndUpdateIndex('\\', 1);
+          parseNumericEscapeSequence(HEX_PATTERN, 16, 2);
+          break;
         default:
-          Matcher octalMatcher = OCTAL_PATTERN.matcher(sourceText.substring(index + 1));
-          if (octalMatcher.find()) {
-            String octalValue = octalMatcher.group(1);
-            return createCharAndUpdateIndex((char) Integer.parseInt(octalValue, 8), octalValue.length() + 1);
-          }
-          return createCharAndUpdateIndex('\\', 1);
+          parseNumericEscapeSequence(OCTAL_PATTERN, 8, 1);
+          break;
+      }
+    }
+
+    /**
+     * @param syntaxLength number of characters of the escape sequence besides its digits
+     */
+    private void parseNumericEscapeSequence(Pattern pattern, int radix, int syntaxLength) {
+      // the region starts after the backslash, without copying the remaining text
+      Matcher matcher = pattern.matcher(sourceText).region(index + 1, textLength);
+      if (matcher.find()) {
+        String value = matcher.group(1);
+        setCharAndUpdateIndex((char) Integer.parseInt(value, radix), value.length() + syntaxLength);
+      } else {
+        setCharAndUpdateIndex('\\', 1);
       }
     }
   }
@@ -21,13 +21,17 @@ package org.sonarsource.analyzer.commons.regex;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
 import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.regex.ast.FlagSet;
 import org.sonarsource.analyzer.commons.regex.ast.SourceCharacter;
 import org.sonarsource.analyzer.commons.regex.java.JavaCharacterParser;
 import org.sonarsource.analyzer.commons.regex.java.JavaRegexSource;
 import org.sonarsource.analyzer.commons.regex.java.JavaUnicodeEscapeParser;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CharacterParsingTest {
 
@@ -63,6 +67,68 @@ class CharacterParsingTest {
       .startsWith('\\', '\\', 'u', '+', '[');
   }
 
+  @Test
+  void primitiveAccessors() {
+    RegexSource regexSource = new JavaRegexSource("a\\u0062\\n\\101\\");
+    JavaCharacterParser characterParser = new JavaCharacterParser(regexSource);
+    List<String> characters = new ArrayList<>();
+    while (!characterParser.isAtEnd()) {
+      SourceCharacter current = characterParser.getCurrent();
+      assertThat(characterParser.getCurrentChar()).isEqualTo(current.getCharacter());
+      assertThat(characterParser.getCurrentStartIndex()).isEqualTo(current.getRange().getBeginningOffset());
+      assertThat(characterParser.getCurrentEndIndex()).isEqualTo(current.getRange().getEndingOffset());
+      assertThat(characterParser.isCurrentEscapeSequence()).isEqualTo(current.isEscapeSequence());
+      characters.add(current.getCharacter() + " " + current.getRange() + " " + current.isEscapeSequence());
+      characterParser.moveNext();
+    }
+    assertThat(characters).containsExactly("a 0-1 false", "b 1-7 true", "\n 7-9 true", "A 9-13 true", "\\ 13-14 false");
+    assertThatThrownBy(characterParser::getCurrentChar).isInstanceOf(NoSuchElementException.class);
+  }
+
+  @Test
+  void lexerWithCharacterParserWithoutPrimitiveAccessors() {
+    RegexSource regexSource = new JavaRegexSource("a\\tb");
+    JavaCharacterParser delegate = new JavaCharacterParser(regexSource);
+    CharacterParser characterParser = new CharacterParser() {
+      @Override
+      public void moveNext() {
+        delegate.moveNext();
+      }
+
+      @Override
+      public SourceCharacter getCurrent() {
+        return delegate.getCurrent();
+      }
+
+      @Override
+      public boolean isAtEnd() {
+        return delegate.isAtEnd();
+      }
+
+      @Override
+      public void resetTo(int index) {
+        delegate.resetTo(index);
+      }
+    };
+    RegexLexer lexer = new RegexLexer(regexSource, characterParser);
+    assertThat(lexer.currentIs("a\tb")).isTrue();
+    lexer.moveNext();
+    assertThat(lexer.getCurrent().getRange()).hasToString("1-3");
+    assertThat(lexer.getCurrent().isEscapeSequence()).isTrue();
+    assertThat(lexer.getCurrent()).isSameAs(lexer.getCurrent());
+    lexer.moveNext(2);
+    assertThat(lexer.isAtEnd()).isTrue();
+    assertThat(lexer.getCurrentStartIndex()).isEqualTo(4);
+  }
+
+  @Test
+  void escapedBackslashesInFreeSpacingMode() {
+    // switching to free-spacing mode goes back in the decoded characters, which are not decoded again
+    RegexParseResult result = new RegexParser(new JavaRegexSource("\\\\\\\\u+[a-f]{4}"), new FlagSet(Pattern.COMMENTS)).parse();
+    assertThat(result.hasSyntaxErrors()).isFalse();
+    assertThat(result.getResult().getText()).isEqualTo("\\\\\\\\u+[a-f]{4}");
+  }
+
   private static List<SourceCharacter> parseJavaCharacters(RegexSource regexSource) {
     JavaCharacterParser characterParser = new JavaCharacterParser(regexSource);
     List<SourceCharacter> sourceCharacters = new ArrayList<>();
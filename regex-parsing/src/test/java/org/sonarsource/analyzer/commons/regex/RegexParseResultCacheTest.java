@@ -0,0 +1,170 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.regex.ast.FlagSet;
+import org.sonarsource.analyzer.commons.regex.java.JavaRegexSource;
+import org.sonarsource.analyzer.commons.regex.php.PhpRegexSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RegexParseResultCacheTest {
+
+  @Test
+  void results_are_shared_by_sources_of_the_same_dialect() {
+    RegexParseResultCache cache = new RegexParseResultCache(10);
+    RegexParseResult result = cache.parse(new JavaRegexSource("\\s+"), new FlagSet());
+    assertThat(result.hasSyntaxErrors()).isFalse();
+    assertThat(cache.parse(new JavaRegexSource("\\s+"), new FlagSet())).isSameAs(result);
+
+    assertThat(cache.parse(new JavaRegexSource("\\s+"), new FlagSet(Pattern.CASE_INSENSITIVE))).isNotSameAs(result);
+    assertThat(cache.parse(new PhpRegexSource("\\s+", '\''), new FlagSet())).isNotSameAs(result);
+    assertThat(cache.parse(new JavaRegexSource("\\s*"), new FlagSet())).isNotSameAs(result);
+
+    // escape sequences differ between single and double quoted PHP strings
+    RegexParseResult singleQuoted = cache.parse(new PhpRegexSource("\\s+", '\''), new FlagSet());
+    assertThat(cache.parse(new PhpRegexSource("\\s+", '\''), new FlagSet())).isSameAs(singleQuoted);
+    assertThat(cache.parse(new PhpRegexSource("\\s+", '"'), new FlagSet())).isNotSameAs(singleQuoted);
+
+    assertThat(cache.size()).isEqualTo(5);
+    assertThat(cache.hitCount()).isEqualTo(3);
+    assertThat(cache.missCount()).isEqualTo(5);
+    assertThat(cache.hitRate()).isEqualTo(3.0 / 8);
+    assertThat(cache.evictionCount()).isZero();
+  }
+
+  @Test
+  void least_recently_used_results_are_evicted() {
+    RegexParseResultCache cache = new RegexParseResultCache(2);
+    assertThat(cache.hitRate()).isZero();
+    RegexParseResult a = cache.parse(new JavaRegexSource("a"), new FlagSet());
+    RegexParseResult b = cache.parse(new JavaRegexSource("b"), new FlagSet());
+    cache.parse(new JavaRegexSource("a"), new FlagSet());
+    cache.parse(new JavaRegexSource("c"), new FlagSet());
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.evictionCount()).isEqualTo(1);
+    assertThat(cache.parse(new JavaRegexSource("a"), new FlagSet())).isSameAs(a);
+    assertThat(cache.parse(new JavaRegexSource("b"), new FlagSet())).isNotSameAs(b);
+    assertThat(cache.evictionCount()).isEqualTo(2);
+
+    assertThatThrownBy(() -> new RegexParseResultCache(0))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Maximum size of the cache should be positive: 0");
+  }
+
+  @Test
+  void syntax_errors_are_cached() {
+    RegexParseResultCache cache = new RegexParseResultCache(10);
+    RegexParseResult result = cache.parse(new PhpRegexSource("/(a/", '\''), new FlagSet());
+    assertThat(result.hasSyntaxErrors()).isTrue();
+    assertThat(cache.parse(new PhpRegexSource("/(a/", '\''), new FlagSet())).isSameAs(result);
+  }
+
+  @Test
+  void verdicts_are_memoized_with_the_result() {
+    RegexParseResultCache cache = new RegexParseResultCache(1);
+    List<RegexParseResult> computed = new ArrayList<>();
+    String verdict = cache.verdict(new JavaRegexSource("a|b"), new FlagSet(), "finder", result -> {
+      computed.add(result);
+      return "verdict";
+    });
+    assertThat(verdict).isEqualTo("verdict");
+    assertThat(cache.<String>verdict(new JavaRegexSource("a|b"), new FlagSet(), "finder", result -> "other")).isEqualTo("verdict");
+    assertThat(cache.<String>verdict(new JavaRegexSource("a|b"), new FlagSet(), "other finder", result -> "other")).isEqualTo("other");
+    assertThat(computed).containsExactly(cache.parse(new JavaRegexSource("a|b"), new FlagSet()));
+
+    // evicted along with the result
+    cache.parse(new JavaRegexSource("c"), new FlagSet());
+    assertThat(cache.<String>verdict(new JavaRegexSource("a|b"), new FlagSet(), "finder", result -> "recomputed")).isEqualTo("recomputed");
+  }
+
+  @Test
+  void null_verdicts_are_memoized() {
+    RegexParseResultCache cache = new RegexParseResultCache(1);
+    List<RegexParseResult> computed = new ArrayList<>();
+    assertThat(cache.<String>verdict(new JavaRegexSource("a|b"), new FlagSet(), "finder", result -> {
+      computed.add(result);
+      return null;
+    })).isNull();
+    assertThat(cache.<String>verdict(new JavaRegexSource("a|b"), new FlagSet(), "finder", result -> "other")).isNull();
+    assertThat(computed).hasSize(1);
+  }
+
+  @Test
+  void results_do_not_refer_to_the_parsed_source() {
+    RegexParseResultCache cache = new RegexParseResultCache(10);
+    PhpRegexSource source = new PhpRegexSource("/\\u0041(?P<name>\\d+)\\n/", '"');
+    RegexParseResult result = cache.parse(source, new FlagSet());
+    RegexParseResult expected = new RegexParser(source, new FlagSet()).parse();
+
+    RegexSource detachedSource = result.getResult().getSource();
+    assertThat(detachedSource).isInstanceOf(RegexParseResultCache.DetachedRegexSource.class);
+    assertThat(detachedSource.getSourceText()).isEqualTo(source.getSourceText());
+    assertThat(detachedSource.features()).isEqualTo(source.features());
+    // same dialect as the source
+    assertThat(cache.parse(new PhpRegexSource(source.getSourceText(), '"'), new FlagSet())).isSameAs(result);
+    assertThat(result.hasSyntaxErrors()).isEqualTo(expected.hasSyntaxErrors());
+    assertThat(result.getResult().getRange()).isEqualTo(expected.getResult().getRange());
+    assertThat(result.getResult().getClass()).isEqualTo(expected.getResult().getClass());
+
+    CharacterParser detachedParser = detachedSource.createCharacterParser();
+    CharacterParser parser = source.createCharacterParser();
+    for (; parser.isNotAtEnd(); parser.moveNext(), detachedParser.moveNext()) {
+      assertThat(detachedParser.getCurrent().getRange()).isEqualTo(parser.getCurrent().getRange());
+      assertThat(detachedParser.getCurrent().getCharacter()).isEqualTo(parser.getCurrent().getCharacter());
+      assertThat(detachedParser.getCurrent().getSource()).isSameAs(detachedSource);
+    }
+    assertThat(detachedParser.isAtEnd()).isTrue();
+    assertThatThrownBy(detachedParser::getCurrent).isInstanceOf(NoSuchElementException.class);
+    parser.resetTo(2);
+    detachedParser.resetTo(2);
+    assertThat(detachedParser.getCurrent().getRange()).isEqualTo(parser.getCurrent().getRange());
+  }
+
+  @Test
+  void concurrent_parsing() throws Exception {
+    RegexParseResultCache cache = new RegexParseResultCache(100);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<RegexParseResult>> results = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        String regex = "[a-z]{" + (i % 10) + "}";
+        results.add(executor.submit(() -> cache.parse(new JavaRegexSource(regex), new FlagSet())));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertThat(results.get(i).get()).isSameAs(cache.parse(new JavaRegexSource("[a-z]{" + (i % 10) + "}"), new FlagSet()));
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(cache.size()).isEqualTo(10);
+  }
+
+}
@@ -22,6 +22,7 @@ package org.sonarsource.analyzer.commons.regex.ast;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
 import org.sonarsource.analyzer.commons.regex.RegexFeature;
 import org.sonarsource.analyzer.commons.regex.RegexParseResult;
@@ -137,6 +138,18 @@ class AutomatonStateTest {
           "CharacterTree 'i' <flags: i:3 U:47>");
   }
 
+  @Test
+  void state_ids() {
+    RegexParseResult result = assertSuccessfulParseResult("a(b|c)*+d(?=e)", RegexFeature.POSSESSIVE_QUANTIFIER);
+    Collection<AutomatonState> states = allStates(result);
+    assertThat(result.getStateCount()).isEqualTo(states.size());
+    assertThat(states.stream().map(AutomatonState::id))
+      .containsExactlyInAnyOrderElementsOf(IntStream.range(0, states.size()).boxed().collect(Collectors.toList()));
+    assertThat(result.getStartState().id()).isZero();
+
+    assertThat(new FinalState(new FlagSet()).id()).isEqualTo(AutomatonState.NO_ID);
+  }
+
   private static String printClassAndFlags(AutomatonState state) {
     String content = (state instanceof CharacterTree) ? " '" + ((CharacterTree) state).characterAsString() + "' " : "";
     return state.getClass().getSimpleName() + content + printFlags(state.activeFlags());
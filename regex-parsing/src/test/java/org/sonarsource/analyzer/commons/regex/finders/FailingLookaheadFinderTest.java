@@ -19,10 +19,17 @@
  */
 package org.sonarsource.analyzer.commons.regex.finders;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.sonarsource.analyzer.commons.regex.MatchType;
 import org.sonarsource.analyzer.commons.regex.RegexIssueReporter;
 import org.sonarsource.analyzer.commons.regex.RegexParseResult;
+import org.sonarsource.analyzer.commons.regex.RegexParserTestUtils;
+import org.sonarsource.analyzer.commons.regex.ast.RegexSyntaxElement;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 class FailingLookaheadFinderTest {
 
@@ -52,6 +59,18 @@ class FailingLookaheadFinderTest {
     Verifier.verify(new FailingLookaheadFinderCheckWithMatchType(MatchType.FULL), "FailingLookaheadFinderFullMatch.yml");
   }
 
+  @Test
+  void each_lookahead_is_checked_with_its_own_work_budget() {
+    String letters = String.join("", Collections.nCopies(40, "[a-z]"));
+    // the back reference can't be compiled into a RegexNfa, so the automata checkers are used
+    String alternative = "(?=" + letters + ")" + letters + "\\\\1";
+    RegexParseResult parseResult = RegexParserTestUtils.parseRegex("(x)(?:" + String.join("|", Collections.nCopies(200, alternative)) + ")");
+    List<RegexSyntaxElement> issues = new ArrayList<>();
+    new FailingLookaheadFinder((element, message, cost, secondaries) -> issues.add(element), parseResult.getFinalState()).visit(parseResult);
+    // all the lookaheads share the analysis context of the regex, but none of them should exhaust the budget of the others
+    assertThat(issues).isEmpty();
+  }
+
   static class FailingLookaheadFinderCheck extends FinderCheck {
     @Override
     public void checkRegex(RegexParseResult parseResult, RegexIssueReporter.ElementIssue regexElementIssueReporter, RegexIssueReporter.InvocationIssue invocationIssueReporter) {
@@ -28,6 +28,7 @@ import org.sonarsource.analyzer.commons.regex.ast.FlagSet;
 import org.sonarsource.analyzer.commons.regex.ast.IndexRange;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
 
 class AutomataCheckerTest {
@@ -50,4 +51,28 @@ class AutomataCheckerTest {
     assertThat(supersetAutomataChecker.checkAuto1AndAuto2Successors(nonDotClassSubAutomaton, nonDotClassSubAutomaton, true, false)).isTrue();
     assertThat(intersectAutomataChecker.checkAuto1AndAuto2Successors(nonDotClassSubAutomaton, nonDotClassSubAutomaton, true, false)).isTrue();
   }
+
+  @Test
+  void test_AutomataChecker_reused_for_several_regexes() {
+    IntersectAutomataChecker checker = new IntersectAutomataChecker(false);
+    SubAutomaton ab = RegexTreeHelperTest.parseSubAutomaton("ab", false, 0);
+    assertThat(checker.check(ab, RegexTreeHelperTest.parseSubAutomaton("a[b-d]", false, 0))).isTrue();
+    assertThat(checker.check(ab, RegexTreeHelperTest.parseSubAutomaton("ac", false, 0))).isFalse();
+    assertThat(checker.check(ab, RegexTreeHelperTest.parseSubAutomaton("a.", false, 0))).isTrue();
+    assertThat(checker.check(RegexTreeHelperTest.parseSubAutomaton("ac", false, 0), ab)).isFalse();
+  }
+
+  @Test
+  void test_AutomataChecker_with_work_budget() {
+    SubAutomaton sequence = RegexTreeHelperTest.parseSubAutomaton("abcdef", false, 0);
+    SubAutomaton plus = RegexTreeHelperTest.parseSubAutomaton("[a-f]+", false, 0);
+    assertThat(new SupersetAutomataChecker(false).check(plus, sequence)).isTrue();
+    // Once the budget is spent, the neutral answer of superset is returned
+    assertThat(new SupersetAutomataChecker(false, 5).check(plus, sequence)).isFalse();
+    assertThat(new IntersectAutomataChecker(false).check(plus, sequence)).isTrue();
+    assertThat(new IntersectAutomataChecker(false, 5).check(plus, sequence)).isFalse();
+    assertThatThrownBy(() -> new IntersectAutomataChecker(false, -1))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Work budget should be positive: -1");
+  }
 }
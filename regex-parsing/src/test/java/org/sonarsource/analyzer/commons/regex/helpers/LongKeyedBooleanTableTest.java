@@ -0,0 +1,60 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongKeyedBooleanTableTest {
+
+  @Test
+  void put_and_get() {
+    LongKeyedBooleanTable table = new LongKeyedBooleanTable();
+    assertThat(table.get(0)).isEqualTo(LongKeyedBooleanTable.ABSENT);
+    assertThat(table.put(0, true)).isTrue();
+    assertThat(table.put(Long.MAX_VALUE, false)).isFalse();
+    assertThat(table.get(0)).isEqualTo(1);
+    assertThat(table.get(Long.MAX_VALUE)).isZero();
+    assertThat(table.size()).isEqualTo(2);
+
+    table.put(0, false);
+    assertThat(table.get(0)).isZero();
+    assertThat(table.size()).isEqualTo(2);
+  }
+
+  @Test
+  void grow_and_clear() {
+    LongKeyedBooleanTable table = new LongKeyedBooleanTable();
+    for (long key = 0; key < 10_000; key++) {
+      table.put(key << 20, key % 3 == 0);
+    }
+    assertThat(table.size()).isEqualTo(10_000);
+    for (long key = 0; key < 10_000; key++) {
+      assertThat(table.get(key << 20)).isEqualTo(key % 3 == 0 ? 1 : 0);
+    }
+    assertThat(table.get(1)).isEqualTo(LongKeyedBooleanTable.ABSENT);
+
+    table.clear();
+    assertThat(table.size()).isZero();
+    assertThat(table.get(0)).isEqualTo(LongKeyedBooleanTable.ABSENT);
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex.helpers;
+
+import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.regex.RegexParseResult;
+import org.sonarsource.analyzer.commons.regex.ast.DisjunctionTree;
+import org.sonarsource.analyzer.commons.regex.ast.FlagSet;
+import org.sonarsource.analyzer.commons.regex.ast.RegexTree;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.sonarsource.analyzer.commons.regex.helpers.SimplifiedRegexCharacterClassTest.parseRegex;
+
+class NfaProductCheckerTest {
+
+  private static final int BUDGET = 10_000;
+
+  @Test
+  void intersects_with_bounded_repetitions() {
+    RegexNfa[] nfas = alternatives("a{2,3}|aa|aaaa|b{2}");
+    assertThat(NfaProductChecker.intersects(nfas[0], false, nfas[1], false, false, BUDGET)).isTrue();
+    assertThat(NfaProductChecker.intersects(nfas[0], false, nfas[2], false, true, BUDGET)).isFalse();
+    assertThat(NfaProductChecker.intersects(nfas[0], true, nfas[2], false, true, BUDGET)).isFalse();
+    assertThat(NfaProductChecker.intersects(nfas[0], false, nfas[2], true, false, BUDGET)).isTrue();
+    assertThat(NfaProductChecker.intersects(nfas[0], false, nfas[3], true, true, BUDGET)).isFalse();
+  }
+
+  @Test
+  void superset_with_bounded_repetitions() {
+    RegexNfa[] nfas = alternatives("a{2,3}|aa|aaaa|a{1,4}");
+    assertThat(NfaProductChecker.supersetOf(nfas[0], false, nfas[1], false, false, BUDGET)).isTrue();
+    assertThat(NfaProductChecker.supersetOf(nfas[1], false, nfas[0], false, true, BUDGET)).isFalse();
+    assertThat(NfaProductChecker.supersetOf(nfas[0], false, nfas[2], false, true, BUDGET)).isFalse();
+    assertThat(NfaProductChecker.supersetOf(nfas[3], false, nfas[0], false, false, BUDGET)).isTrue();
+    assertThat(NfaProductChecker.supersetOf(nfas[0], true, nfas[2], false, true, BUDGET)).isFalse();
+    assertThat(NfaProductChecker.supersetOf(nfas[0], false, nfas[2], true, false, BUDGET)).isTrue();
+  }
+
+  @Test
+  void superset_with_loops() {
+    RegexNfa[] nfas = alternatives("[ab]+|(?:ab)+|(?:ab|c)+");
+    assertThat(NfaProductChecker.supersetOf(nfas[0], false, nfas[1], false, false, BUDGET)).isTrue();
+    assertThat(NfaProductChecker.supersetOf(nfas[1], false, nfas[0], false, true, BUDGET)).isFalse();
+    assertThat(NfaProductChecker.supersetOf(nfas[2], false, nfas[1], false, false, BUDGET)).isTrue();
+    assertThat(NfaProductChecker.supersetOf(nfas[0], false, nfas[2], false, true, BUDGET)).isFalse();
+    assertThat(NfaProductChecker.intersects(nfas[0], false, nfas[2], false, false, BUDGET)).isTrue();
+  }
+
+  @Test
+  void work_budget_returns_default_answer() {
+    RegexNfa[] nfas = alternatives("a{10}b|a{10}c|a{0,20}b|a{0,30}b");
+    assertThat(NfaProductChecker.intersects(nfas[0], false, nfas[1], false, true, 5)).isTrue();
+    assertThat(NfaProductChecker.intersects(nfas[0], false, nfas[1], false, true, BUDGET)).isFalse();
+    assertThat(NfaProductChecker.supersetOf(nfas[2], false, nfas[3], false, true, 5)).isTrue();
+    assertThat(NfaProductChecker.supersetOf(nfas[2], false, nfas[3], false, true, BUDGET)).isFalse();
+  }
+
+  @Test
+  void automata_must_share_partition() {
+    RegexNfa first = RegexNfaTest.nfa("a");
+    RegexNfa second = RegexNfaTest.nfa("b");
+    assertThatThrownBy(() -> NfaProductChecker.intersects(first, false, second, false, false, BUDGET))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Automata should share their code point partition");
+    assertThatThrownBy(() -> NfaProductChecker.supersetOf(first, false, second, false, false, BUDGET))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void context_uses_automata() {
+    RegexParseResult result = parseRegex("a{2,3}|aa", new FlagSet());
+    RegexAnalysisContext context = result.getAnalysisContext();
+    DisjunctionTree disjunction = (DisjunctionTree) result.getResult();
+    SubAutomaton first = alternative(disjunction, 0);
+    SubAutomaton second = alternative(disjunction, 1);
+    assertThat(context.nfa(first)).isNotNull().isSameAs(context.nfa(first));
+    assertThat(context.supersetOf(first, second, false)).isTrue();
+    assertThat(context.supersetOf(second, first, true)).isFalse();
+  }
+
+  private static RegexNfa[] alternatives(String regex) {
+    RegexParseResult result = parseRegex(regex, new FlagSet());
+    RegexAnalysisContext context = result.getAnalysisContext();
+    DisjunctionTree disjunction = (DisjunctionTree) result.getResult();
+    RegexNfa[] nfas = new RegexNfa[disjunction.getAlternatives().size()];
+    for (int i = 0; i < nfas.length; i++) {
+      nfas[i] = context.nfa(alternative(disjunction, i));
+    }
+    return nfas;
+  }
+
+  private static SubAutomaton alternative(DisjunctionTree disjunction, int index) {
+    RegexTree alternative = disjunction.getAlternatives().get(index);
+    return new SubAutomaton(alternative, alternative.continuation(), false);
+  }
+
+}
@@ -27,11 +27,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 class OrderedAutomataPairCacheTest {
 
-  AbstractAutomataChecker.OrderedAutomataPairCache<String> cache = new AbstractAutomataChecker.OrderedAutomataPairCache<>();
+  AbstractAutomataChecker.OrderedAutomataPairCache<String> cache = new AbstractAutomataChecker.OrderedAutomataPairCache<>(AbstractAutomataChecker.DEFAULT_WORK_BUDGET);
 
   @Test
   void test() {
-    for (int i = 0; i < AbstractAutomataChecker.OrderedAutomataPairCache.MAX_CACHE_SIZE; i++) {
+    for (int i = 0; i < AbstractAutomataChecker.DEFAULT_WORK_BUDGET; i++) {
       AbstractAutomataChecker.OrderedAutomataPair pair = createPair();
       assertThat(cache.startCalculation(pair, "default")).isNull();
       assertThat(cache.startCalculation(pair, "default")).isEqualTo("default");
@@ -0,0 +1,98 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex.helpers;
+
+import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.regex.RegexParseResult;
+import org.sonarsource.analyzer.commons.regex.ast.AutomatonState;
+import org.sonarsource.analyzer.commons.regex.ast.BoundaryTree;
+import org.sonarsource.analyzer.commons.regex.ast.DisjunctionTree;
+import org.sonarsource.analyzer.commons.regex.ast.FlagSet;
+import org.sonarsource.analyzer.commons.regex.ast.RegexTree;
+import org.sonarsource.analyzer.commons.regex.ast.SequenceTree;
+import org.sonarsource.analyzer.commons.regex.ast.StartState;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonarsource.analyzer.commons.regex.helpers.SimplifiedRegexCharacterClassTest.parseRegex;
+
+class RegexAnalysisContextTest {
+
+  @Test
+  void context_is_shared_by_parse_result() {
+    RegexParseResult result = parseRegex("a|b", new FlagSet());
+    assertThat(result.getAnalysisContext()).isSameAs(result.getAnalysisContext());
+    assertThat(parseRegex("a|b", new FlagSet()).getAnalysisContext()).isNotSameAs(result.getAnalysisContext());
+  }
+
+  @Test
+  void intersects_and_superset_of_alternatives() {
+    RegexParseResult result = parseRegex("[a-c]x|bx|[d-e]y", new FlagSet());
+    RegexAnalysisContext context = result.getAnalysisContext();
+    DisjunctionTree disjunction = (DisjunctionTree) result.getResult();
+    SubAutomaton first = alternative(disjunction, 0);
+    SubAutomaton second = alternative(disjunction, 1);
+    SubAutomaton third = alternative(disjunction, 2);
+
+    for (int i = 0; i < 2; i++) {
+      // answers are the same when they are read from the tables of the previous iteration
+      assertThat(context.supersetOf(first, second, false)).isTrue();
+      assertThat(context.supersetOf(second, first, false)).isFalse();
+      assertThat(context.intersects(first, second, false)).isTrue();
+      assertThat(context.intersects(first, third, true)).isFalse();
+      assertThat(context.supersetOf(third, second, true)).isFalse();
+    }
+  }
+
+  @Test
+  void character_classes_are_computed_once() {
+    RegexParseResult result = parseRegex("[a-c]b", new FlagSet());
+    RegexAnalysisContext context = result.getAnalysisContext();
+    RegexTree characterClass = ((SequenceTree) result.getResult()).getItems().get(0);
+    assertThat(context.characterClass(characterClass))
+      .isNotNull()
+      .isSameAs(context.characterClass(characterClass));
+    assertThat(context.characterClass(result.getResult())).isNull();
+  }
+
+  @Test
+  void reachability() {
+    RegexParseResult result = parseRegex("a?^b", new FlagSet());
+    RegexAnalysisContext context = result.getAnalysisContext();
+    BoundaryTree boundary = (BoundaryTree) ((SequenceTree) result.getResult()).getItems().get(1);
+    StartState start = result.getStartState();
+
+    for (int i = 0; i < 2; i++) {
+      assertThat(context.canReachWithoutConsumingInput(start, boundary)).isTrue();
+      assertThat(context.canReachWithoutConsumingInput(start, result.getFinalState())).isFalse();
+      assertThat(context.canReachWithoutConsumingInputNorCrossingBoundaries(boundary, result.getFinalState())).isFalse();
+      assertThat(context.canReachWithConsumingInput(start, boundary)).isTrue();
+    }
+    // states which were not numbered are supported
+    AutomatonState newStart = new StartState(boundary, new FlagSet());
+    assertThat(context.canReachWithoutConsumingInput(newStart, boundary)).isTrue();
+    assertThat(context.canReachWithoutConsumingInputNorCrossingBoundaries(newStart, result.getFinalState())).isFalse();
+  }
+
+  private static SubAutomaton alternative(DisjunctionTree disjunction, int index) {
+    RegexTree alternative = disjunction.getAlternatives().get(index);
+    return new SubAutomaton(alternative, alternative.continuation(), false);
+  }
+
+}
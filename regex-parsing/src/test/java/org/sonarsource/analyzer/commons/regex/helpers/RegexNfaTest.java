@@ -0,0 +1,78 @@
+/*
+ * SonarSource Analyzers Regex Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.regex.helpers;
+
+import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.regex.RegexParseResult;
+import org.sonarsource.analyzer.commons.regex.ast.FlagSet;
+import org.sonarsource.analyzer.commons.regex.ast.RegexTree;
+import org.sonarsource.analyzer.commons.regex.ast.RepetitionTree;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonarsource.analyzer.commons.regex.helpers.SimplifiedRegexCharacterClassTest.parseRegex;
+
+class RegexNfaTest {
+
+  @Test
+  void bounded_repetitions_are_unrolled() {
+    RegexNfa nfa = nfa("a{2,3}");
+    assertThat(nfa).isNotNull();
+    assertThat(nfa.stateCount()).isGreaterThan(nfa("a").stateCount());
+    assertThat(nfa.isEmpty()).isFalse();
+    assertThat(nfa("(?:ab){0,2}c").isEmpty()).isFalse();
+    assertThat(nfa("[ab]*c+").isEmpty()).isFalse();
+  }
+
+  @Test
+  void empty_automata() {
+    assertThat(nfa("[^\\s\\S]").isEmpty()).isTrue();
+    assertThat(nfa("x[^\\s\\S]{2}").isEmpty()).isTrue();
+    assertThat(nfa("x[^\\s\\S]{0,2}").isEmpty()).isFalse();
+  }
+
+  @Test
+  void unsupported_constructs() {
+    assertThat(nfa("a(?=b)")).isNull();
+    assertThat(nfa("(a)\\1")).isNull();
+    assertThat(nfa("a\\b")).isNull();
+    assertThat(nfa("^a$")).isNull();
+    assertThat(nfa("\\X")).isNull();
+  }
+
+  @Test
+  void start_inside_counted_repetition() {
+    RegexParseResult result = parseRegex("(?:ab){2}", new FlagSet());
+    RegexTree group = ((RepetitionTree) result.getResult()).getElement();
+    assertThat(RegexNfa.compile(new SubAutomaton(group, result.getFinalState(), false))).isNull();
+  }
+
+  @Test
+  void state_budget() {
+    RegexParseResult result = parseRegex("a{400}", new FlagSet());
+    assertThat(RegexNfa.compile(new SubAutomaton(result.getResult(), result.getFinalState(), false))).isNull();
+    assertThat(RegexNfa.compile(result.getResult(), result.getFinalState(), SimplifiedRegexCharacterClass::of, null, 2_000)).isNotNull();
+  }
+
+  static RegexNfa nfa(String regex) {
+    RegexParseResult result = parseRegex(regex, new FlagSet());
+    return RegexNfa.compile(new SubAutomaton(result.getResult(), result.getFinalState(), false));
+  }
+
+}
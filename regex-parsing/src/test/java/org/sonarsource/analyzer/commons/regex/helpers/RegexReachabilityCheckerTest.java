@@ -21,18 +21,22 @@ package org.sonarsource.analyzer.commons.regex.helpers;
 
 import java.util.Collections;
 import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.regex.RegexParseResult;
 import org.sonarsource.analyzer.commons.regex.RegexSource;
 import org.sonarsource.analyzer.commons.regex.ast.AutomatonState;
 import org.sonarsource.analyzer.commons.regex.ast.BoundaryTree;
 import org.sonarsource.analyzer.commons.regex.ast.FlagSet;
 import org.sonarsource.analyzer.commons.regex.ast.IndexRange;
+import org.sonarsource.analyzer.commons.regex.ast.SequenceTree;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.sonarsource.analyzer.commons.regex.ast.AutomatonState.TransitionType.EPSILON;
 import static org.sonarsource.analyzer.commons.regex.helpers.RegexReachabilityChecker.canReachWithoutConsumingInput;
 import static org.sonarsource.analyzer.commons.regex.helpers.RegexReachabilityChecker.canReachWithoutConsumingInputNorCrossingBoundaries;
+import static org.sonarsource.analyzer.commons.regex.helpers.SimplifiedRegexCharacterClassTest.parseRegex;
 
 class RegexReachabilityCheckerTest {
 
@@ -100,6 +104,37 @@ class RegexReachabilityCheckerTest {
     }
   }
 
+  @Test
+  void can_reach_numbered_states() {
+    RegexParseResult result1 = parseRegex("a(b|c)*d", new FlagSet());
+    RegexParseResult result2 = parseRegex("ab", new FlagSet());
+    SequenceTree sequence1 = (SequenceTree) result1.getResult();
+    SequenceTree sequence2 = (SequenceTree) result2.getResult();
+    RegexReachabilityChecker regexReachabilityChecker = new RegexReachabilityChecker(true);
+
+    assertThat(regexReachabilityChecker.canReach(sequence1.getItems().get(0), sequence1.getItems().get(2))).isTrue();
+    assertThat(regexReachabilityChecker.canReach(sequence1.getItems().get(2), sequence1.getItems().get(0))).isFalse();
+    // states of another regex have the same ids but are distinguished from the ones of the first regex
+    assertThat(sequence2.getItems().get(0).id()).isEqualTo(sequence1.getItems().get(0).id());
+    assertThat(regexReachabilityChecker.canReach(sequence2.getItems().get(0), sequence1.getItems().get(2))).isFalse();
+    assertThat(regexReachabilityChecker.canReach(sequence2.getItems().get(0), sequence2.getItems().get(1))).isTrue();
+  }
+
+  @Test
+  void can_reach_with_work_budget() {
+    RegexParseResult result = parseRegex("abcd", new FlagSet());
+    SequenceTree sequence = (SequenceTree) result.getResult();
+    AutomatonState start = sequence.getItems().get(0);
+    AutomatonState goal = sequence.getItems().get(3);
+
+    assertThat(new RegexReachabilityChecker(false, 3).canReach(start, goal)).isTrue();
+    // The budget does not allow to explore the states between start and goal
+    assertThat(new RegexReachabilityChecker(false, 2).canReach(start, goal)).isFalse();
+    assertThatThrownBy(() -> new RegexReachabilityChecker(false, 0))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Work budget should be positive: 0");
+  }
+
   @Test
   void can_reach_from_static_method() {
     AutomatonState start = mock(AutomatonState.class);
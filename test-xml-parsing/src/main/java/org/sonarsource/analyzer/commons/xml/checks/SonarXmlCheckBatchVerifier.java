@@ -0,0 +1,151 @@
+/*
+ * SonarSource Analyzers XML Parsing Test Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.checks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+
+/**
+ * Verifies a check on all the XML fixtures of a directory, using a pool of worker threads.
+ * <p>
+ * The issues raised on each fixture are expected to be the ones of its "Noncompliant" comments, if any. Instead of
+ * stopping at the first fixture which does not match, all the fixtures are verified, and a single {@link AssertionError}
+ * reports all the mismatches. As checks keep a state while scanning a file, each worker uses its own instance of the
+ * check, created by the given supplier.
+ * <p>
+ * Parsed fixtures are kept by the verifier, so that a fixture verified with several checks is only parsed once. The
+ * verification methods must then not be called concurrently.
+ */
+public final class SonarXmlCheckBatchVerifier {
+
+  private final int threadCount;
+  private final Map<Path, XmlFile> parsedFiles = new ConcurrentHashMap<>();
+
+  public SonarXmlCheckBatchVerifier() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public SonarXmlCheckBatchVerifier(int threadCount) {
+    if (threadCount < 1) {
+      throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+    }
+    this.threadCount = threadCount;
+  }
+
+  /**
+   * Verifies the fixtures of the directory named after the check, as the ones of {@link SonarXmlCheckVerifier}.
+   */
+  public void verifyIssues(Supplier<? extends SonarXmlCheck> checkFactory) {
+    verifyIssues(SonarXmlCheckVerifier.BASE_DIR.resolve(checkFactory.get().getClass().getSimpleName()), checkFactory);
+  }
+
+  /**
+   * @param fixturesDirectory directory whose ".xml" files, including the ones of its sub-directories, are verified
+   */
+  public void verifyIssues(Path fixturesDirectory, Supplier<? extends SonarXmlCheck> checkFactory) {
+    List<Path> fixtures = fixtures(fixturesDirectory);
+    ThreadLocal<SonarXmlCheck> workerCheck = ThreadLocal.withInitial(checkFactory);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount, new WorkerThreadFactory());
+    List<String> messages = new ArrayList<>();
+    List<Throwable> mismatches = new ArrayList<>();
+    try {
+      List<Future<Throwable>> results = new ArrayList<>();
+      for (Path fixture : fixtures) {
+        results.add(executor.submit(() -> verify(fixture, workerCheck.get())));
+      }
+      for (int i = 0; i < fixtures.size(); i++) {
+        Throwable mismatch = results.get(i).get();
+        if (mismatch != null) {
+          messages.add(fixtures.get(i) + System.lineSeparator() + mismatch.getMessage());
+          mismatches.add(mismatch);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Verification interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    if (!mismatches.isEmpty()) {
+      AssertionError error = new AssertionError(String.format("%d of %d fixtures do not match the issues of the check:%n%n%s",
+        mismatches.size(), fixtures.size(), String.join(String.format("%n%n"), messages)));
+      mismatches.forEach(error::addSuppressed);
+      throw error;
+    }
+  }
+
+  @CheckForNull
+  private Throwable verify(Path fixture, SonarXmlCheck check) {
+    try {
+      XmlFile xmlFile = parsedFiles.computeIfAbsent(fixture, path -> SonarXmlCheckVerifier.parse(path.toFile()));
+      Collection<Issue> issues = SonarXmlCheckVerifier.scan(xmlFile, check);
+      new SonarXmlCheckVerifier(xmlFile, issues).checkExpectedIssues();
+      return null;
+    } catch (AssertionError | RuntimeException e) {
+      return e;
+    }
+  }
+
+  private static List<Path> fixtures(Path directory) {
+    try (Stream<Path> files = Files.walk(directory)) {
+      return files
+        .filter(file -> Files.isRegularFile(file) && file.getFileName().toString().endsWith(".xml"))
+        .map(Path::normalize)
+        .sorted()
+        .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Unable to list the fixtures of directory %s", directory), e);
+    }
+  }
+
+  private static class WorkerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "xml-verification-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+}
@@ -47,13 +47,13 @@ import org.w3c.dom.Node;
 
 public class SonarXmlCheckVerifier {
 
-  private static final Path BASE_DIR = Paths.get("src/test/resources/checks/");
+  static final Path BASE_DIR = Paths.get("src/test/resources/checks/");
   private static final RuleKey RULE_KEY = RuleKey.of("repoKey", "ruleKey");
 
   private final Collection<Issue> issues;
   private final XmlFile file;
 
-  private SonarXmlCheckVerifier(XmlFile file, Collection<Issue> issues) {
+  SonarXmlCheckVerifier(XmlFile file, Collection<Issue> issues) {
     this.file = file;
     this.issues = issues;
   }
@@ -72,9 +72,11 @@ public class SonarXmlCheckVerifier {
 
   private static SonarXmlCheckVerifier createVerifier(String fileName, SonarXmlCheck check) {
     File file = new File(new File(BASE_DIR.toFile(), check.getClass().getSimpleName()), fileName);
+    XmlFile xmlFile = parse(file);
+    return new SonarXmlCheckVerifier(xmlFile, scan(xmlFile, check));
+  }
 
-    SensorContextTester context = SensorContextTester.create(BASE_DIR);
-
+  static XmlFile parse(File file) {
     String filePath = file.getPath();
     String content;
     try (Stream<String> lines = Files.lines(file.toPath())) {
@@ -90,20 +92,37 @@ public class SonarXmlCheckVerifier {
       .setCharset(StandardCharsets.UTF_8)
       .build();
 
-    context.fileSystem().add(defaultInputFile);
-
-    XmlFile xmlFile;
     try {
-      xmlFile = XmlFile.create(defaultInputFile);
+      return XmlFile.create(defaultInputFile);
     } catch (Exception e) {
       throw new IllegalStateException(String.format("Unable to scan xml file %s", filePath), e);
     }
+  }
 
+  static Collection<Issue> scan(XmlFile xmlFile, SonarXmlCheck check) {
+    SensorContextTester context = SensorContextTester.create(BASE_DIR);
+    context.fileSystem().add(xmlFile.getInputFile());
     check.scanFile(context, RULE_KEY, xmlFile);
-    return new SonarXmlCheckVerifier(xmlFile, context.allIssues());
+    return context.allIssues();
   }
 
   private void checkIssues() {
+    fileVerifier().assertOneOrMoreIssues();
+  }
+
+  /**
+   * Checks that the issues are the ones of the "Noncompliant" comments of the file, if any.
+   */
+  void checkExpectedIssues() {
+    SingleFileVerifier fileVerifier = fileVerifier();
+    if (issues.isEmpty()) {
+      fileVerifier.assertNoIssues();
+    } else {
+      fileVerifier.assertOneOrMoreIssues();
+    }
+  }
+
+  private SingleFileVerifier fileVerifier() {
     SingleFileVerifier fileVerifier = SingleFileVerifier.create(file.getInputFile().path(), StandardCharsets.UTF_8);
     addComments(fileVerifier, file.getDocument());
 
@@ -129,18 +148,14 @@ public class SonarXmlCheckVerifier {
           secondaryLocation.message());
       });
     });
-
-    fileVerifier.assertOneOrMoreIssues();
+    return fileVerifier;
   }
 
   private static void addComments(SingleFileVerifier fileVerifier, Node node) {
-    if (node.getNodeType() == Node.COMMENT_NODE) {
-      Comment comment = (Comment) node;
-      XmlTextRange range = XmlFile.nodeLocation(node);
+    XmlFile.visitPreOrder(node, Comment.class, comment -> {
+      XmlTextRange range = XmlFile.nodeLocation(comment);
       fileVerifier.addComment(range.getStartLine(), range.getStartColumn() + "<!--".length() + 1, comment.getNodeValue(), 0, 0);
-    }
-
-    XmlFile.children(node).forEach(child -> addComments(fileVerifier, child));
+    });
   }
 
   private void checkIssueOnFile(String expectedIssueMessage, int... secondaryLines) {
@@ -0,0 +1,116 @@
+/*
+ * SonarSource Analyzers XML Parsing Test Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.checks;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import org.junit.Test;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Document;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SonarXmlCheckBatchVerifierTest {
+
+  private static final Path FIXTURES = Paths.get("src/test/resources/checks/BatchTestCheck");
+
+  @Test
+  public void fixtures_match_issues() {
+    new SonarXmlCheckBatchVerifier(2).verifyIssues(BatchTestCheck::new);
+  }
+
+  @Test
+  public void all_mismatches_are_reported() {
+    SonarXmlCheckBatchVerifier verifier = new SonarXmlCheckBatchVerifier(2);
+    Throwable error = null;
+    try {
+      verifier.verifyIssues(FIXTURES, SilentCheck::new);
+    } catch (AssertionError e) {
+      error = e;
+    }
+    assertThat(error).isNotNull();
+    assertThat(error.getMessage())
+      .startsWith("2 of 3 fixtures do not match the issues of the check:")
+      .contains(FIXTURES.resolve("noncompliant.xml").toString())
+      .contains(FIXTURES.resolve("sub").resolve("nested.xml").toString())
+      .doesNotContain(FIXTURES.resolve("compliant.xml").toString());
+    assertThat(error.getSuppressed()).hasSize(2);
+  }
+
+  @Test
+  public void fixtures_are_parsed_once() {
+    Set<Document> firstDocuments = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    Set<Document> secondDocuments = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    SonarXmlCheckBatchVerifier verifier = new SonarXmlCheckBatchVerifier(2);
+
+    verifier.verifyIssues(FIXTURES, () -> new BatchTestCheck(firstDocuments));
+    verifier.verifyIssues(FIXTURES, () -> new BatchTestCheck(secondDocuments));
+
+    assertThat(firstDocuments).hasSize(3);
+    assertThat(secondDocuments).hasSize(3).containsAll(firstDocuments);
+  }
+
+  @Test
+  public void missing_directory() {
+    SonarXmlCheckBatchVerifier verifier = new SonarXmlCheckBatchVerifier();
+    Path directory = Paths.get("src/test/resources/checks/missing");
+    assertThatThrownBy(() -> verifier.verifyIssues(directory, SilentCheck::new))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage("Unable to list the fixtures of directory " + directory);
+  }
+
+  @Test
+  public void thread_count_should_be_positive() {
+    assertThatThrownBy(() -> new SonarXmlCheckBatchVerifier(0))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Thread count must be positive: 0");
+  }
+
+  private static class BatchTestCheck extends SonarXmlCheck {
+
+    private final Set<Document> scannedDocuments;
+
+    BatchTestCheck() {
+      this(Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>())));
+    }
+
+    BatchTestCheck(Set<Document> scannedDocuments) {
+      this.scannedDocuments = scannedDocuments;
+    }
+
+    @Override
+    public void scanFile(XmlFile file) {
+      scannedDocuments.add(file.getDocument());
+      XmlFile.asList(file.getDocument().getElementsByTagName("todo")).forEach(todo -> reportIssue(todo, "Remove this element"));
+    }
+  }
+
+  private static class SilentCheck extends SonarXmlCheck {
+
+    @Override
+    public void scanFile(XmlFile file) {
+      // no issue
+    }
+  }
+}
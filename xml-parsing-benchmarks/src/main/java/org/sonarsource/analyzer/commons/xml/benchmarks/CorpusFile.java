@@ -0,0 +1,72 @@
+/*
+ * SonarSource Analyzers XML Parsing Benchmarks
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * File of the corpus used by the benchmarks, each benchmark being run once per file.
+ */
+@State(Scope.Benchmark)
+public class CorpusFile {
+
+  @Param({
+    "small-config.xml",
+    "large-pom.xml",
+    "deep-nesting.xml",
+    "attribute-heavy.xml",
+    "cdata-heavy.xml",
+    "dtd.xml"
+  })
+  public String fileName;
+
+  String content;
+
+  @Setup
+  public void load() {
+    content = read(fileName);
+  }
+
+  static String read(String fileName) {
+    try (InputStream input = CorpusFile.class.getResourceAsStream("/corpus/" + fileName)) {
+      if (input == null) {
+        throw new IllegalStateException("Missing corpus file: " + fileName);
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        bytes.write(buffer, 0, read);
+      }
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * SonarSource Analyzers XML Parsing Benchmarks
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+
+/**
+ * Lookup of the locations of all the elements and attributes of a parsed file, as done when reporting issues.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class LocationBenchmark {
+
+  private final List<Element> elements = new ArrayList<>();
+  private final List<Attr> attributes = new ArrayList<>();
+
+  @Setup
+  public void parse(CorpusFile file) {
+    XmlFile.visitPreOrder(XmlFile.create(file.content).getDocument(), Element.class, element -> {
+      elements.add(element);
+      NamedNodeMap elementAttributes = element.getAttributes();
+      for (int i = 0; i < elementAttributes.getLength(); i++) {
+        attributes.add((Attr) elementAttributes.item(i));
+      }
+    });
+  }
+
+  @Benchmark
+  public void elementLocations(Blackhole blackhole) {
+    for (Element element : elements) {
+      blackhole.consume(XmlFile.nodeLocation(element));
+      blackhole.consume(XmlFile.nameLocation(element));
+    }
+  }
+
+  @Benchmark
+  public void attributeLocations(Blackhole blackhole) {
+    for (Attr attribute : attributes) {
+      blackhole.consume(XmlFile.getRange(attribute, XmlFile.Location.VALUE));
+    }
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * SonarSource Analyzers XML Parsing Benchmarks
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.benchmarks;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.xml.xpath.XPathExpression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.rule.RuleKey;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.sonarsource.analyzer.commons.xml.checks.ParallelXmlAnalyzer;
+import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
+import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
+import org.w3c.dom.Node;
+
+/**
+ * Analysis of all the files of the corpus by {@link ParallelXmlAnalyzer}, with an increasing number of worker threads.
+ * "N" stands for the number of available processors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class ParallelAnalysisBenchmark {
+
+  // each file of the corpus is analyzed several times, so that all the workers have files to analyze
+  private static final int COPIES_OF_CORPUS = 8;
+
+  @Param({"1", "2", "4", "N"})
+  public String threads;
+
+  private ParallelXmlAnalyzer analyzer;
+  private final List<InputFile> inputFiles = new ArrayList<>();
+
+  @Setup
+  public void setUp() throws NoSuchFieldException {
+    int threadCount = "N".equals(threads) ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(threads);
+    analyzer = new ParallelXmlAnalyzer(threadCount);
+    String[] fileNames = CorpusFile.class.getField("fileName").getAnnotation(Param.class).value();
+    for (int copy = 0; copy < COPIES_OF_CORPUS; copy++) {
+      for (String fileName : fileNames) {
+        inputFiles.add(new TestInputFileBuilder("module", "copy" + copy + "/" + fileName)
+          .setCharset(StandardCharsets.UTF_8)
+          .setContents(CorpusFile.read(fileName))
+          .build());
+      }
+    }
+  }
+
+  @Benchmark
+  public SensorContextTester analyze() {
+    // issues are kept by the context, which is not reused
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    analyzer.analyze(context, inputFiles, ParallelAnalysisBenchmark::checks);
+    return context;
+  }
+
+  static Map<SonarXmlCheck, RuleKey> checks() {
+    Map<SonarXmlCheck, RuleKey> checks = new LinkedHashMap<>();
+    checks.put(new ElementWithIdCheck(), RuleKey.of("benchmark", "ElementWithId"));
+    checks.put(new DependencyCheck(), RuleKey.of("benchmark", "Dependency"));
+    checks.put(new DeepElementCheck(), RuleKey.of("benchmark", "DeepElement"));
+    return checks;
+  }
+
+  private static class ElementWithIdCheck extends SimpleXPathBasedCheck {
+
+    private final XPathExpression elementsWithId = getXPathExpression("//*[@id]");
+
+    @Override
+    public void scanFile(XmlFile file) {
+      for (Node element : evaluateAsList(elementsWithId, file.getNamespaceUnawareDocument())) {
+        reportIssue(element, "Element with id.");
+      }
+    }
+  }
+
+  private static class DependencyCheck extends SimpleXPathBasedCheck {
+
+    DependencyCheck() {
+      evaluateOnDocument("//pom:dependencies/pom:dependency/pom:artifactId",
+        Collections.singletonMap("pom", "http://maven.apache.org/POM/4.0.0"),
+        node -> reportIssue(node, "Dependency."));
+    }
+  }
+
+  private static class DeepElementCheck extends SonarXmlCheck {
+
+    private static final int MAX_DEPTH = 10;
+
+    @Override
+    public void scanFile(XmlFile file) {
+      visit(file.getDocument().getDocumentElement(), 1);
+    }
+
+    private void visit(Node node, int depth) {
+      if (depth == MAX_DEPTH) {
+        reportIssue(node, "Deeply nested element.");
+        return;
+      }
+      for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child.getNodeType() == Node.ELEMENT_NODE) {
+          visit(child, depth + 1);
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * SonarSource Analyzers XML Parsing Benchmarks
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.xpath.XPathExpression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Evaluation of XPath expressions on a parsed file, as done by checks extending {@link SimpleXPathBasedCheck}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class XPathBenchmark {
+
+  private final XPathCheck check = new XPathCheck();
+  // read from the index of the document, without namespace as the default namespace of a POM is not given by the rules
+  private final XPathExpression descendantsByName = check.getXPathExpression("//dependency");
+  private final XPathExpression descendantsWithAttribute = check.getXPathExpression("//*[@id]");
+  private final XPathExpression childPath = check.getXPathExpression("/*/*/*");
+
+  private Document document;
+  private Document namespaceUnawareDocument;
+
+  @Setup
+  public void parse(CorpusFile file) {
+    XmlFile xmlFile = XmlFile.create(file.content);
+    document = xmlFile.getDocument();
+    namespaceUnawareDocument = xmlFile.getNamespaceUnawareDocument();
+  }
+
+  @Benchmark
+  public List<Node> descendantsByName() {
+    return check.evaluateAsList(descendantsByName, namespaceUnawareDocument);
+  }
+
+  @Benchmark
+  public List<Node> descendantsWithAttribute() {
+    return check.evaluateAsList(descendantsWithAttribute, namespaceUnawareDocument);
+  }
+
+  @Benchmark
+  public List<Node> childPath() {
+    return check.evaluateAsList(childPath, document);
+  }
+
+  private static class XPathCheck extends SimpleXPathBasedCheck {
+
+    @Override
+    public void scanFile(XmlFile file) {
+      // expressions are evaluated by the benchmarks
+    }
+  }
+
+}
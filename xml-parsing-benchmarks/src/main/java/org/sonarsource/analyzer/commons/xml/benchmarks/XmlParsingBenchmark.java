@@ -0,0 +1,138 @@
+/*
+ * SonarSource Analyzers XML Parsing Benchmarks
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.sonarsource.analyzer.commons.xml.XmlFileCache;
+
+/**
+ * Parsing of a file, including the location of all its nodes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class XmlParsingBenchmark {
+
+  @Benchmark
+  public XmlFile create(CorpusFile file) {
+    return XmlFile.create(file.content);
+  }
+
+  @Benchmark
+  public XmlFile createLazy(CorpusFile file) {
+    return XmlFile.createLazy(file.content);
+  }
+
+  @Benchmark
+  public Object namespaceUnawareDocument(CorpusFile file) {
+    return XmlFile.create(file.content).getNamespaceUnawareDocument();
+  }
+
+  /**
+   * File missing from the cache: parsed, then written to the cache
+   */
+  @Benchmark
+  public XmlFile createFromColdCache(CorpusFile file, ColdCache cache) {
+    return cache.cache.create(file.content);
+  }
+
+  /**
+   * File loaded from the cache, except for the file with a DTD which is never cached
+   */
+  @Benchmark
+  public XmlFile createFromWarmCache(CorpusFile file, WarmCache cache) {
+    return cache.cache.create(file.content);
+  }
+
+  @State(Scope.Thread)
+  public static class ColdCache {
+
+    Path directory;
+    XmlFileCache cache;
+
+    @Setup(Level.Trial)
+    public void createDirectory() throws IOException {
+      directory = Files.createTempDirectory("xml-cache");
+    }
+
+    /**
+     * Removes the entry written by the previous invocation, so that each invocation misses
+     */
+    @Setup(Level.Invocation)
+    public void clear() throws IOException {
+      deleteEntries(directory);
+      cache = new XmlFileCache(directory, Long.MAX_VALUE);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDirectory() throws IOException {
+      deleteEntries(directory);
+      Files.delete(directory);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class WarmCache {
+
+    Path directory;
+    XmlFileCache cache;
+
+    @Setup(Level.Trial)
+    public void fill(CorpusFile file) throws IOException {
+      directory = Files.createTempDirectory("xml-cache");
+      cache = new XmlFileCache(directory, Long.MAX_VALUE);
+      cache.create(file.content);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDirectory() throws IOException {
+      deleteEntries(directory);
+      Files.delete(directory);
+    }
+  }
+
+  private static void deleteEntries(Path directory) throws IOException {
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      for (Path entry : entries) {
+        Files.delete(entry);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * SonarSource Analyzers XML Parsing Benchmarks
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BenchmarksTest {
+
+  // number of nodes matched by the XPath benchmarks on each file, none when absent
+  private static final Map<String, Integer> GRANDCHILDREN_OF_ROOT_BY_FILE_NAME = new HashMap<>();
+  private static final Map<String, Integer> DEPENDENCIES_BY_FILE_NAME = Collections.singletonMap("large-pom.xml", 900);
+  private static final Map<String, Integer> ELEMENTS_WITH_ID_BY_FILE_NAME = new HashMap<>();
+
+  static {
+    GRANDCHILDREN_OF_ROOT_BY_FILE_NAME.put("small-config.xml", 5);
+    GRANDCHILDREN_OF_ROOT_BY_FILE_NAME.put("large-pom.xml", 213);
+    GRANDCHILDREN_OF_ROOT_BY_FILE_NAME.put("deep-nesting.xml", 1);
+    GRANDCHILDREN_OF_ROOT_BY_FILE_NAME.put("dtd.xml", 1500);
+    ELEMENTS_WITH_ID_BY_FILE_NAME.put("attribute-heavy.xml", 250);
+    ELEMENTS_WITH_ID_BY_FILE_NAME.put("dtd.xml", 500);
+  }
+
+  private static final Blackhole BLACKHOLE = new Blackhole("Today's password is swordfish. I understand instantiating Blackholes directly is dangerous.");
+
+  @Test
+  public void benchmarks_run_on_each_corpus_file() throws Exception {
+    List<String> fileNames = Arrays.asList(CorpusFile.class.getField("fileName").getAnnotation(Param.class).value());
+    assertThat(fileNames).hasSize(6);
+
+    for (String fileName : fileNames) {
+      CorpusFile file = new CorpusFile();
+      file.fileName = fileName;
+      file.load();
+
+      XmlParsingBenchmark parsing = new XmlParsingBenchmark();
+      assertThat(parsing.create(file).getDocument().getDocumentElement()).isNotNull();
+      assertThat(parsing.createLazy(file).getDocument().getDocumentElement()).isNotNull();
+      assertThat(parsing.namespaceUnawareDocument(file)).isNotNull();
+
+      XmlParsingBenchmark.ColdCache coldCache = new XmlParsingBenchmark.ColdCache();
+      coldCache.createDirectory();
+      coldCache.clear();
+      assertThat(parsing.createFromColdCache(file, coldCache).getDocument().getDocumentElement()).isNotNull();
+      coldCache.clear();
+      parsing.createFromColdCache(file, coldCache);
+      assertThat(coldCache.cache.missCount()).as(fileName).isEqualTo(1);
+      coldCache.deleteDirectory();
+
+      XmlParsingBenchmark.WarmCache warmCache = new XmlParsingBenchmark.WarmCache();
+      warmCache.fill(file);
+      assertThat(parsing.createFromWarmCache(file, warmCache).getDocument().getDocumentElement()).isNotNull();
+      assertThat(warmCache.cache.hitCount()).as(fileName).isEqualTo("dtd.xml".equals(fileName) ? 0 : 1);
+      warmCache.deleteDirectory();
+
+      XPathBenchmark xpath = new XPathBenchmark();
+      xpath.parse(file);
+      assertThat(xpath.childPath()).as(fileName).hasSize(GRANDCHILDREN_OF_ROOT_BY_FILE_NAME.getOrDefault(fileName, 0));
+      assertThat(xpath.descendantsByName()).as(fileName).hasSize(DEPENDENCIES_BY_FILE_NAME.getOrDefault(fileName, 0));
+      assertThat(xpath.descendantsWithAttribute()).as(fileName).hasSize(ELEMENTS_WITH_ID_BY_FILE_NAME.getOrDefault(fileName, 0));
+
+      LocationBenchmark location = new LocationBenchmark();
+      location.parse(file);
+      location.elementLocations(BLACKHOLE);
+      location.attributeLocations(BLACKHOLE);
+    }
+  }
+
+  @Test
+  public void parallel_analysis_reports_the_same_issues_with_each_thread_count() throws Exception {
+    List<String> threads = Arrays.asList(ParallelAnalysisBenchmark.class.getField("threads").getAnnotation(Param.class).value());
+    assertThat(threads).containsExactly("1", "2", "4", "N");
+
+    List<Integer> issueCounts = new ArrayList<>();
+    for (String threadCount : threads) {
+      ParallelAnalysisBenchmark benchmark = new ParallelAnalysisBenchmark();
+      benchmark.threads = threadCount;
+      benchmark.setUp();
+      issueCounts.add(benchmark.analyze().allIssues().size());
+    }
+    // per copy of the corpus: ids of beans and books, dependencies of the POM, deeply nested element
+    assertThat(issueCounts).containsOnly(8 * (250 + 500 + 900 + 1));
+  }
+
+  @Test
+  public void corpus_has_expected_content() {
+    assertThat(CorpusFile.read("large-pom.xml")).contains("<dependency>");
+    assertThat(CorpusFile.read("dtd.xml")).contains("<!DOCTYPE");
+    assertThat(CorpusFile.read("cdata-heavy.xml")).contains("<![CDATA[");
+  }
+
+}
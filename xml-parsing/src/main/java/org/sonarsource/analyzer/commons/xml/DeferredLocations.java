@@ -0,0 +1,262 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.util.Arrays;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.sonarsource.analyzer.commons.xml.XmlFile.Location;
+
+/**
+ * Locations of the nodes of a file, read from StAX events without any DOM node, for a document whose nodes are only
+ * created by Xerces when accessed (deferred DOM).
+ * <p>
+ * Each node of the file is given a record, in document order, so by increasing start offset: the document is record 0,
+ * the attributes of an element follow its record, and the children of a node are linked from its first child to its
+ * next siblings. Records hold the same packed offsets as {@link NodeLocations}, and a DOM node is only matched with its
+ * record when its location is requested, by following the position of the node among its parent's children.
+ */
+final class DeferredLocations {
+
+  static final int DOCUMENT_RECORD = 0;
+  static final int NO_RECORD = -1;
+
+  private static final int NO_LOCATION = -1;
+  private static final int STRIDE = 2 * Location.values().length;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final XmlFileContent content;
+  private final TagScanner tagScanner = new TagScanner();
+
+  private int recordCount = 0;
+  private int[] offsets = new int[INITIAL_CAPACITY * STRIDE];
+  private int[] firstChild = new int[INITIAL_CAPACITY];
+  private int[] nextSibling = new int[INITIAL_CAPACITY];
+  // only used while reading, to append children
+  private int[] lastChild = new int[INITIAL_CAPACITY];
+  private int[] attributeCount = new int[INITIAL_CAPACITY];
+
+  // records of the elements enclosing the current event
+  private int[] openRecords = new int[16];
+  private int openRecordCount = 0;
+
+  private DeferredLocations(XmlFileContent content) {
+    this.content = content;
+  }
+
+  /**
+   * @param hasProlog when true, the location of the document starts at the beginning of the content
+   */
+  static DeferredLocations read(XmlFileContent content, boolean hasProlog) throws XMLStreamException {
+    DeferredLocations locations = new DeferredLocations(content);
+    locations.readEvents(hasProlog);
+    locations.trim();
+    return locations;
+  }
+
+  int recordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Packed offsets of all the records, "2 * Location.values().length" per record.
+   */
+  int[] offsets() {
+    return offsets;
+  }
+
+  int firstChild(int record) {
+    return firstChild[record];
+  }
+
+  int nextSibling(int record) {
+    return nextSibling[record];
+  }
+
+  int attributeCount(int record) {
+    return attributeCount[record];
+  }
+
+  /**
+   * @return true when the name of the attribute record, as written in the file, is the given qualified name
+   */
+  boolean hasAttributeName(int attributeRecord, String qualifiedName) {
+    int index = attributeRecord * STRIDE + Location.NAME.ordinal() * 2;
+    return content.text(offsets[index], offsets[index + 1]).trim().equals(qualifiedName);
+  }
+
+  private void readEvents(boolean hasProlog) throws XMLStreamException {
+    int current = newRecord();
+    openRecords[openRecordCount++] = current;
+    int currentStart = NO_LOCATION;
+    boolean previousEventIsText = false;
+    boolean emptyCdata = false;
+
+    XMLStreamReader xmlReader = SafeStaxParserFactory.threadXMLInputFactory().createXMLStreamReader(content.newReader());
+    while (xmlReader.hasNext()) {
+      // same events as the ones used by XmlParser to locate the nodes of a document built by Xerces
+      previousEventIsText = (emptyCdata && previousEventIsText) || (xmlReader.getEventType() == XMLStreamConstants.CHARACTERS);
+      emptyCdata = false;
+      xmlReader.next();
+      int startLocation = xmlReader.getLocation().getCharacterOffset();
+
+      if (currentStart != NO_LOCATION) {
+        set(current, Location.NODE, currentStart, startLocation);
+        currentStart = NO_LOCATION;
+      }
+
+      switch (xmlReader.getEventType()) {
+        case XMLStreamConstants.ENTITY_REFERENCE:
+        case XMLStreamConstants.COMMENT:
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          current = appendChild();
+          currentStart = startLocation;
+          break;
+
+        case XMLStreamConstants.CHARACTERS:
+          if (previousEventIsText) {
+            // both events stand for the same text node
+            currentStart = offset(current, Location.NODE);
+          } else {
+            current = appendChild();
+            currentStart = startLocation;
+          }
+          break;
+
+        case XMLStreamConstants.START_ELEMENT:
+          current = appendChild();
+          pushOpenRecord(current);
+          readStartTag(xmlReader, current, startLocation);
+          break;
+
+        case XMLStreamConstants.END_ELEMENT:
+          current = openRecords[--openRecordCount];
+          int closingBracketEnd = content.moveAfterClosingBracket(startLocation);
+          set(current, Location.END, startLocation, closingBracketEnd);
+          set(current, Location.NODE, offset(current, Location.START), closingBracketEnd);
+          break;
+
+        case XMLStreamConstants.CDATA:
+          if (xmlReader.getTextLength() == 0) {
+            // not reported by Xerces
+            emptyCdata = true;
+          } else if (content.startsWith(startLocation, "<![CDATA[")) {
+            // other events are the continuation of the same section
+            current = appendChild();
+            int beforeClosingTag = content.moveBefore(startLocation, "]]>");
+            int endLocation = content.moveAfter(beforeClosingTag, "]]>");
+            set(current, Location.START, startLocation, content.moveAfter(startLocation, "<![CDATA["));
+            set(current, Location.END, beforeClosingTag, endLocation);
+            set(current, Location.NODE, startLocation, endLocation);
+          }
+          break;
+
+        case XMLStreamConstants.DTD:
+          current = appendChild();
+          set(current, Location.NODE, startLocation, content.moveAfterClosingBracket(startLocation));
+          break;
+
+        default:
+          break;
+      }
+    }
+
+    // the prolog, when present, starts the content
+    int documentStart = hasProlog ? 0 : offset(firstChild[DOCUMENT_RECORD], Location.NODE);
+    int documentEnd = offsets[lastChild[DOCUMENT_RECORD] * STRIDE + Location.NODE.ordinal() * 2 + 1];
+    set(DOCUMENT_RECORD, Location.NODE, documentStart, documentEnd);
+  }
+
+  private void trim() {
+    offsets = Arrays.copyOf(offsets, recordCount * STRIDE);
+    firstChild = Arrays.copyOf(firstChild, recordCount);
+    nextSibling = Arrays.copyOf(nextSibling, recordCount);
+    attributeCount = Arrays.copyOf(attributeCount, recordCount);
+    lastChild = null;
+    openRecords = null;
+  }
+
+  private void readStartTag(XMLStreamReader xmlReader, int element, int startLocation) throws XMLStreamException {
+    String prefix = xmlReader.getPrefix();
+    int nameLength = (prefix == null || prefix.isEmpty() ? 0 : (prefix.length() + 1)) + xmlReader.getLocalName().length();
+    int nameEndLocation = content.shift(startLocation, nameLength + 1);
+    tagScanner.scanStartTag(content, nameEndLocation);
+    set(element, Location.START, startLocation, tagScanner.closingBracketEnd());
+    set(element, Location.NAME, startLocation + 1, nameEndLocation);
+
+    attributeCount[element] = tagScanner.attributeCount();
+    for (int i = 0; i < tagScanner.attributeCount(); i++) {
+      int attribute = newRecord();
+      set(attribute, Location.NAME, tagScanner.attributeNameStart(i), tagScanner.attributeNameEnd(i));
+      set(attribute, Location.VALUE, tagScanner.attributeValueStart(i), tagScanner.attributeValueEnd(i));
+      set(attribute, Location.NODE, tagScanner.attributeNameStart(i), tagScanner.attributeValueEnd(i));
+    }
+  }
+
+  private int appendChild() {
+    int parent = openRecords[openRecordCount - 1];
+    int child = newRecord();
+    if (lastChild[parent] == NO_RECORD) {
+      firstChild[parent] = child;
+    } else {
+      nextSibling[lastChild[parent]] = child;
+    }
+    lastChild[parent] = child;
+    return child;
+  }
+
+  private void pushOpenRecord(int record) {
+    if (openRecordCount == openRecords.length) {
+      openRecords = Arrays.copyOf(openRecords, openRecordCount * 2);
+    }
+    openRecords[openRecordCount++] = record;
+  }
+
+  private int newRecord() {
+    int record = recordCount;
+    recordCount++;
+    if (recordCount > firstChild.length) {
+      int capacity = firstChild.length * 2;
+      firstChild = Arrays.copyOf(firstChild, capacity);
+      nextSibling = Arrays.copyOf(nextSibling, capacity);
+      lastChild = Arrays.copyOf(lastChild, capacity);
+      attributeCount = Arrays.copyOf(attributeCount, capacity);
+      offsets = Arrays.copyOf(offsets, capacity * STRIDE);
+    }
+    firstChild[record] = NO_RECORD;
+    nextSibling[record] = NO_RECORD;
+    lastChild[record] = NO_RECORD;
+    attributeCount[record] = 0;
+    Arrays.fill(offsets, record * STRIDE, recordCount * STRIDE, NO_LOCATION);
+    return record;
+  }
+
+  private void set(int record, Location location, int startOffset, int endOffset) {
+    int index = record * STRIDE + location.ordinal() * 2;
+    offsets[index] = startOffset;
+    offsets[index + 1] = endOffset;
+  }
+
+  private int offset(int record, Location location) {
+    return offsets[record * STRIDE + location.ordinal() * 2];
+  }
+
+}
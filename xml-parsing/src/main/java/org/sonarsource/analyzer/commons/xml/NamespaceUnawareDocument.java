@@ -0,0 +1,128 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import javax.annotation.CheckForNull;
+import org.apache.xerces.dom.DocumentImpl;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+
+/**
+ * Builds the namespace-unaware view of a file from its namespace-aware document, instead of parsing the file again.
+ * Nodes are copied with their qualified names only, and keep the locations of the nodes they are copied from.
+ */
+final class NamespaceUnawareDocument {
+
+  private NamespaceUnawareDocument() {
+    // class with static methods only
+  }
+
+  /**
+   * @return null when the document holds a construct whose namespace-unaware parsing can not be reproduced from the
+   * DOM, such as a DTD (declared entities, default attribute values), so that the file has to be parsed again.
+   */
+  @CheckForNull
+  static Document from(Document namespaceAware) {
+    NodeLocations sourceLocations = NodeLocations.of(namespaceAware);
+    if (sourceLocations == null || !isSupported(namespaceAware)) {
+      return null;
+    }
+
+    DocumentImpl document = new DocumentImpl();
+    // nodes come from a well-formed document
+    document.setStrictErrorChecking(false);
+    NodeLocations locations = sourceLocations.forSameContent();
+    locations.attachTo(document);
+    copyProperties(namespaceAware, document);
+    locations.copy(sourceLocations, namespaceAware, document);
+
+    Node source = namespaceAware.getFirstChild();
+    Node targetParent = document;
+    while (source != null) {
+      Node target = targetParent.appendChild(copy(source, document, sourceLocations, locations));
+      locations.copy(sourceLocations, source, target);
+      if (source.hasChildNodes()) {
+        source = source.getFirstChild();
+        targetParent = target;
+      } else {
+        while (source.getNextSibling() == null && source.getParentNode() != namespaceAware) {
+          source = source.getParentNode();
+          targetParent = targetParent.getParentNode();
+        }
+        source = source.getNextSibling();
+      }
+    }
+    document.setStrictErrorChecking(true);
+    return document;
+  }
+
+  private static boolean isSupported(Document namespaceAware) {
+    for (Node child = namespaceAware.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.DOCUMENT_TYPE_NODE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void copyProperties(Document source, DocumentImpl target) {
+    target.setInputEncoding(source.getInputEncoding());
+    target.setXmlVersion(source.getXmlVersion());
+    target.setXmlEncoding(source.getXmlEncoding());
+    target.setXmlStandalone(source.getXmlStandalone());
+    target.setDocumentURI(source.getDocumentURI());
+  }
+
+  private static Node copy(Node source, Document document, NodeLocations sourceLocations, NodeLocations locations) {
+    switch (source.getNodeType()) {
+      case Node.ELEMENT_NODE:
+        return copyElement((Element) source, document, sourceLocations, locations);
+      case Node.TEXT_NODE:
+        return document.createTextNode(source.getNodeValue());
+      case Node.CDATA_SECTION_NODE:
+        return document.createCDATASection(source.getNodeValue());
+      case Node.COMMENT_NODE:
+        return document.createComment(source.getNodeValue());
+      case Node.PROCESSING_INSTRUCTION_NODE:
+        ProcessingInstruction instruction = (ProcessingInstruction) source;
+        return document.createProcessingInstruction(instruction.getTarget(), instruction.getData());
+      default:
+        throw new IllegalStateException("Unexpected node type: " + source.getNodeType());
+    }
+  }
+
+  private static Element copyElement(Element source, Document document, NodeLocations sourceLocations, NodeLocations locations) {
+    Element element = document.createElement(source.getNodeName());
+    NamedNodeMap attributes = source.getAttributes();
+    for (int i = 0; i < attributes.getLength(); i++) {
+      Node sourceAttribute = attributes.item(i);
+      Attr attribute = document.createAttribute(sourceAttribute.getNodeName());
+      attribute.setValue(sourceAttribute.getNodeValue());
+      element.setAttributeNode(attribute);
+      locations.copy(sourceLocations, sourceAttribute, attribute);
+    }
+    return element;
+  }
+
+}
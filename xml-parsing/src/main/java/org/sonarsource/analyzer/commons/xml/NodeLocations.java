@@ -0,0 +1,311 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonarsource.analyzer.commons.xml.XmlFile.Location;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Locations of the nodes of a document, kept on the side of the DOM instead of being stored as user data of each node.
+ * Each located node is given a dense id, which indexes a packed array holding the start and end offsets of each
+ * {@link Location}. Offsets are only converted into {@link XmlTextRange} when requested.
+ * <p>
+ * For a deferred document, ids are the ones of the {@link DeferredLocations} records, and a node is given its id on the
+ * first request of one of its locations.
+ */
+final class NodeLocations {
+
+  private static final String USER_DATA_KEY = NodeLocations.class.getName();
+  private static final int LOCATION_KINDS = Location.values().length;
+  // start and end offsets of each location kind
+  private static final int STRIDE = 2 * LOCATION_KINDS;
+  private static final int NO_OFFSET = -1;
+  private static final int NO_ID = -1;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final XmlFileContent content;
+
+  // open addressing hash table from nodes (compared by identity) to their id
+  private Node[] nodes;
+  private int[] ids;
+  private int hashedNodeCount = 0;
+  private int nodeCount = 0;
+
+  // "STRIDE" offsets per node id
+  private int[] offsets;
+
+  @Nullable
+  private final DeferredLocations deferredLocations;
+
+  NodeLocations(XmlFileContent content) {
+    this(content, INITIAL_CAPACITY);
+  }
+
+  /**
+   * @param expectedNodeCount number of located nodes, when known in advance, to avoid growing the tables
+   */
+  NodeLocations(XmlFileContent content, int expectedNodeCount) {
+    this.content = content;
+    this.deferredLocations = null;
+    int capacity = Math.max(Integer.highestOneBit(Math.max(expectedNodeCount, 1) - 1) << 1, INITIAL_CAPACITY);
+    nodes = new Node[capacity * 2];
+    ids = new int[capacity * 2];
+    offsets = newOffsets(capacity * STRIDE);
+  }
+
+  /**
+   * Locations of a deferred document, whose nodes are matched with the records of the given locations when requested.
+   */
+  NodeLocations(XmlFileContent content, DeferredLocations deferredLocations) {
+    this.content = content;
+    this.deferredLocations = deferredLocations;
+    nodes = new Node[INITIAL_CAPACITY * 2];
+    ids = new int[INITIAL_CAPACITY * 2];
+    nodeCount = deferredLocations.recordCount();
+    offsets = deferredLocations.offsets();
+    Arrays.fill(offsets, nodeCount * STRIDE, offsets.length, NO_OFFSET);
+  }
+
+  /**
+   * Makes the locations retrievable from any node of the document.
+   */
+  void attachTo(Document document) {
+    document.setUserData(USER_DATA_KEY, this, null);
+  }
+
+  @CheckForNull
+  static NodeLocations of(Document document) {
+    return (NodeLocations) document.getUserData(USER_DATA_KEY);
+  }
+
+  /**
+   * @return empty locations over the same content, for the nodes of another document built from it
+   */
+  NodeLocations forSameContent() {
+    return new NodeLocations(content);
+  }
+
+  /**
+   * Gives to the node all the locations of a node from the source locations.
+   */
+  void copy(NodeLocations source, Node sourceNode, Node node) {
+    int sourceId = source.idOf(sourceNode);
+    if (sourceId != NO_ID) {
+      int id = idOf(node);
+      if (id == NO_ID) {
+        id = addNode(node);
+      }
+      System.arraycopy(source.offsets, sourceId * STRIDE, offsets, id * STRIDE, STRIDE);
+    }
+  }
+
+  @CheckForNull
+  static XmlTextRange range(Node node, Location location) {
+    Document document = node.getNodeType() == Node.DOCUMENT_NODE ? (Document) node : node.getOwnerDocument();
+    NodeLocations locations = document == null ? null : of(document);
+    if (locations == null) {
+      return null;
+    }
+    int index = locations.offsetIndex(node, location);
+    if (index == NO_OFFSET || locations.offsets[index] == NO_OFFSET) {
+      return null;
+    }
+    return locations.content.range(locations.offsets[index], locations.offsets[index + 1]);
+  }
+
+  void set(Node node, Location location, int startOffset, int endOffset) {
+    int id = idOf(node);
+    if (id == NO_ID) {
+      id = addNode(node);
+    }
+    int index = id * STRIDE + location.ordinal() * 2;
+    offsets[index] = startOffset;
+    offsets[index + 1] = endOffset;
+  }
+
+  /**
+   * @return the start offset of the location, or -1 when the node has no such location
+   */
+  int startOffset(Node node, Location location) {
+    int index = offsetIndex(node, location);
+    return index == NO_OFFSET ? NO_OFFSET : offsets[index];
+  }
+
+  /**
+   * @return the end offset of the location, or -1 when the node has no such location
+   */
+  int endOffset(Node node, Location location) {
+    int index = offsetIndex(node, location);
+    return index == NO_OFFSET ? NO_OFFSET : offsets[index + 1];
+  }
+
+  int nodeCount() {
+    return nodeCount;
+  }
+
+  private int offsetIndex(Node node, Location location) {
+    int id = idOf(node);
+    return id == NO_ID ? NO_OFFSET : (id * STRIDE + location.ordinal() * 2);
+  }
+
+  private int idOf(Node node) {
+    int id = knownIdOf(node);
+    if (id == NO_ID && deferredLocations != null) {
+      id = resolve(deferredLocations, node);
+    }
+    return id;
+  }
+
+  private int knownIdOf(Node node) {
+    int mask = nodes.length - 1;
+    for (int i = slot(node, mask); nodes[i] != null; i = (i + 1) & mask) {
+      if (nodes[i] == node) {
+        return ids[i];
+      }
+    }
+    return NO_ID;
+  }
+
+  /**
+   * Matches the node with its record, as well as its ancestors and attribute owners which were not matched yet.
+   */
+  private int resolve(DeferredLocations deferred, Node node) {
+    Deque<Node> unresolved = new ArrayDeque<>();
+    Node current = node;
+    int id;
+    do {
+      unresolved.push(current);
+      current = current.getNodeType() == Node.ATTRIBUTE_NODE ? ((Attr) current).getOwnerElement() : current.getParentNode();
+      id = current == null ? NO_ID : knownIdOf(current);
+    } while (current != null && id == NO_ID);
+
+    if (id == NO_ID) {
+      Node root = unresolved.pop();
+      if (root.getNodeType() != Node.DOCUMENT_NODE) {
+        // detached node
+        return NO_ID;
+      }
+      id = DeferredLocations.DOCUMENT_RECORD;
+      link(root, id);
+    }
+    while (id != NO_ID && !unresolved.isEmpty()) {
+      Node child = unresolved.pop();
+      id = childId(deferred, id, child);
+      if (id != NO_ID) {
+        link(child, id);
+      }
+    }
+    return id;
+  }
+
+  private int childId(DeferredLocations deferred, int parentId, Node child) {
+    if (child.getNodeType() == Node.ATTRIBUTE_NODE) {
+      // attribute records follow the one of their element
+      for (int attributeId = parentId + 1; attributeId <= parentId + deferred.attributeCount(parentId); attributeId++) {
+        if (deferred.hasAttributeName(attributeId, child.getNodeName())) {
+          return attributeId;
+        }
+      }
+      return NO_ID;
+    }
+    Node parent = child.getParentNode();
+    if (parent.getNodeType() == Node.ENTITY_REFERENCE_NODE) {
+      // the text replacing an entity reference has the same location as the reference
+      return child == parent.getFirstChild() ? parentId : NO_ID;
+    }
+    // moving forward from the closest preceding sibling already matched, or else from the first child
+    int id = deferred.firstChild(parentId);
+    int steps = 0;
+    for (Node sibling = child.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+      int siblingId = knownIdOf(sibling);
+      if (siblingId != NO_ID) {
+        id = deferred.nextSibling(siblingId);
+        break;
+      }
+      steps++;
+    }
+    for (int i = 0; i < steps && id != DeferredLocations.NO_RECORD; i++) {
+      id = deferred.nextSibling(id);
+    }
+    return id;
+  }
+
+  private int addNode(Node node) {
+    int id = nodeCount;
+    nodeCount++;
+    link(node, id);
+    if (nodeCount * STRIDE > offsets.length) {
+      int[] newOffsets = newOffsets(offsets.length * 2);
+      System.arraycopy(offsets, 0, newOffsets, 0, offsets.length);
+      offsets = newOffsets;
+    }
+    return id;
+  }
+
+  private void link(Node node, int id) {
+    hashedNodeCount++;
+    // keeping the hash table at most half full
+    if (hashedNodeCount * 2 > nodes.length) {
+      rehash(nodes.length * 2);
+    }
+    insert(node, id);
+  }
+
+  private void rehash(int capacity) {
+    Node[] oldNodes = nodes;
+    int[] oldIds = ids;
+    nodes = new Node[capacity];
+    ids = new int[capacity];
+    for (int i = 0; i < oldNodes.length; i++) {
+      if (oldNodes[i] != null) {
+        insert(oldNodes[i], oldIds[i]);
+      }
+    }
+  }
+
+  private void insert(Node node, int id) {
+    int mask = nodes.length - 1;
+    int i = slot(node, mask);
+    while (nodes[i] != null) {
+      i = (i + 1) & mask;
+    }
+    nodes[i] = node;
+    ids[i] = id;
+  }
+
+  private static int slot(Node node, int mask) {
+    int hash = System.identityHashCode(node);
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private static int[] newOffsets(int size) {
+    int[] result = new int[size];
+    Arrays.fill(result, NO_OFFSET);
+    return result;
+  }
+
+}
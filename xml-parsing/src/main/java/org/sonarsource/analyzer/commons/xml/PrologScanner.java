@@ -0,0 +1,140 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+/**
+ * Finds the XML declaration and the document type declaration of a file in a single forward pass over its prolog.
+ * The pass skips the BOM, comments and processing instructions, and stops at the first other tag, usually the root
+ * element: the rest of the file is never read.
+ * <p>
+ * Offsets are relative to {@link #content()}, which starts with the XML declaration when there is one.
+ */
+final class PrologScanner {
+
+  static final int NOT_FOUND = -1;
+  static final String XML_DECLARATION_TAG = "<?xml";
+
+  private static final String BOM_CHAR = "\ufeff";
+  private static final String PROCESSING_INSTRUCTION_START = "<?";
+  private static final String PROCESSING_INSTRUCTION_END = "?>";
+  private static final String COMMENT_START = "<!--";
+  private static final String COMMENT_END = "-->";
+  private static final String DOCTYPE_TAG = "<!DOCTYPE";
+
+  private final XmlFileContent content;
+  private final int xmlDeclarationEnd;
+  private final int doctypeStart;
+  private final int doctypeEnd;
+
+  private PrologScanner(XmlFileContent content, int xmlDeclarationEnd, int doctypeStart, int doctypeEnd) {
+    this.content = content;
+    this.xmlDeclarationEnd = xmlDeclarationEnd;
+    this.doctypeStart = doctypeStart;
+    this.doctypeEnd = doctypeEnd;
+  }
+
+  static PrologScanner scan(String fullContent) {
+    int contentStart = fullContent.startsWith(BOM_CHAR) ? BOM_CHAR.length() : 0;
+    XmlFileContent content = new XmlFileContent(fullContent, contentStart, fullContent.length(), 1, 1);
+    int declarationStart = NOT_FOUND;
+    int declarationEnd = NOT_FOUND;
+    int doctypeStart = NOT_FOUND;
+    int doctypeEnd = NOT_FOUND;
+
+    int offset = content.indexOf('<', 0);
+    while (offset != NOT_FOUND) {
+      int tagEnd;
+      if (declarationStart == NOT_FOUND && doctypeStart == NOT_FOUND && isXmlDeclaration(content, offset)) {
+        tagEnd = endOf(content, offset, PROCESSING_INSTRUCTION_END);
+        declarationStart = tagEnd == NOT_FOUND ? NOT_FOUND : offset;
+        declarationEnd = tagEnd;
+      } else if (content.startsWith(offset, COMMENT_START)) {
+        tagEnd = endOf(content, offset, COMMENT_END);
+      } else if (content.startsWith(offset, PROCESSING_INSTRUCTION_START)) {
+        tagEnd = endOf(content, offset, PROCESSING_INSTRUCTION_END);
+      } else if (doctypeStart == NOT_FOUND && content.startsWith(offset, DOCTYPE_TAG)) {
+        tagEnd = TagScanner.closingBracketEnd(content, offset);
+        doctypeStart = tagEnd == NOT_FOUND ? NOT_FOUND : offset;
+        doctypeEnd = tagEnd;
+      } else {
+        break;
+      }
+      offset = tagEnd == NOT_FOUND ? NOT_FOUND : content.indexOf('<', tagEnd);
+    }
+
+    if (declarationStart <= 0) {
+      return new PrologScanner(content, declarationEnd, doctypeStart, doctypeEnd);
+    }
+    // anything before the XML declaration is skipped, without copying the remaining content
+    XmlFileContent declarationContent = new XmlFileContent(fullContent, contentStart + declarationStart, fullContent.length(),
+      content.line(declarationStart), content.column(declarationStart));
+    return new PrologScanner(declarationContent, declarationEnd - declarationStart,
+      shift(doctypeStart, declarationStart), shift(doctypeEnd, declarationStart));
+  }
+
+  private static boolean isXmlDeclaration(XmlContent content, int offset) {
+    int next = offset + XML_DECLARATION_TAG.length();
+    // "<?xml-stylesheet" and other processing instructions whose target starts with "xml" are not declarations
+    return content.startsWith(offset, XML_DECLARATION_TAG) && next < content.length() && isWhitespace(content.readChar(next));
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+  }
+
+  private static int endOf(XmlContent content, int offset, String end) {
+    int index = content.indexOf(end, offset);
+    return index == NOT_FOUND ? NOT_FOUND : (index + end.length());
+  }
+
+  private static int shift(int offset, int skippedLength) {
+    return offset == NOT_FOUND ? NOT_FOUND : (offset - skippedLength);
+  }
+
+  /**
+   * @return the parsed part of the file: from the XML declaration when there is one, without BOM
+   */
+  XmlFileContent content() {
+    return content;
+  }
+
+  boolean hasXmlDeclaration() {
+    return xmlDeclarationEnd != NOT_FOUND;
+  }
+
+  /**
+   * @return offset following the "?&gt;" closing the XML declaration, which starts the content
+   */
+  int xmlDeclarationEnd() {
+    return xmlDeclarationEnd;
+  }
+
+  int doctypeStart() {
+    return doctypeStart;
+  }
+
+  /**
+   * @return offset following the '&gt;' closing the document type declaration, its internal subset included
+   */
+  int doctypeEnd() {
+    return doctypeEnd;
+  }
+
+}
@@ -19,6 +19,7 @@
  */
 package org.sonarsource.analyzer.commons.xml;
 
+import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -26,11 +27,48 @@ import javax.xml.parsers.ParserConfigurationException;
 
 public class SafeDomParserFactory {
 
+  // creating a Xerces factory is expensive: builders are created once per thread, and reset before each use
+  // all the nodes of the documents they build are visited to set their location, node expansion is then not deferred
+  private static final ThreadLocal<DocumentBuilder> NAMESPACE_AWARE_BUILDER = ThreadLocal.withInitial(() -> createDocumentBuilder(true, false));
+  private static final ThreadLocal<DocumentBuilder> NAMESPACE_UNAWARE_BUILDER = ThreadLocal.withInitial(() -> createDocumentBuilder(false, false));
+  private static final ThreadLocal<DocumentBuilder> DEFERRED_NAMESPACE_AWARE_BUILDER = ThreadLocal.withInitial(() -> createDocumentBuilder(true, true));
+  private static final ThreadLocal<DocumentBuilder> DEFERRED_NAMESPACE_UNAWARE_BUILDER = ThreadLocal.withInitial(() -> createDocumentBuilder(false, true));
+
   private SafeDomParserFactory() {
     // class with static methods only
   }
 
+  /**
+   * Builder of the current thread, configured as the ones of {@link #createDocumentBuilder(boolean)} and back to this
+   * configuration. It must only be used to parse a document before being requested again.
+   */
+  static DocumentBuilder threadDocumentBuilder(boolean namespaceAware) {
+    return reset((namespaceAware ? NAMESPACE_AWARE_BUILDER : NAMESPACE_UNAWARE_BUILDER).get());
+  }
+
+  /**
+   * Same as {@link #threadDocumentBuilder(boolean)}, but the nodes of the documents it builds are only created when
+   * accessed for the first time (Xerces deferred DOM).
+   */
+  static DocumentBuilder threadDeferredDocumentBuilder(boolean namespaceAware) {
+    return reset((namespaceAware ? DEFERRED_NAMESPACE_AWARE_BUILDER : DEFERRED_NAMESPACE_UNAWARE_BUILDER).get());
+  }
+
+  private static DocumentBuilder reset(DocumentBuilder documentBuilder) {
+    documentBuilder.reset();
+    // reset() restores the default error handler
+    documentBuilder.setErrorHandler(null);
+    return documentBuilder;
+  }
+
   public static DocumentBuilder createDocumentBuilder(boolean namespaceAware) {
+    return createDocumentBuilder(namespaceAware, null);
+  }
+
+  /**
+   * @param deferNodeExpansion null to keep the default of Xerces, which defers node expansion
+   */
+  private static DocumentBuilder createDocumentBuilder(boolean namespaceAware, @Nullable Boolean deferNodeExpansion) {
     ClassLoader currentClassLoader = Thread.currentThread().getContextClassLoader();
     try {
       // Force a new classloader during initialization to be sure that we are going to use the classloader containing
@@ -46,6 +84,9 @@ public class SafeDomParserFactory {
       documentBuilderFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
       documentBuilderFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
       documentBuilderFactory.setFeature("http://apache.org/xml/features/dom/create-entity-ref-nodes", false);
+      if (deferNodeExpansion != null) {
+        documentBuilderFactory.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", deferNodeExpansion);
+      }
       documentBuilderFactory.setValidating(false);
       documentBuilderFactory.setExpandEntityReferences(false);
       documentBuilderFactory.setNamespaceAware(namespaceAware);
@@ -23,10 +23,20 @@ import javax.xml.stream.XMLInputFactory;
 
 public class SafeStaxParserFactory {
 
+  // configured factories can be shared: they are kept per thread so that Woodstox symbol tables are not contended
+  private static final ThreadLocal<XMLInputFactory> THREAD_FACTORY = ThreadLocal.withInitial(SafeStaxParserFactory::createXMLInputFactory);
+
   private SafeStaxParserFactory() {
     // class with static methods only
   }
 
+  /**
+   * Factory of the current thread, configured as the ones of {@link #createXMLInputFactory()}. It must not be reconfigured.
+   */
+  static XMLInputFactory threadXMLInputFactory() {
+    return THREAD_FACTORY.get();
+  }
+
   public static XMLInputFactory createXMLInputFactory() {
     // forcing the XMLInputFactory implementation class, in order to be sure that we are going to use the adequate
     // stream reader while retrieving locations
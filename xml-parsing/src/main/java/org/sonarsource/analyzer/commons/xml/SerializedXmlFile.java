@@ -0,0 +1,432 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.xerces.dom.DocumentImpl;
+import org.sonarsource.analyzer.commons.xml.PrologElement.PrologAttribute;
+import org.sonarsource.analyzer.commons.xml.XmlFile.Location;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Compact binary form of a parsed file: its namespace-aware document, the locations of its nodes and its prolog.
+ * <p>
+ * Nodes are written in document order, each one followed by its children and an end marker. Names and namespace URIs
+ * are written once, then referenced by index. Locations are offsets in the file content, so that reading the file
+ * again only requires the file content, and no parser.
+ */
+final class SerializedXmlFile {
+
+  static final int FORMAT_VERSION = 1;
+
+  private static final int MAGIC = 0x584d4c43;
+  private static final int END_OF_CHILDREN = 0;
+  private static final int NULL_STRING = 0;
+  private static final int NEW_STRING = 1;
+  private static final int FIRST_STRING_INDEX = 2;
+  private static final Location[] LOCATIONS = Location.values();
+
+  private SerializedXmlFile() {
+    // class with static methods only
+  }
+
+  /**
+   * @return false, without writing anything, when the document holds nodes which can not be serialized (DTD)
+   */
+  static boolean canWrite(XmlFile xmlFile) {
+    Document document = xmlFile.getNamespaceAwareDocument();
+    if (NodeLocations.of(document) == null) {
+      return false;
+    }
+    for (Node child = document.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.DOCUMENT_TYPE_NODE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static byte[] write(XmlFile xmlFile) {
+    Document document = xmlFile.getNamespaceAwareDocument();
+    NodeLocations locations = NodeLocations.of(document);
+    Writer writer = new Writer(locations);
+    writer.writeFixedInt(MAGIC);
+    writer.writeFixedInt(FORMAT_VERSION);
+    // known in advance, to size the tables of the read locations
+    writer.writeFixedInt(locations.nodeCount());
+
+    writer.writeString(document.getInputEncoding());
+    writer.writeString(document.getXmlEncoding());
+    writer.writeString(document.getXmlVersion());
+    writer.writeByte(document.getXmlStandalone() ? 1 : 0);
+    writer.writeProlog(xmlFile.getPrologElement().orElse(null));
+    writer.writeLocations(document);
+    writer.writeChildren(document);
+    return writer.toByteArray();
+  }
+
+  /**
+   * Sets the document and the prolog of a file, whose content must be the one of the serialized file.
+   */
+  static void read(XmlFile xmlFile, byte[] bytes) throws IOException {
+    ByteBuffer input = ByteBuffer.wrap(bytes);
+    if (bytes.length < 12 || input.getInt() != MAGIC || input.getInt() != FORMAT_VERSION) {
+      throw new IOException("Unsupported format");
+    }
+    int nodeCount = input.getInt();
+    DocumentImpl document = new DocumentImpl();
+    // nodes come from a well-formed document
+    document.setStrictErrorChecking(false);
+    NodeLocations locations = new NodeLocations(XmlParser.fileContent(xmlFile.getContents()), nodeCount);
+    locations.attachTo(document);
+    Reader reader = new Reader(input, document, locations);
+
+    document.setInputEncoding(reader.readString());
+    document.setXmlEncoding(reader.readString());
+    String xmlVersion = reader.readString();
+    if (xmlVersion != null) {
+      document.setXmlVersion(xmlVersion);
+    }
+    PrologElement prologElement;
+    try {
+      document.setXmlStandalone(input.get() != 0);
+      prologElement = reader.readProlog();
+      reader.readLocations(document);
+      reader.readChildren(document);
+    } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+      throw new IOException("Invalid content", e);
+    }
+    document.setStrictErrorChecking(true);
+
+    if (prologElement != null) {
+      xmlFile.setPrologElement(prologElement);
+    }
+    xmlFile.setDocument(document, true);
+  }
+
+  private static class Writer {
+
+    private final NodeLocations locations;
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private byte[] bytes = new byte[1024];
+    private int length = 0;
+
+    private Writer(NodeLocations locations) {
+      this.locations = locations;
+    }
+
+    private byte[] toByteArray() {
+      return Arrays.copyOf(bytes, length);
+    }
+
+    private void writeChildren(Node parent) {
+      // iterative, as documents can be deeply nested
+      Node node = parent.getFirstChild();
+      while (node != null) {
+        writeNode(node);
+        if (node.hasChildNodes()) {
+          node = node.getFirstChild();
+        } else {
+          writeByte(END_OF_CHILDREN);
+          while (node.getNextSibling() == null && node.getParentNode() != parent) {
+            node = node.getParentNode();
+            writeByte(END_OF_CHILDREN);
+          }
+          node = node.getNextSibling();
+        }
+      }
+      writeByte(END_OF_CHILDREN);
+    }
+
+    private void writeNode(Node node) {
+      writeByte(node.getNodeType());
+      switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE:
+          writeTableString(node.getNodeName());
+          writeTableString(node.getNamespaceURI());
+          NamedNodeMap attributes = node.getAttributes();
+          writeInt(attributes.getLength());
+          for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            writeTableString(attribute.getNodeName());
+            writeTableString(attribute.getNamespaceURI());
+            writeString(attribute.getNodeValue());
+            writeLocations(attribute);
+          }
+          break;
+        case Node.PROCESSING_INSTRUCTION_NODE:
+          writeTableString(node.getNodeName());
+          writeString(node.getNodeValue());
+          break;
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+        case Node.COMMENT_NODE:
+          writeString(node.getNodeValue());
+          break;
+        default:
+          throw new IllegalStateException("Unexpected node type: " + node.getNodeType());
+      }
+      writeLocations(node);
+    }
+
+    private void writeLocations(Node node) {
+      int mask = 0;
+      for (Location location : LOCATIONS) {
+        if (locations.startOffset(node, location) != -1) {
+          mask |= 1 << location.ordinal();
+        }
+      }
+      writeByte(mask);
+      for (Location location : LOCATIONS) {
+        if ((mask & (1 << location.ordinal())) != 0) {
+          int start = locations.startOffset(node, location);
+          writeInt(start);
+          writeInt(locations.endOffset(node, location) - start);
+        }
+      }
+    }
+
+    private void writeProlog(@Nullable PrologElement prologElement) {
+      writeByte(prologElement != null ? 1 : 0);
+      if (prologElement != null) {
+        writeInt(prologElement.getAttributes().size());
+        for (PrologAttribute attribute : prologElement.getAttributes()) {
+          writeString(attribute.getName());
+          writeRange(attribute.getNameLocation());
+          writeString(attribute.getValue());
+          writeRange(attribute.getValueLocation());
+        }
+        writeRange(prologElement.getPrologStartLocation());
+        writeRange(prologElement.getPrologEndLocation());
+      }
+    }
+
+    private void writeRange(XmlTextRange range) {
+      writeInt(range.getStartLine());
+      writeInt(range.getStartColumn());
+      writeInt(range.getEndLine());
+      writeInt(range.getEndColumn());
+    }
+
+    private void writeTableString(@Nullable String value) {
+      if (value == null) {
+        writeInt(NULL_STRING);
+        return;
+      }
+      Integer index = stringIndexes.get(value);
+      if (index == null) {
+        stringIndexes.put(value, stringIndexes.size());
+        writeInt(NEW_STRING);
+        writeString(value);
+      } else {
+        writeInt(FIRST_STRING_INDEX + index);
+      }
+    }
+
+    private void writeString(@Nullable String value) {
+      if (value == null) {
+        writeInt(0);
+      } else {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(utf8.length + 1);
+        writeBytes(utf8);
+      }
+    }
+
+    /**
+     * Unsigned variable-length encoding: 7 bits per byte, most significant bit set when more bytes follow.
+     */
+    private void writeInt(int value) {
+      int remaining = value;
+      while ((remaining & ~0x7f) != 0) {
+        writeByte((remaining & 0x7f) | 0x80);
+        remaining >>>= 7;
+      }
+      writeByte(remaining);
+    }
+
+    private void writeFixedInt(int value) {
+      writeByte(value >>> 24);
+      writeByte(value >>> 16);
+      writeByte(value >>> 8);
+      writeByte(value);
+    }
+
+    private void writeByte(int value) {
+      ensureCapacity(1);
+      bytes[length] = (byte) value;
+      length++;
+    }
+
+    private void writeBytes(byte[] value) {
+      ensureCapacity(value.length);
+      System.arraycopy(value, 0, bytes, length, value.length);
+      length += value.length;
+    }
+
+    private void ensureCapacity(int count) {
+      if (length + count > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+      }
+    }
+  }
+
+  private static class Reader {
+
+    private final ByteBuffer input;
+    private final Document document;
+    private final NodeLocations locations;
+    private final List<String> strings = new ArrayList<>();
+
+    private Reader(ByteBuffer input, Document document, NodeLocations locations) {
+      this.input = input;
+      this.document = document;
+      this.locations = locations;
+    }
+
+    private void readChildren(Node parent) throws IOException {
+      Node currentParent = parent;
+      int nodeType = input.get();
+      while (true) {
+        if (nodeType == END_OF_CHILDREN) {
+          if (currentParent == parent) {
+            return;
+          }
+          currentParent = currentParent.getParentNode();
+        } else {
+          Node node = currentParent.appendChild(readNode(nodeType));
+          readLocations(node);
+          currentParent = node;
+        }
+        nodeType = input.get();
+      }
+    }
+
+    private Node readNode(int nodeType) throws IOException {
+      switch (nodeType) {
+        case Node.ELEMENT_NODE:
+          String elementName = readTableString();
+          Element element = document.createElementNS(readTableString(), elementName);
+          int attributeCount = readInt();
+          for (int i = 0; i < attributeCount; i++) {
+            String name = readTableString();
+            Attr attribute = document.createAttributeNS(readTableString(), name);
+            attribute.setValue(readString());
+            element.setAttributeNodeNS(attribute);
+            readLocations(attribute);
+          }
+          return element;
+        case Node.PROCESSING_INSTRUCTION_NODE:
+          String target = readTableString();
+          return document.createProcessingInstruction(target, readString());
+        case Node.TEXT_NODE:
+          return document.createTextNode(readString());
+        case Node.CDATA_SECTION_NODE:
+          return document.createCDATASection(readString());
+        case Node.COMMENT_NODE:
+          return document.createComment(readString());
+        default:
+          throw new IOException("Unexpected node type: " + nodeType);
+      }
+    }
+
+    private void readLocations(Node node) {
+      int mask = input.get();
+      for (Location location : LOCATIONS) {
+        if ((mask & (1 << location.ordinal())) != 0) {
+          int start = readInt();
+          locations.set(node, location, start, start + readInt());
+        }
+      }
+    }
+
+    @Nullable
+    private PrologElement readProlog() {
+      if (!(input.get() != 0)) {
+        return null;
+      }
+      int attributeCount = readInt();
+      List<PrologAttribute> attributes = new ArrayList<>(attributeCount);
+      for (int i = 0; i < attributeCount; i++) {
+        String name = readString();
+        XmlTextRange nameLocation = readRange();
+        String value = readString();
+        attributes.add(new PrologAttribute(name, nameLocation, value, readRange()));
+      }
+      XmlTextRange startLocation = readRange();
+      return new PrologElement(attributes, startLocation, readRange());
+    }
+
+    private XmlTextRange readRange() {
+      return new XmlTextRange(readInt(), readInt(), readInt(), readInt());
+    }
+
+    @Nullable
+    private String readTableString() {
+      int code = readInt();
+      if (code == NULL_STRING) {
+        return null;
+      }
+      if (code == NEW_STRING) {
+        String value = readString();
+        strings.add(value);
+        return value;
+      }
+      return strings.get(code - FIRST_STRING_INDEX);
+    }
+
+    @Nullable
+    private String readString() {
+      int length = readInt();
+      if (length == 0) {
+        return null;
+      }
+      int position = input.position();
+      input.position(position + length - 1);
+      return new String(input.array(), position, length - 1, StandardCharsets.UTF_8);
+    }
+
+    private int readInt() {
+      int value = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = input.get();
+        value |= (b & 0x7f) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import com.ctc.wstx.exc.WstxLazyException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
+import org.sonar.api.batch.fs.InputFile;
+
+/**
+ * XML file which is streamed instead of being loaded in memory, see {@link XmlFile#createStreaming(InputFile)}.
+ * Heap usage depends on the nesting depth of the elements, not on the size of the file.
+ */
+public class StreamingXmlFile {
+
+  @Nullable
+  private final InputFile inputFile;
+  private final Charset charset;
+  private final ReaderSupplier readerSupplier;
+
+  @FunctionalInterface
+  interface ReaderSupplier {
+    Reader open() throws IOException;
+  }
+
+  StreamingXmlFile(@Nullable InputFile inputFile, Charset charset, ReaderSupplier readerSupplier) {
+    this.inputFile = inputFile;
+    this.charset = charset;
+    this.readerSupplier = readerSupplier;
+  }
+
+  /**
+   * @return null when created based on string
+   */
+  @Nullable
+  public InputFile getInputFile() {
+    return inputFile;
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  /**
+   * Reads the whole file, sending its events to each handler in turn. The file can be scanned several times.
+   *
+   * @throws ParseException when the file is not well-formed, handlers having received the events preceding the error
+   * @throws IOException when the file can not be opened
+   */
+  public void scan(List<? extends XmlStreamHandler> handlers) throws IOException {
+    try (Reader reader = readerSupplier.open()) {
+      new XmlStreamParser(XmlStreamContent.create(reader), handlers).parse();
+    } catch (XMLStreamException | WstxLazyException e) {
+      throw new ParseException(e);
+    }
+  }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.util.Arrays;
+
+/**
+ * Finds the boundaries of tags in a single forward pass over an {@link XmlContent}.
+ * Each scan is driven by a table of transitions indexed by state and ASCII character; characters outside of ASCII
+ * never appear in the syntax of a tag, so they use a per-state default transition.
+ */
+final class TagScanner {
+
+  private static final int ASCII = 128;
+
+  // states shared by both automatons
+  private static final byte FINISH = 0;
+  private static final byte START = 1;
+
+  // states of the closing bracket automaton
+  private static final byte INSIDE_NESTED_ELEMENT = 2;
+  private static final byte INSIDE_SINGLE_QUOTE = 3;
+  private static final byte INSIDE_DOUBLE_QUOTE = 4;
+  private static final byte INSIDE_SINGLE_QUOTE_NESTED_ELEMENT = 5;
+  private static final byte INSIDE_DOUBLE_QUOTE_NESTED_ELEMENT = 6;
+  private static final int BRACKET_STATES = 7;
+
+  // states of the start tag automaton, START being between attributes
+  private static final byte ATTRIBUTE_NAME = 2;
+  private static final byte BEFORE_ATTRIBUTE_VALUE = 3;
+  private static final byte SINGLE_QUOTED_VALUE = 4;
+  private static final byte DOUBLE_QUOTED_VALUE = 5;
+  private static final int START_TAG_STATES = 6;
+
+  private static final byte[] BRACKET_TRANSITIONS = new byte[BRACKET_STATES * ASCII];
+  private static final byte[] START_TAG_TRANSITIONS = new byte[START_TAG_STATES * ASCII];
+  private static final byte[] START_TAG_NON_ASCII = {FINISH, ATTRIBUTE_NAME, ATTRIBUTE_NAME, BEFORE_ATTRIBUTE_VALUE,
+    SINGLE_QUOTED_VALUE, DOUBLE_QUOTED_VALUE};
+
+  static {
+    for (byte state = 0; state < BRACKET_STATES; state++) {
+      Arrays.fill(BRACKET_TRANSITIONS, state * ASCII, (state + 1) * ASCII, state);
+    }
+    setTransition(BRACKET_TRANSITIONS, START, '>', FINISH);
+    setTransition(BRACKET_TRANSITIONS, START, '<', INSIDE_NESTED_ELEMENT);
+    setTransition(BRACKET_TRANSITIONS, START, '\'', INSIDE_SINGLE_QUOTE);
+    setTransition(BRACKET_TRANSITIONS, START, '"', INSIDE_DOUBLE_QUOTE);
+
+    setTransition(BRACKET_TRANSITIONS, INSIDE_NESTED_ELEMENT, '>', START);
+    setTransition(BRACKET_TRANSITIONS, INSIDE_NESTED_ELEMENT, '\'', INSIDE_SINGLE_QUOTE_NESTED_ELEMENT);
+    setTransition(BRACKET_TRANSITIONS, INSIDE_NESTED_ELEMENT, '"', INSIDE_DOUBLE_QUOTE_NESTED_ELEMENT);
+
+    setTransition(BRACKET_TRANSITIONS, INSIDE_SINGLE_QUOTE, '\'', START);
+    setTransition(BRACKET_TRANSITIONS, INSIDE_DOUBLE_QUOTE, '"', START);
+
+    setTransition(BRACKET_TRANSITIONS, INSIDE_SINGLE_QUOTE_NESTED_ELEMENT, '\'', INSIDE_NESTED_ELEMENT);
+    setTransition(BRACKET_TRANSITIONS, INSIDE_DOUBLE_QUOTE_NESTED_ELEMENT, '"', INSIDE_NESTED_ELEMENT);
+
+    for (byte state = 0; state < START_TAG_STATES; state++) {
+      Arrays.fill(START_TAG_TRANSITIONS, state * ASCII, (state + 1) * ASCII, state);
+    }
+    // any character other than a whitespace, '/' or '>' starts the name of an attribute
+    Arrays.fill(START_TAG_TRANSITIONS, START * ASCII, (START + 1) * ASCII, ATTRIBUTE_NAME);
+    for (char c : new char[] {' ', '\t', '\n', '\r', '/'}) {
+      setTransition(START_TAG_TRANSITIONS, START, c, START);
+    }
+    setTransition(START_TAG_TRANSITIONS, START, '>', FINISH);
+    setTransition(START_TAG_TRANSITIONS, ATTRIBUTE_NAME, '=', BEFORE_ATTRIBUTE_VALUE);
+    setTransition(START_TAG_TRANSITIONS, BEFORE_ATTRIBUTE_VALUE, '\'', SINGLE_QUOTED_VALUE);
+    setTransition(START_TAG_TRANSITIONS, BEFORE_ATTRIBUTE_VALUE, '"', DOUBLE_QUOTED_VALUE);
+    setTransition(START_TAG_TRANSITIONS, SINGLE_QUOTED_VALUE, '\'', START);
+    setTransition(START_TAG_TRANSITIONS, DOUBLE_QUOTED_VALUE, '"', START);
+  }
+
+  // for each attribute: start and end of the name, start and end of the value
+  private int[] attributeOffsets = new int[4 * 8];
+  private int attributeCount;
+  private int closingBracketEnd;
+
+  private static void setTransition(byte[] transitions, byte state, char c, byte nextState) {
+    transitions[state * ASCII + c] = nextState;
+  }
+
+  /**
+   * @param offset offset of the opening '<' of a tag
+   * @return offset following the '>' closing the tag, skipping quoted values and nested elements of DTDs
+   */
+  static int moveAfterClosingBracket(XmlContent content, int offset) {
+    int closingBracketEnd = closingBracketEnd(content, offset);
+    if (closingBracketEnd == -1) {
+      throw new IllegalStateException("Failed to find closing bracket '>'.");
+    }
+    return closingBracketEnd;
+  }
+
+  /**
+   * @param offset offset of the opening '<' of a tag
+   * @return offset following the '>' closing the tag, or -1 when the tag is not closed
+   */
+  static int closingBracketEnd(XmlContent content, int offset) {
+    int state = START;
+    int length = content.length();
+    for (int i = offset + 1; i < length; i++) {
+      char c = content.readChar(i);
+      if (c < ASCII) {
+        state = BRACKET_TRANSITIONS[state * ASCII + c];
+        if (state == FINISH) {
+          return i + 1;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the attributes and the closing bracket of a well-formed start tag.
+   * The name of an attribute ends before its '=', and its value includes the quotes.
+   *
+   * @param offset offset following the name of the element
+   */
+  void scanStartTag(XmlContent content, int offset) {
+    attributeCount = 0;
+    int state = START;
+    int length = content.length();
+    for (int i = offset; i < length; i++) {
+      char c = content.readChar(i);
+      int nextState = c < ASCII ? START_TAG_TRANSITIONS[state * ASCII + c] : START_TAG_NON_ASCII[state];
+      if (nextState != state) {
+        state = nextState;
+        switch (state) {
+          case FINISH:
+            closingBracketEnd = i + 1;
+            return;
+          case ATTRIBUTE_NAME:
+            addAttribute(i);
+            break;
+          case BEFORE_ATTRIBUTE_VALUE:
+            attributeOffsets[4 * attributeCount - 3] = i;
+            break;
+          case START:
+            attributeOffsets[4 * attributeCount - 1] = i + 1;
+            break;
+          default:
+            // start of a quoted value
+            attributeOffsets[4 * attributeCount - 2] = i;
+            break;
+        }
+      }
+    }
+    throw new IllegalStateException("Failed to find closing bracket '>'.");
+  }
+
+  private void addAttribute(int nameStart) {
+    if (4 * attributeCount == attributeOffsets.length) {
+      attributeOffsets = Arrays.copyOf(attributeOffsets, 2 * attributeOffsets.length);
+    }
+    attributeOffsets[4 * attributeCount] = nameStart;
+    attributeCount++;
+  }
+
+  int attributeCount() {
+    return attributeCount;
+  }
+
+  int attributeNameStart(int index) {
+    return attributeOffsets[4 * index];
+  }
+
+  int attributeNameEnd(int index) {
+    return attributeOffsets[4 * index + 1];
+  }
+
+  int attributeValueStart(int index) {
+    return attributeOffsets[4 * index + 2];
+  }
+
+  int attributeValueEnd(int index) {
+    return attributeOffsets[4 * index + 3];
+  }
+
+  /**
+   * @return offset following the '>' of the last scanned start tag
+   */
+  int closingBracketEnd() {
+    return closingBracketEnd;
+  }
+}
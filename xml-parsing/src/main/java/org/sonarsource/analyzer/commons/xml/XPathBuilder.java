@@ -24,15 +24,11 @@ import java.util.Iterator;
 import java.util.Map;
 import javax.xml.XMLConstants;
 import javax.xml.namespace.NamespaceContext;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 public class XPathBuilder {
 
-  private static final XPathFactory FACTORY = XPathFactory.newInstance();
-
   private final String expression;
   private final XPathContext namespaceContext = new XPathContext();
 
@@ -49,11 +45,12 @@ public class XPathBuilder {
     return this;
   }
 
+  /**
+   * @return compiled expression, shared through {@link XPathExpressionCache} and which can be evaluated by any thread
+   */
   public XPathExpression build() {
     try {
-      XPath xpath = FACTORY.newXPath();
-      xpath.setNamespaceContext(namespaceContext);
-      return xpath.compile(expression);
+      return XPathExpressionCache.getInstance().compile(expression, namespaceContext.namespaceByPrefixMap);
     } catch (XPathExpressionException e) {
       throw new IllegalStateException("Failed to compile XPath expression [" + expression + "]: " + e.getMessage(), e);
     }
@@ -0,0 +1,190 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import org.xml.sax.InputSource;
+
+/**
+ * Process-wide bounded cache of compiled XPath expressions, keyed by expression and namespace context, shared by all
+ * the checks and files being analyzed.
+ * <p>
+ * As neither {@link XPathFactory}, {@link XPath} nor {@link XPathExpression} are thread-safe, returned expressions
+ * delegate to an expression compiled once per thread using them.
+ */
+public final class XPathExpressionCache {
+
+  private static final int DEFAULT_MAX_SIZE = 1_000;
+  private static final XPathExpressionCache INSTANCE = new XPathExpressionCache(DEFAULT_MAX_SIZE);
+
+  private static final ThreadLocal<XPathFactory> FACTORY = ThreadLocal.withInitial(XPathFactory::newInstance);
+
+  private final Map<Key, XPathExpression> expressions;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  // Visible for testing
+  XPathExpressionCache(int maxSize) {
+    expressions = new LinkedHashMap<Key, XPathExpression>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, XPathExpression> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  public static XPathExpressionCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @param expression XPath 1.0 expression, without namespace prefixes
+   * @return compiled expression, which can be evaluated by any thread
+   * @throws XPathExpressionException when the expression can not be compiled
+   */
+  public XPathExpression compile(String expression) throws XPathExpressionException {
+    return compile(expression, Collections.emptyMap());
+  }
+
+  /**
+   * @param expression XPath 1.0 expression
+   * @param namespaceByPrefix namespace URI of each prefix used by the expression
+   * @return compiled expression, which can be evaluated by any thread
+   * @throws XPathExpressionException when the expression can not be compiled
+   */
+  public XPathExpression compile(String expression, Map<String, String> namespaceByPrefix) throws XPathExpressionException {
+    Key key = new Key(expression, new HashMap<>(namespaceByPrefix));
+    XPathExpression cached;
+    synchronized (expressions) {
+      cached = expressions.get(key);
+    }
+    if (cached != null) {
+      hitCount.incrementAndGet();
+      return cached;
+    }
+    missCount.incrementAndGet();
+    // compiled out of the lock, failing here when the expression is invalid
+    XPathExpression compiled = new PerThreadExpression(key, key.compile());
+    synchronized (expressions) {
+      XPathExpression concurrentlyCompiled = expressions.putIfAbsent(key, compiled);
+      return concurrentlyCompiled != null ? concurrentlyCompiled : compiled;
+    }
+  }
+
+  public long hitCount() {
+    return hitCount.get();
+  }
+
+  public long missCount() {
+    return missCount.get();
+  }
+
+  public int size() {
+    synchronized (expressions) {
+      return expressions.size();
+    }
+  }
+
+  private static final class Key {
+
+    private final String expression;
+    private final Map<String, String> namespaceByPrefix;
+
+    private Key(String expression, Map<String, String> namespaceByPrefix) {
+      this.expression = expression;
+      this.namespaceByPrefix = namespaceByPrefix;
+    }
+
+    private XPathExpression compile() throws XPathExpressionException {
+      XPath xpath = FACTORY.get().newXPath();
+      if (!namespaceByPrefix.isEmpty()) {
+        XPathBuilder.XPathContext namespaceContext = new XPathBuilder.XPathContext();
+        namespaceByPrefix.forEach(namespaceContext::add);
+        xpath.setNamespaceContext(namespaceContext);
+      }
+      return xpath.compile(expression);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return expression.equals(key.expression) && namespaceByPrefix.equals(key.namespaceByPrefix);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(expression, namespaceByPrefix);
+    }
+  }
+
+  private static final class PerThreadExpression implements XPathExpression {
+
+    private final ThreadLocal<XPathExpression> delegate;
+
+    private PerThreadExpression(Key key, XPathExpression compiled) {
+      delegate = ThreadLocal.withInitial(() -> {
+        try {
+          return key.compile();
+        } catch (XPathExpressionException e) {
+          // already successfully compiled by another thread
+          throw new IllegalStateException(e);
+        }
+      });
+      delegate.set(compiled);
+    }
+
+    @Override
+    public Object evaluate(Object item, QName returnType) throws XPathExpressionException {
+      return delegate.get().evaluate(item, returnType);
+    }
+
+    @Override
+    public String evaluate(Object item) throws XPathExpressionException {
+      return delegate.get().evaluate(item);
+    }
+
+    @Override
+    public Object evaluate(InputSource source, QName returnType) throws XPathExpressionException {
+      return delegate.get().evaluate(source, returnType);
+    }
+
+    @Override
+    public String evaluate(InputSource source) throws XPathExpressionException {
+      return delegate.get().evaluate(source);
+    }
+  }
+
+}
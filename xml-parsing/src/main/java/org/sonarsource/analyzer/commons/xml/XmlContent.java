@@ -0,0 +1,173 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Characters of an XML file, which can be navigated using character offsets.
+ * Offsets are converted into lines and columns only when creating {@link XmlTextRange}.
+ */
+abstract class XmlContent {
+
+  // 1-based position of the first character of the content in the file
+  private final int firstLine;
+  private final int firstColumn;
+
+  XmlContent(int firstLine, int firstColumn) {
+    this.firstLine = firstLine;
+    this.firstColumn = firstColumn;
+  }
+
+  abstract char readChar(int offset);
+
+  /**
+   * @return offset following the last available character
+   */
+  abstract int length();
+
+  abstract String text(int startOffset, int endOffset);
+
+  /**
+   * @return 0-based index of the line containing the offset, relatively to the start of the content
+   */
+  abstract int lineIndex(int offset);
+
+  /**
+   * @return offset of the first character of the line
+   */
+  abstract int lineStart(int lineIndex);
+
+  int indexOf(char c, int offset) {
+    int length = length();
+    for (int i = offset; i < length; i++) {
+      if (readChar(i) == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  int indexOf(String substring, int offset) {
+    int last = length() - substring.length();
+    for (int i = offset; i <= last; i++) {
+      if (startsWith(i, substring)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  boolean startsWith(int offset, String prefix) {
+    if (offset < 0 || offset + prefix.length() > length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (readChar(offset + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // 1-based, relatively to the start of the content
+  int line(int offset) {
+    return lineIndex(offset) + 1;
+  }
+
+  // 1-based, relatively to the start of the content
+  int column(int offset) {
+    return offset - lineStart(lineIndex(offset)) + 1;
+  }
+
+  XmlTextRange range(int startOffset, int endOffset) {
+    int startLineIndex = lineIndex(startOffset);
+    int endLineIndex = lineIndex(endOffset);
+    return new XmlTextRange(sqLine(startLineIndex), sqColumn(startLineIndex, startOffset), sqLine(endLineIndex), sqColumn(endLineIndex, endOffset));
+  }
+
+  // one-based, in the file
+  private int sqLine(int lineIndex) {
+    return lineIndex + firstLine;
+  }
+
+  // zero-based, in the file
+  private int sqColumn(int lineIndex, int offset) {
+    int line = lineIndex + 1;
+    int column = offset - lineStart(lineIndex) + 1;
+    int columnOffset = line == firstLine || line == 1 ? (firstColumn - 1) : 0;
+    // "-1" to make it zero-based
+    return column + columnOffset - 1;
+  }
+
+  int shift(int offset, int nbChar) throws XMLStreamException {
+    if (offset + nbChar > length()) {
+      throw new XMLStreamException("Cannot shift by " + nbChar + "characters");
+    }
+    return offset + nbChar;
+  }
+
+  int moveBackward(int offset) throws XMLStreamException {
+    if (column(offset) == 1) {
+      throw new XMLStreamException("Cannot move backward from column 1");
+    }
+    return offset - 1;
+  }
+
+  int moveAfter(int offset, String substring) throws XMLStreamException {
+    return moveBefore(offset, substring) + substring.length();
+  }
+
+  int moveAfter(int offset, char c) throws XMLStreamException {
+    return moveBefore(offset, c) + 1;
+  }
+
+  int moveAfterClosingBracket(int offset) {
+    return TagScanner.moveAfterClosingBracket(this, offset);
+  }
+
+  int moveBefore(int offset, String substring) throws XMLStreamException {
+    return checkFound(indexOf(substring, offset), substring, offset);
+  }
+
+  int moveBefore(int offset, char c) throws XMLStreamException {
+    return checkFound(indexOf(c, offset), String.valueOf(c), offset);
+  }
+
+  private int checkFound(int index, String substring, int offset) throws XMLStreamException {
+    if (index == -1) {
+      throw new XMLStreamException("Cannot find " + substring + " in " + text(offset, length()));
+    }
+    return index;
+  }
+
+  int moveAfterWhitespaces(int offset) {
+    int res = offset;
+    while (Character.isWhitespace(readChar(res))) {
+      res++;
+    }
+    return res;
+  }
+
+  boolean has(int offset, char c, int maxOffset) {
+    int index = indexOf(c, offset);
+    return index != -1 && index < maxOffset;
+  }
+}
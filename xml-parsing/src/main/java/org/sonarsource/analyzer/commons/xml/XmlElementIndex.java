@@ -0,0 +1,98 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+
+/**
+ * Elements of a document grouped by qualified name, and by the qualified name of their attributes, in document order.
+ * The index is built by a single traversal of the document the first time it is requested, and is then kept with
+ * the document: it does not reflect later modifications of the DOM.
+ */
+public final class XmlElementIndex {
+
+  private static final String USER_DATA_KEY = XmlElementIndex.class.getName();
+  private static final Element[] NO_ELEMENTS = new Element[0];
+
+  private final Map<String, Element[]> elementsByName;
+  private final Map<String, Element[]> elementsByAttributeName;
+
+  private XmlElementIndex(Map<String, Element[]> elementsByName, Map<String, Element[]> elementsByAttributeName) {
+    this.elementsByName = elementsByName;
+    this.elementsByAttributeName = elementsByAttributeName;
+  }
+
+  public static XmlElementIndex of(Document document) {
+    XmlElementIndex index = (XmlElementIndex) document.getUserData(USER_DATA_KEY);
+    if (index == null) {
+      index = build(document);
+      document.setUserData(USER_DATA_KEY, index, null);
+    }
+    return index;
+  }
+
+  /**
+   * @param qualifiedName name of the elements, including their prefix if any
+   * @return elements having this name, in document order
+   */
+  public List<Element> getElements(String qualifiedName) {
+    return asList(elementsByName.get(qualifiedName));
+  }
+
+  /**
+   * @param qualifiedName name of the attribute, including its prefix if any
+   * @return elements having an attribute with this name, in document order
+   */
+  public List<Element> getElementsWithAttribute(String qualifiedName) {
+    return asList(elementsByAttributeName.get(qualifiedName));
+  }
+
+  private static List<Element> asList(@Nullable Element[] elements) {
+    return Collections.unmodifiableList(Arrays.asList(elements == null ? NO_ELEMENTS : elements));
+  }
+
+  private static XmlElementIndex build(Document document) {
+    Map<String, List<Element>> elementsByName = new HashMap<>();
+    Map<String, List<Element>> elementsByAttributeName = new HashMap<>();
+    XmlFile.visitPreOrder(document, Element.class, element -> {
+      elementsByName.computeIfAbsent(element.getNodeName(), name -> new ArrayList<>()).add(element);
+      NamedNodeMap attributes = element.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        elementsByAttributeName.computeIfAbsent(attributes.item(i).getNodeName(), name -> new ArrayList<>()).add(element);
+      }
+    });
+    return new XmlElementIndex(toArrays(elementsByName), toArrays(elementsByAttributeName));
+  }
+
+  private static Map<String, Element[]> toArrays(Map<String, List<Element>> elementsByName) {
+    Map<String, Element[]> result = new HashMap<>(elementsByName.size() * 2);
+    elementsByName.forEach((name, elements) -> result.put(name, elements.toArray(NO_ELEMENTS)));
+    return result;
+  }
+}
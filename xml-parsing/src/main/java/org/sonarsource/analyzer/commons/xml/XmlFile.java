@@ -20,14 +20,20 @@
 package org.sonarsource.analyzer.commons.xml;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.InputFile;
@@ -54,10 +60,12 @@ public class XmlFile {
 
   private InputFile inputFile;
   private Document documentNamespaceAware;
-  // set lazely in getDocument when called with "false" argument
+  // set lazily from the namespace-aware document when requested
   private Document documentNamespaceUnaware;
   private String contents;
   private Charset charset;
+  // nodes of the documents are created when accessed, see createLazy
+  private boolean lazy = false;
 
   void setDocument(Document document, boolean namespaceAware) {
     if (namespaceAware) {
@@ -73,13 +81,13 @@ public class XmlFile {
 
   private PrologElement prologElement = null;
 
-  private XmlFile(InputFile inputFile) throws IOException {
+  XmlFile(InputFile inputFile) throws IOException {
     this.inputFile = inputFile;
     this.contents = inputFile.contents();
     this.charset = inputFile.charset();
   }
 
-  private XmlFile(String str) {
+  XmlFile(String str) {
     this.inputFile = null;
     this.contents = str;
     this.charset = DEFAULT_CHARSET;
@@ -97,6 +105,37 @@ public class XmlFile {
     return xmlFile;
   }
 
+  /**
+   * Creates a file whose DOM nodes are only created when accessed for the first time, intended for checks looking at
+   * a few nodes of each file. The location of a node is resolved when requested. As reading nodes creates them, the
+   * documents of such a file must not be read concurrently.
+   */
+  public static XmlFile createLazy(InputFile inputFile) throws IOException {
+    XmlFile xmlFile = new XmlFile(inputFile);
+    xmlFile.lazy = true;
+    new XmlParser(xmlFile, true, true);
+    return xmlFile;
+  }
+
+  public static XmlFile createLazy(String str) {
+    XmlFile xmlFile = new XmlFile(str);
+    xmlFile.lazy = true;
+    new XmlParser(xmlFile, true, true);
+    return xmlFile;
+  }
+
+  /**
+   * Creates a file which is streamed on each {@link StreamingXmlFile#scan(List)} call instead of being loaded in memory,
+   * intended for very large files. No DOM is built.
+   */
+  public static StreamingXmlFile createStreaming(InputFile inputFile) {
+    return new StreamingXmlFile(inputFile, inputFile.charset(), () -> new InputStreamReader(inputFile.inputStream(), inputFile.charset()));
+  }
+
+  public static StreamingXmlFile createStreaming(String str) {
+    return new StreamingXmlFile(null, DEFAULT_CHARSET, () -> new StringReader(str));
+  }
+
   /**
    * @return null when created based on string
    */
@@ -126,12 +165,23 @@ public class XmlFile {
 
   public Document getNamespaceUnawareDocument() {
     if (documentNamespaceUnaware == null) {
-      new XmlParser(this, false);
+      // copying the namespace-aware document would create all its nodes
+      documentNamespaceUnaware = lazy ? null : NamespaceUnawareDocument.from(documentNamespaceAware);
+      if (documentNamespaceUnaware == null) {
+        new XmlParser(this, false, lazy);
+      }
     }
 
     return documentNamespaceUnaware;
   }
 
+  /**
+   * @return elements of the namespace-aware document indexed by name, built on first call
+   */
+  public XmlElementIndex getElementIndex() {
+    return XmlElementIndex.of(getNamespaceAwareDocument());
+  }
+
   public Optional<PrologElement> getPrologElement() {
     return Optional.ofNullable(prologElement);
   }
@@ -169,7 +219,7 @@ public class XmlFile {
   }
 
   public static Optional<XmlTextRange> getRange(Node node, Location location) {
-    return Optional.ofNullable((XmlTextRange) node.getUserData(location.name()));
+    return Optional.ofNullable(NodeLocations.range(node, location));
   }
 
   private static XmlTextRange getRangeOrThrow(Node node, Location location, String nodeType) {
@@ -182,6 +232,7 @@ public class XmlFile {
    *
    * @param node the node to get children from
    * @return a list of nodes, possibly empty.
+   * @see #childNodes(Node) to iterate over the children without copying them
    */
   public static List<Node> children(Node node) {
     return asList(node.getChildNodes());
@@ -192,6 +243,7 @@ public class XmlFile {
    *
    * @param nodeList the nodeList to be transformed into a List, possibly null
    * @return The equivalent java list. Note that a null NodeList will produce an empty list.
+   * @see #asListView(NodeList) to get a list without copying the nodes
    */
   public static List<Node> asList(@Nullable NodeList nodeList) {
     if (nodeList == null) {
@@ -201,9 +253,57 @@ public class XmlFile {
     if (numberResults == 0) {
       return Collections.emptyList();
     }
-    return IntStream.range(0, numberResults)
-      .mapToObj(nodeList::item)
-      .collect(Collectors.toList());
+    List<Node> result = new ArrayList<>(numberResults);
+    for (int i = 0; i < numberResults; i++) {
+      result.add(nodeList.item(i));
+    }
+    return result;
+  }
+
+  /**
+   * Wrap a NodeList (from DOM interface) into an unmodifiable java List, without copying it.
+   * Like the NodeList, the returned list reflects the changes of the DOM.
+   *
+   * @param nodeList the nodeList to be wrapped, possibly null
+   * @return a view of the nodeList. Note that a null NodeList will produce an empty list.
+   */
+  public static List<Node> asListView(@Nullable NodeList nodeList) {
+    return nodeList == null ? Collections.emptyList() : new NodeListView(nodeList);
+  }
+
+  /**
+   * Iterate over the children of a node by walking from its first child to its next siblings, without copying them.
+   *
+   * @param node the node to get children from
+   * @return the children of the node, possibly none.
+   */
+  public static Iterable<Node> childNodes(Node node) {
+    return () -> new SiblingIterator(node.getFirstChild());
+  }
+
+  /**
+   * Visit a node and all its descendants in document order, without recursion nor copy of the children.
+   * Attributes are not visited.
+   *
+   * @param root the first node to visit
+   * @param nodeClass the DOM interface of the nodes to visit, such as {@link Element} or {@link org.w3c.dom.Comment}
+   * @param visitor called with each visited node of the expected class
+   */
+  public static <T extends Node> void visitPreOrder(Node root, Class<T> nodeClass, Consumer<? super T> visitor) {
+    Node node = root;
+    while (node != null) {
+      if (nodeClass.isInstance(node)) {
+        visitor.accept(nodeClass.cast(node));
+      }
+      Node next = node.getFirstChild();
+      while (next == null && node != root) {
+        next = node.getNextSibling();
+        if (next == null) {
+          node = node.getParentNode();
+        }
+      }
+      node = next;
+    }
   }
 
   /**
@@ -221,4 +321,51 @@ public class XmlFile {
     }
     return attributes.getNamedItem(attribute);
   }
+
+  private static final class NodeListView extends AbstractList<Node> implements RandomAccess {
+
+    private final NodeList nodeList;
+
+    private NodeListView(NodeList nodeList) {
+      this.nodeList = nodeList;
+    }
+
+    @Override
+    public Node get(int index) {
+      if (index < 0 || index >= nodeList.getLength()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + nodeList.getLength());
+      }
+      return nodeList.item(index);
+    }
+
+    @Override
+    public int size() {
+      return nodeList.getLength();
+    }
+  }
+
+  private static final class SiblingIterator implements Iterator<Node> {
+
+    @Nullable
+    private Node next;
+
+    private SiblingIterator(@Nullable Node first) {
+      this.next = first;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Node next() {
+      Node current = next;
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      next = current.getNextSibling();
+      return current;
+    }
+  }
 }
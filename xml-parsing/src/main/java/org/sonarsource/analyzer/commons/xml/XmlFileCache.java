@@ -0,0 +1,224 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Optional on-disk cache of parsed files, to be kept between analyses: files whose content did not change are loaded
+ * from their binary form instead of being parsed again.
+ * <p>
+ * Entries are keyed by a hash of the file content, of its charset and of the format version. When the cache grows
+ * above its maximum size, the least recently used entries are removed. Files whose document has a DTD are not cached.
+ */
+public final class XmlFileCache {
+
+  private static final Logger LOG = Loggers.get(XmlFileCache.class);
+  private static final String ENTRY_EXTENSION = ".xmlc";
+
+  private final Path directory;
+  private final long maxSize;
+  private final AtomicLong size = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  /**
+   * @param maxSize maximum size, in bytes, of the entries of the directory
+   */
+  public XmlFileCache(Path directory, long maxSize) throws IOException {
+    this.directory = directory;
+    this.maxSize = maxSize;
+    Files.createDirectories(directory);
+    for (Path entry : entries()) {
+      size.addAndGet(Files.size(entry));
+    }
+  }
+
+  public XmlFile create(InputFile inputFile) throws IOException {
+    return load(new XmlFile(inputFile));
+  }
+
+  public XmlFile create(String str) {
+    return load(new XmlFile(str));
+  }
+
+  public long hitCount() {
+    return hitCount.get();
+  }
+
+  public long missCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return size, in bytes, of the entries written or found by this instance
+   */
+  public long size() {
+    return size.get();
+  }
+
+  private XmlFile load(XmlFile xmlFile) {
+    Path entry = directory.resolve(key(xmlFile) + ENTRY_EXTENSION);
+    if (read(xmlFile, entry)) {
+      hitCount.incrementAndGet();
+      return xmlFile;
+    }
+    missCount.incrementAndGet();
+    new XmlParser(xmlFile, true);
+    if (SerializedXmlFile.canWrite(xmlFile)) {
+      write(xmlFile, entry);
+    }
+    return xmlFile;
+  }
+
+  private static boolean read(XmlFile xmlFile, Path entry) {
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(entry);
+    } catch (IOException e) {
+      // no such entry
+      return false;
+    }
+    try {
+      SerializedXmlFile.read(xmlFile, bytes);
+      // the modification time tells when the entry was last used
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+      return true;
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Ignoring invalid cache entry {}: {}", entry, e.getMessage());
+      return false;
+    }
+  }
+
+  private void write(XmlFile xmlFile, Path entry) {
+    Path temporaryFile = null;
+    try {
+      // written aside then moved, so that other analyses never read a partial entry
+      byte[] bytes = SerializedXmlFile.write(xmlFile);
+      temporaryFile = Files.createTempFile(directory, "entry", ".tmp");
+      Files.write(temporaryFile, bytes);
+      // an invalid entry which is replaced was counted when found
+      long replacedSize = sizeOf(entry);
+      Files.move(temporaryFile, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      temporaryFile = null;
+      if (size.addAndGet(bytes.length - replacedSize) > maxSize) {
+        evict();
+      }
+    } catch (IOException e) {
+      LOG.debug("Unable to write cache entry {}: {}", entry, e.getMessage());
+    } finally {
+      if (temporaryFile != null) {
+        delete(temporaryFile);
+      }
+    }
+  }
+
+  private static long sizeOf(Path entry) {
+    try {
+      return Files.size(entry);
+    } catch (IOException e) {
+      // no such entry
+      return 0;
+    }
+  }
+
+  private static void delete(Path temporaryFile) {
+    try {
+      Files.deleteIfExists(temporaryFile);
+    } catch (IOException e) {
+      LOG.debug("Unable to delete temporary cache file {}: {}", temporaryFile, e.getMessage());
+    }
+  }
+
+  private synchronized void evict() throws IOException {
+    if (size.get() <= maxSize) {
+      return;
+    }
+    List<Entry> entries = new ArrayList<>();
+    long totalSize = 0;
+    for (Path path : entries()) {
+      Entry entry = new Entry(path, Files.getLastModifiedTime(path), Files.size(path));
+      entries.add(entry);
+      totalSize += entry.size;
+    }
+    entries.sort(Comparator.comparing((Entry entry) -> entry.lastUsed));
+    for (Entry entry : entries) {
+      if (totalSize <= maxSize) {
+        break;
+      }
+      if (Files.deleteIfExists(entry.path)) {
+        totalSize -= entry.size;
+      }
+    }
+    size.set(totalSize);
+  }
+
+  private List<Path> entries() throws IOException {
+    List<Path> entries = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_EXTENSION)) {
+      stream.forEach(entries::add);
+    }
+    return entries;
+  }
+
+  private static String key(XmlFile xmlFile) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    digest.update((SerializedXmlFile.FORMAT_VERSION + ":" + xmlFile.getCharset().name() + ":").getBytes(StandardCharsets.UTF_8));
+    digest.update(xmlFile.getContents().getBytes(StandardCharsets.UTF_8));
+    StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest()) {
+      key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return key.toString();
+  }
+
+  private static class Entry {
+    private final Path path;
+    private final FileTime lastUsed;
+    private final long size;
+
+    private Entry(Path path, FileTime lastUsed, long size) {
+      this.path = path;
+      this.lastUsed = lastUsed;
+      this.size = size;
+    }
+  }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Content of an XML file, along with the offset at which each of its lines starts.
+ * <p>
+ * The content can be a part of a larger string, such as the file contents without the characters preceding the XML
+ * declaration: offsets are then relative to the start of this part, and the string is not copied.
+ */
+class XmlFileContent extends XmlContent {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final String content;
+  private final int start;
+  private final int end;
+  // offset of the first character of each line, "lineStarts[0]" being always 0
+  private final int[] lineStarts;
+  // only a hint, as ranges can be computed by any thread once the file is parsed
+  private int lastLineIndex = 0;
+
+  XmlFileContent(String content) {
+    this(content, 1, 1);
+  }
+
+  XmlFileContent(String content, int firstLine, int firstColumn) {
+    this(content, 0, content.length(), firstLine, firstColumn);
+  }
+
+  /**
+   * Content made of the characters of the string from "start" (inclusive) to "end" (exclusive)
+   */
+  XmlFileContent(String content, int start, int end, int firstLine, int firstColumn) {
+    super(firstLine, firstColumn);
+    this.content = content;
+    this.start = start;
+    this.end = end;
+    this.lineStarts = computeLineStarts(content, start, end);
+  }
+
+  private static int[] computeLineStarts(String content, int start, int end) {
+    int[] lineStarts = new int[16];
+    int lineCount = 1;
+    for (int i = start; i < end; i++) {
+      char c = content.charAt(i);
+      // as for XML parsers, "\r\n" is a single line break
+      if (c == '\n' || (c == '\r' && (i + 1 == end || content.charAt(i + 1) != '\n'))) {
+        if (lineCount == lineStarts.length) {
+          lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount] = i + 1 - start;
+        lineCount++;
+      }
+    }
+    return Arrays.copyOf(lineStarts, lineCount);
+  }
+
+  /**
+   * @return a reader of the characters of the content, which are not copied
+   */
+  Reader newReader() {
+    return new CharBufferReader(CharBuffer.wrap(content, start, end));
+  }
+
+  /**
+   * @return a stream of the characters of the content, encoded with the given charset while being read,
+   * so that the encoded content is never fully held in memory
+   */
+  InputStream newInputStream(Charset charset) {
+    return new EncodingInputStream(CharBuffer.wrap(content, start, end), charset);
+  }
+
+  @Override
+  char readChar(int offset) {
+    return content.charAt(start + offset);
+  }
+
+  @Override
+  int length() {
+    return end - start;
+  }
+
+  @Override
+  String text(int startOffset, int endOffset) {
+    return content.substring(start + startOffset, start + endOffset);
+  }
+
+  @Override
+  int indexOf(char c, int offset) {
+    int index = content.indexOf(c, start + offset);
+    return index == -1 || index >= end ? -1 : (index - start);
+  }
+
+  @Override
+  int indexOf(String substring, int offset) {
+    int index = content.indexOf(substring, start + offset);
+    return index == -1 || index + substring.length() > end ? -1 : (index - start);
+  }
+
+  @Override
+  boolean startsWith(int offset, String prefix) {
+    return start + offset + prefix.length() <= end && content.startsWith(prefix, start + offset);
+  }
+
+  @Override
+  int lineIndex(int offset) {
+    // offsets are mostly requested in increasing order while parsing, so the line of the latest lookup, or the next one, is usually the right one
+    int lineCount = lineStarts.length;
+    int hint = lastLineIndex;
+    int index = hint;
+    if (offset >= lineStarts[index]) {
+      while (index + 1 < lineCount && offset >= lineStarts[index + 1] && index - hint < 2) {
+        index++;
+      }
+      if (index + 1 == lineCount || offset < lineStarts[index + 1]) {
+        lastLineIndex = index;
+        return index;
+      }
+    }
+    index = Arrays.binarySearch(lineStarts, offset);
+    index = index >= 0 ? index : (-index - 2);
+    lastLineIndex = index;
+    return index;
+  }
+
+  @Override
+  int lineStart(int lineIndex) {
+    return lineStarts[lineIndex];
+  }
+
+  private static class CharBufferReader extends Reader {
+
+    private final CharBuffer chars;
+
+    private CharBufferReader(CharBuffer chars) {
+      this.chars = chars;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!chars.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, chars.remaining());
+      chars.get(buffer, offset, count);
+      return count;
+    }
+
+    @Override
+    public void close() {
+      // nothing to release
+    }
+  }
+
+  private static class EncodingInputStream extends InputStream {
+
+    private final CharBuffer chars;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean flushed = false;
+
+    private EncodingInputStream(CharBuffer chars, Charset charset) {
+      this.chars = chars;
+      // same replacements as String.getBytes(Charset)
+      this.encoder = charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      bytes.flip();
+    }
+
+    @Override
+    public int read() {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) == -1 ? -1 : (single[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      while (!bytes.hasRemaining()) {
+        if (flushed) {
+          return -1;
+        }
+        fill();
+      }
+      int count = Math.min(length, bytes.remaining());
+      bytes.get(buffer, offset, count);
+      return count;
+    }
+
+    private void fill() {
+      bytes.clear();
+      if (chars.hasRemaining()) {
+        encoder.encode(chars, bytes, true);
+      } else {
+        encoder.flush(bytes);
+        flushed = true;
+      }
+      bytes.flip();
+    }
+  }
+
+}
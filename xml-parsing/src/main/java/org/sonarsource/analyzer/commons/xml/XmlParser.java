@@ -19,100 +19,156 @@
  */
 package org.sonarsource.analyzer.commons.xml;
 
-import java.io.ByteArrayInputStream;
+import com.ctc.wstx.exc.WstxLazyException;
 import java.io.IOException;
-import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
+import javax.annotation.Nullable;
+import javax.xml.XMLConstants;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import org.apache.xerces.dom.DocumentImpl;
 import org.sonarsource.analyzer.commons.xml.PrologElement.PrologAttribute;
 import org.sonarsource.analyzer.commons.xml.XmlFile.Location;
+import org.w3c.dom.CharacterData;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 class XmlParser {
 
-  private static final String BOM_CHAR = "\ufeff";
-  private static final String XML_DECLARATION_TAG = "<?xml";
+  private static final int NO_LOCATION = -1;
 
-  private XmlFilePosition xmlFileStartLocation;
-  private XmlFilePosition currentNodeStartLocation = null;
-  private XmlTextRange currentNodeStartRange = null;
-  private String content;
+  private PrologScanner prolog;
+  private XmlFileContent fileContent;
+  private int currentNodeStartLocation = NO_LOCATION;
 
   // latest processed node
   private Node currentNode;
   private boolean currentNodeIsClosed = false;
   private boolean previousEventIsText = false;
   private Deque<Node> nodes = new LinkedList<>();
+  private final TagScanner tagScanner = new TagScanner();
   private XmlFile xmlFile;
+  private final boolean namespaceAware;
+
+  private Document document;
+  private NodeLocations locations;
+  // when true, DOM nodes are created from StAX events, otherwise they are retrieved from the document built by Xerces
+  private boolean buildingDocument;
 
   XmlParser(XmlFile xmlFile, boolean namespaceAware) {
+    this(xmlFile, namespaceAware, false);
+  }
+
+  /**
+   * @param deferred when true, DOM nodes are only created by Xerces when accessed, and matched with their locations when
+   * these are requested
+   */
+  XmlParser(XmlFile xmlFile, boolean namespaceAware, boolean deferred) {
     this.xmlFile = xmlFile;
+    this.namespaceAware = namespaceAware;
     try {
       setContent();
-      ByteArrayInputStream stream = new ByteArrayInputStream(content.getBytes(xmlFile.getCharset()));
-      Document document = SafeDomParserFactory.createDocumentBuilder(namespaceAware).parse(stream);
-      xmlFile.setDocument(document, namespaceAware);
-      currentNode = document;
-      nodes.push(currentNode);
-
       parseXmlDeclaration();
-      parseXml();
 
-      setDocumentLocation(xmlFile);
+      if (deferred) {
+        xmlFile.setDocument(parseDeferred(), namespaceAware);
+        return;
+      }
 
-    } catch (XMLStreamException|SAXException|IOException e) {
+      Document document;
+      try {
+        document = parseInSinglePass();
+      } catch (SinglePassNotSupportedException e) {
+        // some constructs (DTD, non-predefined entities, foreign encodings) require Xerces to build the DOM,
+        // StAX events are then only used to retrieve the location of the nodes it created
+        document = parseInTwoPasses();
+      }
+      xmlFile.setDocument(document, namespaceAware);
+
+      setDocumentLocation();
+
+    } catch (XMLStreamException|WstxLazyException|SAXException|IOException e) {
       throw new ParseException(e);
     }
   }
 
-  private static void setDocumentLocation(XmlFile xmlFile) {
-    Document document = xmlFile.getDocument();
-    XmlTextRange startRange = XmlFile.nodeLocation(document.getFirstChild());
-    XmlTextRange end = XmlFile.nodeLocation(document.getLastChild());
-    Optional<PrologElement> prologElement = xmlFile.getPrologElement();
-    if (prologElement.isPresent()) {
-      startRange = prologElement.get().getPrologStartLocation();
-    }
-    document.setUserData(Location.NODE.name(), new XmlTextRange(startRange, end), null);
+  private Document parseInSinglePass() throws XMLStreamException {
+    DocumentImpl document = new DocumentImpl();
+    // same as Xerces while building a document: hierarchy checks are useless as nodes come from a well-formed stream
+    document.setStrictErrorChecking(false);
+    startParsing(document, true);
+    parseXml();
+    document.setStrictErrorChecking(true);
+    return document;
   }
 
-  private void setContent() throws XMLStreamException {
-    String fullContent = xmlFile.getContents();
+  private Document parseInTwoPasses() throws XMLStreamException, SAXException, IOException {
+    Document document = SafeDomParserFactory.threadDocumentBuilder(namespaceAware).parse(fileContent.newInputStream(xmlFile.getCharset()));
+    startParsing(document, false);
+    parseXml();
+    return document;
+  }
 
-    if (fullContent.startsWith(BOM_CHAR)) {
-      // remove it immediately
-      fullContent = fullContent.substring(1);
-    }
-    int realStartIndex = fullContent.indexOf(XML_DECLARATION_TAG);
+  private Document parseDeferred() throws XMLStreamException, SAXException, IOException {
+    Document deferredDocument = SafeDomParserFactory.threadDeferredDocumentBuilder(namespaceAware).parse(fileContent.newInputStream(xmlFile.getCharset()));
+    DeferredLocations deferredLocations = DeferredLocations.read(fileContent, xmlFile.getPrologElement().isPresent());
+    new NodeLocations(fileContent, deferredLocations).attachTo(deferredDocument);
+    return deferredDocument;
+  }
 
-    if (realStartIndex == -1) {
-      xmlFileStartLocation = new XmlFilePosition(fullContent);
-      content = fullContent;
-    } else {
-      content = fullContent.substring(realStartIndex);
-      xmlFileStartLocation = new XmlFilePosition(fullContent).moveBefore(XML_DECLARATION_TAG);
-    }
+  private void startParsing(Document document, boolean buildDocument) {
+    this.document = document;
+    this.buildingDocument = buildDocument;
+    locations = new NodeLocations(fileContent);
+    locations.attachTo(document);
+    currentNode = document;
+    currentNodeIsClosed = false;
+    previousEventIsText = false;
+    currentNodeStartLocation = NO_LOCATION;
+    nodes.clear();
+    nodes.push(currentNode);
+  }
+
+  private void setDocumentLocation() {
+    // the prolog, when present, starts the content
+    int start = xmlFile.getPrologElement().isPresent() ? 0 : locations.startOffset(document.getFirstChild(), Location.NODE);
+    locations.set(document, Location.NODE, start, locations.endOffset(document.getLastChild(), Location.NODE));
+  }
+
+  private void setContent() {
+    prolog = PrologScanner.scan(xmlFile.getContents());
+    fileContent = prolog.content();
+  }
+
+  /**
+   * @return the parsed part of the file contents: from the XML declaration when there is one, without BOM
+   */
+  static XmlFileContent fileContent(String fullContent) {
+    return PrologScanner.scan(fullContent).content();
   }
 
   private void parseXml() throws XMLStreamException {
-    XMLStreamReader xmlReader = SafeStaxParserFactory.createXMLInputFactory().createXMLStreamReader(new StringReader(content));
+    XMLStreamReader xmlReader = SafeStaxParserFactory.threadXMLInputFactory().createXMLStreamReader(fileContent.newReader());
+    if (buildingDocument) {
+      visitXmlDeclaration(xmlReader);
+    }
     boolean emptyCdata = false;
 
     while (xmlReader.hasNext()) {
       previousEventIsText = (emptyCdata && previousEventIsText) || (xmlReader.getEventType() == XMLStreamConstants.CHARACTERS);
       emptyCdata = false;
       xmlReader.next();
-      XmlFilePosition startLocation = new XmlFilePosition(content, xmlReader.getLocation());
+      int startLocation = xmlReader.getLocation().getCharacterOffset();
 
       finalizePreviousNode(startLocation);
 
@@ -120,12 +176,12 @@ class XmlParser {
         case XMLStreamConstants.ENTITY_REFERENCE:
         case XMLStreamConstants.COMMENT:
         case XMLStreamConstants.PROCESSING_INSTRUCTION:
-          setNextNode();
+          setNextNode(xmlReader);
           currentNodeStartLocation = startLocation;
           break;
 
         case XMLStreamConstants.CHARACTERS:
-          visitTextNode(startLocation);
+          visitTextNode(xmlReader, startLocation);
           break;
 
         case XMLStreamConstants.START_ELEMENT:
@@ -141,12 +197,12 @@ class XmlParser {
             emptyCdata = true;
           } else {
             // Empty CDATA are not detected by the xerces DocumentBuilder
-            visitCdata(startLocation);
+            visitCdata(xmlReader, startLocation);
           }
           break;
 
         case XMLStreamConstants.DTD:
-          visitDTD(startLocation);
+          visitDTD(xmlReader, startLocation);
           break;
 
         default:
@@ -162,54 +218,87 @@ class XmlParser {
     }
   }
 
-  private void visitTextNode(XmlFilePosition startLocation) {
+  private void visitXmlDeclaration(XMLStreamReader xmlReader) {
+    String version = xmlReader.getVersion();
+    String encoding = xmlReader.getCharacterEncodingScheme();
+    if ((version != null && !"1.0".equals(version)) || !isDecodedAsByXerces(encoding)) {
+      throw new SinglePassNotSupportedException();
+    }
+    // same properties as the ones set by Xerces
+    DocumentImpl documentImpl = (DocumentImpl) document;
+    documentImpl.setInputEncoding(encoding == null ? StandardCharsets.UTF_8.name() : encoding);
+    if (version != null) {
+      documentImpl.setXmlVersion(version);
+      documentImpl.setXmlEncoding(encoding);
+      documentImpl.setXmlStandalone(xmlReader.standaloneSet() && xmlReader.isStandalone());
+    }
+  }
+
+  /**
+   * Xerces decodes the bytes of the file using the declared encoding, or UTF-8 when there is none, while StAX events
+   * are produced from the file contents decoded with the file charset. Both only agree when it is the same charset.
+   */
+  private boolean isDecodedAsByXerces(@Nullable String declaredEncoding) {
+    Charset charset = xmlFile.getCharset();
+    if (declaredEncoding == null) {
+      return StandardCharsets.UTF_8.equals(charset);
+    }
+    try {
+      return Charset.forName(declaredEncoding).equals(charset);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  private void visitTextNode(XMLStreamReader xmlReader, int startLocation) {
     if (previousEventIsText) {
       // text can appear after another text when it's not coalesced (see XMLInputFactory.IS_COALESCING)
       // so both events stand for the same node in DOM
-      currentNodeStartRange = XmlFile.nodeLocation(currentNode);
+      currentNodeStartLocation = locations.startOffset(currentNode, Location.NODE);
+      if (buildingDocument) {
+        ((CharacterData) currentNode).appendData(xmlReader.getText());
+      }
     } else {
-      setNextNode();
+      setNextNode(xmlReader);
       currentNodeStartLocation = startLocation;
     }
   }
 
-  private void finalizePreviousNode(XmlFilePosition endLocation) {
-    if (currentNodeStartLocation != null) {
+  private void finalizePreviousNode(int endLocation) {
+    if (currentNodeStartLocation != NO_LOCATION) {
       setLocation(currentNode, Location.NODE, currentNodeStartLocation, endLocation);
       // for entity reference having a child which is it's text replacement
       // setting the same location
       if (currentNode.getFirstChild() != null) {
         setLocation(currentNode.getFirstChild(), Location.NODE, currentNodeStartLocation, endLocation);
       }
-    } else if (currentNodeStartRange != null) {
-      currentNode.setUserData(Location.NODE.name(), new XmlTextRange(currentNodeStartRange, endLocation, xmlFileStartLocation), null);
     }
 
-    currentNodeStartLocation = null;
-    currentNodeStartRange = null;
+    currentNodeStartLocation = NO_LOCATION;
   }
 
-  private void visitStartElement(XMLStreamReader xmlReader, XmlFilePosition startLocation) throws XMLStreamException {
-    setNextNode();
+  private void visitStartElement(XMLStreamReader xmlReader, int startLocation) throws XMLStreamException {
+    setNextNode(xmlReader);
     nodes.push(currentNode);
-    XmlFilePosition nameEndLocation = startLocation.shift(getNameWithNamespaceLength(xmlReader) + 1);
-    XmlFilePosition closingBracketEndLocation = startLocation.moveAfterClosingBracket();
-    setLocation(currentNode, Location.START, startLocation, closingBracketEndLocation);
-    setLocation(currentNode, Location.NAME, startLocation.shift(1), nameEndLocation);
-    visitAttributes(nameEndLocation, closingBracketEndLocation.moveBackward());
+    int nameEndLocation = fileContent.shift(startLocation, getNameWithNamespaceLength(xmlReader) + 1);
+    tagScanner.scanStartTag(fileContent, nameEndLocation);
+    setLocation(currentNode, Location.START, startLocation, tagScanner.closingBracketEnd());
+    setLocation(currentNode, Location.NAME, startLocation + 1, nameEndLocation);
+    visitAttributes();
   }
 
-  private void visitEndElement(XmlFilePosition startLocation) throws XMLStreamException {
+  private void visitEndElement(int startLocation) throws XMLStreamException {
     currentNode = nodes.pop();
-    XmlFilePosition closingBracketEndLocation = startLocation.moveAfterClosingBracket();
+    int closingBracketEndLocation = fileContent.moveAfterClosingBracket(startLocation);
     setLocation(currentNode, Location.END, startLocation, closingBracketEndLocation);
-    XmlTextRange startRange = (XmlTextRange) currentNode.getUserData(Location.START.name());
-    currentNode.setUserData(Location.NODE.name(), new XmlTextRange(startRange, closingBracketEndLocation, xmlFileStartLocation), null);
+    setLocation(currentNode, Location.NODE, locations.startOffset(currentNode, Location.START), closingBracketEndLocation);
     currentNodeIsClosed = true;
   }
 
-  private void setNextNode() {
-    if (currentNodeIsClosed) {
+  private void setNextNode(XMLStreamReader xmlReader) {
+    if (buildingDocument) {
+      currentNode = nodes.element().appendChild(createNode(xmlReader));
+    } else if (currentNodeIsClosed) {
       // when currentNode (last processed node) is closed, it's impossible that we visit its child
       currentNode = currentNode.getNextSibling();
     } else {
@@ -219,87 +308,143 @@ class XmlParser {
     currentNodeIsClosed = false;
   }
 
+  private Node createNode(XMLStreamReader xmlReader) {
+    switch (xmlReader.getEventType()) {
+      case XMLStreamConstants.START_ELEMENT:
+        return createElement(xmlReader);
+      case XMLStreamConstants.CHARACTERS:
+        return document.createTextNode(xmlReader.getText());
+      case XMLStreamConstants.CDATA:
+        return document.createCDATASection(xmlReader.getText());
+      case XMLStreamConstants.COMMENT:
+        return document.createComment(xmlReader.getText());
+      case XMLStreamConstants.PROCESSING_INSTRUCTION:
+        return document.createProcessingInstruction(xmlReader.getPITarget(), xmlReader.getPIData());
+      default:
+        // entity references and DTD declarations are resolved by Xerces
+        throw new SinglePassNotSupportedException();
+    }
+  }
+
+  private Element createElement(XMLStreamReader xmlReader) {
+    String name = qualifiedName(xmlReader.getPrefix(), xmlReader.getLocalName());
+    Element element = namespaceAware ? document.createElementNS(emptyToNull(xmlReader.getNamespaceURI()), name) : document.createElement(name);
+
+    for (int i = 0; i < xmlReader.getNamespaceCount(); i++) {
+      String prefix = xmlReader.getNamespacePrefix(i);
+      String attributeName = prefix == null || prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : (XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix);
+      String namespaceURI = Objects.toString(xmlReader.getNamespaceURI(i), "");
+      if (namespaceAware) {
+        element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attributeName, namespaceURI);
+      } else {
+        element.setAttribute(attributeName, namespaceURI);
+      }
+    }
+
+    for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+      String attributeName = qualifiedName(xmlReader.getAttributePrefix(i), xmlReader.getAttributeLocalName(i));
+      if (namespaceAware) {
+        element.setAttributeNS(emptyToNull(xmlReader.getAttributeNamespace(i)), attributeName, xmlReader.getAttributeValue(i));
+      } else {
+        element.setAttribute(attributeName, xmlReader.getAttributeValue(i));
+      }
+    }
+    return element;
+  }
+
+  private static String qualifiedName(@Nullable String prefix, String localName) {
+    return prefix == null || prefix.isEmpty() ? localName : (prefix + ":" + localName);
+  }
+
+  @Nullable
+  private static String emptyToNull(@Nullable String value) {
+    return value == null || value.isEmpty() ? null : value;
+  }
+
   private void parseXmlDeclaration() throws XMLStreamException {
-    XmlFilePosition startLocation = new XmlFilePosition(content);
-    if (startLocation.startsWith(XML_DECLARATION_TAG)) {
-      XmlFilePosition endLocation =  startLocation.moveAfterClosingBracket();
-      XmlFilePosition attributesStart = startLocation.moveAfter(XML_DECLARATION_TAG);
+    if (prolog.hasXmlDeclaration()) {
+      // the declaration starts the content, and ends with "?>"
+      int attributesStart = PrologScanner.XML_DECLARATION_TAG.length();
+      int endLocation = prolog.xmlDeclarationEnd();
+      int attributesEnd = endLocation - 2;
 
-      List<PrologAttribute> prologAttributes = visitPrologAttributes(attributesStart, endLocation.moveBackward());
+      List<PrologAttribute> prologAttributes = visitPrologAttributes(attributesStart, attributesEnd);
 
       xmlFile.setPrologElement(new PrologElement(
         prologAttributes,
-        new XmlTextRange(startLocation, attributesStart, xmlFileStartLocation),
-        new XmlTextRange(endLocation.moveBackward().moveBackward(), endLocation, xmlFileStartLocation)
+        fileContent.range(0, attributesStart),
+        fileContent.range(attributesEnd, endLocation)
       ));
     }
   }
 
-  private void visitDTD(XmlFilePosition startLocation) throws XMLStreamException {
-    setNextNode();
-    XmlFilePosition endLocation = startLocation.moveAfterClosingBracket();
+  private void visitDTD(XMLStreamReader xmlReader, int startLocation) throws XMLStreamException {
+    setNextNode(xmlReader);
+    int endLocation = startLocation == prolog.doctypeStart() ? prolog.doctypeEnd() : fileContent.moveAfterClosingBracket(startLocation);
     setLocation(currentNode, Location.NODE, startLocation, endLocation);
   }
 
-  private void visitCdata(XmlFilePosition startLocation) throws XMLStreamException {
-    if (!startLocation.startsWith("<![CDATA[")) {
+  private void visitCdata(XMLStreamReader xmlReader, int startLocation) throws XMLStreamException {
+    if (!fileContent.startsWith(startLocation, "<![CDATA[")) {
       // Ignoring secondary CDATA event
       // See https://docs.oracle.com/javase/7/docs/api/javax/xml/stream/XMLStreamReader.html#next()
+      if (buildingDocument) {
+        ((CharacterData) currentNode).appendData(xmlReader.getText());
+      }
       return;
     }
-    setNextNode();
+    setNextNode(xmlReader);
 
-    XmlFilePosition beforeClosingTag = startLocation.moveBefore("]]>");
-    XmlFilePosition endLocation = beforeClosingTag.moveAfter("]]>");
-    setLocation(currentNode, Location.START, startLocation, startLocation.moveAfter("<![CDATA["));
+    int beforeClosingTag = fileContent.moveBefore(startLocation, "]]>");
+    int endLocation = fileContent.moveAfter(beforeClosingTag, "]]>");
+    setLocation(currentNode, Location.START, startLocation, fileContent.moveAfter(startLocation, "<![CDATA["));
     setLocation(currentNode, Location.END, beforeClosingTag, endLocation);
     setLocation(currentNode, Location.NODE, startLocation, endLocation);
   }
 
-  private void setLocation(Node node, Location locationKind, XmlFilePosition start, XmlFilePosition end) {
-    node.setUserData(locationKind.name(), new XmlTextRange(start, end, xmlFileStartLocation), null);
+  private void setLocation(Node node, Location locationKind, int start, int end) {
+    locations.set(node, locationKind, start, end);
   }
 
-  private void visitAttributes(XmlFilePosition start, XmlFilePosition end) throws XMLStreamException {
+  private void visitAttributes() {
     NamedNodeMap attributes = currentNode.getAttributes();
-    XmlFilePosition currentLocation = start.moveAfterWhitespaces();
-
-    while (currentLocation.has("=", end)) {
-      XmlFilePosition attributeNameEnd = currentLocation.moveBefore("=");
-
-      XmlFilePosition attributeValueStart = attributeNameEnd.moveAfter("=").moveAfterWhitespaces();
-      char c = attributeValueStart.readChar();
-      XmlFilePosition attributeValueEnd = attributeValueStart.shift(1).moveAfter(String.valueOf(c));
-
-      String attributeName = currentLocation.textUntil(attributeNameEnd).trim();
-      Node attr = Objects.requireNonNull(attributes.getNamedItem(attributeName), String.format("Attribute '%s' not found.", attributeName));
-
-      setLocation(attr, Location.NAME, currentLocation, attributeNameEnd);
-      setLocation(attr, Location.VALUE, attributeValueStart, attributeValueEnd);
-      setLocation(attr, Location.NODE, currentLocation, attributeValueEnd);
+    for (int i = 0; i < tagScanner.attributeCount(); i++) {
+      int attributeNameStart = tagScanner.attributeNameStart(i);
+      int attributeNameEnd = tagScanner.attributeNameEnd(i);
+      int attributeValueEnd = tagScanner.attributeValueEnd(i);
+
+      String attributeName = fileContent.text(attributeNameStart, attributeNameEnd).trim();
+      Node attr = attributes.getNamedItem(attributeName);
+      if (attr == null && buildingDocument) {
+        // attribute not reported by StAX, such as the declaration of the reserved 'xml' prefix
+        throw new SinglePassNotSupportedException();
+      }
+      Objects.requireNonNull(attr, () -> String.format("Attribute '%s' not found.", attributeName));
 
-      currentLocation = attributeValueEnd.moveAfterWhitespaces();
+      setLocation(attr, Location.NAME, attributeNameStart, attributeNameEnd);
+      setLocation(attr, Location.VALUE, tagScanner.attributeValueStart(i), attributeValueEnd);
+      setLocation(attr, Location.NODE, attributeNameStart, attributeValueEnd);
     }
   }
 
-  private List<PrologAttribute> visitPrologAttributes(XmlFilePosition start, XmlFilePosition end) throws XMLStreamException {
-    XmlFilePosition currentLocation = start.moveAfterWhitespaces();
+  private List<PrologAttribute> visitPrologAttributes(int start, int end) throws XMLStreamException {
+    int currentLocation = fileContent.moveAfterWhitespaces(start);
     List<PrologAttribute> attributes = new ArrayList<>();
 
-    while (currentLocation.has("=", end)) {
-      XmlFilePosition attributeNameEnd = currentLocation.moveBefore("=");
+    while (fileContent.has(currentLocation, '=', end)) {
+      int attributeNameEnd = fileContent.moveBefore(currentLocation, '=');
 
-      XmlFilePosition attributeValueStart = attributeNameEnd.moveAfter("=").moveAfterWhitespaces();
-      char c = attributeValueStart.readChar();
-      XmlFilePosition attributeValueEnd = attributeValueStart.shift(1).moveAfter(String.valueOf(c));
+      int attributeValueStart = fileContent.moveAfterWhitespaces(attributeNameEnd + 1);
+      char c = fileContent.readChar(attributeValueStart);
+      int attributeValueEnd = fileContent.moveAfter(fileContent.shift(attributeValueStart, 1), c);
 
       attributes.add(new PrologAttribute(
-        currentLocation.textUntil(attributeNameEnd),
-        new XmlTextRange(currentLocation, attributeNameEnd, xmlFileStartLocation),
-        removeQuotes(attributeValueStart.textUntil(attributeValueEnd)),
-        new XmlTextRange(attributeValueStart, attributeValueEnd, xmlFileStartLocation)
+        fileContent.text(currentLocation, attributeNameEnd),
+        fileContent.range(currentLocation, attributeNameEnd),
+        removeQuotes(fileContent.text(attributeValueStart, attributeValueEnd)),
+        fileContent.range(attributeValueStart, attributeValueEnd)
       ));
-      currentLocation = attributeValueEnd.moveAfterWhitespaces();
+      currentLocation = fileContent.moveAfterWhitespaces(attributeValueEnd);
     }
 
     return attributes;
@@ -321,4 +466,13 @@ class XmlParser {
 
     return prefixLength + streamReader.getLocalName().length();
   }
+
+  /**
+   * Raised while building the DOM from StAX events when reaching a construct which is only handled by Xerces.
+   */
+  private static class SinglePassNotSupportedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+  }
 }
@@ -0,0 +1,234 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Content of an XML file being streamed. Characters are recorded while the parser reads them, and only the ones
+ * following the latest released offset are kept, along with the offsets at which their lines start.
+ */
+class XmlStreamContent extends XmlContent {
+
+  private static final char BOM_CHAR = '\ufeff';
+  private static final String XML_DECLARATION_TAG = "<?xml";
+  private static final int CHUNK_SIZE = 8192;
+
+  private final Reader source;
+  private char[] chars = new char[CHUNK_SIZE];
+  // offset of "chars[0]"
+  private int charsStart = 0;
+  // offset following the last character read from the source
+  private int charsEnd = 0;
+  // offset following the last character provided to the parser
+  private int providedEnd = 0;
+  private int releasedOffset = 0;
+  private boolean endOfSource = false;
+
+  // offsets at which the kept lines start: "lineStarts[i]" is the start of the line of index "firstLineIndex + i"
+  private int[] lineStarts = new int[64];
+  private int lineCount = 1;
+  private int firstLineIndex = 0;
+  private boolean pendingCarriageReturn = false;
+
+  private XmlStreamContent(Reader source, int firstLine, int firstColumn) {
+    super(firstLine, firstColumn);
+    this.source = source;
+  }
+
+  /**
+   * As done when parsing the whole file, the BOM and the whitespaces preceding the XML declaration are skipped,
+   * locations being shifted accordingly.
+   */
+  static XmlStreamContent create(Reader source) throws IOException {
+    StringBuilder head = new StringBuilder();
+    int c = source.read();
+    if (c == BOM_CHAR) {
+      c = source.read();
+    }
+    while (c != -1 && Character.isWhitespace(c)) {
+      head.append((char) c);
+      c = source.read();
+    }
+    int prefixLength = head.length();
+    while (c != -1 && head.length() < prefixLength + XML_DECLARATION_TAG.length()) {
+      head.append((char) c);
+      c = source.read();
+    }
+    if (c != -1) {
+      head.append((char) c);
+    }
+
+    XmlStreamContent content;
+    if (prefixLength > 0 && head.indexOf(XML_DECLARATION_TAG, prefixLength) == prefixLength) {
+      XmlFileContent skippedContent = new XmlFileContent(head.substring(0, prefixLength));
+      content = new XmlStreamContent(source, skippedContent.line(prefixLength), skippedContent.column(prefixLength));
+      content.append(head.substring(prefixLength));
+    } else {
+      content = new XmlStreamContent(source, 1, 1);
+      content.append(head.toString());
+    }
+    if (c == -1) {
+      content.endSource();
+    }
+    return content;
+  }
+
+  /**
+   * @return reader to be used by the parser, providing the characters of the source while recording them
+   */
+  Reader reader() {
+    return new Reader() {
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+          return 0;
+        }
+        if (providedEnd == charsEnd && !readSource()) {
+          return -1;
+        }
+        int count = Math.min(length, charsEnd - providedEnd);
+        System.arraycopy(chars, providedEnd - charsStart, buffer, offset, count);
+        providedEnd += count;
+        return count;
+      }
+
+      @Override
+      public void close() throws IOException {
+        source.close();
+      }
+    };
+  }
+
+  /**
+   * Characters and lines preceding the offset are not needed anymore.
+   */
+  void release(int offset) {
+    releasedOffset = Math.max(releasedOffset, Math.min(offset, providedEnd));
+  }
+
+  // Visible for testing
+  int capacity() {
+    return chars.length + lineStarts.length;
+  }
+
+  private boolean readSource() throws IOException {
+    if (endOfSource) {
+      return false;
+    }
+    compact();
+    int kept = charsEnd - charsStart;
+    if (chars.length - kept < CHUNK_SIZE) {
+      chars = Arrays.copyOf(chars, Math.max(chars.length * 2, kept + CHUNK_SIZE));
+    }
+    int count = source.read(chars, kept, chars.length - kept);
+    if (count == -1) {
+      endSource();
+      return false;
+    }
+    recordLines(charsEnd, charsEnd + count);
+    charsEnd += count;
+    return true;
+  }
+
+  private void append(String text) {
+    if (chars.length < text.length()) {
+      chars = new char[text.length()];
+    }
+    text.getChars(0, text.length(), chars, 0);
+    recordLines(0, text.length());
+    charsEnd = text.length();
+  }
+
+  private void endSource() {
+    endOfSource = true;
+    if (pendingCarriageReturn) {
+      pendingCarriageReturn = false;
+      addLineStart(charsEnd);
+    }
+  }
+
+  private void compact() {
+    if (releasedOffset > charsStart) {
+      System.arraycopy(chars, releasedOffset - charsStart, chars, 0, charsEnd - releasedOffset);
+      charsStart = releasedOffset;
+      int releasedLines = lineIndex(releasedOffset) - firstLineIndex;
+      System.arraycopy(lineStarts, releasedLines, lineStarts, 0, lineCount - releasedLines);
+      lineCount -= releasedLines;
+      firstLineIndex += releasedLines;
+    }
+  }
+
+  // as for XML parsers, "\r\n" is a single line break
+  private void recordLines(int startOffset, int endOffset) {
+    for (int offset = startOffset; offset < endOffset; offset++) {
+      char c = chars[offset - charsStart];
+      if (pendingCarriageReturn) {
+        pendingCarriageReturn = false;
+        if (c != '\n') {
+          addLineStart(offset);
+        }
+      }
+      if (c == '\n') {
+        addLineStart(offset + 1);
+      } else if (c == '\r') {
+        pendingCarriageReturn = true;
+      }
+    }
+  }
+
+  private void addLineStart(int offset) {
+    if (lineCount == lineStarts.length) {
+      lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+    }
+    lineStarts[lineCount] = offset;
+    lineCount++;
+  }
+
+  @Override
+  char readChar(int offset) {
+    return chars[offset - charsStart];
+  }
+
+  @Override
+  int length() {
+    return charsEnd;
+  }
+
+  @Override
+  String text(int startOffset, int endOffset) {
+    return new String(chars, startOffset - charsStart, endOffset - startOffset);
+  }
+
+  @Override
+  int lineIndex(int offset) {
+    int index = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+    index = index >= 0 ? index : (-index - 2);
+    return firstLineIndex + index;
+  }
+
+  @Override
+  int lineStart(int lineIndex) {
+    return lineStarts[lineIndex - firstLineIndex];
+  }
+
+}
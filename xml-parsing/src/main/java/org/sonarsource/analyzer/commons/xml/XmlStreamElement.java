@@ -0,0 +1,186 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Element of a streamed XML file, only known from its start tag to its end tag. Locations are the same as the ones
+ * of the corresponding {@link org.w3c.dom.Element} in the DOM.
+ */
+public class XmlStreamElement {
+
+  @Nullable
+  private final XmlStreamElement parent;
+  private final String name;
+  private final String localName;
+  @Nullable
+  private final String namespaceURI;
+  private final XmlTextRange startLocation;
+  private final XmlTextRange nameLocation;
+  private final List<XmlStreamAttribute> attributes = new ArrayList<>();
+  private XmlTextRange endLocation;
+  private XmlTextRange nodeLocation;
+
+  XmlStreamElement(@Nullable XmlStreamElement parent, String name, String localName, @Nullable String namespaceURI,
+    XmlTextRange startLocation, XmlTextRange nameLocation) {
+    this.parent = parent;
+    this.name = name;
+    this.localName = localName;
+    this.namespaceURI = namespaceURI;
+    this.startLocation = startLocation;
+    this.nameLocation = nameLocation;
+  }
+
+  void addAttribute(XmlStreamAttribute attribute) {
+    attributes.add(attribute);
+  }
+
+  void setEndLocation(XmlTextRange endLocation) {
+    this.endLocation = endLocation;
+    this.nodeLocation = new XmlTextRange(startLocation, endLocation);
+  }
+
+  /**
+   * @return enclosing element, null for the root element
+   */
+  @CheckForNull
+  public XmlStreamElement getParent() {
+    return parent;
+  }
+
+  /**
+   * @return name of the element, including its prefix
+   */
+  public String getName() {
+    return name;
+  }
+
+  public String getLocalName() {
+    return localName;
+  }
+
+  @CheckForNull
+  public String getNamespaceURI() {
+    return namespaceURI;
+  }
+
+  /**
+   * @return attributes of the element, including namespace declarations, in their order of the start tag
+   */
+  public List<XmlStreamAttribute> getAttributes() {
+    return attributes;
+  }
+
+  public Optional<XmlStreamAttribute> getAttribute(String name) {
+    return attributes.stream().filter(attribute -> attribute.name.equals(name)).findFirst();
+  }
+
+  public XmlTextRange getStartLocation() {
+    return startLocation;
+  }
+
+  public XmlTextRange getNameLocation() {
+    return nameLocation;
+  }
+
+  /**
+   * @return location of the end tag, or of the start tag when the element is empty. Null until the end of the element.
+   */
+  @CheckForNull
+  public XmlTextRange getEndLocation() {
+    return endLocation;
+  }
+
+  /**
+   * @return location of the whole element. Null until the end of the element.
+   */
+  @CheckForNull
+  public XmlTextRange getNodeLocation() {
+    return nodeLocation;
+  }
+
+  public static class XmlStreamAttribute {
+
+    private final XmlStreamElement element;
+    private final String name;
+    private final String localName;
+    @Nullable
+    private final String namespaceURI;
+    private final String value;
+    private final XmlTextRange nameLocation;
+    private final XmlTextRange valueLocation;
+
+    XmlStreamAttribute(XmlStreamElement element, String name, String localName, @Nullable String namespaceURI, String value,
+      XmlTextRange nameLocation, XmlTextRange valueLocation) {
+      this.element = element;
+      this.name = name;
+      this.localName = localName;
+      this.namespaceURI = namespaceURI;
+      this.value = value;
+      this.nameLocation = nameLocation;
+      this.valueLocation = valueLocation;
+    }
+
+    public XmlStreamElement getElement() {
+      return element;
+    }
+
+    /**
+     * @return name of the attribute, including its prefix
+     */
+    public String getName() {
+      return name;
+    }
+
+    public String getLocalName() {
+      return localName;
+    }
+
+    @CheckForNull
+    public String getNamespaceURI() {
+      return namespaceURI;
+    }
+
+    public String getValue() {
+      return value;
+    }
+
+    public XmlTextRange getNameLocation() {
+      return nameLocation;
+    }
+
+    /**
+     * @return location of the value, including its quotes
+     */
+    public XmlTextRange getValueLocation() {
+      return valueLocation;
+    }
+
+    public XmlTextRange getNodeLocation() {
+      return new XmlTextRange(nameLocation, valueLocation);
+    }
+  }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import org.sonarsource.analyzer.commons.xml.XmlStreamElement.XmlStreamAttribute;
+
+/**
+ * Receives the events of a streamed XML file, see {@link StreamingXmlFile#scan(java.util.List)}.
+ * <p>
+ * Text, CDATA sections and comments are reported once their end is known. Long ones can be reported in several
+ * consecutive events, each one having the location of its own part.
+ */
+public interface XmlStreamHandler {
+
+  default void startDocument() {
+  }
+
+  default void startElement(XmlStreamElement element) {
+  }
+
+  /**
+   * Called for each attribute of an element, including namespace declarations, after {@link #startElement(XmlStreamElement)}
+   */
+  default void attribute(XmlStreamAttribute attribute) {
+  }
+
+  default void text(String text, XmlTextRange location) {
+  }
+
+  default void cdata(String text, XmlTextRange location) {
+  }
+
+  default void comment(String text, XmlTextRange location) {
+  }
+
+  default void endElement(XmlStreamElement element) {
+  }
+
+  default void endDocument() {
+  }
+
+}
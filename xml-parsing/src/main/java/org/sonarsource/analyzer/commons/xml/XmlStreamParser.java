@@ -0,0 +1,201 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import com.ctc.wstx.api.WstxInputProperties;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.sonarsource.analyzer.commons.xml.XmlStreamElement.XmlStreamAttribute;
+
+/**
+ * Counterpart of {@link XmlParser} for streamed files: locations are computed the same way, but sent to the handlers
+ * along with StAX events instead of being stored in a DOM.
+ */
+class XmlStreamParser {
+
+  private static final int NO_EVENT = -1;
+  private static final int MIN_TEXT_SEGMENT = 4096;
+  private static final ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(XmlStreamParser::createFactory);
+
+  private final XmlStreamContent content;
+  private final List<? extends XmlStreamHandler> handlers;
+  private final Deque<XmlStreamElement> openElements = new ArrayDeque<>();
+  private final TagScanner tagScanner = new TagScanner();
+
+  // text, CDATA or comment, reported when the next event starts
+  private int pendingEvent = NO_EVENT;
+  private int pendingEventStart;
+  private String pendingText;
+
+  XmlStreamParser(XmlStreamContent content, List<? extends XmlStreamHandler> handlers) {
+    this.content = content;
+    this.handlers = handlers;
+  }
+
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = SafeStaxParserFactory.createXMLInputFactory();
+    // long text is reported in segments instead of being fully loaded
+    factory.setProperty(WstxInputProperties.P_MIN_TEXT_SEGMENT, MIN_TEXT_SEGMENT);
+    return factory;
+  }
+
+  void parse() throws XMLStreamException {
+    XMLStreamReader xmlReader = FACTORY.get().createXMLStreamReader(content.reader());
+    handlers.forEach(XmlStreamHandler::startDocument);
+
+    while (xmlReader.hasNext()) {
+      xmlReader.next();
+      int startLocation = xmlReader.getLocation().getCharacterOffset();
+      reportPendingEvent(startLocation);
+      content.release(startLocation);
+
+      switch (xmlReader.getEventType()) {
+        case XMLStreamConstants.START_ELEMENT:
+          visitStartElement(xmlReader, startLocation);
+          break;
+
+        case XMLStreamConstants.END_ELEMENT:
+          visitEndElement(startLocation);
+          break;
+
+        case XMLStreamConstants.CDATA:
+          // as in DOM, empty CDATA sections are ignored
+          if (!xmlReader.getText().isEmpty()) {
+            setPendingEvent(xmlReader, startLocation);
+          }
+          break;
+
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.SPACE:
+        case XMLStreamConstants.COMMENT:
+          setPendingEvent(xmlReader, startLocation);
+          break;
+
+        default:
+          break;
+      }
+    }
+    xmlReader.close();
+
+    handlers.forEach(XmlStreamHandler::endDocument);
+  }
+
+  private void setPendingEvent(XMLStreamReader xmlReader, int startLocation) {
+    pendingEvent = xmlReader.getEventType();
+    pendingEventStart = startLocation;
+    pendingText = xmlReader.getText();
+  }
+
+  private void reportPendingEvent(int endLocation) {
+    if (pendingEvent == NO_EVENT) {
+      return;
+    }
+    XmlTextRange location = content.range(pendingEventStart, endLocation);
+    String text = pendingText;
+    if (pendingEvent == XMLStreamConstants.CDATA) {
+      handlers.forEach(handler -> handler.cdata(text, location));
+    } else if (pendingEvent == XMLStreamConstants.COMMENT) {
+      handlers.forEach(handler -> handler.comment(text, location));
+    } else {
+      handlers.forEach(handler -> handler.text(text, location));
+    }
+    pendingEvent = NO_EVENT;
+    pendingText = null;
+  }
+
+  private void visitStartElement(XMLStreamReader xmlReader, int startLocation) throws XMLStreamException {
+    String localName = xmlReader.getLocalName();
+    String name = qualifiedName(xmlReader.getPrefix(), localName);
+    int nameEndLocation = content.shift(startLocation, name.length() + 1);
+    tagScanner.scanStartTag(content, nameEndLocation);
+
+    XmlStreamElement element = new XmlStreamElement(openElements.peek(), name, localName, emptyToNull(xmlReader.getNamespaceURI()),
+      content.range(startLocation, tagScanner.closingBracketEnd()), content.range(startLocation + 1, nameEndLocation));
+    visitAttributes(xmlReader, element);
+    openElements.push(element);
+
+    handlers.forEach(handler -> handler.startElement(element));
+    for (XmlStreamAttribute attribute : element.getAttributes()) {
+      handlers.forEach(handler -> handler.attribute(attribute));
+    }
+  }
+
+  private void visitEndElement(int startLocation) {
+    XmlStreamElement element = openElements.pop();
+    int closingBracketEndLocation = content.moveAfterClosingBracket(startLocation);
+    element.setEndLocation(content.range(startLocation, closingBracketEndLocation));
+    handlers.forEach(handler -> handler.endElement(element));
+  }
+
+  private void visitAttributes(XMLStreamReader xmlReader, XmlStreamElement element) {
+    for (int i = 0; i < tagScanner.attributeCount(); i++) {
+      int attributeNameStart = tagScanner.attributeNameStart(i);
+      int attributeNameEnd = tagScanner.attributeNameEnd(i);
+
+      String attributeName = content.text(attributeNameStart, attributeNameEnd).trim();
+      XmlStreamAttribute attribute = createAttribute(xmlReader, element, attributeName, content.range(attributeNameStart, attributeNameEnd),
+        content.range(tagScanner.attributeValueStart(i), tagScanner.attributeValueEnd(i)));
+      // attributes not reported by StAX, such as the declaration of the reserved 'xml' prefix, are ignored
+      if (attribute != null) {
+        element.addAttribute(attribute);
+      }
+    }
+  }
+
+  @Nullable
+  private static XmlStreamAttribute createAttribute(XMLStreamReader xmlReader, XmlStreamElement element, String name,
+    XmlTextRange nameLocation, XmlTextRange valueLocation) {
+    if (XMLConstants.XMLNS_ATTRIBUTE.equals(name) || name.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":")) {
+      for (int i = 0; i < xmlReader.getNamespaceCount(); i++) {
+        String prefix = emptyToNull(xmlReader.getNamespacePrefix(i));
+        String localName = prefix == null ? XMLConstants.XMLNS_ATTRIBUTE : prefix;
+        if (name.equals(prefix == null ? localName : qualifiedName(XMLConstants.XMLNS_ATTRIBUTE, localName))) {
+          return new XmlStreamAttribute(element, name, localName, XMLConstants.XMLNS_ATTRIBUTE_NS_URI, xmlReader.getNamespaceURI(i), nameLocation, valueLocation);
+        }
+      }
+      return null;
+    }
+    for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+      String localName = xmlReader.getAttributeLocalName(i);
+      if (name.equals(qualifiedName(xmlReader.getAttributePrefix(i), localName))) {
+        return new XmlStreamAttribute(element, name, localName, emptyToNull(xmlReader.getAttributeNamespace(i)), xmlReader.getAttributeValue(i),
+          nameLocation, valueLocation);
+      }
+    }
+    return null;
+  }
+
+  private static String qualifiedName(@Nullable String prefix, String localName) {
+    return prefix == null || prefix.isEmpty() ? localName : (prefix + ":" + localName);
+  }
+
+  @Nullable
+  private static String emptyToNull(@Nullable String value) {
+    return value == null || value.isEmpty() ? null : value;
+  }
+
+}
@@ -47,14 +47,6 @@ public class XmlTextRange {
     this.endColumn = endColumn;
   }
 
-  XmlTextRange(XmlFilePosition start, XmlFilePosition end, XmlFilePosition xmlStart) {
-    this(start.computeSqLine(xmlStart), start.computeSqColumn(xmlStart), end.computeSqLine(xmlStart), end.computeSqColumn(xmlStart));
-  }
-
-  XmlTextRange(XmlTextRange start, XmlFilePosition end, XmlFilePosition xmlStart) {
-    this(start.startLine, start.startColumn, end.computeSqLine(xmlStart), end.computeSqColumn(xmlStart));
-  }
-
   public XmlTextRange(XmlTextRange start, XmlTextRange end) {
     this(start.startLine, start.startColumn, end.endLine, end.endColumn);
   }
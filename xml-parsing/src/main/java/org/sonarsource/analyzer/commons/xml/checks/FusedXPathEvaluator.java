@@ -0,0 +1,522 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.checks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonarsource.analyzer.commons.xml.XPathExpressionCache;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Evaluates the XPath expressions of several checks on a document, sending the matching nodes to the callback registered
+ * with each expression, in document order.
+ * <p>
+ * Expressions belonging to the following subset of XPath 1.0 are all evaluated together, in a single traversal of the DOM:
+ * <ul>
+ *   <li>location paths made of child ({@code /}) and descendant ({@code //}) steps, absolute or relative to the document,
+ *   such as {@code /project/dependencies/dependency} or {@code //bean//property}</li>
+ *   <li>name tests without namespace prefix, or {@code *}</li>
+ *   <li>any number of attribute predicates on steps, testing the presence ({@code [@name]}) or the value
+ *   ({@code [@name='value']}) of an attribute</li>
+ *   <li>an optional final attribute step ({@code /@name} or {@code /@*})</li>
+ * </ul>
+ * Any other expression is compiled through {@link XPathExpressionCache} and evaluated on its own, after the traversal.
+ * Expressions of the subset are also evaluated on their own when a name test meets a prefixed node of a namespace-unaware
+ * document.
+ */
+public class FusedXPathEvaluator {
+
+  private static final Logger LOG = Loggers.get(FusedXPathEvaluator.class);
+
+  private final List<PathExpression> fusedExpressions = new ArrayList<>();
+  private final List<FallbackExpression> fallbackExpressions = new ArrayList<>();
+  // for each depth of the traversal, steps of each fused expression which can be matched by the children of the current node
+  private final List<long[]> pendingStepsByDepth = new ArrayList<>();
+
+  /**
+   * @param expression XPath 1.0 expression, evaluated from the document
+   * @param callback called with each node matching the expression
+   * @throws IllegalStateException when the expression can not be compiled
+   */
+  public void register(String expression, Consumer<Node> callback) {
+    register(expression, Collections.emptyMap(), callback);
+  }
+
+  /**
+   * @param expression XPath 1.0 expression, evaluated from the document
+   * @param namespaceByPrefix namespace URI of each prefix used by the expression
+   * @param callback called with each node matching the expression
+   * @throws IllegalStateException when the expression can not be compiled
+   */
+  public void register(String expression, Map<String, String> namespaceByPrefix, Consumer<Node> callback) {
+    PathExpression pathExpression = PathExpression.parse(expression, callback);
+    if (pathExpression != null) {
+      fusedExpressions.add(pathExpression);
+      return;
+    }
+    try {
+      XPathExpression compiledExpression = XPathExpressionCache.getInstance().compile(expression, namespaceByPrefix);
+      fallbackExpressions.add(new FallbackExpression(expression, compiledExpression, callback));
+    } catch (XPathExpressionException e) {
+      throw new IllegalStateException("Failed to compile XPath expression [" + expression + "]: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * @return true when the expression belongs to the subset of XPath evaluated in a single traversal
+   */
+  public static boolean isFused(String expression) {
+    return PathExpression.parse(expression, node -> { }) != null;
+  }
+
+  public void evaluate(XmlFile file) {
+    evaluate(file.getDocument());
+  }
+
+  public void evaluate(Document document) {
+    if (!fusedExpressions.isEmpty()) {
+      evaluateFusedExpressions(document);
+    }
+    for (FallbackExpression fallbackExpression : fallbackExpressions) {
+      fallbackExpression.evaluate(document);
+    }
+  }
+
+  private void evaluateFusedExpressions(Document document) {
+    try {
+      traverse(document);
+    } catch (AmbiguousNameException e) {
+      for (PathExpression fusedExpression : fusedExpressions) {
+        fusedExpression.matches.clear();
+        fusedExpression.fallback().evaluate(document);
+      }
+      return;
+    }
+    for (PathExpression fusedExpression : fusedExpressions) {
+      fusedExpression.reportMatches();
+    }
+  }
+
+  private void traverse(Document document) {
+    long[] rootSteps = pendingSteps(0);
+    for (int i = 0; i < rootSteps.length; i++) {
+      rootSteps[i] = 1L;
+    }
+    // iterative pre-order traversal, as documents can be deeply nested
+    Node node = document.getFirstChild();
+    int depth = 1;
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        long[] parentSteps = pendingSteps(depth - 1);
+        long[] steps = pendingSteps(depth);
+        boolean anyPendingStep = false;
+        for (int i = 0; i < steps.length; i++) {
+          steps[i] = parentSteps[i] == 0L ? 0L : fusedExpressions.get(i).visit(node, parentSteps[i]);
+          anyPendingStep |= steps[i] != 0L;
+        }
+        if (anyPendingStep && node.getFirstChild() != null) {
+          node = node.getFirstChild();
+          depth++;
+          continue;
+        }
+      }
+      while (node != null && node.getNextSibling() == null) {
+        node = node.getParentNode();
+        depth--;
+        if (depth == 0) {
+          node = null;
+        }
+      }
+      if (node != null) {
+        node = node.getNextSibling();
+      }
+    }
+  }
+
+  private long[] pendingSteps(int depth) {
+    while (pendingStepsByDepth.size() <= depth) {
+      pendingStepsByDepth.add(new long[fusedExpressions.size()]);
+    }
+    long[] result = pendingStepsByDepth.get(depth);
+    if (result.length != fusedExpressions.size()) {
+      result = new long[fusedExpressions.size()];
+      pendingStepsByDepth.set(depth, result);
+    }
+    return result;
+  }
+
+  private static boolean isNamespaceDeclaration(Node attribute) {
+    String name = attribute.getNodeName();
+    return "xmlns".equals(name) || name.startsWith("xmlns:");
+  }
+
+  /**
+   * Unprefixed name tests only match nodes without namespace, on their local name.
+   * @throws AmbiguousNameException for a prefixed node without local name, from a namespace-unaware document: depending
+   * on the axis and on the way it evaluates the expression, the JDK XPath engine compares either its whole name or the part
+   * following the prefix
+   */
+  private static boolean hasName(Node node, String name) {
+    if (node.getNamespaceURI() != null) {
+      return false;
+    }
+    String localName = node.getLocalName();
+    if (localName == null) {
+      localName = node.getNodeName();
+      if (localName.indexOf(':') >= 0) {
+        throw new AmbiguousNameException();
+      }
+    }
+    return name.equals(localName);
+  }
+
+  private static class AmbiguousNameException extends RuntimeException {
+
+    private AmbiguousNameException() {
+      super(null, null, false, false);
+    }
+  }
+
+  private static class FallbackExpression {
+
+    private final String expression;
+    private final XPathExpression compiledExpression;
+    private final Consumer<Node> callback;
+
+    private FallbackExpression(String expression, XPathExpression compiledExpression, Consumer<Node> callback) {
+      this.expression = expression;
+      this.compiledExpression = compiledExpression;
+      this.callback = callback;
+    }
+
+    private void evaluate(Document document) {
+      try {
+        NodeList nodes = (NodeList) compiledExpression.evaluate(document, XPathConstants.NODESET);
+        for (int i = 0; i < nodes.getLength(); i++) {
+          callback.accept(nodes.item(i));
+        }
+      } catch (XPathExpressionException e) {
+        if (LOG.isDebugEnabled()) {
+          LOG.error(String.format("Unable to evaluate XPath expression '%s'", expression), e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Expression of the fused subset. While traversing the DOM, the steps which can be matched by the children of a node
+   * are tracked as a bit set: a child matching step "i" makes step "i + 1" pending for its own children, and steps
+   * following a descendant axis stay pending for all the descendants.
+   */
+  private static class PathExpression {
+
+    private static final int MAX_STEPS = Long.SIZE;
+
+    private final String expression;
+    private final Step[] steps;
+    private final long descendantSteps;
+    private final long lastStep;
+    // null when the path selects elements
+    @Nullable
+    private final NameTest attributeTest;
+    private final Consumer<Node> callback;
+    // nodes matched by the current traversal, reported once it is complete
+    private final List<Node> matches = new ArrayList<>();
+
+    private PathExpression(String expression, List<Step> steps, @Nullable NameTest attributeTest, Consumer<Node> callback) {
+      this.expression = expression;
+      this.steps = steps.toArray(new Step[0]);
+      long descendants = 0L;
+      for (int i = 0; i < this.steps.length; i++) {
+        if (this.steps[i].descendant) {
+          descendants |= 1L << i;
+        }
+      }
+      this.descendantSteps = descendants;
+      this.lastStep = 1L << (this.steps.length - 1);
+      this.attributeTest = attributeTest;
+      this.callback = callback;
+    }
+
+    /**
+     * @return steps which can be matched by the children of the element
+     */
+    private long visit(Node element, long pendingSteps) {
+      long matchedSteps = 0L;
+      for (long remaining = pendingSteps; remaining != 0L; remaining &= remaining - 1) {
+        int index = Long.numberOfTrailingZeros(remaining);
+        if (steps[index].matches(element)) {
+          matchedSteps |= 1L << index;
+        }
+      }
+      if ((matchedSteps & lastStep) != 0L) {
+        report(element);
+      }
+      return (pendingSteps & descendantSteps) | ((matchedSteps & ~lastStep) << 1);
+    }
+
+    private void report(Node element) {
+      if (attributeTest == null) {
+        matches.add(element);
+        return;
+      }
+      NamedNodeMap attributes = element.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        Node attribute = attributes.item(i);
+        if (!isNamespaceDeclaration(attribute) && attributeTest.matches(attribute)) {
+          matches.add(attribute);
+        }
+      }
+    }
+
+    private void reportMatches() {
+      try {
+        matches.forEach(callback);
+      } finally {
+        matches.clear();
+      }
+    }
+
+    private FallbackExpression fallback() {
+      try {
+        return new FallbackExpression(expression, XPathExpressionCache.getInstance().compile(expression), callback);
+      } catch (XPathExpressionException e) {
+        // expressions of the subset are valid XPath 1.0 expressions
+        throw new IllegalStateException("Failed to compile XPath expression [" + expression + "]: " + e.getMessage(), e);
+      }
+    }
+
+    @CheckForNull
+    private static PathExpression parse(String expression, Consumer<Node> callback) {
+      Parser parser = new Parser(expression);
+      List<Step> steps = new ArrayList<>();
+      NameTest attributeTest = null;
+      boolean descendant = false;
+      if (parser.consume('/')) {
+        descendant = parser.consume('/');
+      }
+      while (true) {
+        if (parser.consume('@')) {
+          attributeTest = parser.nameTest();
+          if (descendant || attributeTest == null || steps.isEmpty() || !parser.atEnd()) {
+            return null;
+          }
+          break;
+        }
+        Step step = parser.step(descendant);
+        if (step == null || steps.size() == MAX_STEPS) {
+          return null;
+        }
+        steps.add(step);
+        if (parser.atEnd()) {
+          break;
+        }
+        if (!parser.consume('/')) {
+          return null;
+        }
+        descendant = parser.consume('/');
+      }
+      return new PathExpression(expression, steps, attributeTest, callback);
+    }
+  }
+
+  private static class Step {
+
+    private final boolean descendant;
+    private final NameTest nameTest;
+    private final List<AttributePredicate> predicates;
+
+    private Step(boolean descendant, NameTest nameTest, List<AttributePredicate> predicates) {
+      this.descendant = descendant;
+      this.nameTest = nameTest;
+      this.predicates = predicates;
+    }
+
+    private boolean matches(Node element) {
+      if (!nameTest.matches(element)) {
+        return false;
+      }
+      for (AttributePredicate predicate : predicates) {
+        if (!predicate.matches(element)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static class NameTest {
+
+    // null for '*'
+    @Nullable
+    private final String name;
+
+    private NameTest(@Nullable String name) {
+      this.name = name;
+    }
+
+    private boolean matches(Node node) {
+      return name == null || hasName(node, name);
+    }
+  }
+
+  private static class AttributePredicate {
+
+    private final String name;
+    // null when only testing the presence of the attribute
+    @Nullable
+    private final String value;
+
+    private AttributePredicate(String name, @Nullable String value) {
+      this.name = name;
+      this.value = value;
+    }
+
+    private boolean matches(Node element) {
+      NamedNodeMap attributes = element.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        Node attribute = attributes.item(i);
+        if (!isNamespaceDeclaration(attribute) && hasName(attribute, name) && (value == null || value.equals(attribute.getNodeValue()))) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static class Parser {
+
+    private final String expression;
+    private int index = 0;
+
+    private Parser(String expression) {
+      this.expression = expression;
+    }
+
+    private boolean atEnd() {
+      return index == expression.length();
+    }
+
+    private boolean consume(char c) {
+      if (!atEnd() && expression.charAt(index) == c) {
+        index++;
+        return true;
+      }
+      return false;
+    }
+
+    @CheckForNull
+    private Step step(boolean descendant) {
+      NameTest nameTest = nameTest();
+      if (nameTest == null) {
+        return null;
+      }
+      List<AttributePredicate> predicates = new ArrayList<>();
+      while (consume('[')) {
+        AttributePredicate predicate = attributePredicate();
+        if (predicate == null || !consume(']')) {
+          return null;
+        }
+        predicates.add(predicate);
+      }
+      return new Step(descendant, nameTest, predicates);
+    }
+
+    @CheckForNull
+    private NameTest nameTest() {
+      if (consume('*')) {
+        return new NameTest(null);
+      }
+      String name = name();
+      return name == null ? null : new NameTest(name);
+    }
+
+    @CheckForNull
+    private AttributePredicate attributePredicate() {
+      if (!consume('@')) {
+        return null;
+      }
+      String name = name();
+      if (name == null) {
+        return null;
+      }
+      if (!consume('=')) {
+        return new AttributePredicate(name, null);
+      }
+      String value = literal();
+      return value == null ? null : new AttributePredicate(name, value);
+    }
+
+    @CheckForNull
+    private String literal() {
+      if (atEnd()) {
+        return null;
+      }
+      char quote = expression.charAt(index);
+      if (quote != '\'' && quote != '"') {
+        return null;
+      }
+      int end = expression.indexOf(quote, index + 1);
+      if (end < 0) {
+        return null;
+      }
+      String value = expression.substring(index + 1, end);
+      index = end + 1;
+      return value;
+    }
+
+    /**
+     * Names without namespace prefix, nor node type tests such as "text()"
+     */
+    @CheckForNull
+    private String name() {
+      int start = index;
+      while (!atEnd() && isNameChar(expression.charAt(index), index == start)) {
+        index++;
+      }
+      if (start == index || (!atEnd() && expression.charAt(index) == '(')) {
+        return null;
+      }
+      return expression.substring(start, index);
+    }
+
+    private static boolean isNameChar(char c, boolean first) {
+      if (Character.isLetter(c) || c == '_') {
+        return true;
+      }
+      return !first && (Character.isDigit(c) || c == '-' || c == '.');
+    }
+  }
+
+}
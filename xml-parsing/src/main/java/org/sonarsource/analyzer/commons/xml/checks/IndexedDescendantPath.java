@@ -0,0 +1,121 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.checks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonarsource.analyzer.commons.xml.XmlElementIndex;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * XPath expression selecting all the elements of a document having a given name, and optionally a given attribute,
+ * such as {@code //dependency} or {@code //bean[@class]}. Such expressions are evaluated by reading the
+ * {@link XmlElementIndex} of the document instead of traversing it.
+ */
+final class IndexedDescendantPath {
+
+  private static final String NAME = "[\\p{L}_][\\p{L}\\p{N}_.\\-]*+";
+  private static final Pattern PATTERN = Pattern.compile("//(" + NAME + ")(?:\\[@(" + NAME + ")])?+");
+
+  private final String elementName;
+  // null when the elements are not filtered by attribute
+  @Nullable
+  private final String attributeName;
+
+  private IndexedDescendantPath(String elementName, @Nullable String attributeName) {
+    this.elementName = elementName;
+    this.attributeName = attributeName;
+  }
+
+  @CheckForNull
+  static IndexedDescendantPath parse(String expression) {
+    Matcher matcher = PATTERN.matcher(expression);
+    if (!matcher.matches()) {
+      return null;
+    }
+    return new IndexedDescendantPath(matcher.group(1), matcher.group(2));
+  }
+
+  /**
+   * @return the same nodes, in the same order, as the JDK XPath engine evaluating the expression on the document
+   */
+  NodeList evaluate(Document document) {
+    List<Element> candidates = XmlElementIndex.of(document).getElements(elementName);
+    List<Node> result = new ArrayList<>(candidates.size());
+    for (Element element : candidates) {
+      // unprefixed name tests only match elements without namespace
+      if (element.getNamespaceURI() == null && (attributeName == null || hasAttribute(element, attributeName))) {
+        result.add(element);
+      }
+    }
+    return new ListNodeList(result);
+  }
+
+  /**
+   * As done by the JDK XPath engine, the local name of attributes from a namespace-unaware document is the part of
+   * their name following the prefix, and namespace declarations are not attributes.
+   */
+  private static boolean hasAttribute(Element element, String name) {
+    NamedNodeMap attributes = element.getAttributes();
+    for (int i = 0; i < attributes.getLength(); i++) {
+      Node attribute = attributes.item(i);
+      String attributeName = attribute.getNodeName();
+      if (attribute.getNamespaceURI() != null || "xmlns".equals(attributeName) || attributeName.startsWith("xmlns:")) {
+        continue;
+      }
+      String localName = attribute.getLocalName();
+      if (localName == null) {
+        localName = attributeName.substring(attributeName.indexOf(':') + 1);
+      }
+      if (name.equals(localName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static final class ListNodeList implements NodeList {
+
+    private final List<Node> nodes;
+
+    private ListNodeList(List<Node> nodes) {
+      this.nodes = nodes;
+    }
+
+    @Override
+    @CheckForNull
+    public Node item(int index) {
+      return index >= 0 && index < nodes.size() ? nodes.get(index) : null;
+    }
+
+    @Override
+    public int getLength() {
+      return nodes.size();
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.checks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonarsource.analyzer.commons.xml.ParseException;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.sonarsource.analyzer.commons.xml.XmlFileCache;
+
+/**
+ * Parses files and executes checks on them using a pool of worker threads.
+ * <p>
+ * As checks keep a state while scanning a file, each worker uses its own instances of the checks, created by the
+ * given supplier. Issues are collected by the workers, then saved on the sensor context by the calling thread, in the
+ * order of the files and of the checks: the result is the same as the one of a sequential analysis.
+ * The expressions registered by the {@link SimpleXPathBasedCheck}s are evaluated together on each file, see
+ * {@link SimpleXPathBasedCheck#evaluateOnDocument(String, java.util.function.Consumer)}.
+ * Files which can not be parsed are logged and skipped.
+ */
+public final class ParallelXmlAnalyzer {
+
+  private static final Logger LOG = Loggers.get(ParallelXmlAnalyzer.class);
+
+  private final int threadCount;
+  @Nullable
+  private final XmlFileCache cache;
+
+  public ParallelXmlAnalyzer(int threadCount) {
+    this(threadCount, null);
+  }
+
+  /**
+   * @param cache used to load the files, when not null
+   */
+  public ParallelXmlAnalyzer(int threadCount, @Nullable XmlFileCache cache) {
+    if (threadCount < 1) {
+      throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+    }
+    this.threadCount = threadCount;
+    this.cache = cache;
+  }
+
+  /**
+   * @param checksFactory creates the checks of a worker, along with their rule key, always in the same order
+   */
+  public void analyze(SensorContext context, Iterable<InputFile> inputFiles, Supplier<? extends Map<? extends SonarXmlCheck, RuleKey>> checksFactory) {
+    ThreadLocal<Map<? extends SonarXmlCheck, RuleKey>> workerChecks = ThreadLocal.withInitial(checksFactory);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount, new WorkerThreadFactory());
+    try {
+      List<Future<List<Consumer<SensorContext>>>> results = new ArrayList<>();
+      for (InputFile inputFile : inputFiles) {
+        results.add(executor.submit(() -> analyze(context, inputFile, workerChecks.get())));
+      }
+      for (Future<List<Consumer<SensorContext>>> result : results) {
+        result.get().forEach(issue -> issue.accept(context));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Analysis interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private List<Consumer<SensorContext>> analyze(SensorContext context, InputFile inputFile, Map<? extends SonarXmlCheck, RuleKey> checks) {
+    if (context.isCancelled()) {
+      return Collections.emptyList();
+    }
+    XmlFile xmlFile;
+    try {
+      xmlFile = cache == null ? XmlFile.create(inputFile) : cache.create(inputFile);
+    } catch (IOException | ParseException e) {
+      LOG.warn(String.format("Unable to analyse file %s", inputFile), e);
+      return Collections.emptyList();
+    }
+    SimpleXPathBasedCheck.evaluateRegisteredExpressions(xmlFile, checks.keySet());
+    List<Consumer<SensorContext>> issues = new ArrayList<>();
+    checks.forEach((check, ruleKey) -> {
+      check.deferIssues(issues);
+      try {
+        check.scanFile(context, ruleKey, xmlFile);
+      } finally {
+        check.deferIssues(null);
+      }
+    });
+    return issues;
+  }
+
+  private static class WorkerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "xml-analysis-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+}
@@ -19,16 +19,26 @@
  */
 package org.sonarsource.analyzer.commons.xml.checks;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import javax.annotation.CheckForNull;
-import javax.xml.xpath.XPath;
+import javax.annotation.Nullable;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonarsource.analyzer.commons.xml.XPathExpressionCache;
+import org.sonarsource.analyzer.commons.xml.XmlElementIndex;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -36,10 +46,109 @@ public abstract class SimpleXPathBasedCheck extends SonarXmlCheck {
 
   private static final Logger LOG = Loggers.get(SimpleXPathBasedCheck.class);
 
-  private final XPath xpath = XPathFactory.newInstance().newXPath();
+  // expressions compiled by this check which can be evaluated on a document by reading its XmlElementIndex
+  private final Map<XPathExpression, IndexedDescendantPath> indexedExpressions = new IdentityHashMap<>();
+  // expressions registered by this check, evaluated on the document of each scanned file
+  private final List<RegisteredExpression> registeredExpressions = new ArrayList<>();
+  // nodes matched by each registered expression on the file which is about to be scanned, when evaluated with the
+  // expressions of other checks
+  @Nullable
+  private XmlFile evaluatedFile;
+  @Nullable
+  private List<List<Node>> evaluatedMatches;
 
   /**
-   * Compiles an XPath 1.0 expression
+   * Scans the file with all the checks, in the order of the map. The expressions registered by the checks with
+   * {@link #evaluateOnDocument(String, Consumer)} are evaluated together before the scans, by {@link FusedXPathEvaluator}.
+   */
+  public static void scanFile(SensorContext context, XmlFile file, Map<? extends SimpleXPathBasedCheck, RuleKey> ruleKeyByCheck) {
+    evaluateRegisteredExpressions(file, ruleKeyByCheck.keySet());
+    ruleKeyByCheck.forEach((check, ruleKey) -> check.scanFile(context, ruleKey, file));
+  }
+
+  static void evaluateRegisteredExpressions(XmlFile file, Collection<? extends SonarXmlCheck> checks) {
+    FusedXPathEvaluator evaluator = new FusedXPathEvaluator();
+    Map<SimpleXPathBasedCheck, List<List<Node>>> matchesByCheck = new IdentityHashMap<>();
+    for (SonarXmlCheck check : checks) {
+      if (check instanceof SimpleXPathBasedCheck && !((SimpleXPathBasedCheck) check).registeredExpressions.isEmpty()) {
+        SimpleXPathBasedCheck xpathCheck = (SimpleXPathBasedCheck) check;
+        matchesByCheck.put(xpathCheck, xpathCheck.registerOn(evaluator));
+      }
+    }
+    if (matchesByCheck.isEmpty()) {
+      return;
+    }
+    evaluator.evaluate(file);
+    matchesByCheck.forEach((check, matches) -> {
+      check.evaluatedFile = file;
+      check.evaluatedMatches = matches;
+    });
+  }
+
+  /**
+   * Registers an XPath 1.0 expression, evaluated on the namespace-aware document of each scanned file before
+   * {@link #scanFile(XmlFile)} is called. The callback receives each matching node, in document order, and can report issues.
+   * <p>
+   * When several checks are scanned by {@link #scanFile(SensorContext, XmlFile, Map)} or by {@link ParallelXmlAnalyzer},
+   * their expressions are evaluated together by {@link FusedXPathEvaluator}: the ones it supports in a single traversal
+   * of the document, the other ones by the XPath engine.
+   *
+   * @throws IllegalStateException When the XPath expression can not be compiled by the XPath engine.
+   */
+  protected final void evaluateOnDocument(String expression, Consumer<Node> callback) {
+    evaluateOnDocument(expression, Collections.emptyMap(), callback);
+  }
+
+  /**
+   * @param namespaceByPrefix namespace URI of each prefix used by the expression
+   * @see #evaluateOnDocument(String, Consumer)
+   */
+  protected final void evaluateOnDocument(String expression, Map<String, String> namespaceByPrefix, Consumer<Node> callback) {
+    try {
+      XPathExpressionCache.getInstance().compile(expression, namespaceByPrefix);
+    } catch (XPathExpressionException e) {
+      throw new IllegalStateException(String.format("Fail to compile XPath expression '%s'.", expression), e);
+    }
+    registeredExpressions.add(new RegisteredExpression(expression, namespaceByPrefix, callback));
+  }
+
+  /**
+   * Called once the nodes matched by the expressions registered with {@link #evaluateOnDocument(String, Consumer)} were
+   * sent to their callbacks. Does nothing by default.
+   */
+  @Override
+  public void scanFile(XmlFile file) {
+    // only the registered expressions are evaluated
+  }
+
+  @Override
+  final void scan(XmlFile file) {
+    List<List<Node>> matches = evaluatedFile == file ? evaluatedMatches : null;
+    evaluatedFile = null;
+    evaluatedMatches = null;
+    if (matches == null && !registeredExpressions.isEmpty()) {
+      FusedXPathEvaluator evaluator = new FusedXPathEvaluator();
+      matches = registerOn(evaluator);
+      evaluator.evaluate(file);
+    }
+    for (int i = 0; matches != null && i < matches.size(); i++) {
+      matches.get(i).forEach(registeredExpressions.get(i).callback);
+    }
+    scanFile(file);
+  }
+
+  private List<List<Node>> registerOn(FusedXPathEvaluator evaluator) {
+    List<List<Node>> matches = new ArrayList<>();
+    for (RegisteredExpression registeredExpression : registeredExpressions) {
+      List<Node> nodes = new ArrayList<>();
+      matches.add(nodes);
+      evaluator.register(registeredExpression.expression, registeredExpression.namespaceByPrefix, nodes::add);
+    }
+    return matches;
+  }
+
+  /**
+   * Compiles an XPath 1.0 expression, or retrieves it from {@link XPathExpressionCache} when already compiled by another check
    *
    * @param expression The expression to be compiled in XPath, as a String
    * @return The compiled expression
@@ -47,15 +156,23 @@ public abstract class SimpleXPathBasedCheck extends SonarXmlCheck {
    *         Could occur with invalid expression, or incompatible XPath version.
    */
   public XPathExpression getXPathExpression(String expression) {
+    XPathExpression compiled;
     try {
-      return xpath.compile(expression);
+      compiled = XPathExpressionCache.getInstance().compile(expression);
     } catch (XPathExpressionException e) {
       throw new IllegalStateException(String.format("[%s] Fail to compile XPath expression '%s'.", ruleKey(), expression), e);
     }
+    IndexedDescendantPath indexedPath = IndexedDescendantPath.parse(expression);
+    if (indexedPath != null) {
+      indexedExpressions.put(compiled, indexedPath);
+    }
+    return compiled;
   }
 
   /**
-   * Evaluates a XPath expression on a given node from DOM. The only situation where null is returned is when XPath fails 
+   * Evaluates a XPath expression on a given node from DOM. Expressions such as {@code //name} or {@code //name[@attribute]},
+   * compiled by {@link #getXPathExpression(String)} and evaluated on a document, are read from its {@link XmlElementIndex}
+   * instead of traversing the document. The only situation where null is returned is when XPath fails 
    * to evaluate the expression. This could occur with strangely built DOM. Note that in such case, the check will log extra 
    * information if the debug level is set.
    *
@@ -66,6 +183,10 @@ public abstract class SimpleXPathBasedCheck extends SonarXmlCheck {
    */
   @CheckForNull
   public NodeList evaluate(XPathExpression expression, Node node) {
+    IndexedDescendantPath indexedPath = indexedExpressions.get(expression);
+    if (indexedPath != null && node.getNodeType() == Node.DOCUMENT_NODE) {
+      return indexedPath.evaluate((Document) node);
+    }
     try {
       return (NodeList) expression.evaluate(node, XPathConstants.NODESET);
     } catch (XPathExpressionException e) {
@@ -86,4 +207,17 @@ public abstract class SimpleXPathBasedCheck extends SonarXmlCheck {
   public List<Node> evaluateAsList(XPathExpression expression, Node node) {
     return XmlFile.asList(evaluate(expression, node));
   }
+
+  private static class RegisteredExpression {
+
+    private final String expression;
+    private final Map<String, String> namespaceByPrefix;
+    private final Consumer<Node> callback;
+
+    private RegisteredExpression(String expression, Map<String, String> namespaceByPrefix, Consumer<Node> callback) {
+      this.expression = expression;
+      this.namespaceByPrefix = namespaceByPrefix;
+      this.callback = callback;
+    }
+  }
 }
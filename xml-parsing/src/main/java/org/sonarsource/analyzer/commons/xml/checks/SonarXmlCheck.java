@@ -19,29 +19,160 @@
  */
 package org.sonarsource.analyzer.commons.xml.checks;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.batch.sensor.issue.NewIssueLocation;
 import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.sonarsource.analyzer.commons.xml.XmlTextRange;
+import org.sonarsource.performance.measure.PerformanceMeasure;
 import org.w3c.dom.Node;
 
 public abstract class SonarXmlCheck {
 
+  private static final Logger LOG = Loggers.get(SonarXmlCheck.class);
+
+  public static final int UNLIMITED_ISSUES_PER_FILE = Integer.MAX_VALUE;
+
   private SensorContext context;
   private InputFile inputFile;
   private RuleKey ruleKey;
+  // name of the performance measure of the scans, computed once per rule key
+  private String measureName;
+  // when set, issues are saved later by the caller, instead of being saved on the context while the file is scanned
+  @Nullable
+  private List<Consumer<SensorContext>> deferredIssues;
+  // issues reported while scanning the current file, saved when the scan ends, only when issues are limited or deduplicated
+  @Nullable
+  private List<Consumer<SensorContext>> bufferedIssues;
+  // keys of the buffered issues, only when issues are deduplicated
+  @Nullable
+  private Set<IssueKey> bufferedIssueKeys;
+  private int droppedIssueCount;
+  private int maxIssuesPerFile = UNLIMITED_ISSUES_PER_FILE;
+  private boolean deduplicateIssues = false;
 
+  /**
+   * Scans the file, measured under the rule key when a {@link PerformanceMeasure} report is active on the current thread.
+   * When issues are limited or deduplicated, they are saved when the scan ends successfully, and dropped if the scan fails,
+   * see {@link #setMaxIssuesPerFile(int)} and {@link #setDeduplicateIssues(boolean)}.
+   */
   public final void scanFile(SensorContext context, RuleKey ruleKey, XmlFile file) {
+    setContext(context, ruleKey, file.getInputFile());
+    PerformanceMeasure.Duration duration = PerformanceMeasure.start(measureName);
+    bufferIssues();
+    try {
+      scan(file);
+      flushIssues();
+    } finally {
+      discardIssues();
+      duration.stop();
+    }
+  }
+
+  /**
+   * Overridden by {@link SimpleXPathBasedCheck} to report the nodes matched by its registered expressions first
+   */
+  void scan(XmlFile file) {
+    scanFile(file);
+  }
+
+  /**
+   * While a file is scanned, the issues following the first {@code maxIssuesPerFile} ones are ignored, and their number is logged.
+   *
+   * @param maxIssuesPerFile maximum number of issues saved by this check on each file, {@link #UNLIMITED_ISSUES_PER_FILE} by default
+   */
+  public final void setMaxIssuesPerFile(int maxIssuesPerFile) {
+    if (maxIssuesPerFile < 1) {
+      throw new IllegalArgumentException("Maximum number of issues per file should be positive: " + maxIssuesPerFile);
+    }
+    this.maxIssuesPerFile = maxIssuesPerFile;
+  }
+
+  /**
+   * While a file is scanned, issues having the same primary and secondary locations and messages as a previous issue are ignored.
+   *
+   * @param deduplicateIssues {@code false} by default
+   */
+  public final void setDeduplicateIssues(boolean deduplicateIssues) {
+    this.deduplicateIssues = deduplicateIssues;
+  }
+
+  final void setContext(SensorContext context, RuleKey ruleKey, @Nullable InputFile inputFile) {
     this.context = context;
-    this.inputFile = file.getInputFile();
+    this.inputFile = inputFile;
+    if (!ruleKey.equals(this.ruleKey)) {
+      this.measureName = ruleKey.toString();
+    }
     this.ruleKey = ruleKey;
-    scanFile(file);
+  }
+
+  final void deferIssues(@Nullable List<Consumer<SensorContext>> deferredIssues) {
+    this.deferredIssues = deferredIssues;
+  }
+
+  final void bufferIssues() {
+    boolean limitIssues = maxIssuesPerFile != UNLIMITED_ISSUES_PER_FILE;
+    bufferedIssues = (limitIssues || deduplicateIssues) ? new ArrayList<>() : null;
+    bufferedIssueKeys = deduplicateIssues ? new HashSet<>() : null;
+    droppedIssueCount = 0;
+  }
+
+  final void flushIssues() {
+    List<Consumer<SensorContext>> issues = bufferedIssues;
+    if (issues == null) {
+      return;
+    }
+    discardIssues();
+    issues.forEach(this::save);
+    if (droppedIssueCount > 0) {
+      LOG.warn("[{}] {} issue(s) above the limit of {} were ignored on file {}", ruleKey, droppedIssueCount, maxIssuesPerFile, inputFile);
+    }
+  }
+
+  final void discardIssues() {
+    bufferedIssues = null;
+    bufferedIssueKeys = null;
+  }
+
+  private void report(Supplier<IssueKey> keySupplier, Consumer<SensorContext> issueSaver) {
+    if (bufferedIssues == null) {
+      save(issueSaver);
+      return;
+    }
+    IssueKey key = bufferedIssueKeys == null ? null : keySupplier.get();
+    if (key != null && bufferedIssueKeys.contains(key)) {
+      return;
+    }
+    if (bufferedIssues.size() < maxIssuesPerFile) {
+      bufferedIssues.add(issueSaver);
+      if (key != null) {
+        bufferedIssueKeys.add(key);
+      }
+    } else {
+      droppedIssueCount++;
+    }
+  }
+
+  private void save(Consumer<SensorContext> issueSaver) {
+    if (deferredIssues == null) {
+      issueSaver.accept(context);
+    } else {
+      deferredIssues.add(issueSaver);
+    }
   }
 
   public final InputFile inputFile() {
@@ -55,6 +186,13 @@ public abstract class SonarXmlCheck {
   public abstract void scanFile(XmlFile file);
 
   public final void reportIssueOnFile(String message, List<Integer> secondaryLocationLines) {
+    InputFile currentFile = inputFile;
+    RuleKey currentRuleKey = ruleKey;
+    report(() -> new IssueKey(null, message, new ArrayList<>(secondaryLocationLines)),
+      sensorContext -> saveIssueOnFile(sensorContext, currentFile, currentRuleKey, message, secondaryLocationLines));
+  }
+
+  private static void saveIssueOnFile(SensorContext context, InputFile inputFile, RuleKey ruleKey, String message, List<Integer> secondaryLocationLines) {
     NewIssue issue = context.newIssue();
 
     NewIssueLocation location = issue.newLocation()
@@ -75,10 +213,23 @@ public abstract class SonarXmlCheck {
   }
 
   public final void reportIssue(XmlTextRange textRange, String message, List<Secondary> secondaries) {
+    InputFile currentFile = inputFile;
+    RuleKey currentRuleKey = ruleKey;
+    report(() -> new IssueKey(textRange, message, secondaryKeys(secondaries)),
+      sensorContext -> saveIssue(sensorContext, currentFile, currentRuleKey, textRange, message, secondaries));
+  }
+
+  private static List<IssueKey> secondaryKeys(List<Secondary> secondaries) {
+    return secondaries.stream()
+      .map(secondary -> new IssueKey(secondary.range, secondary.message, Collections.emptyList()))
+      .collect(Collectors.toList());
+  }
+
+  private static void saveIssue(SensorContext context, InputFile inputFile, RuleKey ruleKey, XmlTextRange textRange, String message, List<Secondary> secondaries) {
     NewIssue issue = context.newIssue();
-    NewIssueLocation location = getLocation(textRange, issue).message(message);
+    NewIssueLocation location = getLocation(inputFile, textRange, issue).message(message);
     secondaries.forEach(secondary -> {
-      NewIssueLocation secondaryLocation = getLocation(secondary.range, issue);
+      NewIssueLocation secondaryLocation = getLocation(inputFile, secondary.range, issue);
       if (secondary.message != null) {
         secondaryLocation.message(secondary.message);
       }
@@ -91,7 +242,7 @@ public abstract class SonarXmlCheck {
       .save();
   }
 
-  private NewIssueLocation getLocation(XmlTextRange textRange, NewIssue issue) {
+  private static NewIssueLocation getLocation(InputFile inputFile, XmlTextRange textRange, NewIssue issue) {
     return issue.newLocation()
       .on(inputFile)
       .at(inputFile.newRange(
@@ -106,6 +257,46 @@ public abstract class SonarXmlCheck {
     reportIssue(textRange, message, Collections.emptyList());
   }
 
+  private static final class IssueKey {
+
+    // issues on file are kept apart using -1
+    private final int startLine;
+    private final int startColumn;
+    private final int endLine;
+    private final int endColumn;
+    @Nullable
+    private final String message;
+    // lines of the secondary locations of issues on file, keys of the secondary locations of other issues
+    private final List<?> secondaries;
+
+    private IssueKey(@Nullable XmlTextRange range, @Nullable String message, List<?> secondaries) {
+      this.startLine = range == null ? -1 : range.getStartLine();
+      this.startColumn = range == null ? -1 : range.getStartColumn();
+      this.endLine = range == null ? -1 : range.getEndLine();
+      this.endColumn = range == null ? -1 : range.getEndColumn();
+      this.message = message;
+      this.secondaries = secondaries;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      IssueKey other = (IssueKey) o;
+      return startLine == other.startLine && startColumn == other.startColumn && endLine == other.endLine && endColumn == other.endColumn
+        && Objects.equals(message, other.message) && secondaries.equals(other.secondaries);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(startLine, startColumn, endLine, endColumn, message, secondaries);
+    }
+  }
+
   public static class Secondary {
     final XmlTextRange range;
     @Nullable final String message;
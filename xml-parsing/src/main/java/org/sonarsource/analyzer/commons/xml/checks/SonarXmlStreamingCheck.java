@@ -0,0 +1,78 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.checks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.rule.RuleKey;
+import org.sonarsource.analyzer.commons.xml.StreamingXmlFile;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.sonarsource.analyzer.commons.xml.XmlStreamHandler;
+
+/**
+ * Check relying on the events of a streamed file instead of its DOM, so that it can be executed on very large files.
+ * Issues are reported on locations provided by the events, using {@link #reportIssue(org.sonarsource.analyzer.commons.xml.XmlTextRange, String, java.util.List)}.
+ */
+public abstract class SonarXmlStreamingCheck extends SonarXmlCheck implements XmlStreamHandler {
+
+  /**
+   * Streams the file once, sending its events to all the checks.
+   */
+  public static void scanFile(SensorContext context, StreamingXmlFile file, Map<? extends SonarXmlStreamingCheck, RuleKey> ruleKeyByCheck) throws IOException {
+    ruleKeyByCheck.forEach((check, ruleKey) -> {
+      check.setContext(context, ruleKey, file.getInputFile());
+      check.bufferIssues();
+    });
+    try {
+      file.scan(new ArrayList<>(ruleKeyByCheck.keySet()));
+      ruleKeyByCheck.keySet().forEach(SonarXmlCheck::flushIssues);
+    } finally {
+      ruleKeyByCheck.keySet().forEach(SonarXmlCheck::discardIssues);
+    }
+  }
+
+  public final void scanFile(SensorContext context, RuleKey ruleKey, StreamingXmlFile file) throws IOException {
+    setContext(context, ruleKey, file.getInputFile());
+    bufferIssues();
+    try {
+      file.scan(Collections.singletonList(this));
+      flushIssues();
+    } finally {
+      discardIssues();
+    }
+  }
+
+  /**
+   * Files which were already parsed are streamed from their contents.
+   */
+  @Override
+  public final void scanFile(XmlFile file) {
+    try {
+      XmlFile.createStreaming(file.getContents()).scan(Collections.singletonList(this));
+    } catch (IOException e) {
+      // contents are already in memory
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.xerces.dom.DocumentImpl;
+import org.junit.Test;
+import org.sonarsource.analyzer.commons.xml.XmlFile.Location;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NodeLocationsTest {
+
+  @Test
+  public void testLocations() {
+    Document document = new DocumentImpl();
+    Element root = document.createElement("root");
+    document.appendChild(root);
+    NodeLocations locations = new NodeLocations(new XmlFileContent("<root>\n  <child/>\n</root>"));
+    locations.attachTo(document);
+
+    locations.set(root, Location.START, 0, 6);
+    locations.set(root, Location.NODE, 0, 25);
+    // more nodes than the initial capacity of the table
+    List<Element> children = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Element child = document.createElement("child");
+      root.appendChild(child);
+      locations.set(child, Location.NODE, 9, 17);
+      children.add(child);
+    }
+
+    assertThat(locations.startOffset(root, Location.NODE)).isZero();
+    assertThat(locations.endOffset(root, Location.NODE)).isEqualTo(25);
+    assertThat(locations.startOffset(root, Location.END)).isEqualTo(-1);
+    assertThat(XmlFile.startLocation(root))
+      .extracting("startLine", "startColumn", "endLine", "endColumn")
+      .containsExactly(1, 0, 1, 6);
+    assertThat(XmlFile.getRange(root, Location.END)).isEmpty();
+    assertThat(children)
+      .extracting(XmlFile::nodeLocation)
+      .extracting("startLine", "startColumn", "endLine", "endColumn")
+      .containsOnly(org.assertj.core.groups.Tuple.tuple(2, 2, 2, 10));
+
+    assertThat(XmlFile.getRange(document, Location.NODE)).isEmpty();
+    assertThat(XmlFile.getRange(document.createElement("other"), Location.NODE)).isEmpty();
+    assertThat(XmlFile.getRange(new DocumentImpl().createElement("other"), Location.NODE)).isEmpty();
+  }
+
+  /**
+   * Compares the memory retained by the locations of a large document, when stored as user data of each node
+   * (as done before) and when stored in the packed table.
+   */
+  @Test
+  public void testMemoryFootprintComparedToUserData() {
+    XmlFileContent content = new XmlFileContent("<a attr=\"value\">text</a>");
+    Document document = createLargeDocument();
+
+    long usedBefore = usedMemory();
+    setLocationsAsUserData(document.getDocumentElement(), content);
+    long userDataFootprint = usedMemory() - usedBefore;
+
+    document = createLargeDocument();
+    usedBefore = usedMemory();
+    NodeLocations locations = new NodeLocations(content);
+    locations.attachTo(document);
+    setLocationsInTable(document.getDocumentElement(), locations);
+    long tableFootprint = usedMemory() - usedBefore;
+
+    assertThat(XmlFile.getRange(document.getDocumentElement().getFirstChild(), Location.NAME)).isPresent();
+    assertThat(tableFootprint).isLessThan(userDataFootprint / 3);
+  }
+
+  private static Document createLargeDocument() {
+    Document document = new DocumentImpl();
+    Element root = document.createElement("root");
+    document.appendChild(root);
+    for (int i = 0; i < 20_000; i++) {
+      Element element = document.createElement("a");
+      element.setAttribute("attr", "value");
+      element.appendChild(document.createTextNode("text"));
+      root.appendChild(element);
+    }
+    return document;
+  }
+
+  private static void setLocationsAsUserData(Node node, XmlFileContent content) {
+    for (Location location : Location.values()) {
+      node.setUserData(location.name(), content.range(0, 1), null);
+    }
+    if (node.hasAttributes()) {
+      Node attr = node.getAttributes().item(0);
+      for (Location location : new Location[] {Location.NODE, Location.NAME, Location.VALUE}) {
+        attr.setUserData(location.name(), content.range(3, 7), null);
+      }
+    }
+    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+      setLocationsAsUserData(child, content);
+    }
+  }
+
+  private static void setLocationsInTable(Node node, NodeLocations locations) {
+    for (Location location : Location.values()) {
+      locations.set(node, location, 0, 1);
+    }
+    if (node.hasAttributes()) {
+      Node attr = node.getAttributes().item(0);
+      for (Location location : new Location[] {Location.NODE, Location.NAME, Location.VALUE}) {
+        locations.set(attr, location, 3, 7);
+      }
+    }
+    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+      setLocationsInTable(child, locations);
+    }
+  }
+
+  private static long usedMemory() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 3; i++) {
+      memory.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+}
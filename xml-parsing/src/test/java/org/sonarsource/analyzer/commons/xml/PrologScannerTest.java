@@ -0,0 +1,78 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrologScannerTest {
+
+  @Test
+  public void xml_declaration() {
+    PrologScanner prolog = PrologScanner.scan("\ufeff<?xml version=\"1.0\"?>\n<a/>");
+    assertThat(prolog.hasXmlDeclaration()).isTrue();
+    assertThat(prolog.xmlDeclarationEnd()).isEqualTo(21);
+    assertThat(prolog.content().text(0, prolog.xmlDeclarationEnd())).isEqualTo("<?xml version=\"1.0\"?>");
+    assertThat(prolog.doctypeStart()).isEqualTo(PrologScanner.NOT_FOUND);
+    assertThat(prolog.doctypeEnd()).isEqualTo(PrologScanner.NOT_FOUND);
+  }
+
+  @Test
+  public void content_before_xml_declaration_is_skipped() {
+    PrologScanner prolog = PrologScanner.scan("\n  <!-- comment --> <?xml version=\"1.0\"?><a/>");
+    assertThat(prolog.hasXmlDeclaration()).isTrue();
+    assertThat(prolog.content().text(0, prolog.content().length())).isEqualTo("<?xml version=\"1.0\"?><a/>");
+    XmlTextRange start = prolog.content().range(0, 5);
+    assertThat(start.getStartLine()).isEqualTo(2);
+    assertThat(start.getStartColumn()).isEqualTo(19);
+  }
+
+  @Test
+  public void no_xml_declaration() {
+    assertThat(PrologScanner.scan("<a/>").hasXmlDeclaration()).isFalse();
+    assertThat(PrologScanner.scan("").hasXmlDeclaration()).isFalse();
+    assertThat(PrologScanner.scan("<?xml-stylesheet href='style.xsl'?><a/>").hasXmlDeclaration()).isFalse();
+    assertThat(PrologScanner.scan("<!--<?xml version=\"1.0\"?>--><a/>").hasXmlDeclaration()).isFalse();
+    assertThat(PrologScanner.scan("<?xml version=\"1.0\"").hasXmlDeclaration()).isFalse();
+    // the scan stops at the root element
+    PrologScanner prolog = PrologScanner.scan("<a><?xml version=\"1.0\"?></a>");
+    assertThat(prolog.hasXmlDeclaration()).isFalse();
+    assertThat(prolog.content().length()).isEqualTo(28);
+  }
+
+  @Test
+  public void doctype() {
+    String content = "<?xml version=\"1.0\"?>\n<?pi data?><!DOCTYPE a [<!ENTITY b '>'>]>\n<a/>";
+    PrologScanner prolog = PrologScanner.scan(content);
+    assertThat(prolog.content().text(prolog.doctypeStart(), prolog.doctypeEnd())).isEqualTo("<!DOCTYPE a [<!ENTITY b '>'>]>");
+
+    prolog = PrologScanner.scan("<!-- comment --><!DOCTYPE a>");
+    assertThat(prolog.hasXmlDeclaration()).isFalse();
+    assertThat(prolog.doctypeStart()).isEqualTo(16);
+    assertThat(prolog.doctypeEnd()).isEqualTo(28);
+
+    // unterminated
+    prolog = PrologScanner.scan("<!DOCTYPE a [");
+    assertThat(prolog.doctypeStart()).isEqualTo(PrologScanner.NOT_FOUND);
+    assertThat(prolog.doctypeEnd()).isEqualTo(PrologScanner.NOT_FOUND);
+  }
+
+}
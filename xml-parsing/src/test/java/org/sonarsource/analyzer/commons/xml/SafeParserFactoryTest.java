@@ -0,0 +1,97 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.stream.XMLInputFactory;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SafeParserFactoryTest {
+
+  private static final String EXTERNAL_ENTITY = "<!DOCTYPE a [<!ENTITY e SYSTEM \"file:///etc/hosts\">]><a>&e;</a>";
+
+  @Test
+  public void document_builders_are_reused_by_thread() throws Exception {
+    DocumentBuilder aware = SafeDomParserFactory.threadDocumentBuilder(true);
+    DocumentBuilder unaware = SafeDomParserFactory.threadDocumentBuilder(false);
+
+    assertThat(SafeDomParserFactory.threadDocumentBuilder(true)).isSameAs(aware);
+    assertThat(SafeDomParserFactory.threadDocumentBuilder(false)).isSameAs(unaware).isNotSameAs(aware);
+    assertThat(aware.isNamespaceAware()).isTrue();
+    assertThat(unaware.isNamespaceAware()).isFalse();
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      DocumentBuilder other = executor.submit(() -> SafeDomParserFactory.threadDocumentBuilder(true)).get();
+      assertThat(other).isNotSameAs(aware);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void document_builders_are_reset_before_use() throws Exception {
+    DocumentBuilder builder = SafeDomParserFactory.threadDocumentBuilder(true);
+    builder.setErrorHandler(new DefaultHandler());
+    builder.setEntityResolver((publicId, systemId) -> {
+      throw new IllegalStateException("should not be used");
+    });
+    assertThatThrownBy(() -> builder.parse(new ByteArrayInputStream("<a><b></a>".getBytes(StandardCharsets.UTF_8))))
+      .isInstanceOf(SAXException.class);
+
+    Document document = SafeDomParserFactory.threadDocumentBuilder(true).parse(new ByteArrayInputStream("<a><b/></a>".getBytes(StandardCharsets.UTF_8)));
+    assertThat(document.getDocumentElement().getFirstChild().getNodeName()).isEqualTo("b");
+  }
+
+  @Test
+  public void reused_document_builders_keep_security_features() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      Document document = SafeDomParserFactory.threadDocumentBuilder(false).parse(new ByteArrayInputStream(EXTERNAL_ENTITY.getBytes(StandardCharsets.UTF_8)));
+      assertThat(document.getDocumentElement().getTextContent()).isEmpty();
+    }
+  }
+
+  @Test
+  public void xml_input_factories_are_reused_by_thread() throws Exception {
+    XMLInputFactory factory = SafeStaxParserFactory.threadXMLInputFactory();
+
+    assertThat(SafeStaxParserFactory.threadXMLInputFactory()).isSameAs(factory);
+    assertThat(factory.getProperty(XMLInputFactory.SUPPORT_DTD)).isEqualTo(false);
+    assertThat(factory.getProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES)).isEqualTo(false);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertThat(executor.submit(SafeStaxParserFactory::threadXMLInputFactory).get()).isNotSameAs(factory);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonarsource.analyzer.commons.xml.XmlFile.Location;
+import org.sonarsource.analyzer.commons.xml.XmlStreamElement.XmlStreamAttribute;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StreamingXmlFileTest {
+
+  private static final String XML = "<?xml version=\"1.0\"?>\r\n"
+    + "<a xmlns:p=\"http://p\" x = \"1\">\n"
+    + "  <!-- comment -->\n"
+    + "  <p:b p:y='2'>text&amp;more</p:b>\r"
+    + "  <c><![CDATA[<data>]]></c>\n"
+    + "</a>\n";
+
+  @Test
+  public void same_locations_as_dom() throws Exception {
+    XmlFile xmlFile = XmlFile.create(XML);
+    Element a = xmlFile.getDocument().getDocumentElement();
+    Element b = (Element) a.getElementsByTagName("p:b").item(0);
+    Node comment = a.getChildNodes().item(1);
+    Node text = b.getFirstChild();
+    Node cdata = a.getElementsByTagName("c").item(0).getFirstChild();
+
+    List<String> events = new ArrayList<>();
+    List<XmlStreamElement> elements = new ArrayList<>();
+    List<XmlStreamAttribute> attributes = new ArrayList<>();
+    List<XmlTextRange> ranges = new ArrayList<>();
+    XmlFile.createStreaming(XML).scan(Collections.singletonList(new XmlStreamHandler() {
+      @Override
+      public void startDocument() {
+        events.add("startDocument");
+      }
+
+      @Override
+      public void startElement(XmlStreamElement element) {
+        events.add("<" + element.getName());
+        elements.add(element);
+      }
+
+      @Override
+      public void attribute(XmlStreamAttribute attribute) {
+        events.add("@" + attribute.getName() + "=" + attribute.getValue());
+        attributes.add(attribute);
+      }
+
+      @Override
+      public void text(String text, XmlTextRange location) {
+        if (!text.trim().isEmpty()) {
+          events.add(text);
+          ranges.add(location);
+        }
+      }
+
+      @Override
+      public void cdata(String text, XmlTextRange location) {
+        events.add("cdata:" + text);
+        ranges.add(location);
+      }
+
+      @Override
+      public void comment(String text, XmlTextRange location) {
+        events.add("comment:" + text);
+        ranges.add(location);
+      }
+
+      @Override
+      public void endElement(XmlStreamElement element) {
+        events.add(element.getName() + ">");
+      }
+
+      @Override
+      public void endDocument() {
+        events.add("endDocument");
+      }
+    }));
+
+    assertThat(events).containsExactly("startDocument", "<a", "@xmlns:p=http://p", "@x=1", "comment: comment ", "<p:b", "@p:y=2", "text&more", "p:b>",
+      "<c", "cdata:<data>", "c>", "a>", "endDocument");
+
+    XmlStreamElement streamedA = elements.get(0);
+    assertSameRange(streamedA.getStartLocation(), XmlFile.startLocation(a));
+    assertSameRange(streamedA.getNameLocation(), XmlFile.nameLocation(a));
+    assertSameRange(streamedA.getEndLocation(), XmlFile.endLocation(a));
+    assertSameRange(streamedA.getNodeLocation(), XmlFile.nodeLocation(a));
+    assertThat(streamedA.getParent()).isNull();
+    assertThat(streamedA.getAttribute("x")).containsSame(attributes.get(1));
+    assertThat(streamedA.getAttribute("y")).isEmpty();
+
+    XmlStreamElement streamedB = elements.get(1);
+    assertThat(streamedB.getParent()).isSameAs(streamedA);
+    assertThat(streamedB.getLocalName()).isEqualTo("b");
+    assertThat(streamedB.getNamespaceURI()).isEqualTo("http://p");
+    assertSameRange(streamedB.getStartLocation(), XmlFile.startLocation(b));
+    assertSameRange(streamedB.getEndLocation(), XmlFile.endLocation(b));
+
+    XmlStreamAttribute namespace = attributes.get(0);
+    assertThat(namespace.getLocalName()).isEqualTo("p");
+    assertThat(namespace.getNamespaceURI()).isEqualTo("http://www.w3.org/2000/xmlns/");
+    assertThat(namespace.getElement()).isSameAs(streamedA);
+    XmlStreamAttribute y = attributes.get(2);
+    assertThat(y.getLocalName()).isEqualTo("y");
+    assertThat(y.getNamespaceURI()).isEqualTo("http://p");
+    Node domY = b.getAttributeNode("p:y");
+    assertSameRange(y.getNameLocation(), XmlFile.attributeNameLocation((Attr) domY));
+    assertSameRange(y.getValueLocation(), XmlFile.attributeValueLocation((Attr) domY));
+    assertSameRange(y.getNodeLocation(), XmlFile.nodeLocation(domY));
+    assertSameRange(attributes.get(1).getNodeLocation(), XmlFile.getRange(a.getAttributeNode("x"), Location.NODE).get());
+
+    assertSameRange(ranges.get(0), XmlFile.nodeLocation(comment));
+    assertSameRange(ranges.get(1), XmlFile.nodeLocation(text));
+    assertSameRange(ranges.get(2), XmlFile.nodeLocation(cdata));
+  }
+
+  @Test
+  public void skipped_prolog_prefix() throws Exception {
+    String xml = "﻿\n  <?xml version=\"1.0\"?>\n<a/>";
+    List<XmlStreamElement> elements = new ArrayList<>();
+    XmlFile.createStreaming(xml).scan(Collections.singletonList(new XmlStreamHandler() {
+      @Override
+      public void startElement(XmlStreamElement element) {
+        elements.add(element);
+      }
+    }));
+
+    assertThat(elements).hasSize(1);
+    assertSameRange(elements.get(0).getNodeLocation(), XmlFile.nodeLocation(XmlFile.create(xml).getDocument().getDocumentElement()));
+  }
+
+  @Test
+  public void long_text_is_reported_in_segments() throws Exception {
+    StringBuilder longText = new StringBuilder();
+    for (int i = 0; i < 100_000; i++) {
+      longText.append(i % 80 == 0 ? '\n' : 'x');
+    }
+    String xml = "<a>" + longText + "</a>";
+    List<String> segments = new ArrayList<>();
+    List<XmlTextRange> ranges = new ArrayList<>();
+    XmlFile.createStreaming(xml).scan(Collections.singletonList(new XmlStreamHandler() {
+      @Override
+      public void text(String text, XmlTextRange location) {
+        segments.add(text);
+        ranges.add(location);
+      }
+    }));
+
+    assertThat(segments.size()).isGreaterThan(1);
+    assertThat(String.join("", segments)).isEqualTo(longText.toString());
+    for (int i = 1; i < ranges.size(); i++) {
+      assertThat(ranges.get(i).getStartLine()).isEqualTo(ranges.get(i - 1).getEndLine());
+      assertThat(ranges.get(i).getStartColumn()).isEqualTo(ranges.get(i - 1).getEndColumn());
+    }
+    XmlTextRange domRange = XmlFile.nodeLocation(XmlFile.create(xml).getDocument().getDocumentElement().getFirstChild());
+    assertSameRange(new XmlTextRange(ranges.get(0), ranges.get(ranges.size() - 1)), domRange);
+  }
+
+  @Test
+  public void memory_depends_on_nesting_depth() throws Exception {
+    int[] elementCount = {0};
+    // ~20M characters, never loaded at once
+    XmlStreamContent content = XmlStreamContent.create(new GeneratedXmlReader(200_000));
+    new XmlStreamParser(content, Collections.singletonList(new XmlStreamHandler() {
+      @Override
+      public void endElement(XmlStreamElement element) {
+        elementCount[0]++;
+      }
+    })).parse();
+
+    assertThat(elementCount[0]).isEqualTo(200_000 * 3 + 1);
+    assertThat(content.capacity()).isLessThan(64 * 1024);
+  }
+
+  @Test
+  public void from_input_file() throws Exception {
+    InputFile inputFile = TestInputFileBuilder
+      .create("moduleKey", "file.xml")
+      .setModuleBaseDir(new File("src/test/resources/").toPath())
+      .setCharset(StandardCharsets.UTF_8)
+      .build();
+
+    StreamingXmlFile file = XmlFile.createStreaming(inputFile);
+    List<String> texts = new ArrayList<>();
+    XmlStreamHandler handler = new XmlStreamHandler() {
+      @Override
+      public void text(String text, XmlTextRange location) {
+        texts.add(text);
+      }
+    };
+    file.scan(Collections.singletonList(handler));
+    file.scan(Collections.singletonList(handler));
+
+    assertThat(file.getInputFile()).isSameAs(inputFile);
+    assertThat(file.getCharset()).isEqualTo(StandardCharsets.UTF_8);
+    assertThat(texts).containsExactly("Hello", "Hello");
+  }
+
+  @Test
+  public void malformed_file() {
+    StreamingXmlFile file = XmlFile.createStreaming("<a><b></a>");
+    List<XmlStreamHandler> handlers = Collections.singletonList(new XmlStreamHandler() {
+    });
+    assertThatThrownBy(() -> file.scan(handlers)).isInstanceOf(ParseException.class);
+  }
+
+  private static void assertSameRange(XmlTextRange actual, XmlTextRange expected) {
+    assertThat(actual).usingRecursiveComparison().isEqualTo(expected);
+  }
+
+  private static class GeneratedXmlReader extends Reader {
+
+    private static final String ELEMENT = "<item id=\"1\">\n  <name>some name</name>\n  <!-- comment -->\n  <value><![CDATA[value]]></value>\n</item>\n";
+
+    private final int elementCount;
+    private int generatedElements = -1;
+    private String current = "<root>\n";
+    private int position = 0;
+
+    private GeneratedXmlReader(int elementCount) {
+      this.elementCount = elementCount;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+      if (position == current.length()) {
+        generatedElements++;
+        if (generatedElements < elementCount) {
+          current = ELEMENT;
+        } else if (generatedElements == elementCount) {
+          current = "</root>";
+        } else {
+          return -1;
+        }
+        position = 0;
+      }
+      int count = Math.min(length, current.length() - position);
+      current.getChars(position, position + count, buffer, offset);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public void close() {
+      // nothing to close
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TagScannerTest {
+
+  @Test
+  public void closing_bracket() {
+    assertThat(moveAfterClosingBracket("<a b = 'c>' d=\"e>\">text")).isEqualTo(19);
+    assertThat(moveAfterClosingBracket("<!DOCTYPE a [<!ENTITY b '>'> <!ELEMENT a (#PCDATA)>]> <a/>")).isEqualTo(53);
+    assertThat(moveAfterClosingBracket("<\u00e9l\u00e9ment attr='\u00e9t\u00e9'>")).isEqualTo(20);
+    assertThat(moveAfterClosingBracket("</a >")).isEqualTo(5);
+
+    assertThatThrownBy(() -> moveAfterClosingBracket("<a b='>"))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage("Failed to find closing bracket '>'.");
+  }
+
+  @Test
+  public void start_tag_without_attributes() {
+    TagScanner scanner = scanStartTag("<a>", 2);
+    assertThat(scanner.attributeCount()).isZero();
+    assertThat(scanner.closingBracketEnd()).isEqualTo(3);
+
+    scanner = scanStartTag("<a\n  />", 2);
+    assertThat(scanner.attributeCount()).isZero();
+    assertThat(scanner.closingBracketEnd()).isEqualTo(7);
+  }
+
+  @Test
+  public void start_tag_with_attributes() {
+    String tag = "<a b = 'c>=' d=\"e'\"\tf:g='' />";
+    TagScanner scanner = scanStartTag(tag, 2);
+
+    assertThat(scanner.attributeCount()).isEqualTo(3);
+    // the name includes the whitespaces before '='
+    assertThat(attributeName(tag, scanner, 0)).isEqualTo("b ");
+    assertThat(attributeValue(tag, scanner, 0)).isEqualTo("'c>='");
+    assertThat(attributeName(tag, scanner, 1)).isEqualTo("d");
+    assertThat(attributeValue(tag, scanner, 1)).isEqualTo("\"e'\"");
+    assertThat(attributeName(tag, scanner, 2)).isEqualTo("f:g");
+    assertThat(attributeValue(tag, scanner, 2)).isEqualTo("''");
+    assertThat(scanner.closingBracketEnd()).isEqualTo(tag.length());
+  }
+
+  @Test
+  public void start_tag_with_non_ascii_characters() {
+    String tag = "<a \u00e9=\"\u00e9t\u00e9\" \u4e2d\u6587='>'>";
+    TagScanner scanner = scanStartTag(tag, 2);
+
+    assertThat(scanner.attributeCount()).isEqualTo(2);
+    assertThat(attributeName(tag, scanner, 0)).isEqualTo("\u00e9");
+    assertThat(attributeValue(tag, scanner, 0)).isEqualTo("\"\u00e9t\u00e9\"");
+    assertThat(attributeName(tag, scanner, 1)).isEqualTo("\u4e2d\u6587");
+    assertThat(attributeValue(tag, scanner, 1)).isEqualTo("'>'");
+  }
+
+  @Test
+  public void start_tag_with_many_attributes() {
+    StringBuilder tag = new StringBuilder("<a");
+    for (int i = 0; i < 100; i++) {
+      tag.append(" attr").append(i).append("=\"value").append(i).append('"');
+    }
+    String text = tag.append(">").toString();
+    TagScanner scanner = scanStartTag(text, 2);
+
+    assertThat(scanner.attributeCount()).isEqualTo(100);
+    assertThat(attributeName(text, scanner, 99)).isEqualTo("attr99");
+    assertThat(attributeValue(text, scanner, 99)).isEqualTo("\"value99\"");
+
+    // the same scanner can be reused for the next tag
+    scanner.scanStartTag(new XmlFileContent("<b c='d'>"), 2);
+    assertThat(scanner.attributeCount()).isEqualTo(1);
+    assertThat(scanner.closingBracketEnd()).isEqualTo(9);
+  }
+
+  @Test
+  public void unclosed_start_tag() {
+    assertThatThrownBy(() -> scanStartTag("<a b='>'", 2))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage("Failed to find closing bracket '>'.");
+  }
+
+  private static int moveAfterClosingBracket(String text) {
+    return TagScanner.moveAfterClosingBracket(new XmlFileContent(text), 0);
+  }
+
+  private static TagScanner scanStartTag(String text, int offset) {
+    TagScanner scanner = new TagScanner();
+    scanner.scanStartTag(new XmlFileContent(text), offset);
+    return scanner;
+  }
+
+  private static String attributeName(String text, TagScanner scanner, int index) {
+    return text.substring(scanner.attributeNameStart(index), scanner.attributeNameEnd(index));
+  }
+
+  private static String attributeValue(String text, TagScanner scanner, int index) {
+    return text.substring(scanner.attributeValueStart(index), scanner.attributeValueEnd(index));
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class XPathExpressionCacheTest {
+
+  @Test
+  public void expressions_are_compiled_once() throws Exception {
+    XPathExpressionCache cache = new XPathExpressionCache(10);
+
+    XPathExpression expression = cache.compile("//a");
+    assertThat(cache.compile("//a")).isSameAs(expression);
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(1);
+
+    XPathExpression withNamespace = cache.compile("//n:a", Collections.singletonMap("n", "http://n"));
+    assertThat(cache.compile("//n:a", Collections.singletonMap("n", "http://n"))).isSameAs(withNamespace);
+    assertThat(cache.compile("//n:a", Collections.singletonMap("n", "http://other"))).isNotSameAs(withNamespace);
+    assertThat(cache.hitCount()).isEqualTo(2);
+    assertThat(cache.missCount()).isEqualTo(3);
+    assertThat(cache.size()).isEqualTo(3);
+
+    Document document = XmlFile.create("<a xmlns:n=\"http://n\"><n:a/><a/></a>").getDocument();
+    assertThat(((NodeList) expression.evaluate(document, XPathConstants.NODESET)).getLength()).isEqualTo(2);
+    assertThat(((NodeList) withNamespace.evaluate(document, XPathConstants.NODESET)).getLength()).isEqualTo(1);
+    assertThat(cache.compile("count(//a)").evaluate(document)).isEqualTo("2");
+  }
+
+  @Test
+  public void least_recently_used_expressions_are_evicted() throws Exception {
+    XPathExpressionCache cache = new XPathExpressionCache(2);
+
+    XPathExpression a = cache.compile("//a");
+    cache.compile("//b");
+    cache.compile("//a");
+    cache.compile("//c");
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.compile("//a")).isSameAs(a);
+    assertThat(cache.missCount()).isEqualTo(3);
+    cache.compile("//b");
+    assertThat(cache.missCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void invalid_expressions_are_not_cached() {
+    XPathExpressionCache cache = new XPathExpressionCache(10);
+
+    assertThatThrownBy(() -> cache.compile("boolean(a")).isInstanceOf(XPathExpressionException.class);
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  public void expressions_are_evaluated_by_several_threads() throws Exception {
+    XPathExpression expression = XPathExpressionCache.getInstance().compile("count(//b)");
+    Document document = XmlFile.create("<a><b/><b><b/></b></a>").getDocument();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Callable<String> count = () -> expression.evaluate(document);
+      for (Future<String> result : executor.invokeAll(Collections.nCopies(100, count))) {
+        assertThat(result.get()).isEqualTo("3");
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class XmlElementIndexTest {
+
+  @Test
+  public void elements_by_name() {
+    XmlFile file = XmlFile.create("<a xmlns:n=\"http://n\">" +
+      "<b id=\"1\"/><c><b id=\"2\"><b id=\"3\"/></b></c><!-- comment --><n:b id=\"4\"/>" +
+      "</a>");
+    XmlElementIndex index = file.getElementIndex();
+
+    assertThat(ids(index.getElements("b"))).containsExactly("1", "2", "3");
+    assertThat(ids(index.getElements("n:b"))).containsExactly("4");
+    assertThat(index.getElements("a")).containsExactly(file.getDocument().getDocumentElement());
+    assertThat(index.getElements("d")).isEmpty();
+    assertThatThrownBy(() -> index.getElements("b").clear()).isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  public void elements_by_attribute_name() {
+    XmlFile file = XmlFile.create("<a xmlns:n=\"http://n\"><b id=\"1\" n:x=\"\"/><c id=\"2\"/><d n:x=\"\" id=\"3\"/></a>");
+    XmlElementIndex index = file.getElementIndex();
+
+    assertThat(ids(index.getElementsWithAttribute("id"))).containsExactly("1", "2", "3");
+    assertThat(ids(index.getElementsWithAttribute("n:x"))).containsExactly("1", "3");
+    assertThat(index.getElementsWithAttribute("xmlns:n")).containsExactly(file.getDocument().getDocumentElement());
+    assertThat(index.getElementsWithAttribute("x")).isEmpty();
+  }
+
+  @Test
+  public void index_is_built_once_per_document() {
+    XmlFile file = XmlFile.create("<a><b/></a>");
+
+    assertThat(file.getElementIndex()).isSameAs(file.getElementIndex());
+    assertThat(XmlElementIndex.of(file.getNamespaceUnawareDocument()))
+      .isSameAs(XmlElementIndex.of(file.getNamespaceUnawareDocument()))
+      .isNotSameAs(file.getElementIndex());
+  }
+
+  @Test
+  public void deeply_nested_elements() {
+    StringBuilder builder = new StringBuilder();
+    int depth = 1_000;
+    for (int i = 0; i < depth; i++) {
+      builder.append("<a>");
+    }
+    for (int i = 0; i < depth; i++) {
+      builder.append("</a>");
+    }
+    XmlFile file = XmlFile.create(builder.toString());
+
+    assertThat(file.getElementIndex().getElements("a")).hasSize(depth);
+  }
+
+  private static List<String> ids(List<Element> elements) {
+    return elements.stream().map(element -> element.getAttribute("id")).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonarsource.analyzer.commons.xml.PrologElement.PrologAttribute;
+import org.sonarsource.analyzer.commons.xml.XmlFile.Location;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XmlFileCacheTest {
+
+  private static final String CONTENT = "\ufeff\n<?xml version=\"1.0\" encoding=\"UTF-8\" standalone='yes'?>\n"
+    + "<?pi data?>\n"
+    + "<!-- comment -->\n"
+    + "<a xmlns='http://a' xmlns:p='http://p' p:x='1' y=\"&lt;\u00e9\">\n"
+    + "  <p:b>text &amp; \u03a3<![CDATA[cdata]]></p:b><empty/>\r\n"
+    + "  <c xmlns=''/>\n"
+    + "</a>";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void unchanged_files_are_loaded_from_cache() throws Exception {
+    Path directory = temporaryFolder.newFolder().toPath();
+    XmlFileCache cache = new XmlFileCache(directory, 1_000_000);
+    XmlFile parsed = cache.create(CONTENT);
+    assertThat(cache.missCount()).isEqualTo(1);
+    assertThat(cache.hitCount()).isZero();
+    assertThat(entries(directory)).hasSize(1);
+
+    XmlFile loaded = new XmlFileCache(directory, 1_000_000).create(CONTENT);
+    XmlFile expected = XmlFile.create(CONTENT);
+    assertSameTree(parsed.getDocument(), expected.getDocument());
+    assertSameTree(loaded.getDocument(), expected.getDocument());
+    assertSameTree(loaded.getNamespaceUnawareDocument(), expected.getNamespaceUnawareDocument());
+    assertThat(loaded.getContents()).isEqualTo(CONTENT);
+
+    Document document = loaded.getDocument();
+    assertThat(document.getXmlStandalone()).isTrue();
+    assertThat(document.getXmlEncoding()).isEqualTo("UTF-8");
+    PrologElement prolog = loaded.getPrologElement().get();
+    assertThat(prolog.getAttributes()).extracting(PrologAttribute::getName).containsExactly("version", "encoding", "standalone");
+    assertThat(prolog.getAttributes().get(2).getValueLocation()).hasToString(expected.getPrologElement().get().getAttributes().get(2).getValueLocation().toString());
+    assertThat(prolog.getPrologEndLocation()).hasToString(expected.getPrologElement().get().getPrologEndLocation().toString());
+  }
+
+  @Test
+  public void cache_from_input_file() throws Exception {
+    Path directory = temporaryFolder.newFolder().toPath();
+    XmlFileCache cache = new XmlFileCache(directory, 1_000_000);
+    InputFile inputFile = inputFile(StandardCharsets.UTF_8.name());
+    cache.create(inputFile);
+    XmlFile loaded = cache.create(inputFile);
+
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(loaded.getInputFile()).isSameAs(inputFile);
+    assertThat(loaded.getDocument().getFirstChild().getTextContent()).isEqualTo("Hello");
+
+    // the charset is part of the key
+    cache.create(inputFile(StandardCharsets.ISO_8859_1.name()));
+    assertThat(cache.missCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void files_with_dtd_are_not_cached() throws Exception {
+    Path directory = temporaryFolder.newFolder().toPath();
+    XmlFileCache cache = new XmlFileCache(directory, 1_000_000);
+    String content = "<!DOCTYPE a [<!ENTITY e 'value'>]><a>&e;</a>";
+    cache.create(content);
+    XmlFile xmlFile = cache.create(content);
+
+    assertThat(cache.missCount()).isEqualTo(2);
+    assertThat(entries(directory)).isEmpty();
+    assertThat(xmlFile.getDocument().getDocumentElement().getTextContent()).isEqualTo("value");
+  }
+
+  @Test
+  public void invalid_entries_are_ignored() throws Exception {
+    Path directory = temporaryFolder.newFolder().toPath();
+    new XmlFileCache(directory, 1_000_000).create(CONTENT);
+    Path entry = entries(directory)[0].toPath();
+    byte[] bytes = Files.readAllBytes(entry);
+    Files.write(entry, Arrays.copyOf(bytes, bytes.length / 2));
+
+    XmlFileCache cache = new XmlFileCache(directory, 1_000_000);
+    XmlFile xmlFile = cache.create(CONTENT);
+    assertThat(cache.missCount()).isEqualTo(1);
+    assertSameTree(xmlFile.getDocument(), XmlFile.create(CONTENT).getDocument());
+    assertThat(Files.readAllBytes(entry)).isEqualTo(bytes);
+    // the replaced entry is no longer counted
+    assertThat(cache.size()).isEqualTo(bytes.length);
+
+    // unsupported format version
+    bytes[7]++;
+    Files.write(entry, bytes);
+    cache.create(CONTENT);
+    assertThat(cache.missCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void temporary_files_are_deleted_when_entries_can_not_be_written() throws Exception {
+    Path directory = temporaryFolder.newFolder().toPath();
+    String entryName = entries(entryDirectory(CONTENT))[0].getName();
+    XmlFileCache cache = new XmlFileCache(directory, 1_000_000);
+    // a non-empty directory can not be replaced by the entry
+    Path entry = Files.createDirectory(directory.resolve(entryName));
+    Files.createFile(entry.resolve("file"));
+
+    XmlFile xmlFile = cache.create(CONTENT);
+    assertSameTree(xmlFile.getDocument(), XmlFile.create(CONTENT).getDocument());
+    assertThat(cache.missCount()).isEqualTo(1);
+    assertThat(cache.size()).isZero();
+    assertThat(directory.toFile().list()).containsExactly(entryName);
+  }
+
+  @Test
+  public void least_recently_used_entries_are_evicted() throws Exception {
+    Path directory = temporaryFolder.newFolder().toPath();
+    XmlFileCache cache = new XmlFileCache(directory, 3 * entrySize("<a0/>"));
+    // modification times tell when entries were used: set explicitly, as entries are written in a row
+    cache.create("<a0/>");
+    setLastModifiedTimes(directory, 1_000);
+    cache.create("<a1/>");
+    setLastModifiedTimes(directory, 2_000);
+    cache.create("<a2/>");
+    cache.create("<a0/>");
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(entries(directory)).hasSize(3);
+
+    cache.create("<a3/>");
+    assertThat(entries(directory)).hasSize(3);
+    assertThat(cache.size()).isEqualTo(3 * entrySize("<a0/>"));
+    cache.create("<a0/>");
+    assertThat(cache.hitCount()).isEqualTo(2);
+    cache.create("<a1/>");
+    assertThat(cache.missCount()).isEqualTo(5);
+  }
+
+  /**
+   * Sets the time of the entries which were written since the last call
+   */
+  private static void setLastModifiedTimes(Path directory, long time) throws IOException {
+    for (File entry : entries(directory)) {
+      if (Files.getLastModifiedTime(entry.toPath()).toMillis() > time) {
+        Files.setLastModifiedTime(entry.toPath(), FileTime.fromMillis(time));
+      }
+    }
+  }
+
+  private long entrySize(String content) throws IOException {
+    return Files.size(entries(entryDirectory(content))[0].toPath());
+  }
+
+  private Path entryDirectory(String content) throws IOException {
+    Path directory = temporaryFolder.newFolder().toPath();
+    new XmlFileCache(directory, 1_000_000).create(content);
+    return directory;
+  }
+
+  private static File[] entries(Path directory) {
+    return directory.toFile().listFiles((dir, name) -> name.endsWith(".xmlc"));
+  }
+
+  private static InputFile inputFile(String charset) {
+    return TestInputFileBuilder
+      .create("moduleKey", "file.xml")
+      .setModuleBaseDir(new File("src/test/resources/").toPath())
+      .setCharset(Charset.forName(charset))
+      .build();
+  }
+
+  private static void assertSameTree(Node actual, Node expected) {
+    assertThat(actual.getNodeType()).isEqualTo(expected.getNodeType());
+    assertThat(actual.getNodeName()).isEqualTo(expected.getNodeName());
+    assertThat(actual.getNodeValue()).isEqualTo(expected.getNodeValue());
+    assertThat(actual.getNamespaceURI()).isEqualTo(expected.getNamespaceURI());
+    assertThat(actual.getLocalName()).isEqualTo(expected.getLocalName());
+    for (Location location : Location.values()) {
+      assertThat(XmlFile.getRange(actual, location).map(XmlTextRange::toString)).isEqualTo(XmlFile.getRange(expected, location).map(XmlTextRange::toString));
+    }
+
+    NamedNodeMap expectedAttributes = expected.getAttributes();
+    if (expectedAttributes != null) {
+      assertThat(actual.getAttributes().getLength()).isEqualTo(expectedAttributes.getLength());
+      for (int i = 0; i < expectedAttributes.getLength(); i++) {
+        assertSameTree(actual.getAttributes().item(i), expectedAttributes.item(i));
+      }
+    }
+    assertThat(actual.getChildNodes().getLength()).isEqualTo(expected.getChildNodes().getLength());
+    for (int i = 0; i < expected.getChildNodes().getLength(); i++) {
+      assertSameTree(actual.getChildNodes().item(i), expected.getChildNodes().item(i));
+    }
+  }
+
+}
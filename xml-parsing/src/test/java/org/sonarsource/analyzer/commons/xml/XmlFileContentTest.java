@@ -0,0 +1,161 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import javax.xml.stream.XMLStreamException;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class XmlFileContentTest {
+
+  @Test
+  public void testLinesAndColumns() {
+    XmlFileContent content = new XmlFileContent("ab\ncd\r\nef\rgh\r");
+
+    assertThat(content.line(0)).isEqualTo(1);
+    assertThat(content.column(0)).isEqualTo(1);
+    // line break belongs to the line it ends
+    assertThat(content.line(2)).isEqualTo(1);
+    assertThat(content.column(2)).isEqualTo(3);
+
+    assertThat(content.line(3)).isEqualTo(2);
+    assertThat(content.column(4)).isEqualTo(2);
+    // "\r\n" is a single line break
+    assertThat(content.line(6)).isEqualTo(2);
+    assertThat(content.column(6)).isEqualTo(4);
+
+    assertThat(content.line(7)).isEqualTo(3);
+    assertThat(content.line(10)).isEqualTo(4);
+    assertThat(content.column(11)).isEqualTo(2);
+    // end of content
+    assertThat(content.line(13)).isEqualTo(5);
+    assertThat(content.column(13)).isEqualTo(1);
+  }
+
+  @Test
+  public void testRangeWhenContentDoesNotStartTheFile() {
+    // content starting at line 2, column 3 of the file
+    XmlFileContent content = new XmlFileContent("abc\ndef", 2, 3);
+
+    assertThat(content.range(1, 2))
+      .extracting("startLine", "startColumn", "endLine", "endColumn")
+      .containsExactly(2, 3, 2, 4);
+    assertThat(content.range(4, 7))
+      .extracting("startLine", "startColumn", "endLine", "endColumn")
+      .containsExactly(3, 2, 3, 5);
+  }
+
+  @Test
+  public void testMoves() throws Exception {
+    XmlFileContent content = new XmlFileContent("<a b = 'c>' d=\"e\">\n</a>");
+
+    assertThat(content.moveAfterClosingBracket(0)).isEqualTo(18);
+    assertThat(content.moveBefore(0, '=')).isEqualTo(5);
+    assertThat(content.moveAfter(0, '=')).isEqualTo(6);
+    assertThat(content.moveBefore(0, "</")).isEqualTo(19);
+    assertThat(content.moveAfter(0, "</")).isEqualTo(21);
+    assertThat(content.moveAfterWhitespaces(6)).isEqualTo(7);
+    assertThat(content.has(0, '=', 5)).isFalse();
+    assertThat(content.has(0, '=', 6)).isTrue();
+    assertThat(content.has(14, '=', 18)).isFalse();
+    assertThat(content.text(3, 4)).isEqualTo("b");
+    assertThat(content.readChar(7)).isEqualTo('\'');
+    assertThat(content.startsWith(19, "</a>")).isTrue();
+    assertThat(content.shift(0, 23)).isEqualTo(23);
+    assertThat(content.moveBackward(18)).isEqualTo(17);
+
+    assertThatThrownBy(() -> content.shift(20, 4)).isInstanceOf(XMLStreamException.class);
+    assertThatThrownBy(() -> content.moveBefore(20, '=')).isInstanceOf(XMLStreamException.class);
+    assertThatThrownBy(() -> content.moveBackward(19)).isInstanceOf(XMLStreamException.class);
+    assertThatThrownBy(() -> content.moveAfterClosingBracket(19 + 2 + 1)).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void testPartOfString() throws Exception {
+    String file = "\ufeff  <?xml version='1.0'?>\n<a/>\n after";
+    XmlFileContent content = XmlParser.fileContent(file);
+
+    assertThat(content.length()).isEqualTo(file.length() - 3);
+    assertThat(content.readChar(0)).isEqualTo('<');
+    assertThat(content.text(0, 5)).isEqualTo("<?xml");
+    assertThat(content.indexOf('a', 0)).isEqualTo(23);
+    assertThat(content.indexOf("<a/>", 0)).isEqualTo(22);
+    assertThat(content.startsWith(22, "<a/>")).isTrue();
+    // content starts after the BOM and 2 spaces
+    assertThat(content.range(0, 5))
+      .extracting("startLine", "startColumn", "endLine", "endColumn")
+      .containsExactly(1, 2, 1, 7);
+    assertThat(content.range(22, 26))
+      .extracting("startLine", "startColumn", "endLine", "endColumn")
+      .containsExactly(2, 0, 2, 4);
+
+    XmlFileContent prefix = new XmlFileContent(file, 1, 3, 1, 1);
+    assertThat(prefix.length()).isEqualTo(2);
+    assertThat(prefix.indexOf('<', 0)).isEqualTo(-1);
+    assertThat(prefix.indexOf("<?xml", 0)).isEqualTo(-1);
+    assertThat(prefix.startsWith(1, " <")).isFalse();
+
+    char[] chars = new char[100];
+    int count = content.newReader().read(chars);
+    assertThat(new String(chars, 0, count)).isEqualTo(file.substring(3));
+
+    // characters following the end of the content are not read
+    Reader reader = new XmlFileContent(file, 3, 10, 1, 1).newReader();
+    assertThat(reader.read(chars, 0, 0)).isZero();
+    assertThat(reader.read(chars, 0, 4)).isEqualTo(4);
+    assertThat(reader.read(chars, 4, 96)).isEqualTo(3);
+    assertThat(new String(chars, 0, 7)).isEqualTo("<?xml v");
+    assertThat(reader.read(chars)).isEqualTo(-1);
+  }
+
+  @Test
+  public void testEncodedStream() throws Exception {
+    StringBuilder builder = new StringBuilder("ignored");
+    for (int i = 0; i < 10_000; i++) {
+      // surrogate pairs, some of them split over the internal buffer
+      builder.append("a\u00e9\ud83d\ude00");
+    }
+    // unpaired surrogate
+    String file = builder.append("\ud83d").toString();
+    XmlFileContent content = new XmlFileContent(file, 7, file.length(), 1, 1);
+
+    for (Charset charset : new Charset[] {StandardCharsets.UTF_8, StandardCharsets.UTF_16, StandardCharsets.ISO_8859_1}) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      InputStream stream = content.newInputStream(charset);
+      byte[] buffer = new byte[1000];
+      int count;
+      while ((count = stream.read(buffer, 0, buffer.length)) != -1) {
+        output.write(buffer, 0, count);
+      }
+      assertThat(stream.read()).isEqualTo(-1);
+      assertThat(output.toByteArray()).isEqualTo(file.substring(7).getBytes(charset));
+    }
+    InputStream stream = content.newInputStream(StandardCharsets.UTF_8);
+    assertThat(stream.read()).isEqualTo('a');
+    assertThat(stream.read(new byte[10], 0, 0)).isZero();
+  }
+}
@@ -21,7 +21,12 @@ package org.sonarsource.analyzer.commons.xml;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import org.apache.xerces.dom.DeferredDocumentImpl;
 import org.assertj.core.api.AbstractListAssert;
 import org.assertj.core.api.ObjectAssert;
 import org.junit.Test;
@@ -30,10 +35,13 @@ import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonarsource.analyzer.commons.xml.XmlFile.Location;
 import org.w3c.dom.Attr;
 import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class XmlFileTest {
 
@@ -116,6 +124,88 @@ public class XmlFileTest {
     assertThat(XmlFile.nodeAttribute(commentNode, "unknown")).isNull();
   }
 
+  @Test
+  public void testIterationWithoutCopy() throws Exception {
+    XmlFile xmlFile = XmlFile.create("<a><b>text<c/></b><!-- first --><d><!-- second --></d></a>");
+    Element a = xmlFile.getDocument().getDocumentElement();
+
+    List<Node> view = XmlFile.asListView(a.getChildNodes());
+    assertThat(view).extracting(Node::getNodeName).containsExactly("b", "#comment", "d");
+    assertThat(view.get(2).getNodeName()).isEqualTo("d");
+    assertThatThrownBy(() -> view.get(3)).isInstanceOf(IndexOutOfBoundsException.class);
+    assertThatThrownBy(() -> view.add(a)).isInstanceOf(UnsupportedOperationException.class);
+    assertThat(XmlFile.asListView(null)).isEmpty();
+
+    List<String> childNames = new ArrayList<>();
+    XmlFile.childNodes(a).forEach(child -> childNames.add(child.getNodeName()));
+    assertThat(childNames).containsExactly("b", "#comment", "d");
+    assertThat(XmlFile.childNodes(a.getFirstChild().getFirstChild())).isEmpty();
+    Iterator<Node> iterator = XmlFile.childNodes(a.getLastChild()).iterator();
+    iterator.next();
+    assertThatThrownBy(iterator::next).isInstanceOf(NoSuchElementException.class);
+
+    List<String> elementNames = new ArrayList<>();
+    XmlFile.visitPreOrder(xmlFile.getDocument(), Element.class, element -> elementNames.add(element.getNodeName()));
+    assertThat(elementNames).containsExactly("a", "b", "c", "d");
+
+    List<String> comments = new ArrayList<>();
+    XmlFile.visitPreOrder(xmlFile.getDocument(), Comment.class, comment -> comments.add(comment.getData()));
+    assertThat(comments).containsExactly(" first ", " second ");
+
+    // only the given node and its descendants are visited
+    List<Node> visited = new ArrayList<>();
+    XmlFile.visitPreOrder(a.getFirstChild(), Node.class, visited::add);
+    assertThat(visited).extracting(Node::getNodeName).containsExactly("b", "#text", "c");
+  }
+
+  @Test
+  public void testLazyCreation() throws Exception {
+    String content = "<?xml version=\"1.0\"?>\n" +
+      "<!DOCTYPE a [<!ENTITY e \"entity\">]>\n" +
+      "<a xmlns:x='urn:x' attr='foo'>\n" +
+      "  <x:b x:attr = \"bar\" other='&e;'>&e; text<![CDATA[<data>]]></x:b>\n" +
+      "  <!-- comment --><c/><?pi data?>\n" +
+      "</a>";
+    XmlFile eager = XmlFile.create(content);
+    XmlFile lazy = XmlFile.createLazy(content);
+    assertThat(lazy.getDocument()).isInstanceOf(DeferredDocumentImpl.class);
+    assertThat(lazy.getPrologElement()).isPresent();
+
+    // nodes are matched with their location in any order
+    List<Node> lazyNodes = nodesWithAttributes(lazy.getDocument());
+    Collections.reverse(lazyNodes);
+    List<Node> eagerNodes = nodesWithAttributes(eager.getDocument());
+    Collections.reverse(eagerNodes);
+    assertThat(lazyNodes).hasSameSizeAs(eagerNodes);
+    for (int i = 0; i < lazyNodes.size(); i++) {
+      for (Location location : Location.values()) {
+        assertThat(XmlFile.getRange(lazyNodes.get(i), location).map(XmlTextRange::toString))
+          .isEqualTo(XmlFile.getRange(eagerNodes.get(i), location).map(XmlTextRange::toString));
+      }
+    }
+
+    Element b = (Element) lazy.getNamespaceUnawareDocument().getElementsByTagName("x:b").item(0);
+    assertRange(XmlFile.nameLocation(b)).containsExactly(4, 3, 4, 6);
+    assertRange(XmlFile.attributeValueLocation(b.getAttributeNode("x:attr"))).containsExactly(4, 16, 4, 21);
+
+    Element created = lazy.getDocument().createElement("created");
+    assertThat(XmlFile.getRange(created, Location.NODE)).isEmpty();
+    lazy.getDocument().getDocumentElement().appendChild(created);
+    assertThat(XmlFile.getRange(created, Location.NODE)).isEmpty();
+  }
+
+  private static List<Node> nodesWithAttributes(Node root) {
+    List<Node> nodes = new ArrayList<>();
+    XmlFile.visitPreOrder(root, Node.class, node -> {
+      nodes.add(node);
+      NamedNodeMap attributes = node.getAttributes();
+      for (int i = 0; attributes != null && i < attributes.getLength(); i++) {
+        nodes.add(attributes.item(i));
+      }
+    });
+    return nodes;
+  }
+
   private AbstractListAssert<?, List<?>, Object, ObjectAssert<Object>> assertRange(XmlTextRange textRange) {
     return assertThat(textRange).extracting("startLine", "startColumn", "endLine", "endColumn");
   }
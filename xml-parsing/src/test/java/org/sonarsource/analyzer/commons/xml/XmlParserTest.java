@@ -19,6 +19,8 @@
  */
 package org.sonarsource.analyzer.commons.xml;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import org.junit.Test;
 import org.sonarsource.analyzer.commons.xml.PrologElement.PrologAttribute;
@@ -66,6 +68,19 @@ public class XmlParserTest {
     assertThat(xmlFile.getPrologElement()).isEmpty();
   }
 
+  @Test
+  public void testNamespaceUnawareDocumentLocations() throws Exception {
+    XmlFile xmlFile = XmlFile.create("<?xml version=\"1.0\"?>\n<a:foo xmlns:a=\"ns\" attr=\"1\"/>");
+
+    Document document = xmlFile.getNamespaceUnawareDocument();
+    assertRange(document, Location.NODE, 1, 0, 2, 30);
+    Node firstChild = document.getFirstChild();
+    assertRange(firstChild, Location.NAME, 2, 1, 2, 6);
+    assertRange(firstChild.getAttributes().getNamedItem("attr"), Location.VALUE, 2, 25, 2, 28);
+    assertRange(xmlFile.getNamespaceAwareDocument().getFirstChild(), Location.NAME, 2, 1, 2, 6);
+    assertThat(XmlFile.getRange(document.createElement("other"), Location.NODE)).isEmpty();
+  }
+
   @Test
   public void testLineSeprators() throws Exception {
     String testCase = ""
@@ -298,7 +313,9 @@ public class XmlParserTest {
 
   @Test
   public void testXmlStylesheet() throws Exception {
-    Document document = XmlFile.create("<?xml-stylesheet type='text/xsl' href='http://www.foo.con/stylus.xslt' ?><a/>").getDocument();
+    XmlFile file = XmlFile.create("<?xml-stylesheet type='text/xsl' href='http://www.foo.con/stylus.xslt' ?><a/>");
+    assertThat(file.getPrologElement()).isEmpty();
+    Document document = file.getDocument();
     ProcessingInstruction processingInstruction = (ProcessingInstruction) document.getFirstChild();
     assertRange(processingInstruction, Location.NODE, 1, 0, 1, 73);
     assertNoData(processingInstruction, Location.START, Location.END, Location.NAME);
@@ -462,10 +479,11 @@ public class XmlParserTest {
   }
 
   /**
-   * Detailed in SONARXML-73, should be fixed with https://github.com/FasterXML/woodstox/issues/67
+   * Detailed in SONARXML-73: line numbers reported by woodstox are wrong (see https://github.com/FasterXML/woodstox/issues/67),
+   * but locations are computed from character offsets, which are correct.
    */
   @Test
-  public void testCommentInDoctypeProduceWrongLocations() throws Exception {
+  public void testCommentInDoctype() throws Exception {
     Document document = XmlFile.create(
       "<?xml version=\"1.0\"?>\n" +
       "<!DOCTYPE menu [\n" +
@@ -479,9 +497,7 @@ public class XmlParserTest {
     DocumentType documentType = (DocumentType) document.getFirstChild();
     assertRange(documentType, Location.NODE, 2, 0, 7, 2);
     Node lastChild = document.getLastChild();
-    // location of the node is wrong, should be line 8, events are not at the correct place
-    // See https://github.com/FasterXML/woodstox/issues/67
-    assertRange(lastChild, Location.NODE, 7, 0, 7, 25);
+    assertRange(lastChild, Location.NODE, 8, 0, 8, 25);
 
     document = XmlFile.create(
       "<?xml version=\"1.0\"?>\n" +
@@ -496,7 +512,6 @@ public class XmlParserTest {
     documentType = (DocumentType) document.getFirstChild();
     assertRange(documentType, Location.NODE, 2, 0, 7, 2);
     lastChild = document.getLastChild();
-    // location is correct
     assertRange(lastChild, Location.NODE, 8, 0, 8, 25);
   }
 
@@ -541,13 +556,20 @@ public class XmlParserTest {
     assertRange(prologElement.getPrologStartLocation(), 2, 2, 2, 7);
   }
 
-  /**
-   * Limitation of current parser
-   * see https://jira.sonarsource.com/browse/SONARXML-62
-   */
-  @Test(expected = ParseException.class)
+  @Test
   public void testCommentedProlog() throws Exception {
-   XmlFile.create("<!--<?xml version=\"1.0\"?>--><tag/>");
+    XmlFile file = XmlFile.create("<!--<?xml version=\"1.0\"?>--><tag/>");
+    assertThat(file.getPrologElement()).isEmpty();
+    assertRange(file.getDocument().getFirstChild(), Location.NODE, 1, 0, 1, 28);
+  }
+
+  @Test
+  public void testPrologAfterComment() throws Exception {
+    XmlFile file = XmlFile.create("<!-- comment -->\n<?xml version=\"1.0\" ?><tag/>");
+    PrologElement prologElement = file.getPrologElement().get();
+    assertRange(prologElement.getPrologStartLocation(), 2, 0, 2, 5);
+    assertRange(prologElement.getPrologEndLocation(), 2, 20, 2, 22);
+    assertThat(prologElement.getAttributes()).extracting(PrologElement.PrologAttribute::getValue).containsExactly("1.0");
   }
 
   @Test
@@ -666,8 +688,124 @@ public class XmlParserTest {
     assertRange(document, Location.NODE, 1, 0, 1, 11);
   }
 
+  @Test
+  public void testDocumentBuiltFromEventsIsSameAsXercesDocument() throws Exception {
+    String content = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+      + "<?xml-stylesheet type='text/xsl' href='style.xsl' ?>\n"
+      + "<!-- header -->\n"
+      + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\" xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xsi:schemaLocation='foo'>\n"
+      + "  <dependency scope='test' optional=\"true\" xml:lang='en'>Text&amp;&lt;&#931;\r\nline<![CDATA[ <cdata> ]]><![CDATA[]]>after</dependency>\n"
+      + "  <foo:bar xmlns:foo='http://foo' foo:attr='1' attr='&#10;2'><empty/><?pi data ?></foo:bar>\n"
+      + "  <unqualified xmlns=''/>\n"
+      + "</project>\n"
+      + "<!-- footer -->";
+    XmlFile file = XmlFile.create(content);
+
+    for (boolean namespaceAware : new boolean[] {true, false}) {
+      Document expected = SafeDomParserFactory.createDocumentBuilder(namespaceAware).parse(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+      Document actual = namespaceAware ? file.getNamespaceAwareDocument() : file.getNamespaceUnawareDocument();
+      assertThat(actual.getXmlVersion()).isEqualTo(expected.getXmlVersion());
+      assertThat(actual.getXmlEncoding()).isEqualTo(expected.getXmlEncoding());
+      assertThat(actual.getInputEncoding()).isEqualTo(expected.getInputEncoding());
+      assertThat(actual.getXmlStandalone()).isEqualTo(expected.getXmlStandalone());
+      assertSameTree(actual, expected);
+    }
+  }
+
+  @Test
+  public void testNamespaceUnawareDocumentIsDerivedFromNamespaceAwareDocument() throws Exception {
+    String content = "<?xml version=\"1.0\"?>\n"
+      + "<a xmlns='http://a' xmlns:p='http://p' p:x='1' y=\"2\">\n"
+      + "  <p:b>text &amp; <![CDATA[cdata]]></p:b><!-- comment --><?pi data?>\n"
+      + "</a>";
+    XmlFile file = XmlFile.create(content);
+    Document derived = file.getNamespaceUnawareDocument();
+
+    XmlFile parsedFile = XmlFile.create(content);
+    new XmlParser(parsedFile, false);
+    Document parsed = parsedFile.getNamespaceUnawareDocument();
+
+    assertThat(derived).isNotSameAs(parsed);
+    assertSameTree(derived, parsed);
+    assertSameLocations(derived, parsed);
+    assertThat(file.getNamespaceUnawareDocument()).isSameAs(derived);
+  }
+
+  @Test
+  public void testNamespaceUnawareDocumentWithDTD() throws Exception {
+    XmlFile file = XmlFile.create("<!DOCTYPE a [<!ENTITY e 'value'>]>\n<a xmlns:p='http://p'><p:b>&e;</p:b></a>");
+    Document document = file.getNamespaceUnawareDocument();
+
+    assertThat(document.getDoctype().getEntities().getNamedItem("e")).isNotNull();
+    Node b = document.getDocumentElement().getFirstChild();
+    assertThat(b.getLocalName()).isNull();
+    assertThat(b.getTextContent()).isEqualTo("value");
+    assertRange(b, Location.NODE, 2, 22, 2, 36);
+  }
+
+  @Test
+  public void testConstructsOnlySupportedByXerces() throws Exception {
+    // declaration of the 'xml' prefix is not reported by StAX
+    XmlFile file = XmlFile.create("<a xmlns:xml='http://www.w3.org/XML/1998/namespace'/>");
+    Node attr = file.getDocument().getFirstChild().getAttributes().getNamedItem("xmlns:xml");
+    assertRange(attr, Location.NODE, 1, 3, 1, 51);
+
+    // content is decoded by Xerces according to the declared encoding
+    file = XmlFile.create("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><a>\u00e9</a>");
+    assertThat(file.getDocument().getFirstChild().getTextContent()).isEqualTo("\u00c3\u00a9");
+    assertRange(file.getDocument().getFirstChild(), Location.NODE, 1, 43, 1, 51);
+
+    file = XmlFile.create("<?xml version=\"1.1\"?><a/>");
+    assertThat(file.getDocument().getXmlVersion()).isEqualTo("1.1");
+    assertRange(file.getDocument().getFirstChild(), Location.NODE, 1, 21, 1, 25);
+  }
+
+  @Test(expected = ParseException.class)
+  public void testMalformedComment() {
+    XmlFile.create("<!-- a -- b --><a/>");
+  }
+
+  private static void assertSameTree(Node actual, Node expected) {
+    assertThat(actual.getNodeType()).isEqualTo(expected.getNodeType());
+    assertThat(actual.getNodeName()).isEqualTo(expected.getNodeName());
+    assertThat(actual.getNodeValue()).isEqualTo(expected.getNodeValue());
+    assertThat(actual.getNamespaceURI()).isEqualTo(expected.getNamespaceURI());
+    assertThat(actual.getLocalName()).isEqualTo(expected.getLocalName());
+
+    NamedNodeMap actualAttributes = actual.getAttributes();
+    NamedNodeMap expectedAttributes = expected.getAttributes();
+    if (expectedAttributes == null) {
+      assertThat(actualAttributes).isNull();
+    } else {
+      assertThat(actualAttributes.getLength()).isEqualTo(expectedAttributes.getLength());
+      for (int i = 0; i < expectedAttributes.getLength(); i++) {
+        assertSameTree(actualAttributes.item(i), expectedAttributes.item(i));
+      }
+    }
+
+    NodeList actualChildren = actual.getChildNodes();
+    NodeList expectedChildren = expected.getChildNodes();
+    assertThat(actualChildren.getLength()).as("children of " + expected.getNodeName()).isEqualTo(expectedChildren.getLength());
+    for (int i = 0; i < expectedChildren.getLength(); i++) {
+      assertSameTree(actualChildren.item(i), expectedChildren.item(i));
+    }
+  }
+
+  private static void assertSameLocations(Node actual, Node expected) {
+    for (Location location : Location.values()) {
+      assertThat(XmlFile.getRange(actual, location).map(XmlTextRange::toString)).isEqualTo(XmlFile.getRange(expected, location).map(XmlTextRange::toString));
+    }
+    NamedNodeMap expectedAttributes = expected.getAttributes();
+    for (int i = 0; expectedAttributes != null && i < expectedAttributes.getLength(); i++) {
+      assertSameLocations(actual.getAttributes().item(i), expectedAttributes.item(i));
+    }
+    for (int i = 0; i < expected.getChildNodes().getLength(); i++) {
+      assertSameLocations(actual.getChildNodes().item(i), expected.getChildNodes().item(i));
+    }
+  }
+
   private void assertRange(Node node, Location locationKind, int startLine, int startColumn, int endLine, int endColumn) {
-    XmlTextRange textRange = ((XmlTextRange) node.getUserData(locationKind.name()));
+    XmlTextRange textRange = XmlFile.getRange(node, locationKind).get();
     assertRange(textRange, startLine, startColumn, endLine, endColumn);
   }
 
@@ -681,6 +819,6 @@ public class XmlParserTest {
   private void assertNoData(Node node, Location... locations) {
     Arrays.stream(locations)
       .forEach(l ->
-        assertThat(node.getUserData(l.name())).as(l + " user data not expected").isNull());
+        assertThat(XmlFile.getRange(node, l)).as(l + " location not expected").isEmpty());
   }
 }
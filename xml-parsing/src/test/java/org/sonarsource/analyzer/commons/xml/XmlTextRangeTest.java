@@ -62,19 +62,11 @@ public class XmlTextRangeTest {
   }
 
   @Test
-  public void testPositionBasedCreation() throws Exception {
-    XmlFilePosition startContentPosition = new XmlFilePosition("__abcde");
-    XmlFilePosition start = startContentPosition.shift(2);
-    XmlFilePosition end = start.shift(3);
+  public void testOffsetBasedCreation() throws Exception {
+    XmlFileContent content = new XmlFileContent("__abcde");
 
     // abc
-    XmlTextRange range = new XmlTextRange(start, end, startContentPosition);
-    assertThat(range)
-      .extracting("startLine", "startColumn", "endLine", "endColumn")
-      .containsExactly(1, 2, 1, 5);
-
-    XmlTextRange startAsRange = new XmlTextRange(1, 2, 1, 4);
-    range = new XmlTextRange(startAsRange, end, startContentPosition);
+    XmlTextRange range = content.range(2, 5);
     assertThat(range)
       .extracting("startLine", "startColumn", "endLine", "endColumn")
       .containsExactly(1, 2, 1, 5);
@@ -0,0 +1,133 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.checks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.xpath.XPathConstants;
+import org.apache.xerces.dom.DocumentImpl;
+import org.junit.Test;
+import org.sonarsource.analyzer.commons.xml.XPathExpressionCache;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FusedXPathEvaluatorTest {
+
+  private static final String XML = "<beans xmlns:p=\"http://p\">\n"
+    + "  <bean id=\"a\" class=\"A\">\n"
+    + "    <property name=\"p1\"><bean class=\"B\"/></property>\n"
+    + "    <property name=\"p2\" value=\"\"/>\n"
+    + "  </bean>\n"
+    + "  <bean id=\"b\" p:name=\"x\"><bean><bean id=\"c\"/></bean></bean>\n"
+    + "  <other xmlns=\"http://other\"><bean id=\"d\"/></other>\n"
+    + "  <x:bean xmlns:x=\"http://x\" x:id=\"e\" id=\"f\"><x:property x:name=\"q\" name=\"r\"/><bean x:id=\"g\"/></x:bean>\n"
+    + "  <!-- <bean/> -->\n"
+    + "</beans>";
+
+  @Test
+  public void subset() {
+    assertThat(Arrays.asList("/beans", "beans/bean", "//bean", "/beans//bean/property", "//*", "/*/*", "//bean[@id]", "//bean[@id='a'][@class]",
+      "//property[@value=\"\"]", "//bean/@id", "//bean/@*"))
+      .allMatch(FusedXPathEvaluator::isFused);
+    assertThat(Arrays.asList("//p:bean", "//bean[1]", "//bean/text()", "//@id", "/", "//bean/", "//bean[@id = 'a']", "//bean | //property",
+      "count(//bean)", "//bean/@id/..", "child::bean", "//bean[property]", "//bean[@id='a']x", "//bean[@id='a"))
+      .noneMatch(FusedXPathEvaluator::isFused);
+  }
+
+  @Test
+  public void same_results_as_xpath_engine() throws Exception {
+    XmlFile xmlFile = XmlFile.create(XML);
+    List<String> expressions = Arrays.asList("/beans", "beans/bean", "//bean", "/beans//bean", "//bean//bean", "//bean/bean", "/beans//property/bean",
+      "//*", "/*/*", "//bean[@id]", "//bean[@id='a'][@class]", "//property[@value='']", "//*[@name]", "//bean/@id", "//*/@*", "//other", "//bean[1]",
+      "//property/@name | //bean/@class", "//property", "//*[@id]", "//bean/@*", "//*/@name", "//x:bean", "//x:bean/x:property", "//x:bean//bean",
+      "/beans//bean", "/beans//*[@id]", "//x:bean/bean", "//bean/@x:id", "//*[@x:id]", "//x:property/@x:name", "//x:property/@name", "//bean/@p:name", "//*[@p:name='x']");
+    Map<String, String> namespaceByPrefix = new HashMap<>();
+    namespaceByPrefix.put("x", "http://x");
+    namespaceByPrefix.put("p", "http://p");
+
+    for (Document document : Arrays.asList(xmlFile.getNamespaceAwareDocument(), xmlFile.getNamespaceUnawareDocument())) {
+      FusedXPathEvaluator evaluator = new FusedXPathEvaluator();
+      Map<String, List<Node>> results = new LinkedHashMap<>();
+      for (String expression : expressions) {
+        List<Node> nodes = new ArrayList<>();
+        results.put(expression, nodes);
+        evaluator.register(expression, namespaceByPrefix, nodes::add);
+      }
+      evaluator.evaluate(document);
+
+      for (String expression : expressions) {
+        NodeList expected = (NodeList) XPathExpressionCache.getInstance().compile(expression, namespaceByPrefix).evaluate(document, XPathConstants.NODESET);
+        assertThat(results.get(expression)).as(expression).containsExactlyElementsOf(XmlFile.asList(expected));
+      }
+    }
+  }
+
+  @Test
+  public void matches() {
+    FusedXPathEvaluator evaluator = new FusedXPathEvaluator();
+    List<String> ids = new ArrayList<>();
+    List<String> nestedBeans = new ArrayList<>();
+    evaluator.register("//bean/@id", node -> ids.add(node.getNodeValue()));
+    evaluator.register("//bean//bean", node -> nestedBeans.add(((Element) node).getAttribute("id")));
+
+    evaluator.evaluate(XmlFile.create(XML));
+
+    assertThat(ids).containsExactly("a", "b", "c");
+    // each node matches once, even when reachable through several ancestors
+    assertThat(nestedBeans).containsExactly("", "", "c");
+  }
+
+  @Test
+  public void deeply_nested_document() {
+    // deeper than what the parser accepts, but could be built programmatically
+    int depth = 50_000;
+    Document document = new DocumentImpl();
+    Node parent = document;
+    for (int i = 0; i < depth; i++) {
+      parent = parent.appendChild(document.createElement("a"));
+    }
+    FusedXPathEvaluator evaluator = new FusedXPathEvaluator();
+    int[] count = {0};
+    evaluator.register("//a//a", node -> count[0]++);
+
+    evaluator.evaluate(document);
+
+    assertThat(count[0]).isEqualTo(depth - 1);
+  }
+
+  @Test
+  public void invalid_expression() {
+    FusedXPathEvaluator evaluator = new FusedXPathEvaluator();
+    assertThatThrownBy(() -> evaluator.register("boolean(a", node -> { }))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessageStartingWith("Failed to compile XPath expression [boolean(a]: ");
+  }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.checks;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.xml.xpath.XPathExpression;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParallelXmlAnalyzerTest {
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  @Test
+  public void same_issues_as_sequential_analysis() throws Exception {
+    List<InputFile> inputFiles = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      StringBuilder content = new StringBuilder("<root>\n");
+      for (int j = 0; j < i % 7; j++) {
+        content.append("  <a id='").append(j).append("'/>\n  <b/>\n");
+      }
+      inputFiles.add(inputFile("file" + i + ".xml", content.append("</root>").toString()));
+    }
+    inputFiles.add(inputFile("invalid.xml", "<root>"));
+
+    SensorContextTester sequentialContext = SensorContextTester.create(new File("."));
+    Map<SonarXmlCheck, RuleKey> sequentialChecks = checks();
+    for (InputFile inputFile : inputFiles) {
+      if (!"invalid.xml".equals(inputFile.filename())) {
+        XmlFile xmlFile = XmlFile.create(inputFile);
+        sequentialChecks.forEach((check, ruleKey) -> check.scanFile(sequentialContext, ruleKey, xmlFile));
+      }
+    }
+
+    SensorContextTester parallelContext = SensorContextTester.create(new File("."));
+    new ParallelXmlAnalyzer(4).analyze(parallelContext, inputFiles, ParallelXmlAnalyzerTest::checks);
+
+    List<String> expected = issues(sequentialContext);
+    assertThat(expected).hasSize(336);
+    assertThat(issues(parallelContext)).isEqualTo(expected);
+    assertThat(logTester.logs(LoggerLevel.WARN)).containsExactly("Unable to analyse file invalid.xml");
+  }
+
+  @Test
+  public void cancelled_analysis() throws Exception {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    context.setCancelled(true);
+    new ParallelXmlAnalyzer(2).analyze(context, Collections.singletonList(inputFile("file.xml", "<root><a/></root>")), ParallelXmlAnalyzerTest::checks);
+    assertThat(context.allIssues()).isEmpty();
+  }
+
+  @Test
+  public void check_failure() {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    List<InputFile> inputFiles = Collections.singletonList(inputFile("file.xml", "<root/>"));
+    ParallelXmlAnalyzer analyzer = new ParallelXmlAnalyzer(2);
+    assertThatThrownBy(() -> analyzer.analyze(context, inputFiles, () -> Collections.singletonMap(new FailingCheck(), RuleKey.of("tst", "failing"))))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage("failure");
+    assertThatThrownBy(() -> new ParallelXmlAnalyzer(0))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static Map<SonarXmlCheck, RuleKey> checks() {
+    Map<SonarXmlCheck, RuleKey> checks = new LinkedHashMap<>();
+    checks.put(new NumberingCheck(), RuleKey.of("tst", "numbering"));
+    checks.put(new FileCheck(), RuleKey.of("tst", "file"));
+    checks.put(new RegisteredExpressionCheck(), RuleKey.of("tst", "registered"));
+    return checks;
+  }
+
+  private static InputFile inputFile(String name, String content) {
+    return new TestInputFileBuilder("moduleKey", name)
+      .setModuleBaseDir(new File(".").toPath())
+      .setCharset(StandardCharsets.UTF_8)
+      .initMetadata(content)
+      .setContents(content)
+      .build();
+  }
+
+  private static List<String> issues(SensorContextTester context) {
+    return context.allIssues().stream()
+      .map(issue -> {
+        TextRange range = issue.primaryLocation().textRange();
+        return issue.ruleKey().rule() + " " + issue.primaryLocation().inputComponent() + " " + issue.primaryLocation().message()
+          + (range == null ? "" : (" " + range.start().line()));
+      })
+      .collect(Collectors.toList());
+  }
+
+  /**
+   * Keeps a state while scanning a file
+   */
+  private static class NumberingCheck extends SimpleXPathBasedCheck {
+    private final XPathExpression expression = getXPathExpression("//a");
+    private int index;
+
+    @Override
+    public void scanFile(XmlFile file) {
+      index = 0;
+      NodeList nodes = evaluate(expression, file.getDocument());
+      for (int i = 0; i < nodes.getLength(); i++) {
+        index++;
+        reportIssue(nodes.item(i), "a number " + index + " with id " + ((Element) nodes.item(i)).getAttribute("id"));
+      }
+    }
+  }
+
+  private static class FileCheck extends SonarXmlCheck {
+    @Override
+    public void scanFile(XmlFile file) {
+      int count = file.getDocument().getElementsByTagName("b").getLength();
+      if (count > 0) {
+        reportIssueOnFile(count + " b elements", Collections.singletonList(1));
+      }
+    }
+  }
+
+  private static class RegisteredExpressionCheck extends SimpleXPathBasedCheck {
+    RegisteredExpressionCheck() {
+      evaluateOnDocument("/root/b", node -> reportIssue(node, "b element"));
+    }
+  }
+
+  private static class FailingCheck extends SonarXmlCheck {
+    @Override
+    public void scanFile(XmlFile file) {
+      throw new IllegalStateException("failure");
+    }
+  }
+
+}
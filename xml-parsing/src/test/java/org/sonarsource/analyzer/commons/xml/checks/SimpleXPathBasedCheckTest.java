@@ -23,10 +23,16 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.batch.fs.InputFile;
@@ -37,10 +43,12 @@ import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class SimpleXPathBasedCheckTest {
 
@@ -126,6 +134,92 @@ public class SimpleXPathBasedCheckTest {
     assertThat(logTester.logs()).isEmpty();
   }
 
+  @Test
+  public void test_expressions_read_from_element_index() throws Exception {
+    XmlFile xmlFile = XmlFile.create("<a xmlns:n=\"http://n\">" +
+      "<b id=\"1\"/><c><b n:id=\"2\"><b/></b></c><n:b id=\"3\"/><d xmlns=\"http://d\"><b id=\"4\"/></d>" +
+      "</a>");
+
+    XPathTesterCheck check = new XPathTesterCheck() {
+      XPathExpression bs = getXPathExpression("//b");
+      XPathExpression bsWithId = getXPathExpression("//b[@id]");
+      XPathExpression cs = getXPathExpression("//c");
+      XPathExpression ds = getXPathExpression("//d");
+
+      @Override
+      public void scanFile(XmlFile file) {
+        for (Document document : new Document[] {file.getNamespaceAwareDocument(), file.getNamespaceUnawareDocument()}) {
+          for (XPathExpression expression : new XPathExpression[] {bs, bsWithId, cs, ds}) {
+            assertThat(evaluateAsList(expression, document)).containsExactlyElementsOf(evaluateWithoutIndex(expression, document));
+          }
+        }
+        assertThat(evaluateAsList(bs, file.getDocument())).hasSize(3);
+        assertThat(evaluateAsList(bsWithId, file.getDocument())).hasSize(1);
+        assertThat(evaluateAsList(ds, file.getDocument())).isEmpty();
+        assertThat(evaluateAsList(ds, file.getNamespaceUnawareDocument())).hasSize(1);
+        // from another node than the document, the expression is evaluated by XPath
+        assertThat(evaluateAsList(bs, file.getDocument().getDocumentElement())).hasSize(3);
+        isExecuted();
+      }
+    };
+
+    check.scanFile(null, RuleKey.of("tst", "indexed"), xmlFile);
+    assertThat(check.hasBeenExecuted()).isTrue();
+  }
+
+  @Test
+  public void test_registered_expressions_of_several_checks() throws Exception {
+    XmlFile xmlFile = XmlFile.create("<a xmlns:n=\"http://n\"><b id=\"1\"/><c><b/></c><n:b n:id=\"2\"/></a>");
+    List<String> events = new ArrayList<>();
+    SimpleXPathBasedCheck first = new SimpleXPathBasedCheck() {
+      {
+        evaluateOnDocument("//b[@id]", node -> events.add("first " + ((Element) node).getAttribute("id")));
+        // not evaluated in the traversal of the document
+        evaluateOnDocument("//n:b/@n:id", Collections.singletonMap("n", "http://n"), node -> events.add("first n:" + node.getNodeValue()));
+      }
+
+      @Override
+      public void scanFile(XmlFile file) {
+        events.add("first scan");
+      }
+    };
+    SimpleXPathBasedCheck second = new SimpleXPathBasedCheck() {
+      {
+        evaluateOnDocument("//c/b", node -> events.add("second " + node.getNodeName()));
+      }
+    };
+    Map<SimpleXPathBasedCheck, RuleKey> checks = new LinkedHashMap<>();
+    checks.put(first, RuleKey.of("tst", "first"));
+    checks.put(second, RuleKey.of("tst", "second"));
+
+    SimpleXPathBasedCheck.scanFile(null, xmlFile, checks);
+    assertThat(events).containsExactly("first 1", "first n:2", "first scan", "second b");
+
+    // the expressions of a check scanned on its own are evaluated by the check
+    events.clear();
+    first.scanFile(null, RuleKey.of("tst", "first"), xmlFile);
+    second.scanFile(null, RuleKey.of("tst", "second"), xmlFile);
+    assertThat(events).containsExactly("first 1", "first n:2", "first scan", "second b");
+  }
+
+  @Test
+  public void test_invalid_registered_expression_throws_exception() {
+    assertThatThrownBy(() -> new SimpleXPathBasedCheck() {
+      {
+        evaluateOnDocument("boolean(a", node -> { });
+      }
+    }).isInstanceOf(IllegalStateException.class)
+      .hasMessage("Fail to compile XPath expression 'boolean(a'.");
+  }
+
+  private static List<Node> evaluateWithoutIndex(XPathExpression expression, Node node) {
+    try {
+      return XmlFile.asList((NodeList) expression.evaluate(node, XPathConstants.NODESET));
+    } catch (XPathExpressionException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   private static XmlFile getXmlFile(String fileName) throws IOException {
     File file = new File(fileName);
 
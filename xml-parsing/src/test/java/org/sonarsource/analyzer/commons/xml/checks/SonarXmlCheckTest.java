@@ -0,0 +1,205 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.checks;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck.Secondary;
+import org.sonarsource.performance.measure.DurationMeasure;
+import org.sonarsource.performance.measure.DurationMeasureFiles;
+import org.sonarsource.performance.measure.PerformanceMeasure;
+import org.w3c.dom.Node;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SonarXmlCheckTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  @Test
+  public void scan_is_measured_per_rule_key() throws Exception {
+    Path performanceFile = temporaryFolder.getRoot().toPath().resolve("performance.measure.json");
+    XmlFile file = XmlFile.create("<a><b/></a>");
+    SonarXmlCheck check = new SonarXmlCheck() {
+      @Override
+      public void scanFile(XmlFile file) {
+        // allocates on purpose
+        file.getNamespaceUnawareDocument();
+      }
+    };
+
+    PerformanceMeasure.Duration duration = PerformanceMeasure.reportBuilder()
+      .activate(true)
+      .measureAllocation()
+      .toFile(performanceFile.toString())
+      .start("root");
+    check.scanFile(null, RuleKey.of("xml", "S1"), file);
+    check.scanFile(null, RuleKey.of("xml", "S1"), file);
+    check.scanFile(null, RuleKey.of("xml", "S2"), file);
+    duration.stop();
+
+    DurationMeasure root = DurationMeasureFiles.fromJson(performanceFile);
+    assertThat(root.get("xml:S1").calls()).isEqualTo(2);
+    assertThat(root.get("xml:S2").calls()).isEqualTo(1);
+    assertThat(root.get("xml:S1").allocatedBytes()).isPositive();
+  }
+
+  @Test
+  public void scan_is_not_measured_without_report() {
+    int[] scans = {0};
+    SonarXmlCheck check = new SonarXmlCheck() {
+      @Override
+      public void scanFile(XmlFile file) {
+        scans[0]++;
+      }
+    };
+
+    check.scanFile(null, RuleKey.of("xml", "S1"), XmlFile.create("<a/>"));
+    assertThat(scans[0]).isEqualTo(1);
+  }
+
+  @Test
+  public void issues_are_saved_while_scanning_by_default() throws Exception {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    XmlFile file = XmlFile.create(inputFile("<a>\n  <b/>\n  <b/>\n</a>\n"));
+    SonarXmlCheck check = new SonarXmlCheck() {
+      @Override
+      public void scanFile(XmlFile file) {
+        Node b = file.getDocument().getFirstChild().getChildNodes().item(1);
+        reportIssue(b, "Issue on b");
+        assertThat(context.allIssues()).hasSize(1);
+        reportIssue(b, "Issue on b");
+        assertThat(context.allIssues()).hasSize(2);
+      }
+    };
+
+    check.scanFile(context, RuleKey.of("xml", "S1"), file);
+    assertThat(context.allIssues()).hasSize(2);
+  }
+
+  @Test
+  public void duplicate_issues_are_saved_once() throws Exception {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    XmlFile file = XmlFile.create(inputFile("<a>\n  <b/>\n  <b/>\n</a>\n"));
+    SonarXmlCheck check = new SonarXmlCheck() {
+      @Override
+      public void scanFile(XmlFile file) {
+        Node b = file.getDocument().getFirstChild().getChildNodes().item(1);
+        Node otherB = file.getDocument().getFirstChild().getChildNodes().item(3);
+        reportIssue(b, "Issue on b");
+        reportIssue(b, "Issue on b");
+        reportIssue(b, "Other issue on b");
+        reportIssue(XmlFile.nodeLocation(b), "Issue on b", Collections.singletonList(new Secondary(otherB, "other b")));
+        reportIssue(XmlFile.nodeLocation(b), "Issue on b", Collections.singletonList(new Secondary(otherB, "other b")));
+        reportIssue(XmlFile.nodeLocation(b), "Issue on b", Collections.singletonList(new Secondary(otherB, null)));
+        reportIssueOnFile("Issue on file", Collections.emptyList());
+        reportIssueOnFile("Issue on file", Collections.emptyList());
+        reportIssueOnFile("Issue on file", Collections.singletonList(2));
+        // no issue is saved while the file is scanned
+        assertThat(context.allIssues()).isEmpty();
+      }
+    };
+
+    check.setDeduplicateIssues(true);
+    check.scanFile(context, RuleKey.of("xml", "S1"), file);
+    assertThat(context.allIssues()).extracting(issue -> issue.primaryLocation().message() + " " + issue.flows().size())
+      .containsExactly("Issue on b 0", "Other issue on b 0", "Issue on b 1", "Issue on b 1", "Issue on file 0", "Issue on file 1");
+  }
+
+  @Test
+  public void buffered_issues_are_dropped_when_scan_fails() throws Exception {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    XmlFile file = XmlFile.create(inputFile("<a>\n  <b/>\n</a>\n"));
+    SonarXmlCheck check = new SonarXmlCheck() {
+      @Override
+      public void scanFile(XmlFile file) {
+        reportIssueOnFile("Issue on file", Collections.emptyList());
+        throw new IllegalStateException("failure");
+      }
+    };
+
+    check.setDeduplicateIssues(true);
+    assertThatThrownBy(() -> check.scanFile(context, RuleKey.of("xml", "S1"), file))
+      .isInstanceOf(IllegalStateException.class);
+    assertThat(context.allIssues()).isEmpty();
+  }
+
+  @Test
+  public void issues_above_the_limit_are_ignored() throws Exception {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    XmlFile file = XmlFile.create(inputFile("<a>\n  <b/>\n  <b/>\n  <b/>\n</a>\n"));
+    SonarXmlCheck check = new SonarXmlCheck() {
+      @Override
+      public void scanFile(XmlFile file) {
+        XmlFile.asList(file.getDocument().getElementsByTagName("b")).forEach(b -> reportIssue(b, "Issue on b"));
+      }
+    };
+
+    check.setMaxIssuesPerFile(2);
+    check.scanFile(context, RuleKey.of("xml", "S1"), file);
+    assertThat(context.allIssues()).hasSize(2);
+    assertThat(context.allIssues()).extracting(issue -> issue.primaryLocation().textRange().start().line())
+      .containsExactly(2, 3);
+    assertThat(logTester.logs(LoggerLevel.WARN)).containsExactly("[xml:S1] 1 issue(s) above the limit of 2 were ignored on file file.xml");
+
+    // the limit applies to each file
+    check.scanFile(context, RuleKey.of("xml", "S1"), file);
+    assertThat(context.allIssues()).hasSize(4);
+  }
+
+  @Test
+  public void limit_should_be_positive() {
+    SonarXmlCheck check = new SonarXmlCheck() {
+      @Override
+      public void scanFile(XmlFile file) {
+        // no issue
+      }
+    };
+    assertThatThrownBy(() -> check.setMaxIssuesPerFile(0))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Maximum number of issues per file should be positive: 0");
+  }
+
+  private static DefaultInputFile inputFile(String content) {
+    return new TestInputFileBuilder("moduleKey", "file.xml")
+      .setModuleBaseDir(new File(".").toPath())
+      .setCharset(StandardCharsets.UTF_8)
+      .initMetadata(content)
+      .setContents(content)
+      .build();
+  }
+}
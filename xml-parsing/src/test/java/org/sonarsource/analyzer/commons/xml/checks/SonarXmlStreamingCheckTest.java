@@ -0,0 +1,112 @@
+/*
+ * SonarSource Analyzers XML Parsing Commons
+ * Copyright (C) 2009-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.analyzer.commons.xml.checks;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.sonarsource.analyzer.commons.xml.XmlStreamElement;
+import org.sonarsource.analyzer.commons.xml.XmlTextRange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SonarXmlStreamingCheckTest {
+
+  private static final String CONTENT = "<root>\n  <a/>\n  <!-- TODO -->\n  <a>text</a>\n</root>\n";
+
+  @Test
+  public void several_checks_in_one_pass() throws Exception {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    DefaultInputFile inputFile = inputFile();
+    Map<SonarXmlStreamingCheck, RuleKey> checks = new LinkedHashMap<>();
+    checks.put(new ElementNameCheck(), RuleKey.of("tst", "element"));
+    checks.put(new CommentCheck(), RuleKey.of("tst", "comment"));
+
+    SonarXmlStreamingCheck.scanFile(context, XmlFile.createStreaming(inputFile), checks);
+
+    assertThat(issues(context.allIssues())).containsExactlyInAnyOrder(
+      "element 2:2-2:6",
+      "element 4:2-4:13",
+      "comment 3:2-3:15");
+  }
+
+  @Test
+  public void single_check_on_streamed_or_parsed_file() throws Exception {
+    DefaultInputFile inputFile = inputFile();
+    SensorContextTester streamingContext = SensorContextTester.create(new File("."));
+    new ElementNameCheck().scanFile(streamingContext, RuleKey.of("tst", "element"), XmlFile.createStreaming(inputFile));
+
+    SensorContextTester domContext = SensorContextTester.create(new File("."));
+    new ElementNameCheck().scanFile(domContext, RuleKey.of("tst", "element"), XmlFile.create(inputFile));
+
+    assertThat(issues(streamingContext.allIssues()))
+      .containsExactlyInAnyOrder("element 2:2-2:6", "element 4:2-4:13")
+      .isEqualTo(issues(domContext.allIssues()));
+  }
+
+  private static DefaultInputFile inputFile() {
+    return new TestInputFileBuilder("moduleKey", "file.xml")
+      .setModuleBaseDir(new File(".").toPath())
+      .setCharset(StandardCharsets.UTF_8)
+      .initMetadata(CONTENT)
+      .setContents(CONTENT)
+      .build();
+  }
+
+  private static Collection<String> issues(Collection<Issue> issues) {
+    return issues.stream()
+      .map(issue -> {
+        TextRange range = issue.primaryLocation().textRange();
+        return issue.ruleKey().rule() + " " + range.start().line() + ":" + range.start().lineOffset() + "-" + range.end().line() + ":" + range.end().lineOffset();
+      })
+      .collect(Collectors.toList());
+  }
+
+  private static class ElementNameCheck extends SonarXmlStreamingCheck {
+    @Override
+    public void endElement(XmlStreamElement element) {
+      if ("a".equals(element.getName())) {
+        reportIssue(element.getNodeLocation(), "Rename this element", Collections.emptyList());
+      }
+    }
+  }
+
+  private static class CommentCheck extends SonarXmlStreamingCheck {
+    @Override
+    public void comment(String text, XmlTextRange location) {
+      if (text.contains("TODO")) {
+        reportIssue(location, "Complete the task", Collections.emptyList());
+      }
+    }
+  }
+
+}